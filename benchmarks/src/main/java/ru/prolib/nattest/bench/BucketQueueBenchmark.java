@@ -0,0 +1,95 @@
+package ru.prolib.nattest.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.prolib.nattest.impl.CsrGraph;
+import ru.prolib.nattest.impl.DijkstraEngine;
+import ru.prolib.nattest.impl.GraphBuilder;
+import ru.prolib.nattest.impl.GraphType;
+import ru.prolib.nattest.impl.WeightRange;
+
+/**
+ * Dijkstra's search with the heap against the bucket queue on bounded weights.
+ * <p>
+ * Generated weights are multiples of 0.1 in range [0.1, 10]. Integral weights are the
+ * generated ones rounded up, so they are in range [1, 10].
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class BucketQueueBenchmark {
+	static final int PAIR_COUNT = 256;
+
+	@State(Scope.Benchmark)
+	public static class GraphState {
+		@Param({ "RANDOM", "GRID", "SCALE_FREE" })
+		Workload workload;
+		@Param({ "100000", "1000000" })
+		int size;
+		@Param({ "false", "true" })
+		boolean integral;
+		CsrGraph<Integer> graph;
+		WeightRange weights;
+		DijkstraEngine dijkstra;
+		int[] sources, targets;
+		int index;
+
+		@Setup
+		public void setUp() {
+			EdgeList edges = workload.generate(GraphType.DIRECTED, size, 7261L);
+			GraphBuilder<Integer> builder = new GraphBuilder<>(GraphType.DIRECTED, size, edges.size());
+			for ( int i = 0; i < size; i ++ ) {
+				builder.addVertex(i);
+			}
+			for ( int i = 0; i < edges.size(); i ++ ) {
+				double weight = edges.getWeight(i);
+				builder.addEdge(edges.getSource(i), edges.getTarget(i), integral ? Math.ceil(weight) : weight);
+			}
+			graph = builder.buildSnapshot();
+			weights = graph.getWeightRange();
+			dijkstra = new DijkstraEngine(graph);
+			Random random = new Random(3314L);
+			sources = new int[PAIR_COUNT];
+			targets = new int[PAIR_COUNT];
+			for ( int i = 0; i < PAIR_COUNT; i ++ ) {
+				sources[i] = graph.getVertexId(random.nextInt(size));
+				targets[i] = graph.getVertexId(random.nextInt(size));
+			}
+		}
+
+		int next() {
+			int result = index;
+			index = (index + 1) % PAIR_COUNT;
+			return result;
+		}
+
+	}
+
+	@Benchmark
+	public int[] heap(GraphState state) {
+		int i = state.next();
+		return state.dijkstra.findPath(state.sources[i], state.targets[i]);
+	}
+
+	@Benchmark
+	public int[] buckets(GraphState state) {
+		int i = state.next();
+		return state.dijkstra.findPath(state.sources[i], state.targets[i], state.weights, null);
+	}
+
+}
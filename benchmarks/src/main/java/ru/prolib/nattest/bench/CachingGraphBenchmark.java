@@ -0,0 +1,87 @@
+package ru.prolib.nattest.bench;
+
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.prolib.nattest.impl.CachingGraph;
+import ru.prolib.nattest.impl.GraphImpl;
+import ru.prolib.nattest.impl.GraphType;
+
+/**
+ * Cache hits from several threads.
+ * <p>
+ * All queried pairs are cached on setup, so each operation is a hit. One segment is a single
+ * locked LRU, more segments let threads hit different pairs without waiting for each other.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CachingGraphBenchmark {
+	static final int VERTEX_COUNT = 10000, PAIR_COUNT = 1024;
+	
+	@Param({ "1", "16" })
+	int segments;
+	CachingGraph<Integer> cache;
+	int[] sources, targets;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		GraphImpl<Integer> graph = Workload.RANDOM.generate(GraphType.UNDIRECTED, VERTEX_COUNT, 3307L).load();
+		cache = new CachingGraph<>(graph, PAIR_COUNT * 2, segments);
+		sources = new int[PAIR_COUNT];
+		targets = new int[PAIR_COUNT];
+		Random random = new Random(8821L);
+		int count = 0;
+		while ( count < PAIR_COUNT ) {
+			int source = random.nextInt(VERTEX_COUNT), target = random.nextInt(VERTEX_COUNT);
+			if ( source == target ) {
+				continue;
+			}
+			try {
+				cache.getPath(source, target);
+			} catch ( IllegalStateException e ) {
+				// Not connected
+				continue;
+			}
+			sources[count] = source;
+			targets[count ++] = target;
+		}
+	}
+	
+	private Collection<Integer> hit() {
+		int index = ThreadLocalRandom.current().nextInt(PAIR_COUNT);
+		return cache.getPath(sources[index], targets[index]);
+	}
+	
+	@Benchmark
+	@Threads(1)
+	public Collection<Integer> hit1() {
+		return hit();
+	}
+	
+	@Benchmark
+	@Threads(4)
+	public Collection<Integer> hit4() {
+		return hit();
+	}
+
+}
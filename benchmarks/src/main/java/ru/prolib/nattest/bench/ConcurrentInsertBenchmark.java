@@ -0,0 +1,169 @@
+package ru.prolib.nattest.bench;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.prolib.nattest.impl.GraphImpl;
+import ru.prolib.nattest.impl.GraphNodeImpl;
+import ru.prolib.nattest.impl.GraphType;
+
+/**
+ * Edge insertion from several threads into a shared graph.
+ * <p>
+ * Each operation adds a new unique edge. Edge N connects vertex N mod V with the vertex
+ * at distance N / V + 1, where the distance is less than V / 2, so no pair is repeated
+ * in either direction. The baseline is the insertion of the original graph without locks and
+ * snapshots, which may leave a half of an undirected edge on concurrent modifications.
+ * The queried graph was read before, so its modifications are queued and published in batches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class ConcurrentInsertBenchmark {
+	static final int VERTEX_COUNT = 1 << 16;
+	
+	/**
+	 * Copy of the edge insertion of the original graph implementation.
+	 */
+	public static class BaselineGraph {
+		private final boolean undirected;
+		private final Map<Integer, GraphNodeImpl<Integer>> nodes = new ConcurrentHashMap<>();
+		
+		BaselineGraph(GraphType type) {
+			this.undirected = type == GraphType.UNDIRECTED;
+		}
+		
+		BaselineGraph addVertex(Integer vertex) {
+			GraphNodeImpl<Integer> old_node, new_node;
+			old_node = nodes.putIfAbsent(vertex, new_node = new GraphNodeImpl<>(vertex));
+			if ( old_node != null && old_node != new_node ) {
+				throw new IllegalArgumentException("Vertex already exists: " + vertex);
+			}
+			return this;
+		}
+		
+		private GraphNodeImpl<Integer> getNode(Integer vertex) {
+			GraphNodeImpl<Integer> node = nodes.get(vertex);
+			if ( node == null ) {
+				throw new IllegalArgumentException("Vertex not found: " + vertex);
+			}
+			return node;
+		}
+		
+		BaselineGraph addEdge(Integer source, Integer target, double weight) {
+			GraphNodeImpl<Integer> source_node = getNode(source), target_node = getNode(target);
+			if ( source_node == target_node ) {
+				throw new IllegalArgumentException("Cannot use same vertex as source and target: " + source);
+			}
+			source_node.addEdge(target, weight);
+			if ( undirected == true ) {
+				target_node.addEdge(source, weight);
+			}
+			return this;
+		}
+		
+	}
+	
+	@Param({ "DIRECTED", "UNDIRECTED" })
+	GraphType type;
+	GraphImpl<Integer> graph, queried;
+	BaselineGraph baseline;
+	AtomicInteger counter;
+	
+	@Setup(Level.Iteration)
+	public void setUp() {
+		graph = new GraphImpl<>(type);
+		queried = new GraphImpl<>(type);
+		baseline = new BaselineGraph(type);
+		for ( int i = 0; i < VERTEX_COUNT; i ++ ) {
+			graph.addVertex(i);
+			queried.addVertex(i);
+			baseline.addVertex(i);
+		}
+		queried.snapshot();
+		counter = new AtomicInteger();
+	}
+	
+	private int nextIndex() {
+		return counter.getAndIncrement();
+	}
+	
+	private static int source(int index) {
+		return index % VERTEX_COUNT;
+	}
+	
+	private static int target(int index) {
+		return (index % VERTEX_COUNT + index / VERTEX_COUNT + 1) % VERTEX_COUNT;
+	}
+	
+	private GraphImpl<Integer> addNextEdge() {
+		int index = nextIndex();
+		return graph.addEdge(source(index), target(index), 1.0d);
+	}
+	
+	private GraphImpl<Integer> addNextQueriedEdge() {
+		int index = nextIndex();
+		return queried.addEdge(source(index), target(index), 1.0d);
+	}
+	
+	private BaselineGraph addNextBaselineEdge() {
+		int index = nextIndex();
+		return baseline.addEdge(source(index), target(index), 1.0d);
+	}
+	
+	@Benchmark
+	@Threads(1)
+	public GraphImpl<Integer> addEdge1() {
+		return addNextEdge();
+	}
+	
+	@Benchmark
+	@Threads(4)
+	public GraphImpl<Integer> addEdge4() {
+		return addNextEdge();
+	}
+	
+	@Benchmark
+	@Threads(1)
+	public GraphImpl<Integer> queriedAddEdge1() {
+		return addNextQueriedEdge();
+	}
+	
+	@Benchmark
+	@Threads(4)
+	public GraphImpl<Integer> queriedAddEdge4() {
+		return addNextQueriedEdge();
+	}
+	
+	@Benchmark
+	@Threads(1)
+	public BaselineGraph baselineAddEdge1() {
+		return addNextBaselineEdge();
+	}
+	
+	@Benchmark
+	@Threads(4)
+	public BaselineGraph baselineAddEdge4() {
+		return addNextBaselineEdge();
+	}
+
+}
@@ -0,0 +1,96 @@
+package ru.prolib.nattest.bench;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.prolib.nattest.impl.CsrGraph;
+import ru.prolib.nattest.impl.DeltaSteppingEngine;
+import ru.prolib.nattest.impl.DijkstraEngine;
+import ru.prolib.nattest.impl.GraphType;
+
+/**
+ * Single long queries: sequential Dijkstra's search against parallel delta-stepping.
+ * <p>
+ * Compare the engines for the same workload and size to find the size from which
+ * delta-stepping wins. The result depends on the number of cores; the parallelism
+ * parameter sets the size of the pool of delta-stepping.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class DeltaSteppingBenchmark {
+	static final int PAIR_COUNT = 64;
+
+	@State(Scope.Benchmark)
+	public static class GraphState {
+		@Param({ "RANDOM", "GRID" })
+		Workload workload;
+		@Param({ "10000", "100000", "1000000" })
+		int size;
+		@Param({ "4" })
+		int parallelism;
+		CsrGraph<Integer> graph;
+		ForkJoinPool pool;
+		DijkstraEngine dijkstra;
+		DeltaSteppingEngine deltaStepping;
+		int[] sources, targets;
+		int index;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			graph = workload.generate(GraphType.UNDIRECTED, size, 7261L).loadBuilder().buildSnapshot();
+			pool = new ForkJoinPool(parallelism);
+			dijkstra = new DijkstraEngine(graph);
+			deltaStepping = new DeltaSteppingEngine(graph, pool, 0.0d);
+			Random random = new Random(3314L);
+			sources = new int[PAIR_COUNT];
+			targets = new int[PAIR_COUNT];
+			for ( int i = 0; i < PAIR_COUNT; i ++ ) {
+				sources[i] = graph.getVertexId(random.nextInt(size));
+				targets[i] = graph.getVertexId(random.nextInt(size));
+			}
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			pool.shutdown();
+		}
+
+		int next() {
+			int result = index;
+			index = (index + 1) % PAIR_COUNT;
+			return result;
+		}
+
+	}
+
+	@Benchmark
+	public int[] dijkstra(GraphState state) {
+		int i = state.next();
+		return state.dijkstra.findPath(state.sources[i], state.targets[i]);
+	}
+
+	@Benchmark
+	public int[] deltaStepping(GraphState state) {
+		int i = state.next();
+		return state.deltaStepping.findPath(state.sources[i], state.targets[i]);
+	}
+
+}
@@ -0,0 +1,107 @@
+package ru.prolib.nattest.bench;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import ru.prolib.nattest.impl.GraphBuilder;
+import ru.prolib.nattest.impl.GraphImpl;
+import ru.prolib.nattest.impl.GraphType;
+import ru.prolib.nattest.impl.OffHeapGraph;
+
+/**
+ * Generated graph: vertices are integers in range [0, vertexCount).
+ * Duplicate edges are dropped on addition.
+ */
+public class EdgeList {
+	private final GraphType type;
+	private final int vertexCount;
+	private final Set<Long> pairs = new HashSet<>();
+	private int[] sources = new int[16], targets = new int[16];
+	private double[] weights = new double[16];
+	private int size;
+	
+	public EdgeList(GraphType type, int vertexCount) {
+		this.type = type;
+		this.vertexCount = vertexCount;
+	}
+	
+	public GraphType getType() {
+		return type;
+	}
+	
+	public int getVertexCount() {
+		return vertexCount;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public int getSource(int index) {
+		return sources[index];
+	}
+	
+	public int getTarget(int index) {
+		return targets[index];
+	}
+	
+	public double getWeight(int index) {
+		return weights[index];
+	}
+	
+	public boolean add(int source, int target, double weight) {
+		if ( source == target ) {
+			return false;
+		}
+		long pair = type == GraphType.UNDIRECTED
+			? (long) Math.min(source, target) << 32 | Math.max(source, target)
+			: (long) source << 32 | target;
+		if ( ! pairs.add(pair) ) {
+			return false;
+		}
+		if ( size == sources.length ) {
+			sources = Arrays.copyOf(sources, size * 2);
+			targets = Arrays.copyOf(targets, size * 2);
+			weights = Arrays.copyOf(weights, size * 2);
+		}
+		sources[size] = source;
+		targets[size] = target;
+		weights[size] = weight;
+		size ++;
+		return true;
+	}
+	
+	public GraphImpl<Integer> load() {
+		GraphImpl<Integer> graph = new GraphImpl<>(type);
+		for ( int i = 0; i < vertexCount; i ++ ) {
+			graph.addVertex(i);
+		}
+		for ( int i = 0; i < size; i ++ ) {
+			graph.addEdge(sources[i], targets[i], weights[i]);
+		}
+		return graph;
+	}
+	
+	public OffHeapGraph<Integer> loadOffHeap() {
+		OffHeapGraph<Integer> graph = new OffHeapGraph<>(type, GraphImpl.DEFAULT_WEIGHT, vertexCount);
+		for ( int i = 0; i < vertexCount; i ++ ) {
+			graph.addVertex(i);
+		}
+		for ( int i = 0; i < size; i ++ ) {
+			graph.addEdge(sources[i], targets[i], weights[i]);
+		}
+		return graph;
+	}
+	
+	public GraphBuilder<Integer> loadBuilder() {
+		GraphBuilder<Integer> builder = new GraphBuilder<>(type, vertexCount, size);
+		for ( int i = 0; i < vertexCount; i ++ ) {
+			builder.addVertex(i);
+		}
+		// Vertex ids of the builder are equal to vertices because of order of addition
+		return builder.addEdges(Arrays.copyOf(sources, size), Arrays.copyOf(targets, size),
+				Arrays.copyOf(weights, size));
+	}
+
+}
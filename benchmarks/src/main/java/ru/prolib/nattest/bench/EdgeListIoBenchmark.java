@@ -0,0 +1,117 @@
+package ru.prolib.nattest.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.prolib.nattest.impl.CsrGraph;
+import ru.prolib.nattest.impl.EdgeListFormat;
+import ru.prolib.nattest.impl.EdgeListReader;
+import ru.prolib.nattest.impl.EdgeListWriter;
+import ru.prolib.nattest.impl.GraphBuilder;
+import ru.prolib.nattest.impl.GraphImpl;
+import ru.prolib.nattest.impl.GraphType;
+
+/**
+ * Streaming import and export of edge list files. The megabytes counter shows throughput in MB/s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class EdgeListIoBenchmark {
+	
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Counters {
+		public double megabytes;
+	}
+	
+	@Param({ "CSV", "BINARY" })
+	EdgeListFormat format;
+	@Param({ "1000000" })
+	int size;
+	EdgeList edges;
+	GraphImpl<Integer> graph;
+	Path input, output;
+	double inputSize;
+	
+	@Setup
+	public void setUp() throws IOException {
+		edges = Workload.RANDOM.generate(GraphType.DIRECTED, size, 3917L);
+		graph = edges.load();
+		input = Files.createTempFile("nattest", ".edges");
+		output = Files.createTempFile("nattest", ".edges");
+		writeEdges(input);
+		inputSize = Files.size(input) / 1e6d;
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(input);
+		Files.deleteIfExists(output);
+	}
+	
+	private void writeEdges(Path file) throws IOException {
+		try ( EdgeListWriter writer = EdgeListWriter.create(file, format) ) {
+			for ( int i = 0; i < edges.size(); i ++ ) {
+				writer.write(edges.getSource(i), edges.getTarget(i), edges.getWeight(i));
+			}
+		}
+	}
+	
+	@Benchmark
+	public long read(Counters counters) throws IOException {
+		long sum = 0;
+		try ( EdgeListReader reader = EdgeListReader.open(input, format, 1.0d) ) {
+			while ( reader.next() ) {
+				sum += reader.getSource() + reader.getTarget() + (long) reader.getWeight();
+			}
+		}
+		counters.megabytes += inputSize;
+		return sum;
+	}
+	
+	@Benchmark
+	public CsrGraph<Integer> readToBuilder(Counters counters) throws IOException {
+		GraphBuilder<Integer> builder = new GraphBuilder<>(GraphType.DIRECTED, size, edges.size());
+		try ( EdgeListReader reader = EdgeListReader.open(input, format, 1.0d) ) {
+			reader.read(builder, x -> (int) x);
+		}
+		counters.megabytes += inputSize;
+		return builder.buildSnapshot();
+	}
+	
+	@Benchmark
+	public void write(Counters counters) throws IOException {
+		writeEdges(output);
+		counters.megabytes += inputSize;
+	}
+	
+	@Benchmark
+	public void writeGraph(Counters counters) throws IOException {
+		try ( EdgeListWriter writer = EdgeListWriter.create(output, format) ) {
+			writer.write(graph, x -> x);
+		}
+		counters.megabytes += inputSize;
+	}
+
+}
@@ -0,0 +1,70 @@
+package ru.prolib.nattest.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.prolib.nattest.impl.CsrGraph;
+import ru.prolib.nattest.impl.GraphImpl;
+import ru.prolib.nattest.impl.GraphNode;
+import ru.prolib.nattest.impl.GraphType;
+
+/**
+ * Loading of generated graphs edge by edge, with the bulk builder and freezing of loaded graphs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GraphBuildBenchmark {
+	@Param({ "RANDOM", "GRID", "SCALE_FREE", "TEST_GRAPH" })
+	Workload workload;
+	@Param({ "DIRECTED", "UNDIRECTED" })
+	GraphType type;
+	@Param({ "10000", "100000" })
+	int size;
+	EdgeList edges;
+	List<GraphNode<Integer>> nodes;
+	
+	@Setup
+	public void setUp() {
+		edges = workload.generate(type, size, 7261L);
+		nodes = edges.load().stream().collect(Collectors.toList());
+	}
+	
+	@Benchmark
+	public GraphImpl<Integer> addEdges() {
+		return edges.load();
+	}
+	
+	@Benchmark
+	public GraphImpl<Integer> bulkBuild() {
+		return edges.loadBuilder().build();
+	}
+	
+	@Benchmark
+	public CsrGraph<Integer> bulkBuildSnapshot() {
+		return edges.loadBuilder().buildSnapshot();
+	}
+	
+	@Benchmark
+	public CsrGraph<Integer> freeze() {
+		// GraphImpl#freeze caches the snapshot, so build it directly
+		return new CsrGraph<>(type, nodes);
+	}
+
+}
@@ -0,0 +1,80 @@
+package ru.prolib.nattest.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.prolib.nattest.impl.DynamicShortestPathTree;
+import ru.prolib.nattest.impl.GraphImpl;
+import ru.prolib.nattest.impl.GraphType;
+
+/**
+ * Keeping distances from one source current while edges are added.
+ * <p>
+ * Each operation adds a new vertex linked with two random vertices and reads the cost of
+ * a random vertex: incrementally with the tracked tree or by the full search.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IncrementalPathBenchmark {
+	@Param({ "RANDOM", "GRID" })
+	Workload workload;
+	@Param({ "DIRECTED", "UNDIRECTED" })
+	GraphType type;
+	@Param({ "10000", "100000" })
+	int size;
+	GraphImpl<Integer> graph;
+	DynamicShortestPathTree<Integer> tree;
+	Random random;
+	int nextVertex;
+	
+	@Setup(Level.Iteration)
+	public void setUp() {
+		graph = workload.generate(type, size, 7261L).load();
+		tree = graph.trackShortestPathTree(0);
+		random = new Random(5119L);
+		nextVertex = size;
+	}
+	
+	@TearDown(Level.Iteration)
+	public void tearDown() {
+		tree.close();
+	}
+	
+	private int addVertex() {
+		int vertex = nextVertex ++;
+		graph.addVertex(vertex)
+			.addEdge(random.nextInt(size), vertex, 0.1d + random.nextInt(100) / 10.0d)
+			.addEdge(vertex, random.nextInt(size), 0.1d + random.nextInt(100) / 10.0d);
+		return random.nextInt(nextVertex);
+	}
+	
+	@Benchmark
+	public double incremental() {
+		return tree.getCost(addVertex());
+	}
+	
+	@Benchmark
+	public double fullSearch() {
+		int target = addVertex();
+		return graph.getShortestPathTree(0).getCost(target);
+	}
+
+}
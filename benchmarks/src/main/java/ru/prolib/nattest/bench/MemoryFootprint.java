@@ -0,0 +1,60 @@
+package ru.prolib.nattest.bench;
+
+import java.util.function.Function;
+
+import ru.prolib.nattest.impl.GraphType;
+import ru.prolib.nattest.impl.OffHeapGraph;
+
+/**
+ * Report of memory used per edge by the graph implementations.
+ * <p>
+ * Heap usage is measured as difference of used heap after full GC before and after the graph
+ * is built. Off-heap usage includes the reserve for growth of adjacency lists, the allocated
+ * column includes unused tails of the direct buffers as well. Usage:
+ * <pre>
+ * java -cp target/benchmarks.jar ru.prolib.nattest.bench.MemoryFootprint [vertices] [workload]
+ * </pre>
+ */
+public class MemoryFootprint {
+	static volatile Object sink;
+
+	static long getUsedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		// Several passes to let the collector settle
+		for ( int i = 0; i < 5; i ++ ) {
+			System.gc();
+			used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+		}
+		return used;
+	}
+
+	static void report(String name, EdgeList edges, Function<EdgeList, Object> loader) {
+		long heap_before = getUsedHeap();
+		Object graph = sink = loader.apply(edges);
+		long heap = getUsedHeap() - heap_before, off_heap = 0, allocated = 0;
+		if ( graph instanceof OffHeapGraph ) {
+			off_heap = ((OffHeapGraph<?>) graph).getUsedOffHeapBytes();
+			allocated = ((OffHeapGraph<?>) graph).getOffHeapBytes();
+		}
+		double count = edges.size();
+		System.out.printf("%-10s %-10s %10d %10.1f %10.1f %10.1f %10.1f%n", edges.getType(), name, edges.size(),
+				heap / count, off_heap / count, (heap + off_heap) / count, allocated / count);
+		sink = null;
+	}
+
+	public static void main(String[] args) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		Workload workload = args.length > 1 ? Workload.valueOf(args[1]) : Workload.RANDOM;
+		System.out.printf("%s workload, %d vertices. Bytes per added edge:%n", workload, n);
+		System.out.printf("%-10s %-10s %10s %10s %10s %10s %10s%n", "type", "storage", "edges", "heap", "off-heap",
+				"total", "allocated");
+		for ( GraphType type : GraphType.values() ) {
+			EdgeList edges = workload.generate(type, n, 1L);
+			report("GraphImpl", edges, EdgeList::load);
+			report("CsrGraph", edges, x -> x.load().freeze());
+			report("OffHeap", edges, EdgeList::loadOffHeap);
+		}
+	}
+
+}
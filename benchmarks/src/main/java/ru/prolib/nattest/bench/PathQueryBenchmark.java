@@ -0,0 +1,99 @@
+package ru.prolib.nattest.bench;
+
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.prolib.nattest.impl.GraphImpl;
+import ru.prolib.nattest.impl.GraphType;
+
+/**
+ * Shortest path queries against the generated graphs.
+ * <p>
+ * Results include throughput and latency percentiles. Run with -prof gc to get
+ * the allocation rate per query.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PathQueryBenchmark {
+	static final int PAIR_COUNT = 1024;
+	
+	@State(Scope.Benchmark)
+	public static class GraphState {
+		@Param({ "RANDOM", "GRID", "SCALE_FREE", "TEST_GRAPH" })
+		Workload workload;
+		@Param({ "DIRECTED", "UNDIRECTED" })
+		GraphType type;
+		@Param({ "10000", "100000" })
+		int size;
+		GraphImpl<Integer> graph;
+		int[] sources, targets;
+		
+		@Setup
+		public void setUp() {
+			graph = workload.generate(type, size, 7261L).load();
+			Random random = new Random(3314L);
+			sources = new int[PAIR_COUNT];
+			targets = new int[PAIR_COUNT];
+			for ( int i = 0; i < PAIR_COUNT; i ++ ) {
+				sources[i] = random.nextInt(size);
+				targets[i] = random.nextInt(size);
+			}
+			// Make the snapshot before measurements
+			graph.snapshot();
+		}
+		
+	}
+	
+	@State(Scope.Thread)
+	public static class Cursor {
+		int index;
+		
+		@Setup
+		public void setUp() {
+			index = (int) (Thread.currentThread().getId() * 31 % PAIR_COUNT);
+		}
+		
+		int next() {
+			int result = index;
+			index = (index + 1) % PAIR_COUNT;
+			return result;
+		}
+		
+	}
+	
+	@Benchmark
+	public Collection<Integer> singleQuery(GraphState state, Cursor cursor) {
+		int i = cursor.next();
+		return state.graph.getPath(state.sources[i], state.targets[i]);
+	}
+	
+	@Benchmark
+	public Collection<Integer> repeatedQuery(GraphState state) {
+		return state.graph.getPath(state.sources[0], state.targets[0]);
+	}
+	
+	@Benchmark
+	@Threads(4)
+	public Collection<Integer> concurrentQuery(GraphState state, Cursor cursor) {
+		int i = cursor.next();
+		return state.graph.getPath(state.sources[i], state.targets[i]);
+	}
+
+}
@@ -0,0 +1,90 @@
+package ru.prolib.nattest.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.prolib.nattest.impl.BreadthFirstEngine;
+import ru.prolib.nattest.impl.CsrGraph;
+import ru.prolib.nattest.impl.DijkstraEngine;
+import ru.prolib.nattest.impl.GraphBuilder;
+import ru.prolib.nattest.impl.GraphType;
+
+/**
+ * Path queries on graphs where all edges have the default weight: Dijkstra's search
+ * against breadth-first search which is used for such graphs automatically.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class UnitWeightBenchmark {
+	static final int PAIR_COUNT = 256;
+
+	@State(Scope.Benchmark)
+	public static class GraphState {
+		@Param({ "RANDOM", "GRID", "SCALE_FREE" })
+		Workload workload;
+		@Param({ "100000", "1000000" })
+		int size;
+		CsrGraph<Integer> graph;
+		DijkstraEngine dijkstra;
+		BreadthFirstEngine breadthFirst;
+		int[] sources, targets;
+		int index;
+
+		@Setup
+		public void setUp() {
+			EdgeList edges = workload.generate(GraphType.DIRECTED, size, 7261L);
+			GraphBuilder<Integer> builder = new GraphBuilder<>(GraphType.DIRECTED, size, edges.size());
+			for ( int i = 0; i < size; i ++ ) {
+				builder.addVertex(i);
+			}
+			for ( int i = 0; i < edges.size(); i ++ ) {
+				builder.addEdge(edges.getSource(i), edges.getTarget(i));
+			}
+			graph = builder.buildSnapshot();
+			dijkstra = new DijkstraEngine(graph);
+			breadthFirst = new BreadthFirstEngine(graph);
+			Random random = new Random(3314L);
+			sources = new int[PAIR_COUNT];
+			targets = new int[PAIR_COUNT];
+			for ( int i = 0; i < PAIR_COUNT; i ++ ) {
+				sources[i] = graph.getVertexId(random.nextInt(size));
+				targets[i] = graph.getVertexId(random.nextInt(size));
+			}
+		}
+
+		int next() {
+			int result = index;
+			index = (index + 1) % PAIR_COUNT;
+			return result;
+		}
+
+	}
+
+	@Benchmark
+	public int[] dijkstra(GraphState state) {
+		int i = state.next();
+		return state.dijkstra.findPath(state.sources[i], state.targets[i]);
+	}
+
+	@Benchmark
+	public int[] breadthFirst(GraphState state) {
+		int i = state.next();
+		return state.breadthFirst.findPath(state.sources[i], state.targets[i]);
+	}
+
+}
@@ -0,0 +1,119 @@
+package ru.prolib.nattest.bench;
+
+import java.util.Random;
+
+import ru.prolib.nattest.impl.GraphType;
+
+/**
+ * Generators of benchmark graphs.
+ * <p>
+ * Each workload contains a backbone cycle through all vertices, so every vertex is
+ * reachable from every other one in both directed and undirected graphs.
+ */
+public enum Workload {
+	/**
+	 * Uniform random sparse graph with average out-degree of about 4.
+	 */
+	RANDOM {
+		@Override
+		protected void generate(EdgeList edges, Random random) {
+			int n = edges.getVertexCount();
+			for ( int i = 0; i < n * 3; i ++ ) {
+				edges.add(random.nextInt(n), random.nextInt(n), randomWeight(random));
+			}
+		}
+	},
+	/**
+	 * Square grid with edges in both directions between adjacent cells.
+	 */
+	GRID {
+		@Override
+		protected void generate(EdgeList edges, Random random) {
+			int n = edges.getVertexCount(), side = (int) Math.sqrt(n);
+			for ( int y = 0; y < side; y ++ ) {
+				for ( int x = 0; x < side; x ++ ) {
+					int v = y * side + x;
+					if ( x + 1 < side ) {
+						double weight = randomWeight(random);
+						edges.add(v, v + 1, weight);
+						edges.add(v + 1, v, weight);
+					}
+					if ( y + 1 < side ) {
+						double weight = randomWeight(random);
+						edges.add(v, v + side, weight);
+						edges.add(v + side, v, weight);
+					}
+				}
+			}
+		}
+	},
+	/**
+	 * Preferential attachment (Barabasi-Albert) graph with 3 edges per new vertex.
+	 */
+	SCALE_FREE {
+		@Override
+		protected void generate(EdgeList edges, Random random) {
+			int n = edges.getVertexCount(), m = 3;
+			// Each edge end is stored to pick targets proportionally to degree
+			int[] ends = new int[n * m * 2 + 2];
+			int end_count = 0;
+			ends[end_count ++] = 0;
+			ends[end_count ++] = 1;
+			for ( int v = 2; v < n; v ++ ) {
+				for ( int i = 0; i < m; i ++ ) {
+					int target = ends[random.nextInt(end_count)];
+					if ( edges.add(v, target, randomWeight(random)) ) {
+						ends[end_count ++] = v;
+						ends[end_count ++] = target;
+					}
+				}
+			}
+		}
+	},
+	/**
+	 * Copies of the 12-vertex graph of the unit tests linked to each other.
+	 */
+	TEST_GRAPH {
+		private final int[][] TEST_EDGES = {
+			{ 1,  3}, { 1, 10}, { 2,  4}, { 2,  5}, { 2,  6}, { 2, 11}, { 3,  8},
+			{ 3, 12}, { 4,  5}, { 4,  6}, { 5,  6}, { 5, 12}, { 6,  7}, { 6,  8},
+			{ 7,  8}, { 7,  9}, { 7, 10}, { 7, 11}, { 8, 10}, { 8, 11}, { 9, 10}
+		};
+		private final double[] TEST_WEIGHTS = {
+			0.9d, 0.7d, 0.9d, 0.8d, 0.5d, 0.5d, 0.6d,
+			0.7d, 0.7d, 0.3d, 0.4d, 0.7d, 0.3d, 0.5d,
+			0.8d, 0.5d, 0.3d, 0.2d, 0.8d, 0.1d, 0.6d
+		};
+		
+		@Override
+		protected void generate(EdgeList edges, Random random) {
+			int copies = edges.getVertexCount() / 12;
+			for ( int copy = 0; copy < copies; copy ++ ) {
+				int base = copy * 12 - 1;
+				for ( int i = 0; i < TEST_EDGES.length; i ++ ) {
+					edges.add(base + TEST_EDGES[i][0], base + TEST_EDGES[i][1], TEST_WEIGHTS[i]);
+				}
+				if ( copy > 0 ) {
+					edges.add(base + 1, base - 11 + random.nextInt(12), randomWeight(random));
+				}
+			}
+		}
+	};
+	
+	static double randomWeight(Random random) {
+		return 0.1d + random.nextInt(100) / 10.0d;
+	}
+	
+	protected abstract void generate(EdgeList edges, Random random);
+	
+	public EdgeList generate(GraphType type, int vertexCount, long seed) {
+		Random random = new Random(seed);
+		EdgeList edges = new EdgeList(type, vertexCount);
+		generate(edges, random);
+		for ( int i = 0; i < vertexCount; i ++ ) {
+			edges.add(i, (i + 1) % vertexCount, randomWeight(random));
+		}
+		return edges;
+	}
+
+}
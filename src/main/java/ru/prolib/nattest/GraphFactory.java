@@ -2,7 +2,9 @@ package ru.prolib.nattest;
 
 import static ru.prolib.nattest.impl.GraphType.*;
 
+import ru.prolib.nattest.impl.CachingGraph;
 import ru.prolib.nattest.impl.GraphImpl;
+import ru.prolib.nattest.impl.OffHeapGraph;
 
 public class GraphFactory {
 	private static final GraphFactory instance = new GraphFactory();
@@ -19,6 +21,22 @@ public class GraphFactory {
 		return new GraphImpl<>(UNDIRECTED);
 	}
 	
+	public <T> Graph<T> createCachedDirectedGraph(int cacheSize) {
+		return new CachingGraph<>(new GraphImpl<>(DIRECTED), cacheSize);
+	}
+	
+	public <T> Graph<T> createCachedUndirectedGraph(int cacheSize) {
+		return new CachingGraph<>(new GraphImpl<>(UNDIRECTED), cacheSize);
+	}
+	
+	public <T> Graph<T> createOffHeapDirectedGraph() {
+		return new OffHeapGraph<>(DIRECTED);
+	}
+	
+	public <T> Graph<T> createOffHeapUndirectedGraph() {
+		return new OffHeapGraph<>(UNDIRECTED);
+	}
+	
 	protected <T> Graph<T> createDirectedGraph(double defaultWeight) {
 		return new GraphImpl<>(DIRECTED, defaultWeight);
 	}
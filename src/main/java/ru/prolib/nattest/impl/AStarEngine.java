@@ -0,0 +1,60 @@
+package ru.prolib.nattest.impl;
+
+import java.util.function.ToDoubleBiFunction;
+
+/**
+ * A* search over an indexed graph. The heuristic must never overestimate the remaining cost.
+ * Vertices are reopened when a cheaper path is found, so it doesn't have to be consistent.
+ */
+public class AStarEngine<VertexType> {
+	private final IndexedGraph<VertexType> graph;
+	
+	public AStarEngine(IndexedGraph<VertexType> graph) {
+		this.graph = graph;
+	}
+	
+	public int[] findPath(int source, int target,
+			ToDoubleBiFunction<? super VertexType, ? super VertexType> heuristic)
+	{
+		return findPath(source, target, heuristic, null);
+	}
+	
+	public int[] findPath(int source, int target,
+			ToDoubleBiFunction<? super VertexType, ? super VertexType> heuristic, SearchStats stats)
+	{
+		VertexType target_vertex = graph.getVertex(target);
+		try ( SearchContext context = SearchContext.acquire(graph.getVertexCount()) ) {
+			IndexedHeap heap = context.getHeap();
+			context.setReached(source, 0.0d, source);
+			context.setEstimate(source, heuristic.applyAsDouble(graph.getVertex(source), target_vertex));
+			heap.update(source, context.getEstimate(source));
+			boolean found = false;
+			while ( heap.isEmpty() == false ) {
+				int curr = heap.poll();
+				if ( curr == target ) {
+					found = true;
+					break;
+				}
+				double curr_cost = context.getCost(curr);
+				for ( int i = 0, degree = graph.getDegree(curr); i < degree; i ++ ) {
+					int next = graph.getTarget(curr, i);
+					double new_cost = curr_cost + graph.getWeight(curr, i);
+					if ( new_cost < context.getCost(next) ) {
+						context.setReached(next, new_cost, curr);
+						double estimate = context.getEstimate(next);
+						if ( Double.isNaN(estimate) ) {
+							estimate = heuristic.applyAsDouble(graph.getVertex(next), target_vertex);
+							context.setEstimate(next, estimate);
+						}
+						heap.update(next, new_cost + estimate);
+					}
+				}
+			}
+			if ( stats != null ) {
+				stats.add(heap);
+			}
+			return found ? context.getPath(source, target) : null;
+		}
+	}
+
+}
@@ -0,0 +1,236 @@
+package ru.prolib.nattest.impl;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ToDoubleBiFunction;
+
+import ru.prolib.nattest.Graph;
+
+/**
+ * Base of read-only graphs which are queried through the indexed view.
+ */
+public abstract class AbstractIndexedGraph<VertexType> implements Graph<VertexType>, IndexedGraph<VertexType> {
+	private final DijkstraEngine dijkstra = new DijkstraEngine(this);
+	// Other engines are made on first use: a version of the graph is made on each modification.
+	// Engines have no mutable state, so a duplicate made by a race is harmless.
+	private BidirectionalDijkstraEngine bidirectional;
+	private AStarEngine<VertexType> astar;
+	private DeltaSteppingEngine deltaStepping;
+	private BreadthFirstEngine breadthFirst;
+	private volatile WeightRange weights;
+	private volatile ComponentIndex components;
+	private volatile StrongComponents<VertexType> strongComponents;
+	
+	public boolean isDirected() {
+		return ! isUndirected();
+	}
+	
+	// Scans all edges on the first call. Graphs which can change track it on modifications.
+	public WeightRange getWeightRange() {
+		WeightRange weights = this.weights;
+		if ( weights == null ) {
+			weights = WeightRange.EMPTY;
+			for ( int id = 0, n = getVertexCount(); id < n; id ++ ) {
+				for ( int i = 0, degree = getDegree(id); i < degree; i ++ ) {
+					weights = weights.add(getWeight(id, i));
+				}
+			}
+			this.weights = weights;
+		}
+		return weights;
+	}
+	
+	public double getUniformWeight() {
+		return getWeightRange().getUniformWeight();
+	}
+	
+	boolean hasVertex(int id) {
+		return true;
+	}
+	
+	// Once the index exists, queries of vertices of different components are rejected without search
+	public ComponentIndex getComponentIndex() {
+		ComponentIndex components = this.components;
+		if ( components == null ) {
+			this.components = components = ComponentIndex.of(this);
+		}
+		return components;
+	}
+	
+	ComponentIndex peekComponentIndex() {
+		return components;
+	}
+	
+	void setComponentIndex(ComponentIndex components) {
+		this.components = components;
+	}
+	
+	public boolean isConnected(VertexType a, VertexType b) {
+		return getComponentIndex().isConnected(getId(a), getId(b));
+	}
+	
+	public int getComponentCount() {
+		return getComponentIndex().getComponentCount();
+	}
+	
+	public StrongComponents<VertexType> getStrongComponents() {
+		StrongComponents<VertexType> components = strongComponents;
+		if ( components == null ) {
+			strongComponents = components = StrongComponents.of(this);
+		}
+		return components;
+	}
+	
+	// Checks components which are known already, nothing is computed here
+	private boolean mayReach(int source, int target) {
+		ComponentIndex components = peekComponentIndex();
+		if ( components != null && components.isConnected(source, target) == false ) {
+			return false;
+		}
+		StrongComponents<VertexType> strong = strongComponents;
+		return strong == null || strong.mayReachId(source, target);
+	}
+	
+	private GraphPath<VertexType> toPath(VertexType source, VertexType target, int[] path, SearchStats stats) {
+		if ( stats != null ) {
+			stats.setFound(path != null);
+		}
+		if ( path == null ) {
+			if ( peekComponentIndex() == null ) {
+				// The search has paid for a scan already, next queries between these components are free
+				getComponentIndex();
+			}
+			throw new IllegalStateException("Path not found: " + source + " -> " + target);
+		}
+		return new GraphPath<>(this, path);
+	}
+	
+	protected int getId(VertexType vertex) {
+		int id = getVertexId(vertex);
+		if ( id < 0 ) {
+			throw new IllegalArgumentException("Vertex not found: " + vertex);
+		}
+		return id;
+	}
+
+	@Override
+	public Graph<VertexType> addVertex(VertexType vertex) {
+		throw new UnsupportedOperationException("Graph is read-only");
+	}
+
+	@Override
+	public Graph<VertexType> addEdge(VertexType source, VertexType target) {
+		throw new UnsupportedOperationException("Graph is read-only");
+	}
+
+	@Override
+	public GraphPath<VertexType> getPath(VertexType source, VertexType target) {
+		return getPath(source, target, SearchMode.DIJKSTRA);
+	}
+	
+	public GraphPath<VertexType> getPath(VertexType source, VertexType target, SearchMode mode) {
+		return getPath(source, target, mode, null);
+	}
+	
+	public GraphPath<VertexType> getPath(VertexType source, VertexType target, SearchMode mode,
+			SearchStats stats)
+	{
+		int source_id = getId(source), target_id = getId(target);
+		if ( mayReach(source_id, target_id) == false ) {
+			return toPath(source, target, null, stats);
+		}
+		int[] path;
+		if ( mode == SearchMode.DIJKSTRA && Double.isNaN(getUniformWeight()) == false ) {
+			// The path with the least number of edges is the shortest one
+			mode = SearchMode.BREADTH_FIRST;
+		}
+		switch ( mode ) {
+		case BREADTH_FIRST:
+			if ( breadthFirst == null ) {
+				breadthFirst = new BreadthFirstEngine(this);
+			}
+			path = breadthFirst.findPath(source_id, target_id, stats);
+			break;
+		case BIDIRECTIONAL:
+			if ( bidirectional == null ) {
+				bidirectional = new BidirectionalDijkstraEngine(this);
+			}
+			path = bidirectional.findPath(source_id, target_id, stats);
+			break;
+		case DELTA_STEPPING:
+			if ( deltaStepping == null ) {
+				deltaStepping = new DeltaSteppingEngine(this);
+			}
+			path = deltaStepping.findPath(source_id, target_id, stats);
+			break;
+		default:
+			path = dijkstra.findPath(source_id, target_id, getWeightRange(), stats);
+			break;
+		}
+		return toPath(source, target, path, stats);
+	}
+	
+	public GraphPath<VertexType> getPath(VertexType source, VertexType target,
+			ToDoubleBiFunction<? super VertexType, ? super VertexType> heuristic)
+	{
+		return getPath(source, target, heuristic, null);
+	}
+	
+	public GraphPath<VertexType> getPath(VertexType source, VertexType target,
+			ToDoubleBiFunction<? super VertexType, ? super VertexType> heuristic, SearchStats stats)
+	{
+		int source_id = getId(source), target_id = getId(target);
+		if ( mayReach(source_id, target_id) == false ) {
+			return toPath(source, target, null, stats);
+		}
+		if ( astar == null ) {
+			astar = new AStarEngine<>(this);
+		}
+		return toPath(source, target, astar.findPath(source_id, target_id, heuristic, stats), stats);
+	}
+	
+	public ShortestPathTree<VertexType> getShortestPathTree(VertexType source) {
+		return getShortestPathTree(source, null, Double.POSITIVE_INFINITY);
+	}
+	
+	public ShortestPathTree<VertexType> getShortestPathTree(VertexType source,
+			Collection<VertexType> targets, double maxCost)
+	{
+		int source_id = getId(source), n = getVertexCount();
+		int[] target_ids = null;
+		if ( targets != null ) {
+			target_ids = new int[targets.size()];
+			int i = 0;
+			for ( VertexType target : targets ) {
+				target_ids[i ++] = getId(target);
+			}
+		}
+		double[] cost = new double[n];
+		int[] from = new int[n];
+		try ( SearchContext context = SearchContext.acquire(n) ) {
+			int settled = dijkstra.search(source_id, target_ids, maxCost, context);
+			for ( int i = 0; i < n; i ++ ) {
+				cost[i] = context.getCost(i);
+				from[i] = context.getFrom(i);
+			}
+			return new ShortestPathTree<>(this, source_id, cost, from, settled);
+		}
+	}
+	
+	public DistanceMatrix<VertexType> getDistanceMatrix(List<VertexType> sources, List<VertexType> targets) {
+		return new DistanceMatrix<>(this, sources, targets, ForkJoinPool.commonPool());
+	}
+	
+	public DistanceMatrix<VertexType> getDistanceMatrix(List<VertexType> sources, List<VertexType> targets,
+			int parallelism)
+	{
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			return new DistanceMatrix<>(this, sources, targets, pool);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+}
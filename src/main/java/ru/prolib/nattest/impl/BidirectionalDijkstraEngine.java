@@ -0,0 +1,95 @@
+package ru.prolib.nattest.impl;
+
+/**
+ * Bidirectional Dijkstra's search. Stops when the sum of both frontier keys reaches
+ * the cost of the best path seen so far.
+ */
+public class BidirectionalDijkstraEngine {
+	private final IndexedGraph<?> graph;
+	
+	public BidirectionalDijkstraEngine(IndexedGraph<?> graph) {
+		this.graph = graph;
+	}
+	
+	public int[] findPath(int source, int target) {
+		return findPath(source, target, null);
+	}
+	
+	// Stats get counters of both directions
+	public int[] findPath(int source, int target, SearchStats stats) {
+		if ( source == target ) {
+			return new int[] { source };
+		}
+		IndexedGraph<?> reverse = graph.getReverse();
+		int n = graph.getVertexCount();
+		try ( SearchContext forward = SearchContext.acquire(n);
+			  SearchContext backward = SearchContext.acquire(n) )
+		{
+			IndexedHeap forward_heap = forward.getHeap(), backward_heap = backward.getHeap();
+			forward.setReached(source, 0.0d, source);
+			forward_heap.update(source, 0.0d);
+			backward.setReached(target, 0.0d, target);
+			backward_heap.update(target, 0.0d);
+			double best = Double.POSITIVE_INFINITY;
+			int meet = -1, next;
+			while ( forward_heap.isEmpty() == false && backward_heap.isEmpty() == false ) {
+				double forward_key = forward_heap.peekKey(), backward_key = backward_heap.peekKey();
+				if ( forward_key + backward_key >= best ) {
+					break;
+				}
+				next = forward_key <= backward_key
+					? expand(graph, forward, backward, best)
+					: expand(reverse, backward, forward, best);
+				if ( next >= 0 ) {
+					best = forward.getCost(meet = next) + backward.getCost(next);
+				}
+			}
+			if ( stats != null ) {
+				stats.add(forward_heap);
+				stats.add(backward_heap);
+			}
+			if ( meet < 0 ) {
+				return null;
+			}
+			int[] head = forward.getPath(source, meet);
+			int length = head.length;
+			for ( next = meet; next != target; next = backward.getFrom(next) ) {
+				length ++;
+			}
+			int[] path = new int[length];
+			System.arraycopy(head, 0, path, 0, head.length);
+			length = head.length;
+			for ( next = meet; next != target; ) {
+				path[length ++] = next = backward.getFrom(next);
+			}
+			return path;
+		}
+	}
+	
+	// Returns the meeting vertex which improves the best path or -1
+	private static int expand(IndexedGraph<?> graph, SearchContext context, SearchContext other, double best) {
+		IndexedHeap heap = context.getHeap();
+		int curr = heap.poll(), meet = -1;
+		double curr_cost = context.getCost(curr);
+		if ( other.isReached(curr) && curr_cost + other.getCost(curr) < best ) {
+			best = curr_cost + other.getCost(meet = curr);
+		}
+		for ( int i = 0, degree = graph.getDegree(curr); i < degree; i ++ ) {
+			int next = graph.getTarget(curr, i);
+			double new_cost = curr_cost + graph.getWeight(curr, i);
+			if ( new_cost < context.getCost(next) ) {
+				context.setReached(next, new_cost, curr);
+				heap.update(next, new_cost);
+			}
+			if ( other.isReached(next) ) {
+				double total = context.getCost(next) + other.getCost(next);
+				if ( total < best ) {
+					best = total;
+					meet = next;
+				}
+			}
+		}
+		return meet;
+	}
+
+}
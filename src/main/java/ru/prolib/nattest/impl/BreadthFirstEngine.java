@@ -0,0 +1,353 @@
+package ru.prolib.nattest.impl;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Direction-optimizing breadth-first search of the path with the least number of edges.
+ * The search goes bottom-up while edges of the frontier outnumber edges of unvisited vertices
+ * divided by {@link #ALPHA} and goes back when the frontier shrinks below 1/{@link #BETA} of vertices.
+ */
+public class BreadthFirstEngine {
+	static final int ALPHA = 14, BETA = 24, PARALLEL_THRESHOLD = 1 << 13, CHUNK_SIZE = 1 << 10;
+
+	private static boolean get(long[] bits, int index) {
+		return (bits[index >>> 6] & (1L << index)) != 0;
+	}
+
+	private static void set(long[] bits, int index) {
+		bits[index >>> 6] |= 1L << index;
+	}
+
+	private final class Worker {
+		SearchContext context;
+		// Pairs of vertex and parent found top-down
+		int[] found = new int[16];
+		int foundSize;
+		// Number of vertices and their edges found bottom-up
+		int count;
+		long edges;
+
+		private void add(int vertex, int parent) {
+			if ( foundSize + 2 > found.length ) {
+				found = Arrays.copyOf(found, found.length * 2);
+			}
+			found[foundSize ++] = vertex;
+			found[foundSize ++] = parent;
+		}
+
+		// Vertices are not marked: they are merged by the calling thread
+		void topDown(int[] queue, int from, int to) {
+			for ( int k = from; k < to; k ++ ) {
+				int curr = queue[k];
+				for ( int i = 0, degree = graph.getDegree(curr); i < degree; i ++ ) {
+					int next = graph.getTarget(curr, i);
+					if ( context.isReached(next) == false ) {
+						add(next, curr);
+					}
+				}
+			}
+		}
+
+		// Workers take ranges of whole words and never write to the same word
+		void bottomUp(Search search, int fromWord, int toWord) {
+			IndexedGraph<?> reverse = graph.getReverse();
+			long[] visited = search.visited, frontier = search.frontier, next = search.next;
+			int n = search.vertexCount;
+			double level = search.level;
+			for ( int w = fromWord; w < toWord; w ++ ) {
+				long bits = 0L, unvisited = ~visited[w];
+				while ( unvisited != 0L ) {
+					int vertex = (w << 6) | Long.numberOfTrailingZeros(unvisited);
+					unvisited &= unvisited - 1;
+					if ( vertex >= n ) {
+						break;
+					}
+					for ( int i = 0, degree = reverse.getDegree(vertex); i < degree; i ++ ) {
+						int parent = reverse.getTarget(vertex, i);
+						if ( get(frontier, parent) ) {
+							context.setReached(vertex, level, parent);
+							bits |= 1L << vertex;
+							count ++;
+							edges += graph.getDegree(vertex);
+							break;
+						}
+					}
+				}
+				next[w] = bits;
+				visited[w] |= bits;
+			}
+		}
+
+	}
+
+	// Reused by queries of the engine. Bitsets keep their size and are cleared when first needed.
+	private final class Search {
+		final Worker[] parallel, serial;
+		SearchContext context;
+		Worker[] workers;
+		int vertexCount, target, words;
+		// All visited vertices in order of levels. The frontier is the range [head, tail).
+		int[] queue = new int[16];
+		int head, tail;
+		long[] visited, frontier, next;
+		boolean bitsets;
+		int frontierSize, frontierPeak, settled, relaxed;
+		// Edges of the frontier and of unvisited vertices. The latter is -1 until it is needed.
+		long frontierEdges, unexplored;
+		double level;
+
+		Search() {
+			parallel = new Worker[pool.getParallelism()];
+			for ( int i = 0; i < parallel.length; i ++ ) {
+				parallel[i] = new Worker();
+			}
+			serial = new Worker[] { parallel[0] };
+		}
+
+		void reset(SearchContext context, int vertexCount, int target) {
+			this.context = context;
+			this.vertexCount = vertexCount;
+			this.target = target;
+			workers = vertexCount >= PARALLEL_THRESHOLD ? parallel : serial;
+			for ( Worker worker : parallel ) {
+				worker.context = context;
+			}
+			words = (vertexCount + 63) >>> 6;
+			head = tail = 0;
+			bitsets = false;
+			frontierSize = frontierPeak = settled = relaxed = 0;
+			frontierEdges = 0L;
+			unexplored = -1L;
+			level = 0.0d;
+		}
+
+		// Drop references to the context of the finished query
+		void clear() {
+			context = null;
+			for ( Worker worker : parallel ) {
+				worker.context = null;
+			}
+		}
+
+		private void visit(int vertex, int parent) {
+			context.setReached(vertex, level, parent);
+			if ( tail == queue.length ) {
+				queue = Arrays.copyOf(queue, tail * 2);
+			}
+			queue[tail ++] = vertex;
+			frontierEdges += graph.getDegree(vertex);
+			relaxed ++;
+		}
+
+		void run(int source) {
+			visit(source, source);
+			frontierSize = 1;
+			boolean bottom_up = false;
+			while ( frontierSize > 0 && context.isReached(target) == false ) {
+				frontierPeak = Math.max(frontierPeak, frontierSize);
+				settled += frontierSize;
+				if ( bottom_up ) {
+					if ( (long) frontierSize * BETA < vertexCount ) {
+						toQueue();
+						bottom_up = false;
+					}
+				} else if ( (long) frontierSize * BETA >= vertexCount ) {
+					if ( unexplored < 0 ) {
+						unexplored = getUnexploredEdges();
+					}
+					if ( frontierEdges * ALPHA > unexplored ) {
+						toBitset();
+						bottom_up = true;
+					}
+				}
+				if ( unexplored >= 0 ) {
+					unexplored -= frontierEdges;
+				}
+				frontierEdges = 0;
+				level ++;
+				if ( bottom_up ) {
+					bottomUp();
+				} else {
+					topDown();
+				}
+			}
+		}
+
+		private long getUnexploredEdges() {
+			long count = 0;
+			for ( int id = 0; id < vertexCount; id ++ ) {
+				count += graph.getDegree(id);
+			}
+			for ( int k = 0; k < tail; k ++ ) {
+				count -= graph.getDegree(queue[k]);
+			}
+			// Edges of the frontier are not subtracted yet
+			return count + frontierEdges;
+		}
+
+		private void toBitset() {
+			if ( visited == null || visited.length < words ) {
+				visited = new long[words];
+				frontier = new long[words];
+				next = new long[words];
+			} else if ( bitsets ) {
+				Arrays.fill(frontier, 0, words, 0L);
+			} else {
+				Arrays.fill(visited, 0, words, 0L);
+				Arrays.fill(frontier, 0, words, 0L);
+			}
+			bitsets = true;
+			for ( int k = 0; k < tail; k ++ ) {
+				set(visited, queue[k]);
+			}
+			for ( int k = head; k < tail; k ++ ) {
+				set(frontier, queue[k]);
+			}
+		}
+
+		private void toQueue() {
+			head = tail;
+			for ( int w = 0; w < words; w ++ ) {
+				for ( long bits = frontier[w]; bits != 0L; bits &= bits - 1 ) {
+					if ( tail == queue.length ) {
+						queue = Arrays.copyOf(queue, tail * 2);
+					}
+					queue[tail ++] = (w << 6) | Long.numberOfTrailingZeros(bits);
+				}
+			}
+		}
+
+		private void topDown() {
+			int from = head, to = tail;
+			head = tail;
+			if ( to - from < PARALLEL_THRESHOLD || workers.length == 1 ) {
+				for ( int k = from; k < to; k ++ ) {
+					int curr = queue[k];
+					for ( int i = 0, degree = graph.getDegree(curr); i < degree; i ++ ) {
+						int next = graph.getTarget(curr, i);
+						if ( context.isReached(next) == false ) {
+							visit(next, curr);
+							if ( next == target ) {
+								frontierSize = tail - head;
+								return;
+							}
+						}
+					}
+				}
+			} else {
+				int[] queue = this.queue;
+				AtomicInteger cursor = new AtomicInteger(from);
+				invoke((worker) -> {
+					int start;
+					while ( (start = cursor.getAndAdd(CHUNK_SIZE)) < to ) {
+						worker.topDown(queue, start, Math.min(start + CHUNK_SIZE, to));
+					}
+				});
+				for ( Worker worker : workers ) {
+					for ( int k = 0; k < worker.foundSize; k += 2 ) {
+						if ( context.isReached(worker.found[k]) == false ) {
+							visit(worker.found[k], worker.found[k + 1]);
+						}
+					}
+				}
+			}
+			frontierSize = tail - head;
+		}
+
+		private void bottomUp() {
+			int words = this.words;
+			if ( workers.length == 1 ) {
+				workers[0].bottomUp(this, 0, words);
+			} else {
+				int chunk = CHUNK_SIZE >>> 6;
+				AtomicInteger cursor = new AtomicInteger();
+				invoke((worker) -> {
+					int start;
+					while ( (start = cursor.getAndAdd(chunk)) < words ) {
+						worker.bottomUp(this, start, Math.min(start + chunk, words));
+					}
+				});
+			}
+			frontierSize = 0;
+			for ( Worker worker : workers ) {
+				frontierSize += worker.count;
+				frontierEdges += worker.edges;
+				worker.count = 0;
+				worker.edges = 0;
+			}
+			relaxed += frontierSize;
+			long[] swap = frontier;
+			frontier = next;
+			next = swap;
+		}
+
+		private void invoke(Consumer<Worker> action) {
+			RecursiveAction[] tasks = new RecursiveAction[workers.length];
+			for ( int i = 0; i < workers.length; i ++ ) {
+				Worker worker = workers[i];
+				worker.foundSize = 0;
+				tasks[i] = new RecursiveAction() {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected void compute() {
+						action.accept(worker);
+					}
+				};
+			}
+			pool.invoke(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					invokeAll(tasks);
+				}
+			});
+		}
+
+	}
+
+	private final IndexedGraph<?> graph;
+	private final ForkJoinPool pool;
+	private final ThreadLocal<Deque<Search>> searches = ThreadLocal.withInitial(ArrayDeque::new);
+
+	public BreadthFirstEngine(IndexedGraph<?> graph, ForkJoinPool pool) {
+		this.graph = graph;
+		this.pool = pool;
+	}
+
+	public BreadthFirstEngine(IndexedGraph<?> graph) {
+		this(graph, ForkJoinPool.commonPool());
+	}
+
+	public int[] findPath(int source, int target, SearchStats stats) {
+		int n = graph.getVertexCount();
+		Deque<Search> free = searches.get();
+		Search search = free.pollFirst();
+		if ( search == null ) {
+			search = new Search();
+		}
+		try ( SearchContext context = SearchContext.acquire(n) ) {
+			search.reset(context, n, target);
+			search.run(source);
+			if ( stats != null ) {
+				stats.add(search.settled, search.relaxed, search.frontierPeak);
+			}
+			return context.getPath(source, target);
+		} finally {
+			search.clear();
+			free.offerFirst(search);
+		}
+	}
+
+	public int[] findPath(int source, int target) {
+		return findPath(source, target, null);
+	}
+
+}
@@ -0,0 +1,192 @@
+package ru.prolib.nattest.impl;
+
+import java.util.Arrays;
+
+/**
+ * Monotone bucket queue of int elements with double keys. Elements are polled bucket by bucket
+ * in any order within a bucket. Keys must not be less than the key of the last polled element.
+ */
+public class BucketQueue {
+	static final int MAX_BUCKETS = 1 << 16;
+
+	// Vertices of a bucket cannot improve each other if the width doesn't exceed the least weight.
+	// NaN if the queue is not applicable.
+	public static double getWidth(WeightRange weights) {
+		if ( weights.isEmpty() || weights.getMin() < 0.0d ) {
+			return Double.NaN;
+		}
+		double width = weights.getMin() > 0.0d ? weights.getMin() : weights.isIntegral() ? 1.0d : Double.NaN;
+		// Keys may be ahead of the last polled one by the greatest weight plus rounding errors
+		return weights.getMax() / width + 3 <= MAX_BUCKETS ? width : Double.NaN;
+	}
+
+	public static int getBucketCount(WeightRange weights, double width) {
+		int count = (int) (weights.getMax() / width) + 3;
+		return Math.max(64, Integer.highestOneBit(count - 1) << 1);
+	}
+
+	private final int[] next, prev, slot;
+	private final double[] keys;
+	private int[] heads = new int[0];
+	private long[] used = new long[0];
+	private double width = 1.0d;
+	private int mask;
+	private long cursor;
+	private int size, polls, updates, peakSize;
+
+	public BucketQueue(int capacity) {
+		next = new int[capacity];
+		prev = new int[capacity];
+		slot = new int[capacity];
+		keys = new double[capacity];
+		Arrays.fill(slot, -1);
+	}
+
+	// Bucket count is a power of two not less than 64
+	public void configure(double width, int bucketCount) {
+		if ( size > 0 ) {
+			throw new IllegalStateException("Queue is not empty");
+		}
+		if ( bucketCount > heads.length ) {
+			heads = new int[bucketCount];
+			used = new long[bucketCount >>> 6];
+			Arrays.fill(heads, -1);
+		}
+		this.width = width;
+		this.mask = bucketCount - 1;
+	}
+
+	public int getCapacity() {
+		return slot.length;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getPollCount() {
+		return polls;
+	}
+
+	public int getUpdateCount() {
+		return updates;
+	}
+
+	public int getPeakSize() {
+		return peakSize;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean contains(int element) {
+		return slot[element] >= 0;
+	}
+
+	public void update(int element, double key) {
+		long bucket = getBucket(key);
+		if ( polls == 0 && (size == 0 || bucket < cursor) ) {
+			// Nothing is polled yet, so the cursor follows the least key
+			cursor = bucket;
+		} else if ( bucket < cursor || bucket - cursor > mask ) {
+			throw new IllegalArgumentException("Key out of range: " + key);
+		}
+		updates ++;
+		int index = (int) bucket & mask, old_index = slot[element];
+		keys[element] = key;
+		if ( old_index == index ) {
+			return;
+		}
+		if ( old_index < 0 ) {
+			if ( ++ size > peakSize ) {
+				peakSize = size;
+			}
+		} else {
+			unlink(element, old_index);
+		}
+		int head = heads[index];
+		next[element] = head;
+		prev[element] = -1;
+		if ( head >= 0 ) {
+			prev[head] = element;
+		}
+		heads[index] = element;
+		slot[element] = index;
+		used[index >>> 6] |= 1L << index;
+	}
+
+	public long getBucket(double key) {
+		return (long) (key / width);
+	}
+
+	public long peekBucket() {
+		if ( size == 0 ) {
+			throw new IllegalStateException("Queue is empty");
+		}
+		return cursor + ((nextIndex() - cursor) & mask);
+	}
+
+	// May be not the least key of the bucket
+	public double peekKey() {
+		if ( size == 0 ) {
+			throw new IllegalStateException("Queue is empty");
+		}
+		return keys[heads[nextIndex()]];
+	}
+
+	public int poll() {
+		if ( size == 0 ) {
+			throw new IllegalStateException("Queue is empty");
+		}
+		int index = nextIndex(), result = heads[index];
+		cursor += (index - cursor) & mask;
+		unlink(result, index);
+		slot[result] = -1;
+		size --;
+		polls ++;
+		return result;
+	}
+
+	public void clear() {
+		// Only buckets with elements are marked as used
+		for ( int w = 0; size > 0 && w < used.length; w ++ ) {
+			for ( long bits = used[w]; bits != 0L; bits &= bits - 1 ) {
+				int index = (w << 6) | Long.numberOfTrailingZeros(bits);
+				for ( int element = heads[index]; element >= 0; element = next[element] ) {
+					slot[element] = -1;
+					size --;
+				}
+				heads[index] = -1;
+			}
+			used[w] = 0L;
+		}
+		size = polls = updates = peakSize = 0;
+	}
+
+	private int nextIndex() {
+		int start = (int) cursor & mask, word = start >>> 6, words = (mask >>> 6) + 1;
+		long bits = used[word] & (-1L << start);
+		while ( bits == 0L ) {
+			word = (word + 1) & (words - 1);
+			bits = used[word];
+		}
+		return (word << 6) | Long.numberOfTrailingZeros(bits);
+	}
+
+	private void unlink(int element, int index) {
+		int p = prev[element], n = next[element];
+		if ( p >= 0 ) {
+			next[p] = n;
+		} else {
+			heads[index] = n;
+			if ( n < 0 ) {
+				used[index >>> 6] &= ~(1L << index);
+			}
+		}
+		if ( n >= 0 ) {
+			prev[n] = p;
+		}
+	}
+
+}
@@ -0,0 +1,232 @@
+package ru.prolib.nattest.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import ru.prolib.nattest.Graph;
+
+/**
+ * Graph with bounded LRU cache of found paths.
+ * <p>
+ * Each cached path is tagged with the edge sequence of the snapshot where it was found. Any change
+ * of edges changes the edge sequence, so all cached paths become stale and the cache is cleared
+ * on the next access. Adding vertices doesn't affect existing paths
+ * and doesn't invalidate the cache. Unreachable pairs are not cached.
+ * <p>
+ * The cache is split into segments by hash of the pair, each segment is an LRU of its own share of
+ * the size under its own lock, so concurrent hits of different pairs don't wait for each other.
+ */
+public class CachingGraph<VertexType> implements Graph<VertexType> {
+	
+	static class PathKey {
+		private final Object source, target;
+		
+		PathKey(Object source, Object target) {
+			this.source = source;
+			this.target = target;
+		}
+		
+		@Override
+		public int hashCode() {
+			return source.hashCode() * 31 + target.hashCode();
+		}
+		
+		@Override
+		public boolean equals(Object other) {
+			if ( other == this ) {
+				return true;
+			}
+			if ( other == null || other.getClass() != PathKey.class ) {
+				return false;
+			}
+			PathKey o = (PathKey) other;
+			return source.equals(o.source) && target.equals(o.target);
+		}
+		
+	}
+	
+	static class CachedPath<VertexType> {
+		private final long version;
+		private final Collection<VertexType> path;
+		
+		CachedPath(long version, Collection<VertexType> path) {
+			this.version = version;
+			this.path = path;
+		}
+		
+	}
+	
+	static class Segment<VertexType> {
+		private final int maxSize;
+		private final LinkedHashMap<PathKey, CachedPath<VertexType>> cache;
+		private long cacheVersion;
+		
+		Segment(int maxSize, long cacheVersion) {
+			this.maxSize = maxSize;
+			this.cache = new LinkedHashMap<PathKey, CachedPath<VertexType>>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<PathKey, CachedPath<VertexType>> eldest) {
+					return size() > Segment.this.maxSize;
+				}
+			};
+			this.cacheVersion = cacheVersion;
+		}
+		
+		synchronized Collection<VertexType> get(PathKey key, long version) {
+			if ( version != cacheVersion ) {
+				cache.clear();
+				cacheVersion = version;
+			}
+			CachedPath<VertexType> cached = cache.get(key);
+			return cached != null && cached.version == version ? cached.path : null;
+		}
+		
+		synchronized void put(PathKey key, long version, Collection<VertexType> path) {
+			if ( version == cacheVersion ) {
+				cache.put(key, new CachedPath<>(version, path));
+			}
+		}
+		
+		synchronized int size() {
+			return cache.size();
+		}
+		
+		synchronized void clear() {
+			cache.clear();
+		}
+		
+	}
+	
+	private static final int MAX_SEGMENTS = 16, MIN_SEGMENT_SIZE = 64;
+	private final GraphImpl<VertexType> graph;
+	private final int maxSize;
+	private final Segment<VertexType>[] segments;
+	private final LongAdder hits = new LongAdder(), misses = new LongAdder();
+	
+	/**
+	 * Constructor.
+	 * <p>
+	 * @param graph - underlying graph
+	 * @param maxSize - max number of cached paths
+	 * @param segmentCount - number of independently locked segments. Rounded down to a power of two
+	 * not greater than the size.
+	 */
+	@SuppressWarnings("unchecked")
+	public CachingGraph(GraphImpl<VertexType> graph, int maxSize, int segmentCount) {
+		if ( maxSize <= 0 ) {
+			throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+		}
+		if ( segmentCount <= 0 ) {
+			throw new IllegalArgumentException("Segment count must be positive: " + segmentCount);
+		}
+		this.graph = graph;
+		this.maxSize = maxSize;
+		int count = Integer.highestOneBit(Math.min(segmentCount, maxSize));
+		long version = graph.snapshot().getEdgeSequence();
+		this.segments = (Segment<VertexType>[]) new Segment<?>[count];
+		for ( int i = 0; i < count; i ++ ) {
+			// Sizes of segments sum up to the max size
+			segments[i] = new Segment<>(maxSize / count + (i < maxSize % count ? 1 : 0), version);
+		}
+	}
+	
+	public CachingGraph(GraphImpl<VertexType> graph, int maxSize) {
+		this(graph, maxSize, Math.max(1, Math.min(MAX_SEGMENTS, maxSize / MIN_SEGMENT_SIZE)));
+	}
+	
+	public GraphImpl<VertexType> getGraph() {
+		return graph;
+	}
+	
+	public int getMaxSize() {
+		return maxSize;
+	}
+	
+	public int getSegmentCount() {
+		return segments.length;
+	}
+	
+	public int getSize() {
+		int size = 0;
+		for ( Segment<VertexType> segment : segments ) {
+			size += segment.size();
+		}
+		return size;
+	}
+	
+	public long getHitCount() {
+		return hits.sum();
+	}
+	
+	public long getMissCount() {
+		return misses.sum();
+	}
+	
+	public void invalidate() {
+		for ( Segment<VertexType> segment : segments ) {
+			segment.clear();
+		}
+	}
+
+	private Segment<VertexType> getSegment(PathKey key) {
+		int hash = key.hashCode();
+		return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+	}
+
+	@Override
+	public CachingGraph<VertexType> addVertex(VertexType vertex) {
+		graph.addVertex(vertex);
+		return this;
+	}
+
+	@Override
+	public CachingGraph<VertexType> addEdge(VertexType source, VertexType target) {
+		graph.addEdge(source, target);
+		return this;
+	}
+	
+	public CachingGraph<VertexType> addEdge(VertexType source, VertexType target, double weight) {
+		graph.addEdge(source, target, weight);
+		return this;
+	}
+	
+	public CachingGraph<VertexType> removeEdge(VertexType source, VertexType target) {
+		graph.removeEdge(source, target);
+		return this;
+	}
+	
+	public CachingGraph<VertexType> updateWeight(VertexType source, VertexType target, double weight) {
+		graph.updateWeight(source, target, weight);
+		return this;
+	}
+	
+	public CachingGraph<VertexType> removeVertex(VertexType vertex) {
+		graph.removeVertex(vertex);
+		return this;
+	}
+
+	@Override
+	public Collection<VertexType> getPath(VertexType source, VertexType target) {
+		PathKey key = new PathKey(source, target);
+		Segment<VertexType> segment = getSegment(key);
+		// The path is searched in the same version it is tagged with
+		GraphSnapshot<VertexType> snapshot = graph.snapshot();
+		long version = snapshot.getEdgeSequence();
+		Collection<VertexType> path = segment.get(key, version);
+		if ( path != null ) {
+			hits.increment();
+			return path;
+		}
+		misses.increment();
+		path = Collections.unmodifiableList(new ArrayList<>(graph.getPath(snapshot, source, target, SearchMode.DIJKSTRA)));
+		segment.put(key, version, path);
+		return path;
+	}
+
+}
@@ -0,0 +1,157 @@
+package ru.prolib.nattest.impl;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Union-find index of connected components. Directions of edges are ignored.
+ * <p>
+ * Each instance is an immutable version. Versions share one forest where each link remembers
+ * the version which made it. Paths are not compressed, so old versions stay valid.
+ */
+public class ComponentIndex {
+
+	private static final class Links {
+		private final AtomicIntegerArray parent;
+		private final long[] since;
+
+		Links(AtomicIntegerArray parent, long[] since) {
+			this.parent = parent;
+			this.since = since;
+		}
+
+	}
+
+	// Modified by the owner of the last version only
+	private static final class Forest {
+		private volatile Links links;
+		private byte[] rank;
+		private long version;
+		private int count;
+
+		Forest(int capacity) {
+			AtomicIntegerArray parent = new AtomicIntegerArray(capacity);
+			for ( int id = 0; id < capacity; id ++ ) {
+				parent.set(id, id);
+			}
+			links = new Links(parent, new long[capacity]);
+			rank = new byte[capacity];
+			count = capacity;
+		}
+
+		void grow(int capacity) {
+			Links links = this.links;
+			int old_capacity = links.since.length;
+			if ( capacity <= old_capacity ) {
+				return;
+			}
+			capacity = Math.max(capacity, old_capacity + (old_capacity >> 1));
+			AtomicIntegerArray parent = new AtomicIntegerArray(capacity);
+			for ( int id = 0; id < capacity; id ++ ) {
+				parent.set(id, id < old_capacity ? links.parent.get(id) : id);
+			}
+			this.links = new Links(parent, Arrays.copyOf(links.since, capacity));
+			rank = Arrays.copyOf(rank, capacity);
+		}
+
+		void union(int a, int b) {
+			Links links = this.links;
+			int root_a = find(links, a, Long.MAX_VALUE), root_b = find(links, b, Long.MAX_VALUE);
+			if ( root_a == root_b ) {
+				return;
+			}
+			if ( rank[root_a] < rank[root_b] ) {
+				int swap = root_a;
+				root_a = root_b;
+				root_b = swap;
+			}
+			if ( rank[root_a] == rank[root_b] ) {
+				rank[root_a] ++;
+			}
+			// The version is written first: readers which see the link see its version too
+			links.since[root_b] = version;
+			links.parent.set(root_b, root_a);
+			count --;
+		}
+
+	}
+
+	private static int find(Links links, int id, long version) {
+		for ( ;; ) {
+			int next = links.parent.get(id);
+			if ( next == id || links.since[id] > version ) {
+				return id;
+			}
+			id = next;
+		}
+	}
+
+	static ComponentIndex of(AbstractIndexedGraph<?> graph) {
+		int n = graph.getVertexCount();
+		Forest forest = new Forest(n);
+		for ( int id = 0; id < n; id ++ ) {
+			if ( graph.hasVertex(id) == false ) {
+				forest.count --;
+				continue;
+			}
+			for ( int i = 0, degree = graph.getDegree(id); i < degree; i ++ ) {
+				forest.union(id, graph.getTarget(id, i));
+			}
+		}
+		return new ComponentIndex(forest, n);
+	}
+
+	private final Forest forest;
+	private final long version;
+	private final int vertexCount, count;
+
+	private ComponentIndex(Forest forest, int vertexCount) {
+		this.forest = forest;
+		this.version = forest.version;
+		this.vertexCount = vertexCount;
+		this.count = forest.count;
+	}
+
+	public ComponentIndex(int vertexCount) {
+		this(new Forest(vertexCount), vertexCount);
+	}
+
+	public int getComponentCount() {
+		return count;
+	}
+
+	public int getVertexCount() {
+		return vertexCount;
+	}
+
+	// Should be called by the owner of the last version only
+	ComponentIndex grow(int vertexCount) {
+		if ( vertexCount <= this.vertexCount ) {
+			return this;
+		}
+		forest.grow(vertexCount);
+		forest.count += vertexCount - this.vertexCount;
+		return new ComponentIndex(forest, vertexCount);
+	}
+
+	// Should be called by the owner of the last version only
+	ComponentIndex union(int a, int b) {
+		forest.version ++;
+		forest.union(a, b);
+		return new ComponentIndex(forest, vertexCount);
+	}
+
+	public int find(int id) {
+		return id < vertexCount ? find(forest.links, id, version) : -1;
+	}
+
+	// The index cannot tell anything about unknown vertices, so they are reported as connected
+	public boolean isConnected(int a, int b) {
+		if ( a >= vertexCount || b >= vertexCount ) {
+			return true;
+		}
+		Links links = forest.links;
+		return find(links, a, version) == find(links, b, version);
+	}
+
+}
@@ -0,0 +1,471 @@
+package ru.prolib.nattest.impl;
+
+import java.util.Arrays;
+
+import ru.prolib.nattest.Graph;
+
+/**
+ * Contraction hierarchy of a static graph.
+ * <p>
+ * Preprocessing contracts vertices one by one in order of the edge difference heuristic.
+ * When vertex is contracted, shortcut edges are added between its remaining neighbors unless
+ * a witness path without the vertex exists. Edges which lead to higher ranked vertices form
+ * upward search graphs. A query is a bidirectional Dijkstra's search in upward graphs, then
+ * shortcuts of the found path are unpacked back into the original vertex sequence.
+ * The hierarchy is immutable: modification methods are not supported.
+ */
+public class ContractionHierarchy<VertexType> implements Graph<VertexType> {
+	private static final int WITNESS_SETTLE_LIMIT = 500;
+
+	/**
+	 * Growable list of edges of a vertex.
+	 */
+	static class Adjacency {
+		private int size;
+		private int[] targets = new int[4], middles = new int[4];
+		private double[] weights = new double[4];
+
+		/**
+		 * Add edge or replace existing edge to the same target if the new one is cheaper.
+		 * <p>
+		 * @param target - target vertex
+		 * @param weight - edge weight
+		 * @param middle - contracted vertex of shortcut or -1 for original edge
+		 * @return true if new edge was added, false if existing edge was kept or replaced
+		 */
+		boolean put(int target, double weight, int middle) {
+			for ( int i = 0; i < size; i ++ ) {
+				if ( targets[i] == target ) {
+					if ( weight < weights[i] ) {
+						weights[i] = weight;
+						middles[i] = middle;
+					}
+					return false;
+				}
+			}
+			if ( size == targets.length ) {
+				targets = Arrays.copyOf(targets, size * 2);
+				middles = Arrays.copyOf(middles, size * 2);
+				weights = Arrays.copyOf(weights, size * 2);
+			}
+			targets[size] = target;
+			weights[size] = weight;
+			middles[size] = middle;
+			size ++;
+			return true;
+		}
+
+	}
+
+	/**
+	 * Preprocessing state.
+	 */
+	static class Contractor {
+		private final int n;
+		private final Adjacency[] out, in, upForward, upBackward;
+		private final boolean[] contracted;
+		private final int[] deletedNeighbors, rank;
+		private SearchContext context;
+		private int shortcutCount;
+
+		Contractor(IndexedGraph<?> graph) {
+			IndexedGraph<?> reverse = graph.getReverse();
+			n = graph.getVertexCount();
+			out = new Adjacency[n];
+			in = new Adjacency[n];
+			upForward = new Adjacency[n];
+			upBackward = new Adjacency[n];
+			contracted = new boolean[n];
+			deletedNeighbors = new int[n];
+			rank = new int[n];
+			for ( int v = 0; v < n; v ++ ) {
+				out[v] = load(graph, v);
+				in[v] = load(reverse, v);
+				upForward[v] = new Adjacency();
+				upBackward[v] = new Adjacency();
+			}
+		}
+
+		private static Adjacency load(IndexedGraph<?> graph, int vertex) {
+			Adjacency adjacency = new Adjacency();
+			for ( int i = 0, degree = graph.getDegree(vertex); i < degree; i ++ ) {
+				int target = graph.getTarget(vertex, i);
+				if ( target != vertex ) {
+					adjacency.put(target, graph.getWeight(vertex, i), -1);
+				}
+			}
+			return adjacency;
+		}
+
+		void run() {
+			try ( SearchContext context = SearchContext.acquire(n) ) {
+				this.context = context;
+				IndexedHeap queue = new IndexedHeap(n);
+				for ( int v = 0; v < n; v ++ ) {
+					queue.update(v, getPriority(v));
+				}
+				int order = 0;
+				while ( queue.isEmpty() == false ) {
+					int v = queue.poll();
+					double priority = getPriority(v);
+					if ( queue.isEmpty() == false && priority > queue.peekKey() ) {
+						// Lazy update: priority has changed since the vertex was queued
+						queue.update(v, priority);
+						continue;
+					}
+					contract(v, false);
+					contracted[v] = true;
+					rank[v] = order ++;
+					updateNeighbors(queue, out[v]);
+					updateNeighbors(queue, in[v]);
+				}
+			} finally {
+				context = null;
+			}
+		}
+
+		private void updateNeighbors(IndexedHeap queue, Adjacency adjacency) {
+			for ( int i = 0; i < adjacency.size; i ++ ) {
+				int neighbor = adjacency.targets[i];
+				if ( contracted[neighbor] == false ) {
+					deletedNeighbors[neighbor] ++;
+					queue.update(neighbor, getPriority(neighbor));
+				}
+			}
+		}
+
+		private double getPriority(int v) {
+			int removed = 0;
+			for ( int i = 0; i < out[v].size; i ++ ) {
+				removed += contracted[out[v].targets[i]] ? 0 : 1;
+			}
+			for ( int i = 0; i < in[v].size; i ++ ) {
+				removed += contracted[in[v].targets[i]] ? 0 : 1;
+			}
+			return contract(v, true) - removed + deletedNeighbors[v];
+		}
+
+		/**
+		 * Contract vertex.
+		 * <p>
+		 * @param v - vertex to contract
+		 * @param simulate - if true then just count the shortcuts to add
+		 * @return number of shortcuts
+		 */
+		private int contract(int v, boolean simulate) {
+			Adjacency v_in = in[v], v_out = out[v];
+			double max_out = 0.0d;
+			for ( int j = 0; j < v_out.size; j ++ ) {
+				if ( contracted[v_out.targets[j]] == false ) {
+					max_out = Math.max(max_out, v_out.weights[j]);
+					if ( ! simulate ) {
+						upForward[v].put(v_out.targets[j], v_out.weights[j], v_out.middles[j]);
+					}
+				}
+			}
+			int shortcuts = 0;
+			for ( int i = 0; i < v_in.size; i ++ ) {
+				int u = v_in.targets[i];
+				if ( contracted[u] ) {
+					continue;
+				}
+				if ( ! simulate ) {
+					upBackward[v].put(u, v_in.weights[i], v_in.middles[i]);
+				}
+				double in_weight = v_in.weights[i];
+				searchWitness(u, v, in_weight + max_out);
+				for ( int j = 0; j < v_out.size; j ++ ) {
+					int w = v_out.targets[j];
+					double cost = in_weight + v_out.weights[j];
+					if ( contracted[w] || w == u || context.getCost(w) <= cost ) {
+						continue;
+					}
+					shortcuts ++;
+					if ( ! simulate ) {
+						in[w].put(u, cost, v);
+						if ( out[u].put(w, cost, v) ) {
+							shortcutCount ++;
+						}
+					}
+				}
+			}
+			return shortcuts;
+		}
+
+		/**
+		 * Limited local search from the source among not contracted vertices except one.
+		 * <p>
+		 * @param source - start vertex
+		 * @param excluded - vertex to ignore
+		 * @param maxCost - search radius
+		 */
+		private void searchWitness(int source, int excluded, double maxCost) {
+			context.reset(n);
+			IndexedHeap heap = context.getHeap();
+			context.setReached(source, 0.0d, source);
+			heap.update(source, 0.0d);
+			int settled = 0;
+			while ( heap.isEmpty() == false && heap.peekKey() <= maxCost && settled ++ < WITNESS_SETTLE_LIMIT ) {
+				int curr = heap.poll();
+				double curr_cost = context.getCost(curr);
+				Adjacency adjacency = out[curr];
+				for ( int i = 0; i < adjacency.size; i ++ ) {
+					int next = adjacency.targets[i];
+					double new_cost = curr_cost + adjacency.weights[i];
+					if ( next != excluded && contracted[next] == false && new_cost < context.getCost(next) ) {
+						context.setReached(next, new_cost, curr);
+						heap.update(next, new_cost);
+					}
+				}
+			}
+		}
+
+	}
+
+	private final IndexedGraph<VertexType> graph;
+	private final int[] rank;
+	private final int[] forwardOffsets, forwardTargets, forwardMiddles;
+	private final double[] forwardWeights;
+	private final int[] backwardOffsets, backwardTargets, backwardMiddles;
+	private final double[] backwardWeights;
+	private final int shortcutCount;
+	private final long preprocessingTime;
+
+	public ContractionHierarchy(IndexedGraph<VertexType> graph) {
+		long started = System.nanoTime();
+		Contractor contractor = new Contractor(graph);
+		contractor.run();
+		int n = contractor.n;
+		this.graph = graph;
+		this.rank = contractor.rank;
+		this.shortcutCount = contractor.shortcutCount;
+		this.forwardOffsets = new int[n + 1];
+		this.backwardOffsets = new int[n + 1];
+		int forward_count = 0, backward_count = 0;
+		for ( int v = 0; v < n; v ++ ) {
+			forwardOffsets[v] = forward_count;
+			backwardOffsets[v] = backward_count;
+			forward_count += contractor.upForward[v].size;
+			backward_count += contractor.upBackward[v].size;
+		}
+		forwardOffsets[n] = forward_count;
+		backwardOffsets[n] = backward_count;
+		this.forwardTargets = new int[forward_count];
+		this.forwardMiddles = new int[forward_count];
+		this.forwardWeights = new double[forward_count];
+		this.backwardTargets = new int[backward_count];
+		this.backwardMiddles = new int[backward_count];
+		this.backwardWeights = new double[backward_count];
+		for ( int v = 0; v < n; v ++ ) {
+			Adjacency forward = contractor.upForward[v], backward = contractor.upBackward[v];
+			System.arraycopy(forward.targets, 0, forwardTargets, forwardOffsets[v], forward.size);
+			System.arraycopy(forward.middles, 0, forwardMiddles, forwardOffsets[v], forward.size);
+			System.arraycopy(forward.weights, 0, forwardWeights, forwardOffsets[v], forward.size);
+			System.arraycopy(backward.targets, 0, backwardTargets, backwardOffsets[v], backward.size);
+			System.arraycopy(backward.middles, 0, backwardMiddles, backwardOffsets[v], backward.size);
+			System.arraycopy(backward.weights, 0, backwardWeights, backwardOffsets[v], backward.size);
+		}
+		this.preprocessingTime = System.nanoTime() - started;
+	}
+
+	public IndexedGraph<VertexType> getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Get contraction order of the vertex.
+	 * <p>
+	 * @param id - vertex ID
+	 * @return rank of the vertex. Vertices with lower rank were contracted first.
+	 */
+	public int getRank(int id) {
+		return rank[id];
+	}
+
+	public int getShortcutCount() {
+		return shortcutCount;
+	}
+
+	/**
+	 * Get number of edges of both upward graphs including shortcuts.
+	 * <p>
+	 * @return number of edges
+	 */
+	public int getEdgeCount() {
+		return forwardTargets.length + backwardTargets.length;
+	}
+
+	/**
+	 * Get preprocessing time.
+	 * <p>
+	 * @return time spent to build the hierarchy in nanoseconds
+	 */
+	public long getPreprocessingTime() {
+		return preprocessingTime;
+	}
+
+	/**
+	 * Get estimated memory used by the hierarchy.
+	 * <p>
+	 * @return size in bytes of arrays of the hierarchy excluding the original graph
+	 */
+	public long getMemoryUsage() {
+		long n = rank.length, m = getEdgeCount();
+		return 4L * n + 4L * 2 * (n + 1) + (4L + 4L + 8L) * m;
+	}
+
+	@Override
+	public Graph<VertexType> addVertex(VertexType vertex) {
+		throw new UnsupportedOperationException("Graph is read-only");
+	}
+
+	@Override
+	public Graph<VertexType> addEdge(VertexType source, VertexType target) {
+		throw new UnsupportedOperationException("Graph is read-only");
+	}
+
+	private int getId(VertexType vertex) {
+		int id = graph.getVertexId(vertex);
+		if ( id < 0 ) {
+			throw new IllegalArgumentException("Vertex not found: " + vertex);
+		}
+		return id;
+	}
+
+	@Override
+	public GraphPath<VertexType> getPath(VertexType source, VertexType target) {
+		int[] path = findPath(getId(source), getId(target));
+		if ( path == null ) {
+			throw new IllegalStateException("Path not found: " + source + " -> " + target);
+		}
+		return new GraphPath<>(graph, path);
+	}
+
+	/**
+	 * Find the shortest path.
+	 * <p>
+	 * @param source - source vertex ID
+	 * @param target - target vertex ID
+	 * @return vertex IDs of the path including the source and the target
+	 * or null if the target is unreachable
+	 */
+	public int[] findPath(int source, int target) {
+		if ( source == target ) {
+			return new int[] { source };
+		}
+		int n = rank.length;
+		try ( SearchContext forward = SearchContext.acquire(n);
+			  SearchContext backward = SearchContext.acquire(n) )
+		{
+			IndexedHeap forward_heap = forward.getHeap(), backward_heap = backward.getHeap();
+			forward.setReached(source, 0.0d, source);
+			forward_heap.update(source, 0.0d);
+			backward.setReached(target, 0.0d, target);
+			backward_heap.update(target, 0.0d);
+			double best = Double.POSITIVE_INFINITY;
+			int meet = -1;
+			for ( ;; ) {
+				boolean forward_active = forward_heap.isEmpty() == false && forward_heap.peekKey() < best,
+						backward_active = backward_heap.isEmpty() == false && backward_heap.peekKey() < best;
+				int curr;
+				if ( forward_active && (! backward_active || forward_heap.peekKey() <= backward_heap.peekKey()) ) {
+					curr = expand(forward, forwardOffsets, forwardTargets, forwardWeights);
+				} else if ( backward_active ) {
+					curr = expand(backward, backwardOffsets, backwardTargets, backwardWeights);
+				} else {
+					break;
+				}
+				if ( forward.isReached(curr) && backward.isReached(curr) ) {
+					double cost = forward.getCost(curr) + backward.getCost(curr);
+					if ( cost < best ) {
+						best = cost;
+						meet = curr;
+					}
+				}
+			}
+			return meet < 0 ? null : unpack(forward, backward, source, meet, target);
+		}
+	}
+
+	private static int expand(SearchContext context, int[] offsets, int[] targets, double[] weights) {
+		IndexedHeap heap = context.getHeap();
+		int curr = heap.poll();
+		double curr_cost = context.getCost(curr);
+		for ( int i = offsets[curr], end = offsets[curr + 1]; i < end; i ++ ) {
+			int next = targets[i];
+			double new_cost = curr_cost + weights[i];
+			if ( new_cost < context.getCost(next) ) {
+				context.setReached(next, new_cost, curr);
+				heap.update(next, new_cost);
+			}
+		}
+		return curr;
+	}
+
+	/**
+	 * Build path of original vertices from search results.
+	 */
+	private int[] unpack(SearchContext forward, SearchContext backward, int source, int meet, int target) {
+		int[] head = forward.getPath(source, meet);
+		int hop_count = head.length;
+		for ( int a = meet; a != target; a = backward.getFrom(a) ) {
+			hop_count ++;
+		}
+		int[] hops = Arrays.copyOf(head, hop_count);
+		for ( int a = meet, i = head.length; a != target; i ++ ) {
+			hops[i] = a = backward.getFrom(a);
+		}
+		int[] path = new int[hop_count * 2], stack = new int[32];
+		int length = 0, stack_size = 0;
+		path[length ++] = source;
+		for ( int i = 1; i < hop_count; i ++ ) {
+			stack[stack_size ++] = hops[i - 1];
+			stack[stack_size ++] = hops[i];
+			while ( stack_size > 0 ) {
+				int b = stack[-- stack_size], a = stack[-- stack_size], middle = getMiddle(a, b);
+				if ( middle < 0 ) {
+					if ( length == path.length ) {
+						path = Arrays.copyOf(path, length * 2);
+					}
+					path[length ++] = b;
+					continue;
+				}
+				if ( stack_size + 4 > stack.length ) {
+					stack = Arrays.copyOf(stack, stack.length * 2);
+				}
+				// Shortcut a -> b replaces a -> middle -> b. The first part must be unpacked first.
+				stack[stack_size ++] = middle;
+				stack[stack_size ++] = b;
+				stack[stack_size ++] = a;
+				stack[stack_size ++] = middle;
+			}
+		}
+		return Arrays.copyOf(path, length);
+	}
+
+	/**
+	 * Get contracted vertex of the edge.
+	 * <p>
+	 * Each edge is stored at its lower ranked end: in forward graph if it goes up
+	 * and in backward graph otherwise.
+	 * <p>
+	 * @param a - source vertex of the edge
+	 * @param b - target vertex of the edge
+	 * @return contracted vertex of the shortcut or -1 if it is an original edge
+	 */
+	private int getMiddle(int a, int b) {
+		return rank[a] < rank[b]
+			? forwardMiddles[findEdge(forwardOffsets, forwardTargets, a, b)]
+			: backwardMiddles[findEdge(backwardOffsets, backwardTargets, b, a)];
+	}
+
+	private static int findEdge(int[] offsets, int[] targets, int vertex, int target) {
+		for ( int i = offsets[vertex], end = offsets[vertex + 1]; i < end; i ++ ) {
+			if ( targets[i] == target ) {
+				return i;
+			}
+		}
+		throw new IllegalStateException("Edge not found: " + vertex + " -> " + target);
+	}
+
+}
@@ -0,0 +1,166 @@
+package ru.prolib.nattest.impl;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Immutable compressed-sparse-row representation of a graph.
+ * <p>
+ * Vertices are interned to dense int identifiers. Outgoing edges of vertex with id N are
+ * stored in the range [offsets[N], offsets[N+1]) of targets and weights arrays. Instances
+ * are produced by {@link GraphImpl#freeze()} once the load phase is done. Modification
+ * methods are not supported.
+ */
+public class CsrGraph<VertexType> extends AbstractIndexedGraph<VertexType> {
+	private final boolean undirected;
+	private final VertexDictionary<VertexType> dictionary;
+	private final int vertexCount;
+	private final int[] offsets, targets;
+	private final double[] weights;
+	private volatile CsrGraph<VertexType> reverse;
+	
+	CsrGraph(boolean undirected,
+			VertexDictionary<VertexType> dictionary,
+			int[] offsets,
+			int[] targets,
+			double[] weights,
+			CsrGraph<VertexType> reverse)
+	{
+		this.undirected = undirected;
+		this.dictionary = dictionary;
+		this.vertexCount = dictionary.size();
+		this.offsets = offsets;
+		this.targets = targets;
+		this.weights = weights;
+		this.reverse = undirected ? this : reverse;
+	}
+
+	public CsrGraph(GraphType type, Collection<? extends GraphNode<VertexType>> nodes) {
+		this.undirected = type == GraphType.UNDIRECTED;
+		// Edges are copied node by node to be tolerant to concurrent modifications:
+		// edges pointing to vertices which were not captured are skipped.
+		int vertex_count = nodes.size(), edge_count = 0, id = 0;
+		Object[][] edges = new Object[vertex_count][];
+		VertexDictionary<VertexType> dictionary = new VertexDictionary<>(vertex_count);
+		for ( GraphNode<VertexType> node : nodes ) {
+			if ( id == vertex_count ) {
+				break;
+			}
+			dictionary.add(node.getVertex());
+			edges[id] = node.getEdges().toArray();
+			edge_count += edges[id].length;
+			id ++;
+		}
+		vertex_count = id;
+		int[] offsets = new int[vertex_count + 1], targets = new int[edge_count];
+		double[] weights = new double[edge_count];
+		int edge_id = 0;
+		for ( id = 0; id < vertex_count; id ++ ) {
+			offsets[id] = edge_id;
+			for ( Object x : edges[id] ) {
+				@SuppressWarnings("unchecked")
+				GraphEdge<VertexType> edge = (GraphEdge<VertexType>) x;
+				int target = dictionary.getId(edge.getTarget());
+				if ( target >= 0 ) {
+					targets[edge_id] = target;
+					weights[edge_id] = edge.getWeight();
+					edge_id ++;
+				}
+			}
+		}
+		offsets[vertex_count] = edge_id;
+		this.dictionary = dictionary;
+		this.vertexCount = vertex_count;
+		this.offsets = offsets;
+		this.targets = edge_id == edge_count ? targets : Arrays.copyOf(targets, edge_id);
+		this.weights = edge_id == edge_count ? weights : Arrays.copyOf(weights, edge_id);
+		this.reverse = undirected ? this : null;
+	}
+
+	@Override
+	public boolean isUndirected() {
+		return undirected;
+	}
+
+	@Override
+	public int getVertexCount() {
+		return vertexCount;
+	}
+
+	public int getEdgeCount() {
+		// Each edge of undirected graph is stored twice: one time per direction
+		return targets.length;
+	}
+
+	@Override
+	public int getVertexId(VertexType vertex) {
+		// The dictionary may be extended by later versions of the graph which share it
+		int id = dictionary.getId(vertex);
+		return id < vertexCount ? id : -1;
+	}
+
+	@Override
+	public VertexType getVertex(int id) {
+		return dictionary.getVertex(id);
+	}
+
+	@Override
+	public int getDegree(int id) {
+		return offsets[id + 1] - offsets[id];
+	}
+
+	@Override
+	public int getTarget(int id, int index) {
+		return targets[offsets[id] + index];
+	}
+
+	@Override
+	public double getWeight(int id, int index) {
+		return weights[offsets[id] + index];
+	}
+
+	// Ids which aren't less than vertex count don't belong to this graph
+	VertexDictionary<VertexType> getDictionary() {
+		return dictionary;
+	}
+
+	int getOffset(int id) {
+		return offsets[id];
+	}
+	
+	int[] getTargetArray() {
+		return targets;
+	}
+	
+	double[] getWeightArray() {
+		return weights;
+	}
+
+	@Override
+	public CsrGraph<VertexType> getReverse() {
+		CsrGraph<VertexType> reverse = this.reverse;
+		if ( reverse == null ) {
+			int n = vertexCount, m = targets.length;
+			int[] reverse_offsets = new int[n + 1], reverse_targets = new int[m];
+			double[] reverse_weights = new double[m];
+			for ( int i = 0; i < m; i ++ ) {
+				reverse_offsets[targets[i] + 1] ++;
+			}
+			for ( int i = 0; i < n; i ++ ) {
+				reverse_offsets[i + 1] += reverse_offsets[i];
+			}
+			int[] fill = Arrays.copyOf(reverse_offsets, n);
+			for ( int source = 0; source < n; source ++ ) {
+				for ( int i = offsets[source], end = offsets[source + 1]; i < end; i ++ ) {
+					int index = fill[targets[i]] ++;
+					reverse_targets[index] = source;
+					reverse_weights[index] = weights[i];
+				}
+			}
+			this.reverse = reverse = new CsrGraph<>(undirected, dictionary,
+					reverse_offsets, reverse_targets, reverse_weights, this);
+		}
+		return reverse;
+	}
+
+}
@@ -0,0 +1,431 @@
+package ru.prolib.nattest.impl;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Parallel delta-stepping shortest path search. Each query allocates state proportional to
+ * the size of the graph. Predecessors are not tracked: the path is restored through tight edges.
+ * <p>
+ * Light edges (not heavier than delta) are relaxed in phases until the current bucket is empty.
+ * Heavy edges cannot lead back to the bucket, so they are relaxed once after it is settled.
+ */
+public class DeltaSteppingEngine {
+	static final int CHUNK_SIZE = 256, PARALLEL_THRESHOLD = 1024, WINDOW = 1 << 12, SAMPLE_SIZE = 1024;
+	private static final long INF_BITS = Double.doubleToRawLongBits(Double.POSITIVE_INFINITY);
+
+	private static final class Estimate {
+		final WeightRange weights;
+		final double delta;
+
+		Estimate(WeightRange weights, double delta) {
+			this.weights = weights;
+			this.delta = delta;
+		}
+
+	}
+
+	private static final class Bin {
+		int[] data = new int[16];
+		int size;
+
+		void add(int element) {
+			if ( size == data.length ) {
+				data = Arrays.copyOf(data, size * 2);
+			}
+			data[size ++] = element;
+		}
+
+	}
+
+	// Costs offered through heavy edges, they are relaxed once the bucket is settled
+	private static final class RequestBin {
+		int[] targets = new int[16];
+		double[] costs = new double[16];
+		int size;
+
+		void add(int target, double cost) {
+			if ( size == targets.length ) {
+				targets = Arrays.copyOf(targets, size * 2);
+				costs = Arrays.copyOf(costs, size * 2);
+			}
+			targets[size] = target;
+			costs[size] = cost;
+			size ++;
+		}
+
+	}
+
+	// Costs are stored as distance from infinity to the bits of the cost: zero means not reached
+	// and a lower cost is a greater value.
+	private final class Search {
+		final AtomicLongArray costs;
+		final Worker[] workers;
+		final double delta;
+		int[] frontier = new int[16];
+		int frontierSize, frontierPeak;
+		long base, current;
+
+		Search(int vertexCount, int parallelism, double delta) {
+			this.costs = new AtomicLongArray(vertexCount);
+			this.workers = new Worker[parallelism];
+			this.delta = delta;
+			for ( int i = 0; i < parallelism; i ++ ) {
+				workers[i] = new Worker(this);
+			}
+		}
+
+		double getCost(int vertex) {
+			return Double.longBitsToDouble(INF_BITS - costs.get(vertex));
+		}
+
+		long getBucket(double cost) {
+			return (long) (cost / delta);
+		}
+
+		boolean relax(int vertex, double cost) {
+			long value = INF_BITS - Double.doubleToRawLongBits(cost);
+			for ( ;; ) {
+				long old_value = costs.get(vertex);
+				if ( old_value >= value ) {
+					return false;
+				}
+				if ( costs.compareAndSet(vertex, old_value, value) ) {
+					return true;
+				}
+			}
+		}
+
+		void run(int source, int target) {
+			relax(source, 0.0d);
+			frontier[frontierSize ++] = source;
+			while ( frontierSize > 0 ) {
+				frontierPeak = Math.max(frontierPeak, frontierSize);
+				expand();
+				long next = getFirstBucket();
+				if ( next != current ) {
+					// The bucket is settled: costs of its vertices are final
+					relaxHeavy();
+					next = getFirstBucket();
+				}
+				if ( next == Long.MAX_VALUE ) {
+					next = rebase();
+				}
+				if ( next == Long.MAX_VALUE ) {
+					break;
+				}
+				if ( target >= 0 && next > getBucket(getCost(target)) ) {
+					// All vertices which may lower the cost of the target are expanded
+					break;
+				}
+				current = next;
+				frontierSize = 0;
+				for ( Worker worker : workers ) {
+					worker.moveBucket(next);
+				}
+			}
+		}
+
+		private long getFirstBucket() {
+			long first = Long.MAX_VALUE;
+			for ( Worker worker : workers ) {
+				first = Math.min(first, worker.getFirstBucket());
+			}
+			return first;
+		}
+
+		private void expand() {
+			if ( frontierSize < parallelThreshold || workers.length == 1 ) {
+				workers[0].expand(0, frontierSize);
+				return;
+			}
+			AtomicInteger cursor = new AtomicInteger();
+			RecursiveAction[] tasks = new RecursiveAction[workers.length];
+			for ( int i = 0; i < workers.length; i ++ ) {
+				Worker worker = workers[i];
+				tasks[i] = new RecursiveAction() {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected void compute() {
+						int start;
+						while ( (start = cursor.getAndAdd(CHUNK_SIZE)) < frontierSize ) {
+							worker.expand(start, Math.min(start + CHUNK_SIZE, frontierSize));
+						}
+					}
+				};
+			}
+			runTasks(tasks);
+		}
+
+		// Each worker relaxes heavy edges it has taken
+		private void relaxHeavy() {
+			int size = 0;
+			for ( Worker worker : workers ) {
+				size += worker.requests.size;
+			}
+			if ( size < parallelThreshold || workers.length == 1 ) {
+				for ( Worker worker : workers ) {
+					worker.relaxHeavy();
+				}
+				return;
+			}
+			RecursiveAction[] tasks = new RecursiveAction[workers.length];
+			for ( int i = 0; i < workers.length; i ++ ) {
+				Worker worker = workers[i];
+				tasks[i] = new RecursiveAction() {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected void compute() {
+						worker.relaxHeavy();
+					}
+				};
+			}
+			runTasks(tasks);
+		}
+
+		private void runTasks(RecursiveAction[] tasks) {
+			pool.invoke(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					invokeAll(tasks);
+				}
+			});
+		}
+
+		// Returns first non-empty bucket or Long.MAX_VALUE if there are no more vertices
+		private long rebase() {
+			long first = Long.MAX_VALUE;
+			for ( Worker worker : workers ) {
+				Bin far = worker.far;
+				for ( int i = 0; i < far.size; i ++ ) {
+					long bucket = getBucket(getCost(far.data[i]));
+					// Vertex which was lowered to the window is already expanded
+					if ( bucket > current ) {
+						first = Math.min(first, bucket);
+					}
+				}
+			}
+			if ( first == Long.MAX_VALUE ) {
+				return first;
+			}
+			base = first;
+			for ( Worker worker : workers ) {
+				Bin far = worker.far;
+				int size = far.size;
+				far.size = 0;
+				for ( int i = 0; i < size; i ++ ) {
+					int vertex = far.data[i];
+					long bucket = getBucket(getCost(vertex));
+					if ( bucket >= first ) {
+						worker.add(vertex, bucket);
+					}
+				}
+			}
+			return first;
+		}
+
+	}
+
+	private final class Worker {
+		final Search search;
+		final Bin[] bins = new Bin[WINDOW];
+		final Bin far = new Bin();
+		final RequestBin requests = new RequestBin();
+		// Lowest index of a bin which may be non-empty
+		int first = WINDOW;
+		int settled, relaxed;
+
+		Worker(Search search) {
+			this.search = search;
+		}
+
+		void add(int vertex, long bucket) {
+			long index = bucket - search.base;
+			if ( index >= WINDOW ) {
+				far.add(vertex);
+				return;
+			}
+			Bin bin = bins[(int) index];
+			if ( bin == null ) {
+				bins[(int) index] = bin = new Bin();
+			}
+			bin.add(vertex);
+			first = Math.min(first, (int) index);
+		}
+
+		long getFirstBucket() {
+			while ( first < WINDOW && (bins[first] == null || bins[first].size == 0) ) {
+				first ++;
+			}
+			return first < WINDOW ? search.base + first : Long.MAX_VALUE;
+		}
+
+		void moveBucket(long bucket) {
+			long index = bucket - search.base;
+			if ( index < 0 || index >= WINDOW || bins[(int) index] == null ) {
+				return;
+			}
+			Bin bin = bins[(int) index];
+			int size = search.frontierSize + bin.size;
+			if ( size > search.frontier.length ) {
+				search.frontier = Arrays.copyOf(search.frontier, Math.max(size, search.frontier.length * 2));
+			}
+			System.arraycopy(bin.data, 0, search.frontier, search.frontierSize, bin.size);
+			search.frontierSize = size;
+			bin.size = 0;
+		}
+
+		void expand(int from, int to) {
+			int[] frontier = search.frontier;
+			double delta = search.delta;
+			for ( int k = from; k < to; k ++ ) {
+				int curr = frontier[k];
+				double curr_cost = search.getCost(curr);
+				if ( search.getBucket(curr_cost) != search.current ) {
+					// Duplicate of a vertex which is lowered to another bucket
+					continue;
+				}
+				settled ++;
+				for ( int i = 0, degree = graph.getDegree(curr); i < degree; i ++ ) {
+					int next = graph.getTarget(curr, i);
+					double weight = graph.getWeight(curr, i), new_cost = curr_cost + weight;
+					if ( weight > delta ) {
+						// A vertex expanded again in the bucket offers lower costs later
+						requests.add(next, new_cost);
+					} else if ( search.relax(next, new_cost) ) {
+						relaxed ++;
+						add(next, search.getBucket(new_cost));
+					}
+				}
+			}
+		}
+
+		void relaxHeavy() {
+			for ( int i = 0; i < requests.size; i ++ ) {
+				int next = requests.targets[i];
+				double new_cost = requests.costs[i];
+				if ( search.relax(next, new_cost) ) {
+					relaxed ++;
+					add(next, search.getBucket(new_cost));
+				}
+			}
+			requests.size = 0;
+		}
+
+	}
+
+	private final AbstractIndexedGraph<?> graph;
+	private final ForkJoinPool pool;
+	private final int parallelThreshold;
+	private final double delta;
+	private volatile Estimate estimate;
+
+	DeltaSteppingEngine(AbstractIndexedGraph<?> graph, ForkJoinPool pool, double delta, int parallelThreshold) {
+		this.graph = graph;
+		this.pool = pool;
+		this.delta = delta > 0 ? delta : Double.NaN;
+		this.parallelThreshold = parallelThreshold;
+	}
+
+	// Delta which is not positive is estimated from average weight of edges
+	public DeltaSteppingEngine(AbstractIndexedGraph<?> graph, ForkJoinPool pool, double delta) {
+		this(graph, pool, delta, PARALLEL_THRESHOLD);
+	}
+
+	public DeltaSteppingEngine(AbstractIndexedGraph<?> graph) {
+		this(graph, ForkJoinPool.commonPool(), 0.0d);
+	}
+
+	public double getDelta() {
+		if ( Double.isNaN(delta) == false ) {
+			return delta;
+		}
+		// Mutable graphs replace the range once a weight falls out of it
+		WeightRange weights = graph.getWeightRange();
+		Estimate estimate = this.estimate;
+		if ( estimate == null || estimate.weights != weights ) {
+			this.estimate = estimate = new Estimate(weights, estimateDelta());
+		}
+		return estimate.delta;
+	}
+
+	private double estimateDelta() {
+		// Average weight of edges of evenly spread vertices
+		int n = graph.getVertexCount(), step = Math.max(1, n / SAMPLE_SIZE), count = 0;
+		double sum = 0.0d;
+		for ( int id = 0; id < n; id += step ) {
+			for ( int i = 0, degree = graph.getDegree(id); i < degree; i ++ ) {
+				sum += graph.getWeight(id, i);
+				count ++;
+			}
+		}
+		return count > 0 && sum > 0.0d ? sum / count : 1.0d;
+	}
+
+	public int[] findPath(int source, int target, SearchStats stats) {
+		if ( source == target ) {
+			return new int[] { source };
+		}
+		Search search = new Search(graph.getVertexCount(), pool.getParallelism(), getDelta());
+		search.run(source, target);
+		if ( stats != null ) {
+			int settled = 0, relaxed = 0;
+			for ( Worker worker : search.workers ) {
+				settled += worker.settled;
+				relaxed += worker.relaxed;
+			}
+			stats.add(settled, relaxed, search.frontierPeak);
+		}
+		if ( search.getCost(target) == Double.POSITIVE_INFINITY ) {
+			return null;
+		}
+		int[] path = restorePath(search, source, target);
+		// Tight edges may form a cycle only if there are zero weights
+		return path != null ? path : new DijkstraEngine(graph).findPath(source, target);
+	}
+
+	public int[] findPath(int source, int target) {
+		return findPath(source, target, null);
+	}
+
+	// Null if the walk got stuck
+	private int[] restorePath(Search search, int source, int target) {
+		IndexedGraph<?> reverse = graph.getReverse();
+		Bin path = new Bin();
+		path.add(target);
+		for ( int curr = target, steps = 0; curr != source; steps ++ ) {
+			if ( steps > graph.getVertexCount() ) {
+				return null;
+			}
+			double curr_cost = search.getCost(curr);
+			int prev = -1;
+			for ( int i = 0, degree = reverse.getDegree(curr); i < degree; i ++ ) {
+				int candidate = reverse.getTarget(curr, i);
+				double candidate_cost = search.getCost(candidate);
+				if ( candidate_cost + reverse.getWeight(curr, i) == curr_cost ) {
+					prev = candidate;
+					if ( candidate_cost < curr_cost ) {
+						break;
+					}
+				}
+			}
+			if ( prev < 0 ) {
+				return null;
+			}
+			path.add(curr = prev);
+		}
+		int[] result = new int[path.size];
+		for ( int i = 0; i < path.size; i ++ ) {
+			result[i] = path.data[path.size - 1 - i];
+		}
+		return result;
+	}
+
+}
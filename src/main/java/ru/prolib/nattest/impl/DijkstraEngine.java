@@ -0,0 +1,128 @@
+package ru.prolib.nattest.impl;
+
+/**
+ * Dijkstra's shortest path search over an indexed graph.
+ */
+public class DijkstraEngine {
+	private final IndexedGraph<?> graph;
+	
+	public DijkstraEngine(IndexedGraph<?> graph) {
+		this.graph = graph;
+	}
+	
+	// Target -1 settles all reachable vertices. The context must be reset before the call.
+	public boolean search(int source, int target, SearchContext context) {
+		IndexedHeap heap = context.getHeap();
+		context.setReached(source, 0.0d, source);
+		heap.update(source, 0.0d);
+		while ( heap.isEmpty() == false ) {
+			int curr = heap.poll();
+			if ( curr == target ) {
+				break;
+			}
+			double curr_cost = context.getCost(curr);
+			for ( int i = 0, degree = graph.getDegree(curr); i < degree; i ++ ) {
+				int next = graph.getTarget(curr, i);
+				double new_cost = curr_cost + graph.getWeight(curr, i);
+				if ( new_cost < context.getCost(next) ) {
+					context.setReached(next, new_cost, curr);
+					heap.update(next, new_cost);
+				}
+			}
+		}
+		return target >= 0 && context.isReached(target);
+	}
+	
+	// Stops when all targets (if not null) are settled or the cost exceeds maxCost.
+	// Only settled vertices are left reached in the context. Returns number of settled vertices.
+	public int search(int source, int[] targets, double maxCost, SearchContext context) {
+		int remaining = 0, settled = 0;
+		if ( targets != null ) {
+			if ( targets.length == 0 ) {
+				return 0;
+			}
+			for ( int target : targets ) {
+				if ( context.isMarked(target) == false ) {
+					context.setMarked(target, true);
+					remaining ++;
+				}
+			}
+		}
+		IndexedHeap heap = context.getHeap();
+		context.setReached(source, 0.0d, source);
+		heap.update(source, 0.0d);
+		while ( heap.isEmpty() == false && heap.peekKey() <= maxCost ) {
+			int curr = heap.poll();
+			settled ++;
+			if ( context.isMarked(curr) && -- remaining == 0 ) {
+				break;
+			}
+			double curr_cost = context.getCost(curr);
+			for ( int i = 0, degree = graph.getDegree(curr); i < degree; i ++ ) {
+				int next = graph.getTarget(curr, i);
+				double new_cost = curr_cost + graph.getWeight(curr, i);
+				if ( new_cost < context.getCost(next) ) {
+					context.setReached(next, new_cost, curr);
+					heap.update(next, new_cost);
+				}
+			}
+		}
+		// Vertices left in the heap are reached but not settled
+		while ( heap.isEmpty() == false ) {
+			context.forget(heap.poll());
+		}
+		return settled;
+	}
+	
+	public int[] findPath(int source, int target) {
+		return findPath(source, target, null);
+	}
+
+	public int[] findPath(int source, int target, SearchStats stats) {
+		try ( SearchContext context = SearchContext.acquire(graph.getVertexCount()) ) {
+			boolean found = search(source, target, context);
+			if ( stats != null ) {
+				stats.add(context.getHeap());
+			}
+			return found ? context.getPath(source, target) : null;
+		}
+	}
+
+	// Uses a bucket queue if weights allow
+	public int[] findPath(int source, int target, WeightRange weights, SearchStats stats) {
+		double width = BucketQueue.getWidth(weights);
+		if ( Double.isNaN(width) ) {
+			return findPath(source, target, stats);
+		}
+		try ( SearchContext context = SearchContext.acquire(graph.getVertexCount()) ) {
+			BucketQueue queue = context.getBucketQueue(width, BucketQueue.getBucketCount(weights, width));
+			context.setReached(source, 0.0d, source);
+			queue.update(source, 0.0d);
+			long last_bucket = Long.MAX_VALUE;
+			while ( queue.isEmpty() == false && queue.peekBucket() <= last_bucket ) {
+				int curr = queue.poll();
+				double curr_cost = context.getCost(curr);
+				if ( curr == target ) {
+					// Keys of a bucket are unordered and rounding of costs may put a cheaper vertex
+					// into the bucket of the target. Costs less than the cost of the target cannot
+					// be in later buckets, so the search stops after the bucket is drained.
+					last_bucket = queue.getBucket(curr_cost);
+					continue;
+				}
+				for ( int i = 0, degree = graph.getDegree(curr); i < degree; i ++ ) {
+					int next = graph.getTarget(curr, i);
+					double new_cost = curr_cost + graph.getWeight(curr, i);
+					if ( new_cost < context.getCost(next) ) {
+						context.setReached(next, new_cost, curr);
+						queue.update(next, new_cost);
+					}
+				}
+			}
+			if ( stats != null ) {
+				stats.add(queue.getPollCount(), queue.getUpdateCount(), queue.getPeakSize());
+			}
+			return context.getPath(source, target);
+		}
+	}
+
+}
@@ -0,0 +1,158 @@
+package ru.prolib.nattest.impl;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Costs and paths between each source and each target.
+ * <p>
+ * The matrix is computed with one search per source. Searches of different sources run in
+ * parallel on a fork-join pool and share the read-only graph. Each worker thread reuses its
+ * pooled {@link SearchContext}, so the state is not allocated per search.
+ */
+public class DistanceMatrix<VertexType> {
+	
+	class ComputeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int from, to;
+		
+		ComputeTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if ( to - from > 1 ) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new ComputeTask(from, middle), new ComputeTask(middle, to));
+			} else {
+				computeRow(from);
+			}
+		}
+		
+	}
+	
+	private final IndexedGraph<VertexType> graph;
+	private final List<VertexType> sources, targets;
+	private final int[] sourceIds, targetIds;
+	private final double[] costs;
+	private final int[][] paths;
+	// Weights of edges of paths or null to look them up in the graph
+	private final double[][] weights;
+	
+	/**
+	 * Compute the matrix.
+	 * <p>
+	 * @param graph - graph
+	 * @param sources - source vertices (rows)
+	 * @param targets - target vertices (columns)
+	 * @param pool - pool to run searches
+	 */
+	public DistanceMatrix(IndexedGraph<VertexType> graph,
+			List<VertexType> sources,
+			List<VertexType> targets,
+			ForkJoinPool pool)
+	{
+		this.graph = graph;
+		this.sources = sources;
+		this.targets = targets;
+		this.sourceIds = toIds(graph, sources);
+		this.targetIds = toIds(graph, targets);
+		this.costs = new double[sourceIds.length * targetIds.length];
+		this.paths = new int[costs.length][];
+		this.weights = null;
+		if ( sourceIds.length > 0 && targetIds.length > 0 ) {
+			pool.invoke(new ComputeTask(0, sourceIds.length));
+		}
+	}
+	
+	private DistanceMatrix(DistanceMatrix<VertexType> source, double[][] weights) {
+		this.graph = source.graph;
+		this.sources = source.sources;
+		this.targets = source.targets;
+		this.sourceIds = source.sourceIds;
+		this.targetIds = source.targetIds;
+		this.costs = source.costs;
+		this.paths = source.paths;
+		this.weights = weights;
+	}
+	
+	DistanceMatrix<VertexType> resolve() {
+		double[][] weights = new double[paths.length][];
+		for ( int i = 0; i < paths.length; i ++ ) {
+			int[] path = paths[i];
+			if ( path != null ) {
+				weights[i] = new double[path.length - 1];
+				for ( int j = 0; j < weights[i].length; j ++ ) {
+					weights[i][j] = GraphPath.findWeight(graph, path[j], path[j + 1]);
+				}
+			}
+		}
+		return new DistanceMatrix<>(this, weights);
+	}
+	
+	private static <VertexType> int[] toIds(IndexedGraph<VertexType> graph, List<VertexType> vertices) {
+		int[] ids = new int[vertices.size()];
+		int i = 0;
+		for ( VertexType vertex : vertices ) {
+			if ( (ids[i ++] = graph.getVertexId(vertex)) < 0 ) {
+				throw new IllegalArgumentException("Vertex not found: " + vertex);
+			}
+		}
+		return ids;
+	}
+	
+	private void computeRow(int row) {
+		int source = sourceIds[row], offset = row * targetIds.length;
+		try ( SearchContext context = SearchContext.acquire(graph.getVertexCount()) ) {
+			new DijkstraEngine(graph).search(source, targetIds, Double.POSITIVE_INFINITY, context);
+			for ( int column = 0; column < targetIds.length; column ++ ) {
+				int target = targetIds[column];
+				costs[offset + column] = context.getCost(target);
+				paths[offset + column] = context.getPath(source, target);
+			}
+		}
+	}
+	
+	public List<VertexType> getSources() {
+		return sources;
+	}
+	
+	public List<VertexType> getTargets() {
+		return targets;
+	}
+	
+	/**
+	 * Get cost of the shortest path.
+	 * <p>
+	 * @param row - index of the source
+	 * @param column - index of the target
+	 * @return cost of the path or positive infinity if the target is unreachable
+	 */
+	public double getCost(int row, int column) {
+		return costs[getIndex(row, column)];
+	}
+	
+	public boolean isReachable(int row, int column) {
+		return paths[getIndex(row, column)] != null;
+	}
+	
+	public GraphPath<VertexType> getPath(int row, int column) {
+		int index = getIndex(row, column);
+		int[] path = paths[index];
+		if ( path == null ) {
+			throw new IllegalStateException("Path not found: " + sources.get(row) + " -> " + targets.get(column));
+		}
+		return new GraphPath<>(graph, path, costs[index], weights == null ? null : weights[index]);
+	}
+	
+	private int getIndex(int row, int column) {
+		if ( row < 0 || row >= sourceIds.length || column < 0 || column >= targetIds.length ) {
+			throw new IndexOutOfBoundsException("Cell out of range: " + row + ":" + column);
+		}
+		return row * targetIds.length + column;
+	}
+
+}
@@ -0,0 +1,186 @@
+package ru.prolib.nattest.impl;
+
+import java.util.Arrays;
+
+/**
+ * Shortest path tree which is kept up to date while edges are added to the graph.
+ * <p>
+ * The tree is built once by the full search. After that each published version of the graph
+ * is applied incrementally: a new edge u -> v which makes v cheaper starts the search from v,
+ * and the search goes only through vertices whose cost is decreased. Vertices which are not
+ * affected are not touched, so the cost of the update depends on the changed part of the tree
+ * instead of the size of the graph. Removal of an edge of the tree or increasing of its weight
+ * cannot be repaired this way and causes the full search. Such changes of other edges are ignored.
+ * <p>
+ * Instances are created by {@link GraphImpl#trackShortestPathTree(Object)} and should be closed
+ * once not needed to stop updates.
+ */
+public class DynamicShortestPathTree<VertexType> implements AutoCloseable {
+	private final GraphImpl<VertexType> graph;
+	private final VertexType source;
+	private GraphSnapshot<VertexType> snapshot;
+	private double[] cost;
+	private int[] from;
+	private IndexedHeap heap;
+	private int repairedCount;
+
+	DynamicShortestPathTree(GraphImpl<VertexType> graph, GraphSnapshot<VertexType> snapshot, VertexType source) {
+		this.graph = graph;
+		this.source = source;
+		rebuild(snapshot);
+	}
+
+	/**
+	 * Rebuild the tree from scratch.
+	 * <p>
+	 * @param snapshot - version of the graph
+	 */
+	synchronized void rebuild(GraphSnapshot<VertexType> snapshot) {
+		int n = snapshot.getVertexCount(), source_id = snapshot.getVertexId(source);
+		this.snapshot = snapshot;
+		this.cost = new double[n];
+		this.from = new int[n];
+		this.heap = new IndexedHeap(Math.max(n, 1));
+		repairedCount = n;
+		if ( source_id < 0 ) {
+			// The source was removed so nothing is reachable
+			Arrays.fill(cost, Double.POSITIVE_INFINITY);
+			Arrays.fill(from, -1);
+			return;
+		}
+		try ( SearchContext context = SearchContext.acquire(n) ) {
+			new DijkstraEngine(snapshot).search(source_id, -1, context);
+			for ( int i = 0; i < n; i ++ ) {
+				cost[i] = context.getCost(i);
+				from[i] = context.getFrom(i);
+			}
+		}
+	}
+
+	/**
+	 * Apply changes of edges made in the new version of the graph.
+	 * <p>
+	 * @param snapshot - new version of the graph
+	 * @param editor - editor which produced the new version
+	 */
+	synchronized void update(GraphSnapshot<VertexType> snapshot, GraphSnapshot.Editor<VertexType> editor) {
+		int n = snapshot.getVertexCount(), old_n = cost.length;
+		if ( n > old_n ) {
+			// With a reserve to not copy arrays each time when a vertex is added
+			int capacity = Math.max(n, old_n + (old_n >> 1));
+			cost = Arrays.copyOf(cost, capacity);
+			from = Arrays.copyOf(from, capacity);
+			Arrays.fill(cost, old_n, capacity, Double.POSITIVE_INFINITY);
+			Arrays.fill(from, old_n, capacity, -1);
+		}
+		if ( n > heap.getCapacity() ) {
+			heap = new IndexedHeap(Math.max(n, heap.getCapacity() * 2));
+		}
+		boolean undirected = snapshot.isUndirected();
+		GraphSnapshot.EdgeLog removed = editor.getRemovedEdges(), added = editor.getAddedEdges();
+		for ( int i = 0; i < removed.size(); i ++ ) {
+			int edge_source = removed.getSource(i), edge_target = removed.getTarget(i);
+			if ( from[edge_target] == edge_source || (undirected && from[edge_source] == edge_target) ) {
+				rebuild(snapshot);
+				return;
+			}
+		}
+		this.snapshot = snapshot;
+		for ( int i = 0; i < added.size(); i ++ ) {
+			int edge_source = added.getSource(i), edge_target = added.getTarget(i);
+			// An edge added in the batch may be changed or removed later in the same batch
+			double weight = removed.size() == 0 ? added.getWeight(i) : getWeight(edge_source, edge_target);
+			relax(edge_source, edge_target, cost[edge_source] + weight);
+			if ( undirected ) {
+				relax(edge_target, edge_source, cost[edge_target] + weight);
+			}
+		}
+		// Only vertices which became cheaper are expanded
+		int repaired = 0;
+		while ( heap.isEmpty() == false ) {
+			int curr = heap.poll();
+			repaired ++;
+			double curr_cost = cost[curr];
+			for ( int i = 0, degree = snapshot.getDegree(curr); i < degree; i ++ ) {
+				relax(curr, snapshot.getTarget(curr, i), curr_cost + snapshot.getWeight(curr, i));
+			}
+		}
+		repairedCount = repaired;
+	}
+
+	private double getWeight(int source, int target) {
+		for ( int i = 0, degree = snapshot.getDegree(source); i < degree; i ++ ) {
+			if ( snapshot.getTarget(source, i) == target ) {
+				return snapshot.getWeight(source, i);
+			}
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+
+	private void relax(int curr, int next, double new_cost) {
+		if ( new_cost < cost[next] ) {
+			cost[next] = new_cost;
+			from[next] = curr;
+			heap.update(next, new_cost);
+		}
+	}
+
+	public VertexType getSource() {
+		return source;
+	}
+
+	/**
+	 * Get number of vertices whose cost was changed by the last update.
+	 * <p>
+	 * @return number of vertices
+	 */
+	public synchronized int getRepairedCount() {
+		return repairedCount;
+	}
+
+	private int getId(VertexType vertex) {
+		int id = snapshot.getVertexId(vertex);
+		if ( id < 0 ) {
+			throw new IllegalArgumentException("Vertex not found: " + vertex);
+		}
+		return id;
+	}
+
+	public synchronized double getCost(VertexType target) {
+		return cost[getId(target)];
+	}
+
+	public boolean isReachable(VertexType target) {
+		return getCost(target) != Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Get the shortest path from the source to the target.
+	 * <p>
+	 * @param target - target vertex
+	 * @return list of vertices of the path
+	 * @throws IllegalStateException - the target is not reachable
+	 */
+	public synchronized GraphPath<VertexType> getPath(VertexType target) {
+		int id = getId(target);
+		if ( cost[id] == Double.POSITIVE_INFINITY ) {
+			throw new IllegalStateException("Path not found: " + source + " -> " + target);
+		}
+		int length = 1;
+		for ( int next = id; from[next] != next; next = from[next] ) {
+			length ++;
+		}
+		int[] path = new int[length];
+		for ( int next = id; length > 0; next = from[next] ) {
+			path[-- length] = next;
+		}
+		// The snapshot is immutable, so the path stays valid when the tree is updated
+		return new GraphPath<>(snapshot, path, cost[id]);
+	}
+
+	@Override
+	public void close() {
+		graph.untrack(this);
+	}
+
+}
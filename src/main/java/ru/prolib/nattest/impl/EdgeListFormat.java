@@ -0,0 +1,10 @@
+package ru.prolib.nattest.impl;
+
+public enum EdgeListFormat {
+	// Lines source,target[,weight] separated by comma, semicolon, tab or spaces. # starts a comment.
+	CSV,
+	// Header int magic, int version followed by records long source, long target, double weight
+	BINARY;
+
+	static final int MAGIC = 0x4E47454C, VERSION = 1, HEADER_SIZE = 8, RECORD_SIZE = 24;
+}
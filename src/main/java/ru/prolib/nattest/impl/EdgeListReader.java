@@ -0,0 +1,314 @@
+package ru.prolib.nattest.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.LongFunction;
+
+/**
+ * Streaming reader of edge list files. Numbers are parsed directly from bytes of the buffer.
+ * Weights with more than 15 significant digits fall back to {@link Double#parseDouble(String)}.
+ */
+public class EdgeListReader implements Closeable {
+	static final int BUFFER_SIZE = 1 << 20;
+	private static final int BATCH_SIZE = 8192;
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+	private final ReadableByteChannel channel;
+	private final EdgeListFormat format;
+	private final double defaultWeight;
+	private final byte[] bytes;
+	private final ByteBuffer buffer;
+	private int position, limit, lineStart, cursor, stop;
+	private boolean eof, started;
+	private long line, edgeCount, source, target;
+	private double weight;
+
+	EdgeListReader(ReadableByteChannel channel, EdgeListFormat format, double defaultWeight, int bufferSize) {
+		this.channel = channel;
+		this.format = format;
+		this.defaultWeight = defaultWeight;
+		this.bytes = new byte[bufferSize];
+		this.buffer = ByteBuffer.wrap(bytes);
+	}
+
+	public EdgeListReader(ReadableByteChannel channel, EdgeListFormat format, double defaultWeight) {
+		this(channel, format, defaultWeight, BUFFER_SIZE);
+	}
+
+	public static EdgeListReader open(Path file, EdgeListFormat format, double defaultWeight) throws IOException {
+		return new EdgeListReader(FileChannel.open(file, StandardOpenOption.READ), format, defaultWeight);
+	}
+
+	public long getEdgeCount() {
+		return edgeCount;
+	}
+
+	public long getSource() {
+		return source;
+	}
+
+	public long getTarget() {
+		return target;
+	}
+
+	public double getWeight() {
+		return weight;
+	}
+
+	public boolean next() throws IOException {
+		boolean result = format == EdgeListFormat.BINARY ? nextBinary() : nextCsv();
+		if ( result ) {
+			edgeCount ++;
+		}
+		return result;
+	}
+
+	public <VertexType> GraphBuilder<VertexType> read(GraphBuilder<VertexType> builder,
+			LongFunction<? extends VertexType> vertices) throws IOException
+	{
+		int[] sources = new int[BATCH_SIZE], targets = new int[BATCH_SIZE];
+		double[] weights = new double[BATCH_SIZE];
+		int count = 0;
+		while ( next() ) {
+			sources[count] = builder.intern(vertices.apply(source));
+			targets[count] = builder.intern(vertices.apply(target));
+			weights[count] = weight;
+			if ( ++ count == BATCH_SIZE ) {
+				builder.addEdges(sources, targets, weights);
+				count = 0;
+			}
+		}
+		if ( count > 0 ) {
+			builder.addEdges(Arrays.copyOf(sources, count), Arrays.copyOf(targets, count),
+					Arrays.copyOf(weights, count));
+		}
+		return builder;
+	}
+
+	public <VertexType> GraphImpl<VertexType> read(GraphImpl<VertexType> graph,
+			LongFunction<? extends VertexType> vertices) throws IOException
+	{
+		while ( next() ) {
+			VertexType source = vertices.apply(this.source), target = vertices.apply(this.target);
+			if ( graph.hasVertex(source) == false ) {
+				graph.addVertex(source);
+			}
+			if ( graph.hasVertex(target) == false ) {
+				graph.addVertex(target);
+			}
+			graph.addEdge(source, target, weight);
+		}
+		return graph;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	// Move unread bytes to the beginning of the buffer and read more
+	private boolean fill() throws IOException {
+		if ( eof ) {
+			return false;
+		}
+		System.arraycopy(bytes, position, bytes, 0, limit - position);
+		limit -= position;
+		position = 0;
+		if ( limit == bytes.length ) {
+			throw new IOException("Line is too long: " + (line + 1));
+		}
+		// Cast for compatibility of the bytecode with Java 8
+		((Buffer) buffer).limit(bytes.length);
+		((Buffer) buffer).position(limit);
+		int count = channel.read(buffer);
+		if ( count < 0 ) {
+			eof = true;
+			return false;
+		}
+		limit += count;
+		return true;
+	}
+
+	private boolean nextBinary() throws IOException {
+		if ( started == false ) {
+			started = true;
+			while ( limit - position < EdgeListFormat.HEADER_SIZE && fill() ) { }
+			if ( limit - position < EdgeListFormat.HEADER_SIZE
+			  || buffer.getInt(position) != EdgeListFormat.MAGIC
+			  || buffer.getInt(position + 4) != EdgeListFormat.VERSION )
+			{
+				throw new IOException("Unsupported file format");
+			}
+			position += EdgeListFormat.HEADER_SIZE;
+		}
+		while ( limit - position < EdgeListFormat.RECORD_SIZE && fill() ) { }
+		if ( limit == position ) {
+			return false;
+		}
+		if ( limit - position < EdgeListFormat.RECORD_SIZE ) {
+			throw new IOException("Unexpected end of file after edge " + edgeCount);
+		}
+		// Absolute reads don't depend on the position and limit of the buffer
+		source = buffer.getLong(position);
+		target = buffer.getLong(position + 8);
+		weight = buffer.getDouble(position + 16);
+		position += EdgeListFormat.RECORD_SIZE;
+		return true;
+	}
+
+	private boolean nextCsv() throws IOException {
+		for ( ;; ) {
+			int end = position;
+			while ( end < limit && bytes[end] != '\n' ) {
+				end ++;
+			}
+			if ( end == limit ) {
+				if ( fill() ) {
+					continue;
+				}
+				if ( position == limit ) {
+					return false;
+				}
+				// The last line without line feed. The buffer could be compacted.
+				end = limit;
+			}
+			line ++;
+			lineStart = cursor = position;
+			stop = end > cursor && bytes[end - 1] == '\r' ? end - 1 : end;
+			position = Math.min(end + 1, limit);
+			skipSpaces();
+			if ( cursor == stop || bytes[cursor] == '#' ) {
+				continue;
+			}
+			source = parseLong();
+			skipSeparator();
+			target = parseLong();
+			if ( cursor < stop ) {
+				skipSeparator();
+			}
+			if ( cursor < stop ) {
+				weight = parseDouble();
+				skipSpaces();
+			} else {
+				weight = defaultWeight;
+			}
+			if ( cursor != stop ) {
+				throw malformed();
+			}
+			return true;
+		}
+	}
+
+	private IOException malformed() {
+		return new IOException("Malformed line " + line + ": "
+				+ new String(bytes, lineStart, stop - lineStart, StandardCharsets.US_ASCII));
+	}
+
+	private void skipSpaces() {
+		while ( cursor < stop && (bytes[cursor] == ' ' || bytes[cursor] == '\t') ) {
+			cursor ++;
+		}
+	}
+
+	private void skipSeparator() throws IOException {
+		int start = cursor;
+		skipSpaces();
+		if ( cursor < stop && (bytes[cursor] == ',' || bytes[cursor] == ';') ) {
+			cursor ++;
+			skipSpaces();
+		} else if ( cursor == start ) {
+			throw malformed();
+		}
+	}
+
+	private long parseLong() throws IOException {
+		boolean negative = false;
+		if ( cursor < stop && (bytes[cursor] == '-' || bytes[cursor] == '+') ) {
+			negative = bytes[cursor ++] == '-';
+		}
+		int start = cursor;
+		long value = 0;
+		while ( cursor < stop && bytes[cursor] >= '0' && bytes[cursor] <= '9' ) {
+			if ( cursor - start == 18 ) {
+				throw malformed();
+			}
+			value = value * 10 + (bytes[cursor ++] - '0');
+		}
+		if ( cursor == start ) {
+			throw malformed();
+		}
+		return negative ? -value : value;
+	}
+
+	private double parseDouble() throws IOException {
+		int start = cursor, digits = 0, scale = 0;
+		boolean negative = false, fast = true, found = false;
+		long mantissa = 0;
+		if ( cursor < stop && (bytes[cursor] == '-' || bytes[cursor] == '+') ) {
+			negative = bytes[cursor ++] == '-';
+		}
+		boolean fraction = false;
+		for ( ; cursor < stop; cursor ++ ) {
+			byte b = bytes[cursor];
+			if ( b >= '0' && b <= '9' ) {
+				found = true;
+				if ( mantissa == 0 && b == '0' ) {
+					// Leading zeros are not significant
+				} else if ( ++ digits > 15 ) {
+					fast = false;
+				} else {
+					mantissa = mantissa * 10 + (b - '0');
+				}
+				if ( fraction ) {
+					scale --;
+				}
+			} else if ( b == '.' && fraction == false ) {
+				fraction = true;
+			} else {
+				break;
+			}
+		}
+		if ( found && cursor < stop && (bytes[cursor] == 'e' || bytes[cursor] == 'E') ) {
+			cursor ++;
+			scale += (int) parseLong();
+		}
+		if ( cursor < stop && bytes[cursor] != ' ' && bytes[cursor] != '\t'
+		  && bytes[cursor] != ',' && bytes[cursor] != ';' )
+		{
+			// Something like NaN or Infinity
+			fast = false;
+			while ( cursor < stop && bytes[cursor] != ' ' && bytes[cursor] != '\t'
+			  && bytes[cursor] != ',' && bytes[cursor] != ';' )
+			{
+				cursor ++;
+			}
+		}
+		if ( fast && found == false ) {
+			throw malformed();
+		}
+		if ( fast && mantissa == 0 ) {
+			return negative ? -0.0d : 0.0d;
+		}
+		if ( fast && scale >= -22 && scale <= 22 ) {
+			// Both operands are exact, so the result is correctly rounded
+			double value = scale < 0 ? mantissa / POWERS_OF_TEN[-scale] : mantissa * POWERS_OF_TEN[scale];
+			return negative ? -value : value;
+		}
+		try {
+			return Double.parseDouble(new String(bytes, start, cursor - start, StandardCharsets.US_ASCII));
+		} catch ( NumberFormatException e ) {
+			throw malformed();
+		}
+	}
+
+}
@@ -0,0 +1,151 @@
+package ru.prolib.nattest.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.ToLongFunction;
+
+/**
+ * Streaming writer of edge list files.
+ */
+public class EdgeListWriter implements Closeable {
+	private static final int MAX_LINE_SIZE = 128;
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6 };
+	private final WritableByteChannel channel;
+	private final EdgeListFormat format;
+	private final ByteBuffer buffer;
+	private final byte[] digits = new byte[20];
+	private long edgeCount;
+
+	EdgeListWriter(WritableByteChannel channel, EdgeListFormat format, int bufferSize) {
+		this.channel = channel;
+		this.format = format;
+		this.buffer = ByteBuffer.allocate(Math.max(bufferSize, MAX_LINE_SIZE));
+		if ( format == EdgeListFormat.BINARY ) {
+			buffer.putInt(EdgeListFormat.MAGIC).putInt(EdgeListFormat.VERSION);
+		}
+	}
+
+	public EdgeListWriter(WritableByteChannel channel, EdgeListFormat format) {
+		this(channel, format, EdgeListReader.BUFFER_SIZE);
+	}
+
+	public static EdgeListWriter create(Path file, EdgeListFormat format) throws IOException {
+		return new EdgeListWriter(FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING), format);
+	}
+
+	public long getEdgeCount() {
+		return edgeCount;
+	}
+
+	public EdgeListWriter write(long source, long target, double weight) throws IOException {
+		if ( buffer.remaining() < MAX_LINE_SIZE ) {
+			flush();
+		}
+		if ( format == EdgeListFormat.BINARY ) {
+			buffer.putLong(source).putLong(target).putDouble(weight);
+		} else {
+			putLong(source);
+			buffer.put((byte) ',');
+			putLong(target);
+			buffer.put((byte) ',');
+			if ( putDecimal(weight) == false ) {
+				buffer.put(Double.toString(weight).getBytes(StandardCharsets.US_ASCII));
+			}
+			buffer.put((byte) '\n');
+		}
+		edgeCount ++;
+		return this;
+	}
+
+	// Each edge of undirected graph is written once
+	public <VertexType> EdgeListWriter write(GraphImpl<VertexType> graph,
+			ToLongFunction<? super VertexType> vertices) throws IOException
+	{
+		boolean undirected = graph.isUndirected();
+		for ( GraphNode<VertexType> node : (Iterable<GraphNode<VertexType>>) graph.stream()::iterator ) {
+			long source = vertices.applyAsLong(node.getVertex());
+			for ( GraphEdge<VertexType> edge : node.getEdges() ) {
+				long target = vertices.applyAsLong(edge.getTarget());
+				if ( undirected == false || source < target ) {
+					write(source, target, edge.getWeight());
+				}
+			}
+		}
+		return this;
+	}
+
+	// False if the number cannot be written exactly with few decimal places
+	private boolean putDecimal(double value) {
+		for ( int scale = 0; scale < POWERS_OF_TEN.length; scale ++ ) {
+			double scaled = value * POWERS_OF_TEN[scale];
+			if ( Math.abs(scaled) >= 1e15 ) {
+				return false;
+			}
+			long mantissa = (long) scaled;
+			// The number is read back from the decimal exactly as the division is correctly rounded
+			if ( mantissa == scaled && mantissa / POWERS_OF_TEN[scale] == value ) {
+				if ( mantissa < 0 ) {
+					buffer.put((byte) '-');
+					mantissa = -mantissa;
+				}
+				long divisor = (long) POWERS_OF_TEN[scale];
+				putLong(mantissa / divisor);
+				if ( scale > 0 ) {
+					buffer.put((byte) '.');
+					long fraction = mantissa % divisor;
+					for ( divisor /= 10; divisor > 0; divisor /= 10 ) {
+						buffer.put((byte) ('0' + fraction / divisor % 10));
+					}
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void putLong(long value) {
+		if ( value < 0 ) {
+			buffer.put((byte) '-');
+			if ( value == Long.MIN_VALUE ) {
+				buffer.put(Long.toString(value).substring(1).getBytes(StandardCharsets.US_ASCII));
+				return;
+			}
+			value = -value;
+		}
+		int count = 0;
+		do {
+			digits[count ++] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while ( value > 0 );
+		while ( count > 0 ) {
+			buffer.put(digits[-- count]);
+		}
+	}
+
+	public void flush() throws IOException {
+		// Casts for compatibility of the bytecode with Java 8
+		((Buffer) buffer).flip();
+		while ( buffer.hasRemaining() ) {
+			channel.write(buffer);
+		}
+		((Buffer) buffer).clear();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+}
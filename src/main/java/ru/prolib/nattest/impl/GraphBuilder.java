@@ -0,0 +1,219 @@
+package ru.prolib.nattest.impl;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Bulk loader of graphs. Duplicate edges are detected once on build instead of per edge.
+ * Neither build method makes objects per edge. Not thread-safe.
+ */
+public class GraphBuilder<VertexType> {
+	private static final int MIN_CAPACITY = 16;
+	private final GraphType type;
+	private double defaultWeight = GraphImpl.DEFAULT_WEIGHT;
+	private final VertexDictionary<VertexType> dictionary;
+	private int[] sources, targets;
+	private double[] weights;
+	private int vertexCount, edgeCount;
+
+	// Undirected graph expects one edge per pair of vertices
+	public GraphBuilder(GraphType type, int expectedVertices, int expectedEdges) {
+		if ( expectedVertices < 0 || expectedEdges < 0 ) {
+			throw new IllegalArgumentException("Expected counts cannot be negative: "
+					+ expectedVertices + "/" + expectedEdges);
+		}
+		int vertex_capacity = Math.max(expectedVertices, MIN_CAPACITY),
+			edge_capacity = Math.max(expectedEdges, MIN_CAPACITY);
+		this.type = type;
+		this.dictionary = new VertexDictionary<>(vertex_capacity);
+		this.sources = new int[edge_capacity];
+		this.targets = new int[edge_capacity];
+		this.weights = new double[edge_capacity];
+	}
+
+	public GraphBuilder(GraphType type) {
+		this(type, MIN_CAPACITY, MIN_CAPACITY);
+	}
+
+	public GraphType getType() {
+		return type;
+	}
+
+	public double getDefaultWeight() {
+		return defaultWeight;
+	}
+
+	public GraphBuilder<VertexType> withDefaultWeight(double weight) {
+		this.defaultWeight = weight;
+		return this;
+	}
+
+	public int getVertexCount() {
+		return vertexCount;
+	}
+
+	public int getEdgeCount() {
+		return edgeCount;
+	}
+
+	public int getVertexId(VertexType vertex) {
+		return dictionary.getId(vertex);
+	}
+
+	private int getId(VertexType vertex) {
+		int id = dictionary.getId(vertex);
+		if ( id < 0 ) {
+			throw new IllegalArgumentException("Vertex not found: " + vertex);
+		}
+		return id;
+	}
+
+	public GraphBuilder<VertexType> addVertex(VertexType vertex) {
+		if ( vertex == null ) {
+			throw new NullPointerException("Vertex cannot be null");
+		}
+		if ( dictionary.getId(vertex) >= 0 ) {
+			throw new IllegalArgumentException("Vertex already exists: " + vertex);
+		}
+		vertexCount = dictionary.add(vertex) + 1;
+		return this;
+	}
+
+	public int intern(VertexType vertex) {
+		if ( vertex == null ) {
+			throw new NullPointerException("Vertex cannot be null");
+		}
+		int id = dictionary.add(vertex);
+		vertexCount = dictionary.size();
+		return id;
+	}
+
+	public GraphBuilder<VertexType> addVertices(Collection<? extends VertexType> vertices) {
+		for ( VertexType vertex : vertices ) {
+			addVertex(vertex);
+		}
+		return this;
+	}
+
+	public GraphBuilder<VertexType> addVertices(Stream<? extends VertexType> vertices) {
+		vertices.forEachOrdered(this::addVertex);
+		return this;
+	}
+
+	public GraphBuilder<VertexType> addEdge(VertexType source, VertexType target) {
+		return addEdge(source, target, defaultWeight);
+	}
+
+	public GraphBuilder<VertexType> addEdge(VertexType source, VertexType target, double weight) {
+		int source_id = getId(source), target_id = getId(target);
+		if ( source_id == target_id ) {
+			throw new IllegalArgumentException("Cannot use same vertex as source and target: " + source);
+		}
+		append(source_id, target_id, weight);
+		return this;
+	}
+
+	public GraphBuilder<VertexType> addEdges(Stream<? extends GraphEdge<VertexType>> edges) {
+		edges.forEachOrdered(x -> addEdge(x.getSource(), x.getTarget(), x.getWeight()));
+		return this;
+	}
+
+	// Null weights means the default weight
+	public GraphBuilder<VertexType> addEdges(int[] sources, int[] targets, double[] weights) {
+		int count = sources.length;
+		if ( targets.length != count || (weights != null && weights.length != count) ) {
+			throw new IllegalArgumentException("Array lengths mismatch");
+		}
+		ensureEdgeCapacity(edgeCount + count);
+		for ( int i = 0; i < count; i ++ ) {
+			int source = sources[i], target = targets[i];
+			if ( source < 0 || source >= vertexCount ) {
+				throw new IllegalArgumentException("Vertex not found: #" + source);
+			}
+			if ( target < 0 || target >= vertexCount ) {
+				throw new IllegalArgumentException("Vertex not found: #" + target);
+			}
+			if ( source == target ) {
+				throw new IllegalArgumentException("Cannot use same vertex as source and target: "
+						+ dictionary.getVertex(source));
+			}
+			append(source, target, weights == null ? defaultWeight : weights[i]);
+		}
+		return this;
+	}
+
+	private void ensureEdgeCapacity(int capacity) {
+		if ( capacity > sources.length ) {
+			int new_capacity = Math.max(capacity, sources.length * 2);
+			sources = Arrays.copyOf(sources, new_capacity);
+			targets = Arrays.copyOf(targets, new_capacity);
+			weights = Arrays.copyOf(weights, new_capacity);
+		}
+	}
+
+	private void append(int source, int target, double weight) {
+		ensureEdgeCapacity(edgeCount + 1);
+		sources[edgeCount] = source;
+		targets[edgeCount] = target;
+		weights[edgeCount] = weight;
+		edgeCount ++;
+	}
+
+	public CsrGraph<VertexType> buildSnapshot() {
+		boolean undirected = type == GraphType.UNDIRECTED;
+		int n = vertexCount, m = undirected ? edgeCount * 2 : edgeCount;
+		int[] csr_offsets = new int[n + 1], csr_targets = new int[m];
+		double[] csr_weights = new double[m];
+		for ( int i = 0; i < edgeCount; i ++ ) {
+			csr_offsets[sources[i] + 1] ++;
+			if ( undirected ) {
+				csr_offsets[targets[i] + 1] ++;
+			}
+		}
+		for ( int i = 0; i < n; i ++ ) {
+			csr_offsets[i + 1] += csr_offsets[i];
+		}
+		int[] fill = Arrays.copyOf(csr_offsets, n);
+		for ( int i = 0; i < edgeCount; i ++ ) {
+			int index = fill[sources[i]] ++;
+			csr_targets[index] = targets[i];
+			csr_weights[index] = weights[i];
+			if ( undirected ) {
+				index = fill[targets[i]] ++;
+				csr_targets[index] = sources[i];
+				csr_weights[index] = weights[i];
+			}
+		}
+		// Last source seen per target: one pass over adjacency finds duplicates
+		int[] last = fill;
+		Arrays.fill(last, -1);
+		for ( int source = 0; source < n; source ++ ) {
+			for ( int i = csr_offsets[source], end = csr_offsets[source + 1]; i < end; i ++ ) {
+				int target = csr_targets[i];
+				if ( last[target] == source ) {
+					throw new IllegalArgumentException("Edge already defined: "
+							+ dictionary.getVertex(source) + " -> " + dictionary.getVertex(target));
+				}
+				last[target] = source;
+			}
+		}
+		// The builder may be extended further, so the graph gets its own dictionary
+		return new CsrGraph<>(undirected, dictionary.copy(),
+				csr_offsets, csr_targets, csr_weights, null);
+	}
+
+	public GraphImpl<VertexType> build() {
+		CsrGraph<VertexType> snapshot = buildSnapshot();
+		int n = snapshot.getVertexCount();
+		// Edge objects are made only for nodes which are accessed through the node API
+		Map<VertexType, GraphNodeImpl<VertexType>> nodes = new ConcurrentHashMap<>(n);
+		for ( int id = 0; id < n; id ++ ) {
+			nodes.put(snapshot.getVertex(id), new GraphNodeImpl<>(snapshot, id));
+		}
+		return new GraphImpl<>(type, defaultWeight, nodes, snapshot);
+	}
+
+}
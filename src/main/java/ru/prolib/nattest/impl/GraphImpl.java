@@ -1,11 +1,19 @@
 package ru.prolib.nattest.impl;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleBiFunction;
 import java.util.stream.Stream;
 
 import ru.prolib.nattest.Graph;
@@ -13,15 +21,56 @@ import ru.prolib.nattest.Graph;
 public class GraphImpl<VertexType> implements Graph<VertexType> {
 	public static final GraphType DEFAULT_GRAPH_TYPE = GraphType.UNDIRECTED;
 	public static final double DEFAULT_WEIGHT = 1.0d;
+	private static final int LOCK_STRIPES = 256;
+	// Modifications are published at least once per batch even if nobody reads
+	private static final int PUBLISH_BATCH = 1 << 12;
+	
+	static class Frozen<VertexType> {
+		private final GraphSnapshot<VertexType> source;
+		private final CsrGraph<VertexType> graph;
+		
+		Frozen(GraphSnapshot<VertexType> source, CsrGraph<VertexType> graph) {
+			this.source = source;
+			this.graph = graph;
+		}
+		
+	}
 	
 	private final boolean undirected;
 	private final double defaultWeight;
+	// Nodes are kept for the node API and to validate modifications under pair locks. Queries
+	// read snapshots only.
 	private final Map<VertexType, GraphNodeImpl<VertexType>> nodes;
+	private final AtomicLong version = new AtomicLong(), edgeVersion = new AtomicLong();
+	private final Lock[] locks;
+	private final Queue<Consumer<GraphSnapshot.Editor<VertexType>>> pending = new ConcurrentLinkedQueue<>();
+	private final AtomicLong submitted = new AtomicLong();
+	private final Lock publishLock = new ReentrantLock();
+	// Built from the nodes by the first read. Modifications aren't queued until then.
+	private volatile GraphSnapshot<VertexType> snapshot;
+	private volatile Frozen<VertexType> frozen;
+	private final List<DynamicShortestPathTree<VertexType>> trees = new CopyOnWriteArrayList<>();
+	private volatile GraphListener listener = GraphListener.NONE;
 	
-	GraphImpl(GraphType type, double defaultWeight, Map<VertexType, GraphNodeImpl<VertexType>> nodes) {
+	GraphImpl(GraphType type, double defaultWeight, Map<VertexType, GraphNodeImpl<VertexType>> nodes,
+			CsrGraph<VertexType> snapshot)
+	{
 		this.undirected = type == GraphType.UNDIRECTED;
 		this.defaultWeight = defaultWeight;
 		this.nodes = nodes;
+		this.locks = new Lock[LOCK_STRIPES];
+		for ( int i = 0; i < locks.length; i ++ ) {
+			locks[i] = new ReentrantLock();
+		}
+		if ( snapshot != null ) {
+			// The source is made for this graph, so versions extend its dictionary instead of a copy
+			this.snapshot = GraphSnapshot.of(snapshot, snapshot.getDictionary());
+			this.frozen = new Frozen<>(this.snapshot, snapshot);
+		}
+	}
+	
+	GraphImpl(GraphType type, double defaultWeight, Map<VertexType, GraphNodeImpl<VertexType>> nodes) {
+		this(type, defaultWeight, nodes, null);
 	}
 	
 	public GraphImpl(GraphType type, double defaultWeight) {
@@ -48,6 +97,10 @@ public class GraphImpl<VertexType> implements Graph<VertexType> {
 		return node;
 	}
 	
+	public boolean hasVertex(VertexType vertex) {
+		return nodes.containsKey(vertex);
+	}
+	
 	public boolean isUndirected() {
 		return undirected;
 	}
@@ -60,13 +113,94 @@ public class GraphImpl<VertexType> implements Graph<VertexType> {
 		return defaultWeight;
 	}
 	
+	public GraphListener getListener() {
+		return listener;
+	}
+	
+	// Operations are timed only while a listener other than NONE is set
+	public void setListener(GraphListener listener) {
+		this.listener = listener == null ? GraphListener.NONE : listener;
+	}
+	
+	/**
+	 * Get modification counter of the graph.
+	 * <p>
+	 * @return value which is changed on each modification of the graph
+	 */
+	public long getVersion() {
+		return version.get();
+	}
+	
+	/**
+	 * Get modification counter of edges.
+	 * <p>
+	 * @return value which is changed each time when edges of the graph are changed
+	 */
+	public long getEdgeVersion() {
+		return edgeVersion.get();
+	}
+	
+	/**
+	 * Get lock of unordered pair of vertices.
+	 * <p>
+	 * @param source - first vertex
+	 * @param target - second vertex
+	 * @return lock object which is the same for both orders of the arguments
+	 */
+	private Lock getLock(VertexType source, VertexType target) {
+		return getLock(source.hashCode() ^ target.hashCode());
+	}
+	
+	private Lock getLock(VertexType vertex) {
+		return getLock(vertex.hashCode());
+	}
+	
+	private Lock getLock(int hash) {
+		hash ^= hash >>> 16;
+		return locks[hash & (locks.length - 1)];
+	}
+	
+	// Holders of all locks exclude any other modification
+	private void lockAll() {
+		for ( Lock lock : locks ) {
+			lock.lock();
+		}
+	}
+	
+	private void unlockAll() {
+		for ( int i = locks.length - 1; i >= 0; i -- ) {
+			locks[i].unlock();
+		}
+	}
+	
 	@Override
 	public GraphImpl<VertexType> addVertex(VertexType vertex) {
-		GraphNodeImpl<VertexType> old_node, new_node;
-		old_node = nodes.putIfAbsent(vertex, new_node = produceNode(vertex));
-		if ( old_node != null && old_node != new_node ) {
-			throw new IllegalArgumentException("Vertex already exists: " + vertex);
+		GraphListener listener = this.listener;
+		if ( listener == GraphListener.NONE ) {
+			return doAddVertex(vertex);
+		}
+		long start = System.nanoTime();
+		doAddVertex(vertex);
+		listener.onVertexAdded(System.nanoTime() - start);
+		return this;
+	}
+	
+	private GraphImpl<VertexType> doAddVertex(VertexType vertex) {
+		long count;
+		GraphNodeImpl<VertexType> old_node, new_node = produceNode(vertex);
+		Lock lock = getLock(vertex);
+		lock.lock();
+		try {
+			old_node = nodes.putIfAbsent(vertex, new_node);
+			if ( old_node != null && old_node != new_node ) {
+				throw new IllegalArgumentException("Vertex already exists: " + vertex);
+			}
+			count = submit(x -> x.addVertex(vertex));
+			version.incrementAndGet();
+		} finally {
+			lock.unlock();
 		}
+		publish(count);
 		return this;
 	}
 
@@ -76,85 +210,362 @@ public class GraphImpl<VertexType> implements Graph<VertexType> {
 	}
 
 	public GraphImpl<VertexType> addEdge(VertexType source, VertexType target, double weight) {
-		GraphNodeImpl<VertexType> source_node = getNode(source), target_node = getNode(target);
-		if ( source_node == target_node ) {
-			throw new IllegalArgumentException("Cannot use same vertex as source and target: " + source);
-		}
-		source_node.addEdge(target, weight);
-		// Inconsistent state possible when concurrent adding edges. Possible solution is to use
-		// addition map for the pairs of vertices to lock each pair during modifications.
-		// Deeper investigation needed for the best solution.
-		if ( undirected == true ) {
-			target_node.addEdge(source, weight);
+		GraphListener listener = this.listener;
+		if ( listener == GraphListener.NONE ) {
+			return doAddEdge(source, target, weight);
 		}
+		long start = System.nanoTime();
+		doAddEdge(source, target, weight);
+		listener.onEdgeAdded(System.nanoTime() - start);
 		return this;
 	}
 	
-	static class PathInfo<VertexType> implements Comparable<PathInfo<VertexType>> {
-		private final double cost;
-		private final VertexType vertex;
-		
-		PathInfo(double cost, VertexType vertex) {
-			this.cost = cost;
-			this.vertex = vertex;
-		}
-
-		@Override
-		public int compareTo(PathInfo<VertexType> other) {
-			return Double.compare(cost, other.cost);
+	private GraphImpl<VertexType> doAddEdge(VertexType source, VertexType target, double weight) {
+		long count;
+		// The pair is modified under its lock, so concurrent modifications of the same pair are
+		// serialized: they cannot leave a half of undirected edge and they are submitted to the
+		// snapshot in the same order as applied to the nodes.
+		Lock lock = getLock(source, target);
+		lock.lock();
+		try {
+			GraphNodeImpl<VertexType> source_node = getNode(source), target_node = getNode(target);
+			if ( source_node == target_node ) {
+				throw new IllegalArgumentException("Cannot use same vertex as source and target: " + source);
+			}
+			if ( undirected == true ) {
+				if ( source_node.isNeighbor(target) ) {
+					throw new IllegalArgumentException("Edge already defined: " + source + " -> " + target);
+				}
+				source_node.addEdge(target, weight);
+				target_node.addEdge(source, weight);
+			} else {
+				source_node.addEdge(target, weight);
+			}
+			count = submit(x -> x.addEdge(source, target, weight));
+			edgeVersion.incrementAndGet();
+			version.incrementAndGet();
+		} finally {
+			lock.unlock();
 		}
-		
-		@Override
-		public String toString() {
-			return new StringBuilder()
-					.append("PathInfo[vertex=")
-					.append(vertex)
-					.append(",cost=")
-					.append(cost)
-					.append("]")
-					.toString();
+		publish(count);
+		return this;
+	}
+	
+	/**
+	 * Remove edge.
+	 * <p>
+	 * Both directions are removed in undirected graph.
+	 * <p>
+	 * @param source - source vertex
+	 * @param target - target vertex
+	 * @return this graph
+	 * @throws IllegalArgumentException - vertex or edge not found
+	 */
+	public GraphImpl<VertexType> removeEdge(VertexType source, VertexType target) {
+		long count;
+		Lock lock = getLock(source, target);
+		lock.lock();
+		try {
+			GraphNodeImpl<VertexType> source_node = getNode(source), target_node = getNode(target);
+			source_node.removeEdge(target);
+			if ( undirected == true ) {
+				target_node.removeEdge(source);
+			}
+			count = submit(x -> x.removeEdge(source, target));
+			edgeVersion.incrementAndGet();
+			version.incrementAndGet();
+		} finally {
+			lock.unlock();
 		}
-		
+		publish(count);
+		return this;
 	}
-
-	@Override
-	public Collection<VertexType> getPath(VertexType source, VertexType target) {
-		getNode(source);
-		getNode(target);
-		PriorityQueue<PathInfo<VertexType>> front = new PriorityQueue<>();
-		Map<VertexType, VertexType> from = new HashMap<>();
-		Map<VertexType, Double> cost = new HashMap<>();
-		front.add(new PathInfo<>(0.0d, source));
-		from.put(source, source);
-		cost.put(source, 0.0d);
-		VertexType next;
-		while ( front.isEmpty() == false ) {
-			PathInfo<VertexType> curr = front.poll();
-			if ( curr.vertex.equals(target) ) {
-				break;
+	
+	/**
+	 * Change weight of existing edge.
+	 * <p>
+	 * Both directions are changed in undirected graph.
+	 * <p>
+	 * @param source - source vertex
+	 * @param target - target vertex
+	 * @param weight - new weight
+	 * @return this graph
+	 * @throws IllegalArgumentException - vertex or edge not found
+	 */
+	public GraphImpl<VertexType> updateWeight(VertexType source, VertexType target, double weight) {
+		long count;
+		Lock lock = getLock(source, target);
+		lock.lock();
+		try {
+			GraphNodeImpl<VertexType> source_node = getNode(source), target_node = getNode(target);
+			source_node.updateWeight(target, weight);
+			if ( undirected == true ) {
+				target_node.updateWeight(source, weight);
 			}
-			for ( GraphEdge<VertexType> edge : getNode(curr.vertex).getEdges() ) {
-				double new_cost = cost.get(curr.vertex) + edge.getWeight();
-				Double old_cost = cost.get(next = edge.getTarget());
-				if ( old_cost == null || new_cost < old_cost ) {
-					cost.put(next, new_cost);
-					from.put(next, curr.vertex);
-					front.add(new PathInfo<>(new_cost, next));
+			count = submit(x -> x.updateWeight(source, target, weight));
+			edgeVersion.incrementAndGet();
+			version.incrementAndGet();
+		} finally {
+			lock.unlock();
+		}
+		publish(count);
+		return this;
+	}
+	
+	/**
+	 * Remove vertex and all its edges.
+	 * <p>
+	 * Other modifications wait while the vertex is being removed. Removal of vertex of directed
+	 * graph scans all vertices to find incoming edges.
+	 * <p>
+	 * @param vertex - vertex to remove
+	 * @return this graph
+	 * @throws IllegalArgumentException - vertex not found
+	 */
+	public GraphImpl<VertexType> removeVertex(VertexType vertex) {
+		long count;
+		lockAll();
+		try {
+			GraphNodeImpl<VertexType> node = getNode(vertex);
+			if ( undirected == true ) {
+				for ( VertexType neighbor : node.getNeighbors() ) {
+					nodes.get(neighbor).removeEdge(vertex);
+				}
+			} else {
+				for ( GraphNodeImpl<VertexType> other : nodes.values() ) {
+					if ( other.isNeighbor(vertex) ) {
+						other.removeEdge(vertex);
+					}
 				}
 			}
+			nodes.remove(vertex);
+			count = submit(x -> x.removeVertex(vertex));
+			edgeVersion.incrementAndGet();
+			version.incrementAndGet();
+		} finally {
+			unlockAll();
+		}
+		publish(count);
+		return this;
+	}
+	
+	@Override
+	public GraphPath<VertexType> getPath(VertexType source, VertexType target) {
+		return getPath(source, target, SearchMode.DIJKSTRA);
+	}
+	
+	public GraphPath<VertexType> getPath(VertexType source, VertexType target, SearchMode mode) {
+		return getPath(snapshot(), source, target, mode);
+	}
+	
+	GraphPath<VertexType> getPath(GraphSnapshot<VertexType> snapshot, VertexType source, VertexType target,
+			SearchMode mode)
+	{
+		GraphListener listener = this.listener;
+		if ( listener == GraphListener.NONE ) {
+			return snapshot.getPath(source, target, mode);
+		}
+		SearchStats stats = new SearchStats();
+		long start = System.nanoTime();
+		try {
+			return snapshot.getPath(source, target, mode, stats);
+		} finally {
+			stats.setNanos(System.nanoTime() - start);
+			listener.onPathSearched(stats);
+		}
+	}
+	
+	// A* search. The heuristic estimates the cost from a vertex (first argument) to the target.
+	public GraphPath<VertexType> getPath(VertexType source, VertexType target,
+			ToDoubleBiFunction<? super VertexType, ? super VertexType> heuristic)
+	{
+		GraphListener listener = this.listener;
+		if ( listener == GraphListener.NONE ) {
+			return snapshot().getPath(source, target, heuristic);
+		}
+		SearchStats stats = new SearchStats();
+		long start = System.nanoTime();
+		try {
+			return snapshot().getPath(source, target, heuristic, stats);
+		} finally {
+			stats.setNanos(System.nanoTime() - start);
+			listener.onPathSearched(stats);
+		}
+	}
+	
+	// Removal of edges or vertices drops the index of components, the next query rebuilds it
+	public boolean isConnected(VertexType a, VertexType b) {
+		return snapshot().isConnected(a, b);
+	}
+
+	public int getComponentCount() {
+		return snapshot().getComponentCount();
+	}
+
+	public StrongComponents<VertexType> getStrongComponents() {
+		return snapshot().getStrongComponents();
+	}
+
+	public ShortestPathTree<VertexType> getShortestPathTree(VertexType source) {
+		return snapshot().getShortestPathTree(source);
+	}
+	
+	// The search stops once all targets (if not null) are settled or the cost exceeds maxCost
+	public ShortestPathTree<VertexType> getShortestPathTree(VertexType source,
+			Collection<VertexType> targets, double maxCost)
+	{
+		return snapshot().getShortestPathTree(source, targets, maxCost);
+	}
+	
+	/**
+	 * Compute costs and paths between each source and each target in parallel
+	 * using the common fork-join pool.
+	 * <p>
+	 * @param sources - source vertices
+	 * @param targets - target vertices
+	 * @return distance matrix
+	 */
+	public DistanceMatrix<VertexType> getDistanceMatrix(List<VertexType> sources, List<VertexType> targets) {
+		return snapshot().getDistanceMatrix(sources, targets);
+	}
+	
+	public DistanceMatrix<VertexType> getDistanceMatrix(List<VertexType> sources, List<VertexType> targets,
+			int parallelism)
+	{
+		return snapshot().getDistanceMatrix(sources, targets, parallelism);
+	}
+	
+	// Should be called under a lock of modified vertices
+	private long submit(Consumer<GraphSnapshot.Editor<VertexType>> modification) {
+		if ( snapshot == null ) {
+			// The snapshot is not built yet, the build will see this modification in the nodes
+			return 0;
+		}
+		// Counted before queued: the version which counts a modification always contains it
+		long count = submitted.incrementAndGet();
+		pending.add(modification);
+		return count;
+	}
+	
+	private void publish(long count) {
+		if ( count == 0 ) {
+			return;
+		}
+		// Tracked trees are updated by each modification, so they don't wait for reads of the graph
+		if ( trees.isEmpty() == false ) {
+			publishLock.lock();
+		} else if ( count % PUBLISH_BATCH != 0 || publishLock.tryLock() == false ) {
+			return;
+		}
+		try {
+			publish();
+		} finally {
+			publishLock.unlock();
 		}
-		//System.out.println(from);
-		//System.out.println(cost);
-		LinkedList<VertexType> path = new LinkedList<>();
-		path.addFirst(next = target);
-		while ( source.equals(next) == false ) {
-			next = from.get(next);
-			if ( next == null ) {
-				throw new IllegalStateException("Path not found: " + source + " -> " + target);
+	}
+	
+	// Should be called under the publish lock
+	private GraphSnapshot<VertexType> publish() {
+		GraphSnapshot<VertexType> snapshot = this.snapshot;
+		if ( snapshot == null ) {
+			return build();
+		}
+		long sequence = snapshot.getSequence(), count = submitted.get();
+		Consumer<GraphSnapshot.Editor<VertexType>> modification;
+		if ( sequence >= count || (modification = pending.poll()) == null ) {
+			return snapshot;
+		}
+		// Modifications queued later are left for the next version, so writers cannot stall the publisher
+		GraphSnapshot.Editor<VertexType> editor = snapshot.edit();
+		do {
+			modification.accept(editor);
+			sequence ++;
+		} while ( sequence < count && (modification = pending.poll()) != null );
+		this.snapshot = snapshot = editor.publish(sequence);
+		for ( DynamicShortestPathTree<VertexType> tree : trees ) {
+			tree.update(snapshot, editor);
+		}
+		return snapshot;
+	}
+	
+	private GraphSnapshot<VertexType> build() {
+		GraphSnapshot<VertexType> snapshot;
+		lockAll();
+		try {
+			if ( nodes.isEmpty() ) {
+				snapshot = GraphSnapshot.empty(undirected ? GraphType.UNDIRECTED : GraphType.DIRECTED);
+			} else {
+				CsrGraph<VertexType> graph = new CsrGraph<>(undirected ? GraphType.UNDIRECTED : GraphType.DIRECTED,
+						nodes.values());
+				snapshot = GraphSnapshot.of(graph, graph.getDictionary());
+				frozen = new Frozen<>(snapshot, graph);
 			}
-			path.addFirst(next);
+			this.snapshot = snapshot;
+		} finally {
+			unlockAll();
 		}
-		return path;
+		return snapshot;
+	}
+	
+	/**
+	 * Get current version of the graph.
+	 * <p>
+	 * Modifications are published lazily: the first read after them makes the new version.
+	 * <p>
+	 * @return version which contains all completed modifications
+	 */
+	public GraphSnapshot<VertexType> snapshot() {
+		GraphSnapshot<VertexType> snapshot = this.snapshot;
+		if ( snapshot != null && snapshot.getSequence() >= submitted.get() ) {
+			return snapshot;
+		}
+		publishLock.lock();
+		try {
+			return publish();
+		} finally {
+			publishLock.unlock();
+		}
+	}
+	
+	/**
+	 * Start maintaining the shortest path tree of the source vertex.
+	 * <p>
+	 * The tree is updated incrementally each time when new edges are published.
+	 * <p>
+	 * @param source - source vertex
+	 * @return tree which is updated until closed
+	 */
+	public DynamicShortestPathTree<VertexType> trackShortestPathTree(VertexType source) {
+		publishLock.lock();
+		try {
+			// Under the lock to not miss modifications between the build and the registration
+			DynamicShortestPathTree<VertexType> tree = new DynamicShortestPathTree<>(this, publish(), source);
+			trees.add(tree);
+			// Writers which didn't see the tree yet left their modifications queued
+			publish();
+			return tree;
+		} finally {
+			publishLock.unlock();
+		}
+	}
+	
+	void untrack(DynamicShortestPathTree<VertexType> tree) {
+		trees.remove(tree);
+	}
+	
+	// Cached until the next version is published. Each rebuild costs O(V + E).
+	public CsrGraph<VertexType> freeze() {
+		GraphSnapshot<VertexType> snapshot = snapshot();
+		Frozen<VertexType> frozen = this.frozen;
+		if ( frozen == null || frozen.source != snapshot ) {
+			this.frozen = frozen = new Frozen<>(snapshot, snapshot.compact());
+		}
+		return frozen.graph;
+	}
+	
+	// The file is opened by MappedGraph
+	public void export(Path file, VertexCodec<VertexType> codec) throws IOException {
+		MappedGraph.write(file, freeze(), codec);
 	}
 	
 	public Stream<GraphNode<VertexType>> stream() {
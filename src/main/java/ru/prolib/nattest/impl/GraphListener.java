@@ -0,0 +1,23 @@
+package ru.prolib.nattest.impl;
+
+/**
+ * Receiver of timings of graph operations. Called by the threads which perform the operations,
+ * so implementations must be thread-safe and fast.
+ */
+public interface GraphListener {
+
+	GraphListener NONE = new GraphListener() { };
+
+	default void onVertexAdded(long nanos) {
+
+	}
+
+	default void onEdgeAdded(long nanos) {
+
+	}
+
+	default void onPathSearched(SearchStats stats) {
+
+	}
+
+}
@@ -0,0 +1,143 @@
+package ru.prolib.nattest.impl;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Listener which aggregates timings and search statistics of graph operations.
+ */
+public class GraphMetrics implements GraphListener, GraphMetricsMXBean {
+	public static final String DOMAIN = "ru.prolib.nattest";
+	private final LatencyHistogram addVertex = new LatencyHistogram(),
+			addEdge = new LatencyHistogram(),
+			getPath = new LatencyHistogram();
+	private final LongAdder pathFailures = new LongAdder(),
+			settled = new LongAdder(),
+			relaxed = new LongAdder();
+	private final LongAccumulator frontierPeak = new LongAccumulator(Math::max, 0);
+
+	@Override
+	public void onVertexAdded(long nanos) {
+		addVertex.record(nanos);
+	}
+
+	@Override
+	public void onEdgeAdded(long nanos) {
+		addEdge.record(nanos);
+	}
+
+	@Override
+	public void onPathSearched(SearchStats stats) {
+		getPath.record(stats.getNanos());
+		if ( stats.isFound() == false ) {
+			pathFailures.increment();
+		}
+		settled.add(stats.getSettledCount());
+		relaxed.add(stats.getRelaxedCount());
+		frontierPeak.accumulate(stats.getFrontierPeak());
+	}
+
+	public LatencyHistogram getAddVertexLatency() {
+		return addVertex;
+	}
+
+	public LatencyHistogram getAddEdgeLatency() {
+		return addEdge;
+	}
+
+	public LatencyHistogram getPathLatency() {
+		return getPath;
+	}
+
+	@Override
+	public long getVertexAdditions() {
+		return addVertex.getCount();
+	}
+
+	@Override
+	public long getEdgeAdditions() {
+		return addEdge.getCount();
+	}
+
+	@Override
+	public long getPathQueries() {
+		return getPath.getCount();
+	}
+
+	@Override
+	public long getPathFailures() {
+		return pathFailures.sum();
+	}
+
+	@Override
+	public long getSettledVertices() {
+		return settled.sum();
+	}
+
+	@Override
+	public long getRelaxedEdges() {
+		return relaxed.sum();
+	}
+
+	@Override
+	public long getFrontierPeak() {
+		return frontierPeak.get();
+	}
+
+	@Override
+	public double getAddVertexMeanNanos() {
+		return addVertex.getMean();
+	}
+
+	@Override
+	public double getAddEdgeMeanNanos() {
+		return addEdge.getMean();
+	}
+
+	@Override
+	public long getAddEdge99thPercentileNanos() {
+		return addEdge.getPercentile(99.0d);
+	}
+
+	@Override
+	public double getPathMeanNanos() {
+		return getPath.getMean();
+	}
+
+	@Override
+	public long getPathMedianNanos() {
+		return getPath.getPercentile(50.0d);
+	}
+
+	@Override
+	public long getPath99thPercentileNanos() {
+		return getPath.getPercentile(99.0d);
+	}
+
+	@Override
+	public long getPathMaxNanos() {
+		return getPath.getMax();
+	}
+
+	@Override
+	public void reset() {
+		addVertex.reset();
+		addEdge.reset();
+		getPath.reset();
+		pathFailures.reset();
+		settled.reset();
+		relaxed.reset();
+		frontierPeak.reset();
+	}
+
+	public ObjectName register(String name) throws JMException {
+		ObjectName object_name = new ObjectName(DOMAIN + ":type=GraphMetrics,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, object_name);
+		return object_name;
+	}
+
+}
@@ -0,0 +1,20 @@
+package ru.prolib.nattest.impl;
+
+// Durations are in nanoseconds
+public interface GraphMetricsMXBean {
+	long getVertexAdditions();
+	long getEdgeAdditions();
+	long getPathQueries();
+	long getPathFailures();
+	long getSettledVertices();
+	long getRelaxedEdges();
+	long getFrontierPeak();
+	double getAddVertexMeanNanos();
+	double getAddEdgeMeanNanos();
+	long getAddEdge99thPercentileNanos();
+	double getPathMeanNanos();
+	long getPathMedianNanos();
+	long getPath99thPercentileNanos();
+	long getPathMaxNanos();
+	void reset();
+}
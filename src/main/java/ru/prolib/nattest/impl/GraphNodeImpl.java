@@ -11,7 +11,10 @@ import org.apache.commons.lang3.builder.ToStringStyle;
 
 public class GraphNodeImpl<VertexType> implements GraphNode<VertexType> {
 	private final VertexType vertex;
-	private final Map<VertexType, GraphEdge<VertexType>> edges;
+	// Null until edges of a built node are accessed first time
+	private volatile Map<VertexType, GraphEdge<VertexType>> edges;
+	private CsrGraph<VertexType> source;
+	private int id;
 	
 	GraphNodeImpl(VertexType vertex, Map<VertexType, GraphEdge<VertexType>> edges) {
 		if ( vertex == null ) {
@@ -21,6 +24,18 @@ public class GraphNodeImpl<VertexType> implements GraphNode<VertexType> {
 		this.edges = edges;
 	}
 	
+	/**
+	 * Node of a graph loaded in bulk. Edges are taken from the source graph on demand.
+	 * <p>
+	 * @param source - source graph
+	 * @param id - vertex ID in the source graph
+	 */
+	GraphNodeImpl(CsrGraph<VertexType> source, int id) {
+		this.vertex = source.getVertex(id);
+		this.source = source;
+		this.id = id;
+	}
+	
 	public GraphNodeImpl(VertexType vertex) {
 		this(vertex, new ConcurrentHashMap<>());
 	}
@@ -29,15 +44,50 @@ public class GraphNodeImpl<VertexType> implements GraphNode<VertexType> {
 		return new GraphEdgeImpl<>(this.vertex, target, weight);
 	}
 	
+	private Map<VertexType, GraphEdge<VertexType>> edges() {
+		Map<VertexType, GraphEdge<VertexType>> edges = this.edges;
+		if ( edges == null ) {
+			synchronized ( this ) {
+				edges = this.edges;
+				if ( edges == null ) {
+					int degree = source.getDegree(id);
+					edges = new ConcurrentHashMap<>(degree);
+					for ( int i = 0; i < degree; i ++ ) {
+						VertexType target = source.getVertex(source.getTarget(id, i));
+						edges.put(target, produceEdge(target, source.getWeight(id, i)));
+					}
+					this.edges = edges;
+					source = null;
+				}
+			}
+		}
+		return edges;
+	}
+	
 	public GraphNodeImpl<VertexType> addEdge(VertexType target, double weight) {
 		GraphEdge<VertexType> new_edge, old_edge;
-		old_edge = edges.putIfAbsent(target, new_edge = produceEdge(target, weight));
+		old_edge = edges().putIfAbsent(target, new_edge = produceEdge(target, weight));
 		if ( old_edge != null && old_edge != new_edge ) {
 			throw new IllegalArgumentException("Edge already defined: " + vertex + " -> " + target);
 		}
 		return this;
 	}
 
+	public GraphNodeImpl<VertexType> removeEdge(VertexType target) {
+		if ( edges().remove(target) == null ) {
+			throw new IllegalArgumentException("Edge not found: " + vertex + " -> " + target);
+		}
+		return this;
+	}
+	
+	public GraphNodeImpl<VertexType> updateWeight(VertexType target, double weight) {
+		// Edges are immutable, so the edge is replaced
+		if ( edges().replace(target, produceEdge(target, weight)) == null ) {
+			throw new IllegalArgumentException("Edge not found: " + vertex + " -> " + target);
+		}
+		return this;
+	}
+
 	@Override
 	public VertexType getVertex() {
 		return vertex;
@@ -45,17 +95,17 @@ public class GraphNodeImpl<VertexType> implements GraphNode<VertexType> {
 
 	@Override
 	public boolean isNeighbor(VertexType vertex) {
-		return edges.containsKey(vertex);
+		return edges().containsKey(vertex);
 	}
 
 	@Override
 	public Collection<VertexType> getNeighbors() {
-		return edges.keySet();
+		return edges().keySet();
 	}
 	
 	@Override
 	public Collection<GraphEdge<VertexType>> getEdges() {
-		return edges.values();
+		return edges().values();
 	}
 	
 	@Override
@@ -79,7 +129,7 @@ public class GraphNodeImpl<VertexType> implements GraphNode<VertexType> {
 		GraphNodeImpl<?> o = (GraphNodeImpl<?>) other;
 		return new EqualsBuilder()
 				.append(o.vertex, vertex)
-				.append(o.edges, edges)
+				.append(o.edges(), edges())
 				.build();
 	}
 
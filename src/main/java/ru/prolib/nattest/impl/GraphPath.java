@@ -0,0 +1,106 @@
+package ru.prolib.nattest.impl;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Unmodifiable list of vertices of a path. Vertices are resolved on access and weights of edges
+ * are looked up on the first request.
+ */
+public class GraphPath<VertexType> extends AbstractList<VertexType> implements RandomAccess {
+	private final IndexedGraph<VertexType> graph;
+	private final int[] ids;
+	private volatile double cost;
+	private volatile double[] weights;
+
+	// NaN cost is calculated from weights of edges
+	GraphPath(IndexedGraph<VertexType> graph, int[] ids, double cost, double[] weights) {
+		this.graph = graph;
+		this.ids = ids;
+		this.cost = cost;
+		this.weights = weights;
+	}
+
+	GraphPath(IndexedGraph<VertexType> graph, int[] ids, double cost) {
+		this(graph, ids, cost, null);
+	}
+
+	GraphPath(IndexedGraph<VertexType> graph, int[] ids) {
+		this(graph, ids, Double.NaN);
+	}
+
+	@Override
+	public VertexType get(int index) {
+		return graph.getVertex(ids[index]);
+	}
+
+	@Override
+	public int size() {
+		return ids.length;
+	}
+
+	public VertexType getSource() {
+		return get(0);
+	}
+
+	public VertexType getTarget() {
+		return get(ids.length - 1);
+	}
+
+	public int getHopCount() {
+		return ids.length - 1;
+	}
+
+	public double getWeight(int hop) {
+		if ( hop < 0 || hop >= ids.length - 1 ) {
+			throw new IndexOutOfBoundsException("Hop out of range: " + hop);
+		}
+		return getWeights()[hop];
+	}
+
+	public double getCost() {
+		double cost = this.cost;
+		if ( Double.isNaN(cost) ) {
+			cost = 0;
+			for ( double weight : getWeights() ) {
+				cost += weight;
+			}
+			this.cost = cost;
+		}
+		return cost;
+	}
+
+	int getVertexId(int index) {
+		return ids[index];
+	}
+
+	// For graphs which may change: the path doesn't access edges of the graph later
+	GraphPath<VertexType> resolve() {
+		getWeights();
+		getCost();
+		return this;
+	}
+
+	private double[] getWeights() {
+		double[] weights = this.weights;
+		if ( weights == null ) {
+			// Computed values are the same, so concurrent calls just may repeat the work
+			weights = new double[ids.length - 1];
+			for ( int i = 0; i < weights.length; i ++ ) {
+				weights[i] = findWeight(graph, ids[i], ids[i + 1]);
+			}
+			this.weights = weights;
+		}
+		return weights;
+	}
+
+	static double findWeight(IndexedGraph<?> graph, int source, int target) {
+		for ( int i = 0, degree = graph.getDegree(source); i < degree; i ++ ) {
+			if ( graph.getTarget(source, i) == target ) {
+				return graph.getWeight(source, i);
+			}
+		}
+		throw new IllegalStateException("Edge not found: " + graph.getVertex(source) + " -> " + graph.getVertex(target));
+	}
+
+}
@@ -0,0 +1,561 @@
+package ru.prolib.nattest.impl;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable version of a graph. The next version copies only the chunks of adjacency which
+ * were changed and shares the rest. Removed vertices have no adjacency.
+ */
+public class GraphSnapshot<VertexType> extends AbstractIndexedGraph<VertexType> {
+	static final int CHUNK_BITS = VertexDictionary.CHUNK_BITS,
+			CHUNK_SIZE = VertexDictionary.CHUNK_SIZE,
+			CHUNK_MASK = VertexDictionary.CHUNK_MASK;
+	private static final AtomicLong generations = new AtomicLong();
+
+	/**
+	 * Edges of one vertex. Versions share the arrays while edges are only appended past the end
+	 * of the range. Modified in place only by the editor of the same generation.
+	 */
+	static final class Adjacency {
+		static final Adjacency EMPTY = new Adjacency(0, new int[0], new double[0], 0, 0, null);
+		final long generation;
+		int[] targets;
+		double[] weights;
+		int offset, size;
+		// Shared number of used elements of the arrays. Null if the arrays cannot be appended.
+		int[] used;
+
+		Adjacency(long generation, int[] targets, double[] weights, int offset, int size, int[] used) {
+			this.generation = generation;
+			this.targets = targets;
+			this.weights = weights;
+			this.offset = offset;
+			this.size = size;
+			this.used = used;
+		}
+
+		Adjacency share(long generation) {
+			return new Adjacency(generation, targets, weights, offset, size, used);
+		}
+
+		int indexOf(int target) {
+			for ( int i = 0; i < size; i ++ ) {
+				if ( targets[offset + i] == target ) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Make own copy of the arrays to modify existing elements.
+		 */
+		private void detach(int capacity) {
+			int[] new_targets = new int[capacity];
+			double[] new_weights = new double[capacity];
+			System.arraycopy(targets, offset, new_targets, 0, size);
+			System.arraycopy(weights, offset, new_weights, 0, size);
+			targets = new_targets;
+			weights = new_weights;
+			offset = 0;
+			used = new int[] { size };
+		}
+
+		void remove(int index) {
+			detach(size);
+			System.arraycopy(targets, index + 1, targets, index, size - index - 1);
+			System.arraycopy(weights, index + 1, weights, index, size - index - 1);
+			size --;
+			used[0] = size;
+		}
+
+		void setWeight(int index, double weight) {
+			detach(size);
+			weights[index] = weight;
+		}
+
+		void append(int target, double weight) {
+			int end = offset + size;
+			if ( used == null || used[0] != end || end == targets.length ) {
+				detach(Math.max(4, size * 2));
+				end = size;
+			}
+			targets[end] = target;
+			weights[end] = weight;
+			used[0] = end + 1;
+			size ++;
+		}
+
+	}
+
+	private static final class Table {
+		private final long generation;
+		private Adjacency[][] chunks;
+		private boolean[] owned;
+
+		Table(long generation, Adjacency[][] chunks) {
+			this.generation = generation;
+			this.chunks = chunks.clone();
+			this.owned = new boolean[this.chunks.length];
+		}
+
+		Adjacency get(int id) {
+			return getAdjacency(chunks, id);
+		}
+
+		private Adjacency[] own(int chunk) {
+			if ( chunk >= chunks.length ) {
+				int length = Math.max(chunk + 1, chunks.length * 2);
+				chunks = Arrays.copyOf(chunks, length);
+				owned = Arrays.copyOf(owned, length);
+			}
+			if ( owned[chunk] == false ) {
+				chunks[chunk] = chunks[chunk] == null ? new Adjacency[CHUNK_SIZE] : chunks[chunk].clone();
+				owned[chunk] = true;
+			}
+			return chunks[chunk];
+		}
+
+		void set(int id, Adjacency adjacency) {
+			own(id >>> CHUNK_BITS)[id & CHUNK_MASK] = adjacency;
+		}
+
+		Adjacency mutable(int id) {
+			Adjacency adjacency = get(id);
+			if ( adjacency.generation != generation ) {
+				set(id, adjacency = adjacency.share(generation));
+			}
+			return adjacency;
+		}
+
+	}
+
+	/**
+	 * Builder of the next version. Not thread-safe and should not be used after publication.
+	 */
+	public static class Editor<VertexType> {
+		private final GraphSnapshot<VertexType> base;
+		private final Table out, in;
+		private final EdgeLog added = new EdgeLog(), removed = new EdgeLog();
+		private int vertexCount, edgeCount;
+		private long edgeSequence;
+		private WeightRange weights;
+		private boolean rebuildComponents;
+
+		Editor(GraphSnapshot<VertexType> base) {
+			long generation = generations.incrementAndGet();
+			this.base = base;
+			this.out = new Table(generation, base.out);
+			this.in = base.undirected ? out : new Table(generation, base.in);
+			this.vertexCount = base.vertexCount;
+			this.edgeCount = base.edgeCount;
+			this.edgeSequence = base.edgeSequence;
+			this.weights = base.weights;
+		}
+
+		private void trackWeight(double weight) {
+			// Removals don't narrow the range until all edges are removed
+			weights = (edgeCount == 0 ? WeightRange.EMPTY : weights).add(weight);
+		}
+
+		public int addVertex(VertexType vertex) {
+			int id = base.dictionary.add(vertex);
+			if ( id >= vertexCount ) {
+				vertexCount = id + 1;
+			}
+			if ( out.get(id) == null ) {
+				// A vertex removed before is not counted by the index of components
+				rebuildComponents |= id < base.vertexCount;
+				out.set(id, Adjacency.EMPTY);
+				if ( in != out ) {
+					in.set(id, Adjacency.EMPTY);
+				}
+			}
+			return id;
+		}
+
+		public void addEdge(VertexType source, VertexType target, double weight) {
+			int source_id = addVertex(source), target_id = addVertex(target);
+			trackWeight(weight);
+			out.mutable(source_id).append(target_id, weight);
+			// For undirected graph the reverse direction goes to the same table
+			in.mutable(target_id).append(source_id, weight);
+			edgeCount += base.undirected ? 2 : 1;
+			edgeSequence ++;
+			added.add(source_id, target_id, weight);
+		}
+
+		private int getId(VertexType vertex) {
+			int id = base.dictionary.getId(vertex);
+			if ( id < 0 || id >= vertexCount || out.get(id) == null ) {
+				throw new IllegalArgumentException("Vertex not found: " + vertex);
+			}
+			return id;
+		}
+
+		private int getIndex(Adjacency adjacency, int sourceId, int targetId) {
+			int index = adjacency.indexOf(targetId);
+			if ( index < 0 ) {
+				throw new IllegalArgumentException("Edge not found: "
+						+ base.dictionary.getVertex(sourceId) + " -> " + base.dictionary.getVertex(targetId));
+			}
+			return index;
+		}
+
+		private double removeEdge(int sourceId, int targetId) {
+			Adjacency adjacency = out.mutable(sourceId);
+			int index = getIndex(adjacency, sourceId, targetId);
+			double weight = adjacency.weights[adjacency.offset + index];
+			adjacency.remove(index);
+			adjacency = in.mutable(targetId);
+			adjacency.remove(getIndex(adjacency, targetId, sourceId));
+			edgeCount -= base.undirected ? 2 : 1;
+			removed.add(sourceId, targetId, weight);
+			rebuildComponents = true;
+			return weight;
+		}
+
+		/**
+		 * Remove edge.
+		 * <p>
+		 * @param source - source vertex
+		 * @param target - target vertex
+		 * @throws IllegalArgumentException - vertex or edge not found
+		 */
+		public void removeEdge(VertexType source, VertexType target) {
+			removeEdge(getId(source), getId(target));
+			edgeSequence ++;
+		}
+
+		/**
+		 * Change weight of edge.
+		 * <p>
+		 * @param source - source vertex
+		 * @param target - target vertex
+		 * @param weight - new weight
+		 * @throws IllegalArgumentException - vertex or edge not found
+		 */
+		public void updateWeight(VertexType source, VertexType target, double weight) {
+			int source_id = getId(source), target_id = getId(target);
+			Adjacency adjacency = out.mutable(source_id);
+			int index = getIndex(adjacency, source_id, target_id);
+			double old_weight = adjacency.weights[adjacency.offset + index];
+			adjacency.setWeight(index, weight);
+			trackWeight(weight);
+			adjacency = in.mutable(target_id);
+			adjacency.setWeight(getIndex(adjacency, target_id, source_id), weight);
+			edgeSequence ++;
+			// Cheaper edge works as new one while more expensive works as removed one
+			if ( weight < old_weight ) {
+				added.add(source_id, target_id, weight);
+			} else if ( weight > old_weight ) {
+				removed.add(source_id, target_id, old_weight);
+			}
+		}
+
+		/**
+		 * Remove vertex with all its edges.
+		 * <p>
+		 * @param vertex - vertex
+		 * @throws IllegalArgumentException - vertex not found
+		 */
+		public void removeVertex(VertexType vertex) {
+			int id = getId(vertex);
+			Adjacency adjacency = out.get(id);
+			while ( adjacency.size > 0 ) {
+				removeEdge(id, adjacency.targets[adjacency.offset + adjacency.size - 1]);
+				adjacency = out.get(id);
+			}
+			adjacency = in.get(id);
+			while ( adjacency.size > 0 ) {
+				removeEdge(adjacency.targets[adjacency.offset + adjacency.size - 1], id);
+				adjacency = in.get(id);
+			}
+			out.set(id, null);
+			in.set(id, null);
+			rebuildComponents = true;
+			edgeSequence ++;
+		}
+
+		/**
+		 * Get edges which were added or became cheaper.
+		 * <p>
+		 * @return edges by ids. Undirected edge is listed once.
+		 */
+		public EdgeLog getAddedEdges() {
+			return added;
+		}
+
+		/**
+		 * Get edges which were removed or became more expensive.
+		 * <p>
+		 * @return edges by ids with the previous weights. Undirected edge is listed once.
+		 */
+		public EdgeLog getRemovedEdges() {
+			return removed;
+		}
+
+		public GraphSnapshot<VertexType> publish(long sequence) {
+			GraphSnapshot<VertexType> snapshot = new GraphSnapshot<>(base.undirected, base.dictionary, sequence,
+					edgeSequence, vertexCount, edgeCount, weights, out.chunks, in.chunks, null);
+			// Components cannot be split, so removals leave the new version without the index
+			ComponentIndex components = rebuildComponents ? null : base.takeComponentIndex();
+			if ( components != null ) {
+				components = components.grow(vertexCount);
+				for ( int i = 0; i < added.size(); i ++ ) {
+					components = components.union(added.getSource(i), added.getTarget(i));
+				}
+				snapshot.setComponentIndex(components);
+			}
+			return snapshot;
+		}
+
+	}
+
+	/**
+	 * List of edges given by vertex ids.
+	 */
+	public static class EdgeLog {
+		// Most versions change a few edges, so arrays are allocated on demand
+		private int[] sources = new int[0], targets = new int[0];
+		private double[] weights = new double[0];
+		private int size;
+
+		void add(int source, int target, double weight) {
+			if ( size == sources.length ) {
+				int capacity = Math.max(4, size * 2);
+				sources = Arrays.copyOf(sources, capacity);
+				targets = Arrays.copyOf(targets, capacity);
+				weights = Arrays.copyOf(weights, capacity);
+			}
+			sources[size] = source;
+			targets[size] = target;
+			weights[size] = weight;
+			size ++;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public int getSource(int index) {
+			return sources[index];
+		}
+
+		public int getTarget(int index) {
+			return targets[index];
+		}
+
+		public double getWeight(int index) {
+			return weights[index];
+		}
+
+	}
+
+	private final boolean undirected;
+	private final VertexDictionary<VertexType> dictionary;
+	private final long sequence, edgeSequence;
+	private final int vertexCount, edgeCount;
+	private final WeightRange weights;
+	private final Adjacency[][] out, in;
+	private volatile GraphSnapshot<VertexType> reverse;
+	private final AtomicBoolean componentsTaken = new AtomicBoolean();
+
+	GraphSnapshot(boolean undirected,
+			VertexDictionary<VertexType> dictionary,
+			long sequence,
+			long edgeSequence,
+			int vertexCount,
+			int edgeCount,
+			WeightRange weights,
+			Adjacency[][] out,
+			Adjacency[][] in,
+			GraphSnapshot<VertexType> reverse)
+	{
+		this.undirected = undirected;
+		this.dictionary = dictionary;
+		this.sequence = sequence;
+		this.edgeSequence = edgeSequence;
+		this.vertexCount = vertexCount;
+		this.edgeCount = edgeCount;
+		this.weights = weights;
+		this.out = out;
+		this.in = in;
+		this.reverse = undirected ? this : reverse;
+	}
+
+	public static <VertexType> GraphSnapshot<VertexType> empty(GraphType type) {
+		Adjacency[][] out = new Adjacency[1][], in = type == GraphType.UNDIRECTED ? out : new Adjacency[1][];
+		GraphSnapshot<VertexType> snapshot = new GraphSnapshot<>(type == GraphType.UNDIRECTED,
+				new VertexDictionary<>(), 0, 0, 0, 0, WeightRange.EMPTY, out, in, null);
+		// Versions based on this one update the index as edges are added
+		snapshot.setComponentIndex(new ComponentIndex(0));
+		return snapshot;
+	}
+
+	public static <VertexType> GraphSnapshot<VertexType> of(CsrGraph<VertexType> graph) {
+		return of(graph, graph.getDictionary().copy());
+	}
+
+	// New versions extend the dictionary: share it only if no one else extends it
+	static <VertexType> GraphSnapshot<VertexType> of(CsrGraph<VertexType> graph,
+			VertexDictionary<VertexType> dictionary)
+	{
+		int n = graph.getVertexCount(), chunk_count = Math.max(1, (n + CHUNK_MASK) >>> CHUNK_BITS);
+		Adjacency[][] out = toTable(graph, chunk_count),
+				in = graph.isUndirected() ? out : toTable(graph.getReverse(), chunk_count);
+		GraphSnapshot<VertexType> snapshot = new GraphSnapshot<>(graph.isUndirected(), dictionary, 0, 0, n,
+				graph.getEdgeCount(), graph.getWeightRange(), out, in, null);
+		// Versions based on this one update the index as edges are added
+		snapshot.setComponentIndex(ComponentIndex.of(graph));
+		return snapshot;
+	}
+
+	private static Adjacency[][] toTable(CsrGraph<?> graph, int chunkCount) {
+		int n = graph.getVertexCount();
+		int[] targets = graph.getTargetArray();
+		double[] weights = graph.getWeightArray();
+		Adjacency[][] table = new Adjacency[chunkCount][];
+		for ( int id = 0; id < n; id ++ ) {
+			if ( (id & CHUNK_MASK) == 0 ) {
+				table[id >>> CHUNK_BITS] = new Adjacency[CHUNK_SIZE];
+			}
+			// Ranges of CSR arrays are packed and cannot be appended
+			table[id >>> CHUNK_BITS][id & CHUNK_MASK] = new Adjacency(0, targets, weights,
+					graph.getOffset(id), graph.getDegree(id), null);
+		}
+		return table;
+	}
+
+	private static Adjacency getAdjacency(Adjacency[][] table, int id) {
+		int chunk = id >>> CHUNK_BITS;
+		if ( chunk >= table.length || table[chunk] == null ) {
+			return null;
+		}
+		return table[chunk][id & CHUNK_MASK];
+	}
+
+	// Number of modifications applied to build this version
+	public long getSequence() {
+		return sequence;
+	}
+
+	// Number of modifications of edges applied to build this version
+	public long getEdgeSequence() {
+		return edgeSequence;
+	}
+
+	VertexDictionary<VertexType> getDictionary() {
+		return dictionary;
+	}
+
+	// The index has a single writer: only the first editor based on this version gets it
+	private ComponentIndex takeComponentIndex() {
+		ComponentIndex components = peekComponentIndex();
+		return components != null && componentsTaken.compareAndSet(false, true) ? components : null;
+	}
+
+	public Editor<VertexType> edit() {
+		return new Editor<>(this);
+	}
+
+	@Override
+	public boolean isUndirected() {
+		return undirected;
+	}
+
+	@Override
+	public int getVertexCount() {
+		return vertexCount;
+	}
+
+	public int getEdgeCount() {
+		// Each edge of undirected graph is stored twice: one time per direction
+		return edgeCount;
+	}
+
+	@Override
+	public WeightRange getWeightRange() {
+		return weights;
+	}
+
+	@Override
+	boolean hasVertex(int id) {
+		return getAdjacency(out, id) != null;
+	}
+
+	@Override
+	public int getVertexId(VertexType vertex) {
+		int id = dictionary.getId(vertex);
+		// Vertices added after this version was published are not visible
+		return id >= 0 && id < vertexCount && getAdjacency(out, id) != null ? id : -1;
+	}
+
+	@Override
+	public VertexType getVertex(int id) {
+		return dictionary.getVertex(id);
+	}
+
+	Adjacency[] getChunk(int index) {
+		return out[index];
+	}
+
+	@Override
+	public int getDegree(int id) {
+		Adjacency adjacency = out[id >>> CHUNK_BITS][id & CHUNK_MASK];
+		return adjacency == null ? 0 : adjacency.size;
+	}
+
+	@Override
+	public int getTarget(int id, int index) {
+		Adjacency adjacency = out[id >>> CHUNK_BITS][id & CHUNK_MASK];
+		return adjacency.targets[adjacency.offset + index];
+	}
+
+	@Override
+	public double getWeight(int id, int index) {
+		Adjacency adjacency = out[id >>> CHUNK_BITS][id & CHUNK_MASK];
+		return adjacency.weights[adjacency.offset + index];
+	}
+
+	@Override
+	public GraphSnapshot<VertexType> getReverse() {
+		GraphSnapshot<VertexType> reverse = this.reverse;
+		if ( reverse == null ) {
+			this.reverse = reverse = new GraphSnapshot<>(undirected, dictionary, sequence, edgeSequence,
+					vertexCount, edgeCount, weights, in, out, this);
+		}
+		return reverse;
+	}
+
+	public CsrGraph<VertexType> compact() {
+		int[] new_ids = new int[vertexCount];
+		int n = 0;
+		for ( int id = 0; id < vertexCount; id ++ ) {
+			new_ids[id] = getAdjacency(out, id) == null ? -1 : n ++;
+		}
+		VertexDictionary<VertexType> dictionary = new VertexDictionary<>(n);
+		int[] offsets = new int[n + 1], targets = new int[edgeCount];
+		double[] weights = new double[edgeCount];
+		int edge_id = 0;
+		for ( int id = 0; id < vertexCount; id ++ ) {
+			int new_id = new_ids[id];
+			if ( new_id < 0 ) {
+				continue;
+			}
+			dictionary.add(getVertex(id));
+			offsets[new_id] = edge_id;
+			Adjacency adjacency = out[id >>> CHUNK_BITS][id & CHUNK_MASK];
+			for ( int i = 0; i < adjacency.size; i ++ ) {
+				targets[edge_id] = new_ids[adjacency.targets[adjacency.offset + i]];
+				weights[edge_id] = adjacency.weights[adjacency.offset + i];
+				edge_id ++;
+			}
+		}
+		offsets[n] = edge_id;
+		return new CsrGraph<>(undirected, dictionary, offsets, targets, weights, null);
+	}
+
+}
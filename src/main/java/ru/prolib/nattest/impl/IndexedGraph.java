@@ -0,0 +1,18 @@
+package ru.prolib.nattest.impl;
+
+/**
+ * Read-only view of a graph where vertices are addressed by dense int identifiers
+ * in range [0, getVertexCount()). Search engines work with this view only.
+ */
+public interface IndexedGraph<VertexType> {
+	boolean isUndirected();
+	int getVertexCount();
+	int getVertexId(VertexType vertex);
+	VertexType getVertex(int id);
+	int getDegree(int id);
+	int getTarget(int id, int index);
+	double getWeight(int id, int index);
+	
+	// Undirected graph is reversed to itself
+	IndexedGraph<VertexType> getReverse();
+}
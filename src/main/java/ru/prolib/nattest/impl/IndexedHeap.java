@@ -0,0 +1,163 @@
+package ru.prolib.nattest.impl;
+
+import java.util.Arrays;
+
+/**
+ * Indexed 4-ary min-heap of int elements with double keys.
+ * <p>
+ * Elements are integers in range [0, capacity). Each element may be in the heap only once.
+ * The position of each element is tracked to support key decrease without duplicates.
+ */
+public class IndexedHeap {
+	private static final int ARITY_SHIFT = 2;
+	
+	private final int[] heap, pos;
+	private final double[] keys;
+	private int size, polls, updates, peakSize;
+	
+	public IndexedHeap(int capacity) {
+		heap = new int[capacity];
+		keys = new double[capacity];
+		pos = new int[capacity];
+		Arrays.fill(pos, -1);
+	}
+	
+	public int getCapacity() {
+		return pos.length;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	// Counters are reset on clear
+	public int getPollCount() {
+		return polls;
+	}
+	
+	public int getUpdateCount() {
+		return updates;
+	}
+	
+	public int getPeakSize() {
+		return peakSize;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	public boolean contains(int element) {
+		return pos[element] >= 0;
+	}
+	
+	public double getKey(int element) {
+		int index = pos[element];
+		if ( index < 0 ) {
+			throw new IllegalArgumentException("Element not found: " + element);
+		}
+		return keys[index];
+	}
+	
+	/**
+	 * Add element or change key of the element if it is already in the heap.
+	 * <p>
+	 * @param element - element
+	 * @param key - new key
+	 */
+	public void update(int element, double key) {
+		int index = pos[element];
+		updates ++;
+		if ( index < 0 ) {
+			siftUp(size ++, element, key);
+			if ( size > peakSize ) {
+				peakSize = size;
+			}
+		} else if ( key < keys[index] ) {
+			siftUp(index, element, key);
+		} else {
+			siftDown(index, element, key);
+		}
+	}
+	
+	public double peekKey() {
+		if ( size == 0 ) {
+			throw new IllegalStateException("Heap is empty");
+		}
+		return keys[0];
+	}
+	
+	public int peek() {
+		if ( size == 0 ) {
+			throw new IllegalStateException("Heap is empty");
+		}
+		return heap[0];
+	}
+	
+	public int poll() {
+		if ( size == 0 ) {
+			throw new IllegalStateException("Heap is empty");
+		}
+		int result = heap[0];
+		pos[result] = -1;
+		polls ++;
+		if ( -- size > 0 ) {
+			siftDown(0, heap[size], keys[size]);
+		}
+		return result;
+	}
+	
+	public void clear() {
+		for ( int i = 0; i < size; i ++ ) {
+			pos[heap[i]] = -1;
+		}
+		size = polls = updates = peakSize = 0;
+	}
+	
+	private void siftUp(int index, int element, double key) {
+		while ( index > 0 ) {
+			int parent = (index - 1) >>> ARITY_SHIFT;
+			if ( keys[parent] <= key ) {
+				break;
+			}
+			move(parent, index);
+			index = parent;
+		}
+		set(index, element, key);
+	}
+	
+	private void siftDown(int index, int element, double key) {
+		for ( ;; ) {
+			int first = (index << ARITY_SHIFT) + 1;
+			if ( first >= size ) {
+				break;
+			}
+			int child = first;
+			for ( int i = first + 1, last = Math.min(first + (1 << ARITY_SHIFT), size); i < last; i ++ ) {
+				if ( keys[i] < keys[child] ) {
+					child = i;
+				}
+			}
+			if ( key <= keys[child] ) {
+				break;
+			}
+			move(child, index);
+			index = child;
+		}
+		set(index, element, key);
+	}
+	
+	private void move(int from, int to) {
+		int element = heap[from];
+		heap[to] = element;
+		keys[to] = keys[from];
+		pos[element] = to;
+	}
+	
+	private void set(int index, int element, double key) {
+		heap[index] = element;
+		keys[index] = key;
+		pos[element] = index;
+	}
+
+}
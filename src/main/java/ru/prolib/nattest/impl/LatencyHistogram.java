@@ -0,0 +1,77 @@
+package ru.prolib.nattest.impl;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent histogram of durations. Bucket K counts values in range [2^(K-1), 2^K), so
+ * percentiles are accurate within factor of two.
+ */
+public class LatencyHistogram {
+	private static final int BUCKETS = 64;
+	private final LongAdder[] buckets = new LongAdder[BUCKETS];
+	private final LongAdder total = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	public LatencyHistogram() {
+		for ( int i = 0; i < BUCKETS; i ++ ) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	public void record(long nanos) {
+		if ( nanos < 0 ) {
+			nanos = 0;
+		}
+		buckets[Long.SIZE - Long.numberOfLeadingZeros(nanos)].increment();
+		total.add(nanos);
+		max.accumulate(nanos);
+	}
+
+	public long getCount() {
+		long count = 0;
+		for ( LongAdder bucket : buckets ) {
+			count += bucket.sum();
+		}
+		return count;
+	}
+
+	public long getTotal() {
+		return total.sum();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		long count = getCount();
+		return count == 0 ? 0.0d : (double) getTotal() / count;
+	}
+
+	// Upper bound of the bucket which contains the percentile
+	public long getPercentile(double percentile) {
+		long[] counts = new long[BUCKETS];
+		long count = 0;
+		for ( int i = 0; i < BUCKETS; i ++ ) {
+			count += counts[i] = buckets[i].sum();
+		}
+		long rank = (long) Math.ceil(count * percentile / 100.0d), seen = 0;
+		for ( int i = 0; i < BUCKETS; i ++ ) {
+			if ( (seen += counts[i]) >= rank && counts[i] > 0 ) {
+				return Math.min(i == 0 ? 0 : (1L << i) - 1, getMax());
+			}
+		}
+		return 0;
+	}
+
+	// Values which are recorded concurrently may be lost
+	public void reset() {
+		for ( LongAdder bucket : buckets ) {
+			bucket.reset();
+		}
+		total.reset();
+		max.reset();
+	}
+
+}
@@ -0,0 +1,60 @@
+package ru.prolib.nattest.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only file mapped to memory by segments: a single mapping is limited to 2GB.
+ * Numbers must be aligned to their size to not cross a segment boundary.
+ */
+final class MappedBuffer {
+	static final int SEGMENT_BITS = 30;
+	private final ByteBuffer[] segments;
+	private final int segmentBits;
+	private final long segmentMask, size;
+
+	MappedBuffer(FileChannel channel, int segmentBits) throws IOException {
+		this.size = channel.size();
+		this.segmentBits = segmentBits;
+		this.segmentMask = (1L << segmentBits) - 1;
+		int count = (int) ((size + segmentMask) >>> segmentBits);
+		this.segments = new ByteBuffer[count];
+		for ( int i = 0; i < count; i ++ ) {
+			long position = (long) i << segmentBits;
+			segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+					Math.min(segmentMask + 1, size - position));
+		}
+	}
+
+	MappedBuffer(FileChannel channel) throws IOException {
+		this(channel, SEGMENT_BITS);
+	}
+
+	long size() {
+		return size;
+	}
+
+	byte get(long position) {
+		return segments[(int) (position >>> segmentBits)].get((int) (position & segmentMask));
+	}
+
+	int getInt(long position) {
+		return segments[(int) (position >>> segmentBits)].getInt((int) (position & segmentMask));
+	}
+
+	long getLong(long position) {
+		return segments[(int) (position >>> segmentBits)].getLong((int) (position & segmentMask));
+	}
+
+	double getDouble(long position) {
+		return segments[(int) (position >>> segmentBits)].getDouble((int) (position & segmentMask));
+	}
+
+	void get(long position, byte[] dest) {
+		for ( int i = 0; i < dest.length; i ++ ) {
+			dest[i] = get(position + i);
+		}
+	}
+
+}
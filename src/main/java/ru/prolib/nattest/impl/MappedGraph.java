@@ -0,0 +1,291 @@
+package ru.prolib.nattest.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Read-only graph which is queried directly from memory-mapped file.
+ * All numbers are big-endian and aligned to their size:
+ * <pre>
+ * header      int magic, int version, int flags, int vertexCount,
+ *             long edgeCount, int hashCapacity, int reserved,
+ *             double minWeight, double maxWeight
+ * records     long[vertexCount + 1] - offsets of encoded vertices in the vertex section
+ * hash        int[hashCapacity] - vertex id + 1, 0 for empty slot
+ * offsets     long[vertexCount + 1]
+ * targets     int[edgeCount]
+ * weights     double[edgeCount]
+ * reverse     offsets, targets and weights of the reversed graph, only if the graph is directed
+ * vertices    encoded vertices
+ * </pre>
+ */
+public class MappedGraph<VertexType> extends AbstractIndexedGraph<VertexType> {
+	static final int MAGIC = 0x4E475246, VERSION = 2, FLAG_UNDIRECTED = 1, FLAG_INTEGRAL_WEIGHTS = 2,
+			HEADER_SIZE = 48;
+	// The greatest power of two which is a valid length of int array
+	static final int MAX_HASH_CAPACITY = 1 << 30;
+
+	static class Layout {
+		final int vertexCount, hashCapacity;
+		final long edgeCount, records, hash, offsets, targets, weights,
+			reverseOffsets, reverseTargets, reverseWeights, vertices;
+
+		Layout(boolean undirected, int vertexCount, long edgeCount, int hashCapacity) {
+			this.vertexCount = vertexCount;
+			this.edgeCount = edgeCount;
+			this.hashCapacity = hashCapacity;
+			records = HEADER_SIZE;
+			hash = records + 8L * (vertexCount + 1);
+			offsets = align(hash + 4L * hashCapacity);
+			targets = offsets + 8L * (vertexCount + 1);
+			weights = align(targets + 4L * edgeCount);
+			long end = weights + 8L * edgeCount;
+			if ( undirected ) {
+				reverseOffsets = offsets;
+				reverseTargets = targets;
+				reverseWeights = weights;
+			} else {
+				reverseOffsets = end;
+				reverseTargets = reverseOffsets + 8L * (vertexCount + 1);
+				reverseWeights = align(reverseTargets + 4L * edgeCount);
+				end = reverseWeights + 8L * edgeCount;
+			}
+			vertices = end;
+		}
+
+		static long align(long position) {
+			return (position + 7) & ~7L;
+		}
+
+	}
+
+	private final MappedBuffer buffer;
+	private final VertexCodec<VertexType> codec;
+	private final boolean undirected;
+	private final Layout layout;
+	private final long offsets, targets, weights;
+	private final WeightRange weightRange;
+	private final MappedGraph<VertexType> reverse;
+
+	private MappedGraph(MappedBuffer buffer, VertexCodec<VertexType> codec, boolean undirected, Layout layout,
+			WeightRange weightRange)
+	{
+		this.buffer = buffer;
+		this.codec = codec;
+		this.undirected = undirected;
+		this.layout = layout;
+		this.weightRange = weightRange;
+		this.offsets = layout.offsets;
+		this.targets = layout.targets;
+		this.weights = layout.weights;
+		this.reverse = undirected ? this : new MappedGraph<>(this);
+	}
+
+	private MappedGraph(MappedGraph<VertexType> forward) {
+		this.buffer = forward.buffer;
+		this.codec = forward.codec;
+		this.undirected = forward.undirected;
+		this.layout = forward.layout;
+		this.weightRange = forward.weightRange;
+		this.offsets = layout.reverseOffsets;
+		this.targets = layout.reverseTargets;
+		this.weights = layout.reverseWeights;
+		this.reverse = forward;
+	}
+
+	public static <VertexType> MappedGraph<VertexType> open(Path file, VertexCodec<VertexType> codec)
+			throws IOException
+	{
+		MappedBuffer buffer;
+		// The mapping stays valid after the channel is closed
+		try ( FileChannel channel = FileChannel.open(file, StandardOpenOption.READ) ) {
+			if ( channel.size() < HEADER_SIZE ) {
+				throw new IOException("Unsupported file format: " + file);
+			}
+			buffer = new MappedBuffer(channel);
+		}
+		if ( buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION ) {
+			throw new IOException("Unsupported file format: " + file);
+		}
+		int flags = buffer.getInt(8);
+		boolean undirected = (flags & FLAG_UNDIRECTED) != 0;
+		Layout layout = new Layout(undirected, buffer.getInt(12), buffer.getLong(16), buffer.getInt(24));
+		if ( layout.vertices > buffer.size() || layout.vertices + buffer.getLong(layout.hash - 8) != buffer.size() ) {
+			throw new IOException("File is truncated: " + file);
+		}
+		WeightRange weights = WeightRange.of(buffer.getDouble(32), buffer.getDouble(40),
+				(flags & FLAG_INTEGRAL_WEIGHTS) != 0);
+		return new MappedGraph<>(buffer, codec, undirected, layout, weights);
+	}
+
+	public static <VertexType> void write(Path file, CsrGraph<VertexType> graph, VertexCodec<VertexType> codec)
+			throws IOException
+	{
+		int n = graph.getVertexCount(), hash_capacity = getHashCapacity(n);
+		byte[][] encoded = new byte[n][];
+		int[] hash = new int[hash_capacity];
+		for ( int id = 0; id < n; id ++ ) {
+			encoded[id] = codec.encode(graph.getVertex(id));
+			int slot = hash(encoded[id]) & (hash_capacity - 1);
+			while ( hash[slot] != 0 ) {
+				slot = (slot + 1) & (hash_capacity - 1);
+			}
+			hash[slot] = id + 1;
+		}
+		Layout layout = new Layout(graph.isUndirected(), n, graph.getEdgeCount(), hash_capacity);
+		WeightRange weights = graph.getWeightRange();
+		try ( DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file),
+				1 << 16)) )
+		{
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeInt((graph.isUndirected() ? FLAG_UNDIRECTED : 0)
+					| (weights.isIntegral() ? FLAG_INTEGRAL_WEIGHTS : 0));
+			output.writeInt(n);
+			output.writeLong(layout.edgeCount);
+			output.writeInt(hash_capacity);
+			output.writeInt(0);
+			output.writeDouble(weights.getMin());
+			output.writeDouble(weights.getMax());
+			long record = 0;
+			for ( int id = 0; id < n; id ++ ) {
+				output.writeLong(record);
+				record += encoded[id].length;
+			}
+			output.writeLong(record);
+			for ( int slot : hash ) {
+				output.writeInt(slot);
+			}
+			pad(output, layout.offsets - (layout.hash + 4L * hash_capacity));
+			writeEdges(output, graph, layout);
+			if ( graph.isUndirected() == false ) {
+				writeEdges(output, graph.getReverse(), layout);
+			}
+			for ( byte[] bytes : encoded ) {
+				output.write(bytes);
+			}
+		}
+	}
+
+	// Power of two which keeps the table at most half full
+	static int getHashCapacity(int vertexCount) {
+		long capacity = Long.highestOneBit(Math.max(vertexCount, 1)) * 4L;
+		if ( capacity > MAX_HASH_CAPACITY ) {
+			throw new IllegalArgumentException("Too many vertices: " + vertexCount);
+		}
+		return (int) capacity;
+	}
+
+	private static void writeEdges(DataOutputStream output, CsrGraph<?> graph, Layout layout) throws IOException {
+		int n = graph.getVertexCount();
+		for ( int id = 0; id <= n; id ++ ) {
+			output.writeLong(id == n ? layout.edgeCount : graph.getOffset(id));
+		}
+		for ( int target : graph.getTargetArray() ) {
+			output.writeInt(target);
+		}
+		pad(output, layout.weights - (layout.targets + 4L * layout.edgeCount));
+		for ( double weight : graph.getWeightArray() ) {
+			output.writeDouble(weight);
+		}
+	}
+
+	private static void pad(DataOutputStream output, long count) throws IOException {
+		for ( long i = 0; i < count; i ++ ) {
+			output.write(0);
+		}
+	}
+
+	private static int hash(byte[] bytes) {
+		int h = Arrays.hashCode(bytes);
+		return h ^ (h >>> 16);
+	}
+
+	@Override
+	public boolean isUndirected() {
+		return undirected;
+	}
+
+	@Override
+	public int getVertexCount() {
+		return layout.vertexCount;
+	}
+
+	public long getEdgeCount() {
+		return layout.edgeCount;
+	}
+
+	private long getRecord(int id) {
+		return buffer.getLong(layout.records + 8L * id);
+	}
+
+	@Override
+	public int getVertexId(VertexType vertex) {
+		byte[] key = codec.encode(vertex);
+		int mask = layout.hashCapacity - 1;
+		for ( int slot = hash(key) & mask; ; slot = (slot + 1) & mask ) {
+			int id = buffer.getInt(layout.hash + 4L * slot) - 1;
+			if ( id < 0 ) {
+				return -1;
+			}
+			long start = getRecord(id);
+			if ( getRecord(id + 1) - start == key.length && equals(layout.vertices + start, key) ) {
+				return id;
+			}
+		}
+	}
+
+	private boolean equals(long position, byte[] key) {
+		for ( int i = 0; i < key.length; i ++ ) {
+			if ( buffer.get(position + i) != key[i] ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public VertexType getVertex(int id) {
+		long start = getRecord(id);
+		byte[] bytes = new byte[(int) (getRecord(id + 1) - start)];
+		buffer.get(layout.vertices + start, bytes);
+		return codec.decode(bytes);
+	}
+
+	private long getOffset(int id) {
+		return buffer.getLong(offsets + 8L * id);
+	}
+
+	@Override
+	public int getDegree(int id) {
+		return (int) (getOffset(id + 1) - getOffset(id));
+	}
+
+	@Override
+	public int getTarget(int id, int index) {
+		return buffer.getInt(targets + 4L * (getOffset(id) + index));
+	}
+
+	@Override
+	public double getWeight(int id, int index) {
+		return buffer.getDouble(weights + 8L * (getOffset(id) + index));
+	}
+
+	@Override
+	public WeightRange getWeightRange() {
+		// Stored in the header: a scan would load all pages of weights
+		return weightRange;
+	}
+
+	@Override
+	public MappedGraph<VertexType> getReverse() {
+		return reverse;
+	}
+
+}
@@ -0,0 +1,156 @@
+package ru.prolib.nattest.impl;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Adjacency lists stored in direct memory. Each list occupies a region of 2^K targets followed
+ * by 2^K weights. Free lists of regions are stored in the freed regions. Not thread-safe.
+ */
+final class OffHeapAdjacency {
+	static final int SLAB_SIZE = 1 << 26, MIN_CAPACITY = 2;
+	private static final long NONE = -1L;
+	private final List<ByteBuffer> slabs = new ArrayList<>();
+	private final int slabSize;
+	private final long[] free = new long[32];
+	private long[] addresses;
+	private int[] sizes;
+	private ByteBuffer slab;
+	private long allocatedBytes, usedBytes;
+
+	OffHeapAdjacency(int expectedVertices, int slabSize) {
+		this.slabSize = slabSize;
+		this.addresses = new long[Math.max(expectedVertices, 16)];
+		this.sizes = new int[addresses.length];
+		Arrays.fill(free, NONE);
+	}
+
+	OffHeapAdjacency(int expectedVertices) {
+		this(expectedVertices, SLAB_SIZE);
+	}
+
+	long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	long getUsedBytes() {
+		return usedBytes;
+	}
+
+	long getHeapBytes() {
+		return addresses.length * (long) (Long.BYTES + Integer.BYTES);
+	}
+
+	int getDegree(int id) {
+		return id < sizes.length ? sizes[id] : 0;
+	}
+
+	int getTarget(int id, int index) {
+		long address = addresses[id];
+		return getSlab(address).getInt(getOffset(address) + index * Integer.BYTES);
+	}
+
+	double getWeight(int id, int index) {
+		long address = addresses[id];
+		int capacity = getCapacity(sizes[id]);
+		return getSlab(address).getDouble(getOffset(address) + capacity * Integer.BYTES + index * Double.BYTES);
+	}
+
+	int indexOf(int id, int target) {
+		int size = getDegree(id);
+		if ( size == 0 ) {
+			return -1;
+		}
+		long address = addresses[id];
+		ByteBuffer slab = getSlab(address);
+		int offset = getOffset(address);
+		for ( int i = 0; i < size; i ++ ) {
+			if ( slab.getInt(offset + i * Integer.BYTES) == target ) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	void add(int id, int target, double weight) {
+		if ( id >= sizes.length ) {
+			int length = Math.max(id + 1, sizes.length * 2);
+			addresses = Arrays.copyOf(addresses, length);
+			sizes = Arrays.copyOf(sizes, length);
+		}
+		int size = sizes[id], capacity = getCapacity(size);
+		if ( size == 0 ) {
+			addresses[id] = allocate(capacity);
+		} else if ( size == capacity ) {
+			long old_address = addresses[id], new_address = allocate(capacity * 2);
+			copy(old_address, capacity, new_address, capacity * 2, size);
+			release(old_address, capacity);
+			addresses[id] = new_address;
+			capacity *= 2;
+		}
+		long address = addresses[id];
+		ByteBuffer slab = getSlab(address);
+		int offset = getOffset(address);
+		slab.putInt(offset + size * Integer.BYTES, target);
+		slab.putDouble(offset + capacity * Integer.BYTES + size * Double.BYTES, weight);
+		sizes[id] = size + 1;
+	}
+
+	private void copy(long source, int sourceCapacity, long target, int targetCapacity, int size) {
+		ByteBuffer source_slab = getSlab(source), target_slab = getSlab(target);
+		int source_offset = getOffset(source), target_offset = getOffset(target);
+		for ( int i = 0; i < size; i ++ ) {
+			target_slab.putInt(target_offset + i * Integer.BYTES,
+					source_slab.getInt(source_offset + i * Integer.BYTES));
+			target_slab.putDouble(target_offset + targetCapacity * Integer.BYTES + i * Double.BYTES,
+					source_slab.getDouble(source_offset + sourceCapacity * Integer.BYTES + i * Double.BYTES));
+		}
+	}
+
+	private long allocate(int capacity) {
+		int size_class = Integer.numberOfTrailingZeros(capacity), bytes = getRegionSize(capacity);
+		usedBytes += bytes;
+		long address = free[size_class];
+		if ( address != NONE ) {
+			free[size_class] = getSlab(address).getLong(getOffset(address));
+			return address;
+		}
+		if ( slab == null || slab.remaining() < bytes ) {
+			slab = ByteBuffer.allocateDirect(Math.max(slabSize, bytes)).order(ByteOrder.nativeOrder());
+			slabs.add(slab);
+			allocatedBytes += slab.capacity();
+		}
+		address = (long) (slabs.size() - 1) << 32 | slab.position();
+		// Cast for compatibility of the bytecode with Java 8
+		((Buffer) slab).position(slab.position() + bytes);
+		return address;
+	}
+
+	private void release(long address, int capacity) {
+		int size_class = Integer.numberOfTrailingZeros(capacity);
+		getSlab(address).putLong(getOffset(address), free[size_class]);
+		free[size_class] = address;
+		usedBytes -= getRegionSize(capacity);
+	}
+
+	private ByteBuffer getSlab(long address) {
+		return slabs.get((int) (address >>> 32));
+	}
+
+	private static int getOffset(long address) {
+		return (int) address;
+	}
+
+	private static int getRegionSize(int capacity) {
+		return capacity * (Integer.BYTES + Double.BYTES);
+	}
+
+	static int getCapacity(int size) {
+		return size <= MIN_CAPACITY ? MIN_CAPACITY : Integer.highestOneBit(size - 1) << 1;
+	}
+
+}
@@ -0,0 +1,306 @@
+package ru.prolib.nattest.impl;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToDoubleBiFunction;
+
+/**
+ * Graph which keeps edges in direct memory, 12 bytes per edge direction.
+ * Modifications wait for running queries and block new ones.
+ */
+public class OffHeapGraph<VertexType> extends AbstractIndexedGraph<VertexType> {
+
+	private static class Reverse<VertexType> implements IndexedGraph<VertexType> {
+		private final OffHeapGraph<VertexType> graph;
+
+		Reverse(OffHeapGraph<VertexType> graph) {
+			this.graph = graph;
+		}
+
+		@Override
+		public boolean isUndirected() {
+			return false;
+		}
+
+		@Override
+		public int getVertexCount() {
+			return graph.getVertexCount();
+		}
+
+		@Override
+		public int getVertexId(VertexType vertex) {
+			return graph.getVertexId(vertex);
+		}
+
+		@Override
+		public VertexType getVertex(int id) {
+			return graph.getVertex(id);
+		}
+
+		@Override
+		public int getDegree(int id) {
+			return graph.in.getDegree(id);
+		}
+
+		@Override
+		public int getTarget(int id, int index) {
+			return graph.in.getTarget(id, index);
+		}
+
+		@Override
+		public double getWeight(int id, int index) {
+			return graph.in.getWeight(id, index);
+		}
+
+		@Override
+		public IndexedGraph<VertexType> getReverse() {
+			return graph;
+		}
+
+	}
+
+	private final boolean undirected;
+	private final double defaultWeight;
+	private final VertexDictionary<VertexType> dictionary;
+	private final OffHeapAdjacency out, in;
+	private final IndexedGraph<VertexType> reverse;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private volatile int vertexCount;
+	private long edgeCount;
+	private volatile WeightRange weights = WeightRange.EMPTY;
+
+	OffHeapGraph(GraphType type, double defaultWeight, int expectedVertices, int slabSize) {
+		this.undirected = type == GraphType.UNDIRECTED;
+		this.defaultWeight = defaultWeight;
+		this.dictionary = new VertexDictionary<>(expectedVertices);
+		this.out = new OffHeapAdjacency(expectedVertices, slabSize);
+		this.in = undirected ? out : new OffHeapAdjacency(expectedVertices, slabSize);
+		this.reverse = undirected ? this : new Reverse<>(this);
+		setComponentIndex(new ComponentIndex(0));
+	}
+
+	public OffHeapGraph(GraphType type, double defaultWeight, int expectedVertices) {
+		this(type, defaultWeight, expectedVertices, OffHeapAdjacency.SLAB_SIZE);
+	}
+
+	public OffHeapGraph(GraphType type, double defaultWeight) {
+		this(type, defaultWeight, VertexDictionary.CHUNK_SIZE);
+	}
+
+	public OffHeapGraph(GraphType type) {
+		this(type, GraphImpl.DEFAULT_WEIGHT);
+	}
+
+	public double getDefaultWeight() {
+		return defaultWeight;
+	}
+
+	// Each edge of undirected graph is counted in both directions
+	public long getEdgeCount() {
+		Lock lock = this.lock.readLock();
+		lock.lock();
+		try {
+			return edgeCount;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long getOffHeapBytes() {
+		Lock lock = this.lock.readLock();
+		lock.lock();
+		try {
+			return out.getAllocatedBytes() + (undirected ? 0 : in.getAllocatedBytes());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// Includes the reserve for growth of lists but not unused tails of the buffers
+	public long getUsedOffHeapBytes() {
+		Lock lock = this.lock.readLock();
+		lock.lock();
+		try {
+			return out.getUsedBytes() + (undirected ? 0 : in.getUsedBytes());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public OffHeapGraph<VertexType> addVertex(VertexType vertex) {
+		if ( vertex == null ) {
+			throw new NullPointerException("Vertex cannot be null");
+		}
+		Lock lock = this.lock.writeLock();
+		lock.lock();
+		try {
+			if ( dictionary.getId(vertex) >= 0 ) {
+				throw new IllegalArgumentException("Vertex already exists: " + vertex);
+			}
+			vertexCount = dictionary.add(vertex) + 1;
+			setComponentIndex(getComponentIndex().grow(vertexCount));
+		} finally {
+			lock.unlock();
+		}
+		return this;
+	}
+
+	@Override
+	public OffHeapGraph<VertexType> addEdge(VertexType source, VertexType target) {
+		return addEdge(source, target, defaultWeight);
+	}
+
+	public OffHeapGraph<VertexType> addEdge(VertexType source, VertexType target, double weight) {
+		Lock lock = this.lock.writeLock();
+		lock.lock();
+		try {
+			int source_id = getId(source), target_id = getId(target);
+			if ( source_id == target_id ) {
+				throw new IllegalArgumentException("Cannot use same vertex as source and target: " + source);
+			}
+			if ( out.indexOf(source_id, target_id) >= 0 ) {
+				throw new IllegalArgumentException("Edge already defined: " + source + " -> " + target);
+			}
+			out.add(source_id, target_id, weight);
+			in.add(target_id, source_id, weight);
+			weights = weights.add(weight);
+			setComponentIndex(getComponentIndex().union(source_id, target_id));
+			edgeCount += undirected ? 2 : 1;
+		} finally {
+			lock.unlock();
+		}
+		return this;
+	}
+
+	@Override
+	public WeightRange getWeightRange() {
+		// Tracked on modifications, a scan would not see new edges
+		return weights;
+	}
+
+	@Override
+	public StrongComponents<VertexType> getStrongComponents() {
+		// Not cached, new edges may merge components
+		Lock lock = this.lock.readLock();
+		lock.lock();
+		try {
+			return StrongComponents.of(this);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean isUndirected() {
+		return undirected;
+	}
+
+	@Override
+	public int getVertexCount() {
+		return vertexCount;
+	}
+
+	@Override
+	public int getVertexId(VertexType vertex) {
+		int id = dictionary.getId(vertex);
+		return id < vertexCount ? id : -1;
+	}
+
+	@Override
+	public VertexType getVertex(int id) {
+		return dictionary.getVertex(id);
+	}
+
+	@Override
+	public int getDegree(int id) {
+		return out.getDegree(id);
+	}
+
+	@Override
+	public int getTarget(int id, int index) {
+		return out.getTarget(id, index);
+	}
+
+	@Override
+	public double getWeight(int id, int index) {
+		return out.getWeight(id, index);
+	}
+
+	@Override
+	public IndexedGraph<VertexType> getReverse() {
+		return reverse;
+	}
+
+	// Queries are made under the shared lock to not see a half of modification
+
+	// Memory of edges may be moved or freed by further modifications, so results get copies of
+	// weights while the lock is held
+
+	@Override
+	public GraphPath<VertexType> getPath(VertexType source, VertexType target, SearchMode mode,
+			SearchStats stats)
+	{
+		Lock lock = this.lock.readLock();
+		lock.lock();
+		try {
+			return super.getPath(source, target, mode, stats).resolve();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public GraphPath<VertexType> getPath(VertexType source, VertexType target,
+			ToDoubleBiFunction<? super VertexType, ? super VertexType> heuristic, SearchStats stats)
+	{
+		Lock lock = this.lock.readLock();
+		lock.lock();
+		try {
+			return super.getPath(source, target, heuristic, stats).resolve();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public ShortestPathTree<VertexType> getShortestPathTree(VertexType source,
+			Collection<VertexType> targets, double maxCost)
+	{
+		Lock lock = this.lock.readLock();
+		lock.lock();
+		try {
+			return super.getShortestPathTree(source, targets, maxCost).resolve();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public DistanceMatrix<VertexType> getDistanceMatrix(List<VertexType> sources, List<VertexType> targets,
+			int parallelism)
+	{
+		Lock lock = this.lock.readLock();
+		lock.lock();
+		try {
+			return super.getDistanceMatrix(sources, targets, parallelism).resolve();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public DistanceMatrix<VertexType> getDistanceMatrix(List<VertexType> sources, List<VertexType> targets) {
+		Lock lock = this.lock.readLock();
+		lock.lock();
+		try {
+			return super.getDistanceMatrix(sources, targets).resolve();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+}
@@ -0,0 +1,178 @@
+package ru.prolib.nattest.impl;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Reusable state of a shortest path search, pooled per thread.
+ * <p>
+ * Arrays are never cleared: state of a vertex is valid only if its stamp equals to the current epoch.
+ */
+public class SearchContext implements AutoCloseable {
+	private static final int MIN_CAPACITY = 16;
+	private static final ThreadLocal<Deque<SearchContext>> pool = ThreadLocal.withInitial(ArrayDeque::new);
+	
+	public static SearchContext acquire(int vertexCount) {
+		SearchContext context = pool.get().pollFirst();
+		if ( context == null ) {
+			context = new SearchContext();
+		}
+		context.reset(vertexCount);
+		return context;
+	}
+	
+	private double[] cost, estimate;
+	// Estimates are used by A* only, so they are allocated on the first use
+	private int[] from, stamp, mark, estimated;
+	private int epoch;
+	private IndexedHeap heap;
+	private BucketQueue buckets;
+	private boolean borrowed;
+	
+	SearchContext(int capacity) {
+		cost = new double[capacity];
+		from = new int[capacity];
+		stamp = new int[capacity];
+		mark = new int[capacity];
+		heap = new IndexedHeap(capacity);
+	}
+	
+	SearchContext() {
+		this(MIN_CAPACITY);
+	}
+	
+	public int getCapacity() {
+		return stamp.length;
+	}
+	
+	int getEpoch() {
+		return epoch;
+	}
+	
+	public void reset(int vertexCount) {
+		if ( vertexCount > stamp.length ) {
+			int capacity = Math.max(vertexCount, stamp.length + (stamp.length >> 1));
+			cost = new double[capacity];
+			from = new int[capacity];
+			stamp = new int[capacity];
+			estimate = null;
+			estimated = null;
+			mark = new int[capacity];
+			heap = new IndexedHeap(capacity);
+			buckets = null;
+			epoch = 0;
+		} else {
+			heap.clear();
+			if ( buckets != null ) {
+				buckets.clear();
+			}
+		}
+		if ( ++ epoch == 0 ) {
+			// Rare case of the overflow. Old stamps may clash with new epochs.
+			Arrays.fill(stamp, 0);
+			Arrays.fill(mark, 0);
+			if ( estimated != null ) {
+				Arrays.fill(estimated, 0);
+			}
+			epoch = 1;
+		}
+		borrowed = true;
+	}
+	
+	public boolean isReached(int vertex) {
+		return stamp[vertex] == epoch;
+	}
+	
+	public double getCost(int vertex) {
+		return stamp[vertex] == epoch ? cost[vertex] : Double.POSITIVE_INFINITY;
+	}
+	
+	// The source is its own predecessor
+	public int getFrom(int vertex) {
+		return stamp[vertex] == epoch ? from[vertex] : -1;
+	}
+	
+	public void setReached(int vertex, double cost, int from) {
+		this.stamp[vertex] = epoch;
+		this.cost[vertex] = cost;
+		this.from[vertex] = from;
+	}
+	
+	/**
+	 * Drop state of the vertex. The vertex becomes not reached.
+	 * <p>
+	 * @param vertex - vertex ID
+	 */
+	public void forget(int vertex) {
+		stamp[vertex] = 0;
+	}
+	
+	/**
+	 * Set or clear a search-specific flag of the vertex. Flags are reset with the context.
+	 * <p>
+	 * @param vertex - vertex ID
+	 * @param marked - flag value
+	 */
+	public void setMarked(int vertex, boolean marked) {
+		mark[vertex] = marked ? epoch : 0;
+	}
+	
+	public boolean isMarked(int vertex) {
+		return mark[vertex] == epoch;
+	}
+	
+	// NaN if the vertex was not estimated in this search
+	public double getEstimate(int vertex) {
+		return estimated != null && estimated[vertex] == epoch ? estimate[vertex] : Double.NaN;
+	}
+	
+	public void setEstimate(int vertex, double estimate) {
+		if ( estimated == null ) {
+			this.estimate = new double[stamp.length];
+			this.estimated = new int[stamp.length];
+		}
+		this.estimated[vertex] = epoch;
+		this.estimate[vertex] = estimate;
+	}
+	
+	public IndexedHeap getHeap() {
+		return heap;
+	}
+	
+	public BucketQueue getBucketQueue(double width, int bucketCount) {
+		if ( buckets == null ) {
+			buckets = new BucketQueue(stamp.length);
+		}
+		buckets.configure(width, bucketCount);
+		return buckets;
+	}
+	
+	public int[] getPath(int source, int target) {
+		if ( ! isReached(target) ) {
+			return null;
+		}
+		int length = 1;
+		for ( int next = target; next != source; next = from[next] ) {
+			length ++;
+		}
+		int[] path = new int[length];
+		for ( int next = target; length > 0; next = from[next] ) {
+			path[-- length] = next;
+		}
+		return path;
+	}
+	
+	@Override
+	public void close() {
+		if ( borrowed ) {
+			borrowed = false;
+			heap.clear();
+			if ( buckets != null ) {
+				buckets.clear();
+			}
+			pool.get().offerFirst(this);
+		}
+	}
+
+}
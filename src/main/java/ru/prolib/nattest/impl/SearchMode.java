@@ -0,0 +1,23 @@
+package ru.prolib.nattest.impl;
+
+/**
+ * Algorithm of the path search. {@link #DIJKSTRA} is served breadth-first if all weights are equal.
+ */
+public enum SearchMode {
+	/**
+	 * Single-sided search from the source.
+	 */
+	DIJKSTRA,
+	/**
+	 * Simultaneous search from the source and from the target meeting in the middle.
+	 */
+	BIDIRECTIONAL,
+	/**
+	 * Parallel search on the common fork-join pool. Pays off on large graphs only.
+	 */
+	DELTA_STEPPING,
+	/**
+	 * Path with the least number of edges. Weights are ignored.
+	 */
+	BREADTH_FIRST
+}
@@ -0,0 +1,64 @@
+package ru.prolib.nattest.impl;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * Statistics of a single path search. Not thread-safe.
+ */
+public class SearchStats {
+	private int settled, relaxed, frontierPeak;
+	private long nanos;
+	private boolean found;
+
+	public int getSettledCount() {
+		return settled;
+	}
+
+	public int getRelaxedCount() {
+		return relaxed;
+	}
+
+	public int getFrontierPeak() {
+		return frontierPeak;
+	}
+
+	// 0 if the time was not measured
+	public long getNanos() {
+		return nanos;
+	}
+
+	public boolean isFound() {
+		return found;
+	}
+
+	void add(IndexedHeap heap) {
+		add(heap.getPollCount(), heap.getUpdateCount(), heap.getPeakSize());
+	}
+
+	void add(int settled, int relaxed, int frontierPeak) {
+		this.settled += settled;
+		this.relaxed += relaxed;
+		this.frontierPeak += frontierPeak;
+	}
+
+	void setNanos(long nanos) {
+		this.nanos = nanos;
+	}
+
+	void setFound(boolean found) {
+		this.found = found;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+				.append("settled", settled)
+				.append("relaxed", relaxed)
+				.append("frontierPeak", frontierPeak)
+				.append("nanos", nanos)
+				.append("found", found)
+				.build();
+	}
+
+}
@@ -0,0 +1,87 @@
+package ru.prolib.nattest.impl;
+
+
+/**
+ * Shortest paths from one source. Vertices which were not settled are treated as unreachable.
+ */
+public class ShortestPathTree<VertexType> {
+	private final IndexedGraph<VertexType> graph;
+	private final int source, settledCount;
+	private final double[] cost;
+	private final int[] from;
+	// Weights of edges from predecessors or null to look them up in the graph
+	private final double[] weight;
+	
+	private ShortestPathTree(IndexedGraph<VertexType> graph, int source, double[] cost, int[] from,
+			int settledCount, double[] weight)
+	{
+		this.graph = graph;
+		this.source = source;
+		this.cost = cost;
+		this.from = from;
+		this.settledCount = settledCount;
+		this.weight = weight;
+	}
+	
+	ShortestPathTree(IndexedGraph<VertexType> graph, int source, double[] cost, int[] from, int settledCount) {
+		this(graph, source, cost, from, settledCount, null);
+	}
+	
+	ShortestPathTree<VertexType> resolve() {
+		double[] weight = new double[from.length];
+		for ( int id = 0; id < from.length; id ++ ) {
+			if ( id != source && from[id] >= 0 ) {
+				weight[id] = GraphPath.findWeight(graph, from[id], id);
+			}
+		}
+		return new ShortestPathTree<>(graph, source, cost, from, settledCount, weight);
+	}
+	
+	public VertexType getSource() {
+		return graph.getVertex(source);
+	}
+	
+	public int getSettledCount() {
+		return settledCount;
+	}
+	
+	private int getId(VertexType vertex) {
+		int id = graph.getVertexId(vertex);
+		if ( id < 0 || id >= from.length ) {
+			throw new IllegalArgumentException("Vertex not found: " + vertex);
+		}
+		return id;
+	}
+	
+	public boolean isReachable(VertexType target) {
+		return from[getId(target)] >= 0;
+	}
+	
+	public double getCost(VertexType target) {
+		return cost[getId(target)];
+	}
+	
+	public GraphPath<VertexType> getPath(VertexType target) {
+		int id = getId(target);
+		if ( from[id] < 0 ) {
+			throw new IllegalStateException("Path not found: " + getSource() + " -> " + target);
+		}
+		int length = 1;
+		for ( int next = id; next != source; next = from[next] ) {
+			length ++;
+		}
+		int[] path = new int[length];
+		for ( int next = id; length > 0; next = from[next] ) {
+			path[-- length] = next;
+		}
+		double[] weights = null;
+		if ( weight != null ) {
+			weights = new double[path.length - 1];
+			for ( int i = 0; i < weights.length; i ++ ) {
+				weights[i] = weight[path[i + 1]];
+			}
+		}
+		return new GraphPath<>(graph, path, cost[id], weights);
+	}
+
+}
@@ -0,0 +1,97 @@
+package ru.prolib.nattest.impl;
+
+import java.util.Arrays;
+
+/**
+ * Strongly connected components found by Tarjan's algorithm. Components are numbered in reverse
+ * topological order, so a path may exist only if the source component is not less than the target one.
+ */
+public class StrongComponents<VertexType> {
+
+	static <VertexType> StrongComponents<VertexType> of(AbstractIndexedGraph<VertexType> graph) {
+		int n = graph.getVertexCount(), counter = 0, count = 0, top = 0;
+		int[] index = new int[n], low = new int[n], component = new int[n],
+				stack = new int[n], calls = new int[n], edges = new int[n];
+		Arrays.fill(component, -1);
+		for ( int root = 0; root < n; root ++ ) {
+			if ( index[root] != 0 || graph.hasVertex(root) == false ) {
+				continue;
+			}
+			// Depth-first search without recursion: the call stack holds vertices and their next edges
+			int depth = 0;
+			calls[0] = root;
+			edges[0] = 0;
+			index[root] = low[root] = ++ counter;
+			stack[top ++] = root;
+			while ( depth >= 0 ) {
+				int vertex = calls[depth];
+				if ( edges[depth] < graph.getDegree(vertex) ) {
+					int target = graph.getTarget(vertex, edges[depth] ++);
+					if ( index[target] == 0 ) {
+						index[target] = low[target] = ++ counter;
+						stack[top ++] = target;
+						calls[++ depth] = target;
+						edges[depth] = 0;
+					} else if ( component[target] < 0 && index[target] < low[vertex] ) {
+						// The target is on the stack
+						low[vertex] = index[target];
+					}
+					continue;
+				}
+				if ( low[vertex] == index[vertex] ) {
+					int member;
+					do {
+						member = stack[-- top];
+						component[member] = count;
+					} while ( member != vertex );
+					count ++;
+				}
+				if ( -- depth >= 0 ) {
+					int caller = calls[depth];
+					low[caller] = Math.min(low[caller], low[vertex]);
+				}
+			}
+		}
+		return new StrongComponents<>(graph, component, count);
+	}
+
+	private final IndexedGraph<VertexType> graph;
+	private final int[] component;
+	private final int count;
+
+	StrongComponents(IndexedGraph<VertexType> graph, int[] component, int count) {
+		this.graph = graph;
+		this.component = component;
+		this.count = count;
+	}
+
+	public int getComponentCount() {
+		return count;
+	}
+
+	private int getId(VertexType vertex) {
+		int id = graph.getVertexId(vertex);
+		if ( id < 0 || id >= component.length ) {
+			throw new IllegalArgumentException("Vertex not found: " + vertex);
+		}
+		return id;
+	}
+
+	public int getComponent(VertexType vertex) {
+		return component[getId(vertex)];
+	}
+
+	public boolean isStronglyConnected(VertexType a, VertexType b) {
+		return component[getId(a)] == component[getId(b)];
+	}
+
+	// True doesn't mean the path exists unless both vertices are in the same component
+	public boolean mayReach(VertexType source, VertexType target) {
+		return mayReachId(getId(source), getId(target));
+	}
+
+	boolean mayReachId(int source, int target) {
+		return component[source] >= component[target];
+	}
+
+}
@@ -0,0 +1,50 @@
+package ru.prolib.nattest.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Lookups in the file compare encoded keys byte by byte: equal vertices must be encoded to equal bytes.
+ */
+public interface VertexCodec<VertexType> {
+
+	VertexCodec<Integer> INTEGER = new VertexCodec<Integer>() {
+		@Override
+		public byte[] encode(Integer vertex) {
+			return ByteBuffer.allocate(Integer.BYTES).putInt(vertex).array();
+		}
+
+		@Override
+		public Integer decode(byte[] bytes) {
+			return ByteBuffer.wrap(bytes).getInt();
+		}
+	};
+
+	VertexCodec<Long> LONG = new VertexCodec<Long>() {
+		@Override
+		public byte[] encode(Long vertex) {
+			return ByteBuffer.allocate(Long.BYTES).putLong(vertex).array();
+		}
+
+		@Override
+		public Long decode(byte[] bytes) {
+			return ByteBuffer.wrap(bytes).getLong();
+		}
+	};
+
+	VertexCodec<String> STRING = new VertexCodec<String>() {
+		@Override
+		public byte[] encode(String vertex) {
+			return vertex.getBytes(StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public String decode(byte[] bytes) {
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+	};
+
+	byte[] encode(VertexType vertex);
+	VertexType decode(byte[] bytes);
+
+}
@@ -0,0 +1,186 @@
+package ru.prolib.nattest.impl;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only mapping of vertices to dense int ids shared by all snapshots of a graph.
+ * Lookups are thread-safe. Additions must be done by one thread at time.
+ * Integer or Long vertices are indexed by primitive value while all vertices are of the same class.
+ */
+public class VertexDictionary<VertexType> {
+	static final int CHUNK_BITS = 10, CHUNK_SIZE = 1 << CHUNK_BITS, CHUNK_MASK = CHUNK_SIZE - 1;
+
+	// Linear probing, no removals. Readers may see a slot which is being filled: ids which aren't
+	// published yet are ignored.
+	static final class LongIndex {
+		final Class<?> type;
+		final long[] keys;
+		// Id + 1, 0 for empty slot
+		final int[] values;
+		final int mask;
+		int count;
+
+		LongIndex(Class<?> type, int capacity) {
+			this.type = type;
+			this.keys = new long[capacity];
+			this.values = new int[capacity];
+			this.mask = capacity - 1;
+		}
+
+		LongIndex grow() {
+			LongIndex index = new LongIndex(type, keys.length * 2);
+			for ( int slot = 0; slot < keys.length; slot ++ ) {
+				if ( values[slot] != 0 ) {
+					index.put(keys[slot], values[slot] - 1);
+				}
+			}
+			return index;
+		}
+
+		boolean isFull() {
+			return count * 2 >= keys.length;
+		}
+
+		int get(long key) {
+			for ( int slot = hash(key) & mask; ; slot = (slot + 1) & mask ) {
+				int value = values[slot];
+				if ( value == 0 ) {
+					return -1;
+				}
+				if ( keys[slot] == key ) {
+					return value - 1;
+				}
+			}
+		}
+
+		void put(long key, int id) {
+			int slot = hash(key) & mask;
+			while ( values[slot] != 0 ) {
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = key;
+			values[slot] = id + 1;
+			count ++;
+		}
+
+		static int hash(long key) {
+			long h = key * 0x9E3779B97F4A7C15L;
+			return (int) (h ^ (h >>> 32));
+		}
+
+	}
+
+	private final Map<VertexType, Integer> ids;
+	private final int expectedSize;
+	private volatile LongIndex index;
+	private volatile Object[][] chunks;
+	private volatile int size;
+
+	public VertexDictionary(int expectedSize) {
+		this.ids = new ConcurrentHashMap<>(expectedSize);
+		this.expectedSize = expectedSize;
+		this.chunks = new Object[Math.max(1, (expectedSize + CHUNK_MASK) >>> CHUNK_BITS)][];
+	}
+
+	public VertexDictionary() {
+		this(CHUNK_SIZE);
+	}
+
+	private VertexDictionary(VertexDictionary<VertexType> source) {
+		LongIndex index = source.index;
+		this.ids = new ConcurrentHashMap<>(source.ids);
+		this.expectedSize = source.expectedSize;
+		if ( index != null ) {
+			LongIndex copy = new LongIndex(index.type, index.keys.length);
+			System.arraycopy(index.keys, 0, copy.keys, 0, index.keys.length);
+			System.arraycopy(index.values, 0, copy.values, 0, index.values.length);
+			copy.count = index.count;
+			this.index = copy;
+		}
+		Object[][] chunks = source.chunks.clone();
+		for ( int i = 0; i < chunks.length; i ++ ) {
+			if ( chunks[i] != null ) {
+				chunks[i] = chunks[i].clone();
+			}
+		}
+		this.chunks = chunks;
+		this.size = source.size;
+	}
+
+	VertexDictionary<VertexType> copy() {
+		return new VertexDictionary<>(this);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getId(VertexType vertex) {
+		if ( vertex == null ) {
+			return -1;
+		}
+		// Reading the size first makes visible everything stored before it was updated
+		int size = this.size, id;
+		LongIndex index = this.index;
+		if ( index != null ) {
+			if ( vertex.getClass() != index.type ) {
+				return -1;
+			}
+			id = index.get(((Number) vertex).longValue());
+		} else {
+			Integer x = ids.get(vertex);
+			id = x == null ? -1 : x;
+		}
+		return id < size ? id : -1;
+	}
+
+	@SuppressWarnings("unchecked")
+	public VertexType getVertex(int id) {
+		return (VertexType) chunks[id >>> CHUNK_BITS][id & CHUNK_MASK];
+	}
+
+	public int add(VertexType vertex) {
+		int id = getId(vertex);
+		if ( id >= 0 ) {
+			return id;
+		}
+		int new_id = size, chunk = new_id >>> CHUNK_BITS;
+		Object[][] chunks = this.chunks;
+		if ( chunk == chunks.length ) {
+			chunks = Arrays.copyOf(chunks, chunk * 2);
+		}
+		if ( chunks[chunk] == null ) {
+			chunks[chunk] = new Object[CHUNK_SIZE];
+		}
+		chunks[chunk][new_id & CHUNK_MASK] = vertex;
+		LongIndex index = this.index;
+		if ( new_id == 0 && (vertex instanceof Integer || vertex instanceof Long) ) {
+			int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) - 1) << 2;
+			this.index = index = new LongIndex(vertex.getClass(), capacity);
+		} else if ( index != null && vertex.getClass() != index.type ) {
+			// Keys of different classes may be equal as numbers but not as vertices
+			for ( int i = 0; i < new_id; i ++ ) {
+				@SuppressWarnings("unchecked")
+				VertexType x = (VertexType) chunks[i >>> CHUNK_BITS][i & CHUNK_MASK];
+				ids.put(x, i);
+			}
+			this.index = index = null;
+		}
+		if ( index == null ) {
+			ids.put(vertex, new_id);
+		} else {
+			if ( index.isFull() ) {
+				index = index.grow();
+			}
+			index.put(((Number) vertex).longValue(), new_id);
+			this.index = index;
+		}
+		// The vertex is stored before it becomes visible through the size
+		this.chunks = chunks;
+		this.size = new_id + 1;
+		return new_id;
+	}
+
+}
@@ -0,0 +1,67 @@
+package ru.prolib.nattest.impl;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * Summary of edge weights of a graph. It isn't narrowed when edges are removed, so the bounds
+ * may be wider than actual weights.
+ */
+public final class WeightRange {
+	public static final WeightRange EMPTY = new WeightRange(Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, true);
+
+	private final double min, max;
+	private final boolean integral;
+
+	private WeightRange(double min, double max, boolean integral) {
+		this.min = min;
+		this.max = max;
+		this.integral = integral;
+	}
+
+	static WeightRange of(double min, double max, boolean integral) {
+		return min > max ? EMPTY : new WeightRange(min, max, integral);
+	}
+
+	public WeightRange add(double weight) {
+		boolean integral = this.integral && weight == Math.rint(weight);
+		if ( weight >= min && weight <= max && integral == this.integral ) {
+			return this;
+		}
+		return new WeightRange(Math.min(min, weight), Math.max(max, weight), integral);
+	}
+
+	public boolean isEmpty() {
+		return min > max;
+	}
+
+	public double getMin() {
+		return min;
+	}
+
+	public double getMax() {
+		return max;
+	}
+
+	public boolean isIntegral() {
+		return integral;
+	}
+
+	// NaN if weights differ. Graph without edges reports 0.
+	public double getUniformWeight() {
+		if ( isEmpty() ) {
+			return 0.0d;
+		}
+		return min == max ? min : Double.NaN;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+				.append("min", min)
+				.append("max", max)
+				.append("integral", integral)
+				.build();
+	}
+
+}
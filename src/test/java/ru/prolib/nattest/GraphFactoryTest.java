@@ -6,7 +6,9 @@ import static org.hamcrest.CoreMatchers.*;
 import org.junit.Before;
 import org.junit.Test;
 
+import ru.prolib.nattest.impl.CachingGraph;
 import ru.prolib.nattest.impl.GraphImpl;
+import ru.prolib.nattest.impl.OffHeapGraph;
 
 public class GraphFactoryTest {
 	GraphFactory service;
@@ -72,4 +74,53 @@ public class GraphFactoryTest {
 		assertEquals(756.95d, o.getDefaultWeight(), 0.01d);
 	}
 
+	@Test
+	public void testCreateCachedDirectedGraph() {
+		
+		Graph<Integer> actual = service.createCachedDirectedGraph(100);
+		
+		assertNotNull(actual);
+		assertThat(actual, instanceOf(CachingGraph.class));
+		CachingGraph<Integer> o = (CachingGraph<Integer>) actual;
+		assertEquals(100, o.getMaxSize());
+		assertTrue(o.getGraph().isDirected());
+		assertEquals(GraphImpl.DEFAULT_WEIGHT, o.getGraph().getDefaultWeight(), 0.01d);
+	}
+	
+	@Test
+	public void testCreateCachedUndirectedGraph() {
+		
+		Graph<Integer> actual = service.createCachedUndirectedGraph(250);
+		
+		assertNotNull(actual);
+		assertThat(actual, instanceOf(CachingGraph.class));
+		CachingGraph<Integer> o = (CachingGraph<Integer>) actual;
+		assertEquals(250, o.getMaxSize());
+		assertTrue(o.getGraph().isUndirected());
+	}
+
+	@Test
+	public void testCreateOffHeapDirectedGraph() {
+		
+		Graph<Integer> actual = service.createOffHeapDirectedGraph();
+		
+		assertNotNull(actual);
+		assertThat(actual, instanceOf(OffHeapGraph.class));
+		OffHeapGraph<Integer> o = (OffHeapGraph<Integer>) actual;
+		assertTrue(o.isDirected());
+		assertEquals(GraphImpl.DEFAULT_WEIGHT, o.getDefaultWeight(), 0.01d);
+	}
+	
+	@Test
+	public void testCreateOffHeapUndirectedGraph() {
+		
+		Graph<Integer> actual = service.createOffHeapUndirectedGraph();
+		
+		assertNotNull(actual);
+		assertThat(actual, instanceOf(OffHeapGraph.class));
+		OffHeapGraph<Integer> o = (OffHeapGraph<Integer>) actual;
+		assertTrue(o.isUndirected());
+		assertEquals(GraphImpl.DEFAULT_WEIGHT, o.getDefaultWeight(), 0.01d);
+	}
+
 }
@@ -0,0 +1,125 @@
+package ru.prolib.nattest.impl;
+
+import static org.junit.Assert.*;
+import static ru.prolib.nattest.impl.GraphType.*;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToDoubleBiFunction;
+
+import org.junit.Test;
+
+public class AStarEngineTest {
+	
+	/**
+	 * Grid of size x size vertices, vertex value is y * size + x.
+	 */
+	static GraphImpl<Integer> loadGridGraph(GraphImpl<Integer> graph, int size) {
+		for ( int i = 0; i < size * size; i ++ ) {
+			graph.addVertex(i);
+		}
+		for ( int y = 0; y < size; y ++ ) {
+			for ( int x = 0; x < size; x ++ ) {
+				if ( x + 1 < size ) {
+					graph.addEdge(y * size + x, y * size + x + 1, 1.0d);
+				}
+				if ( y + 1 < size ) {
+					graph.addEdge(y * size + x, (y + 1) * size + x, 1.0d);
+				}
+			}
+		}
+		return graph;
+	}
+	
+	CsrGraph<Integer> graph;
+	AStarEngine<Integer> service;
+	
+	int[] ids(int... vertices) {
+		int[] result = new int[vertices.length];
+		for ( int i = 0; i < vertices.length; i ++ ) {
+			result[i] = graph.getVertexId(vertices[i]);
+		}
+		return result;
+	}
+	
+	@Test
+	public void testFindPath_ZeroHeuristic() {
+		graph = GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(DIRECTED)).freeze();
+		service = new AStarEngine<>(graph);
+		
+		assertArrayEquals(ids(4, 6, 7, 11), service.findPath(graph.getVertexId(4), graph.getVertexId(11), (a, b) -> 0.0d));
+		assertArrayEquals(ids(3), service.findPath(graph.getVertexId(3), graph.getVertexId(3), (a, b) -> 0.0d));
+		assertNull(service.findPath(graph.getVertexId(10), graph.getVertexId(4), (a, b) -> 0.0d));
+	}
+	
+	@Test
+	public void testFindPath_SameCostAsDijkstra() {
+		for ( GraphType type : GraphType.values() ) {
+			graph = BidirectionalDijkstraEngineTest.loadRandomGraph(new GraphImpl<>(type), 3316L, 150, 400).freeze();
+			service = new AStarEngine<>(graph);
+			DijkstraEngine dijkstra = new DijkstraEngine(graph);
+			for ( int source = 0; source < 150; source += 5 ) {
+				for ( int target = 0; target < 150; target += 4 ) {
+					int[] expected = dijkstra.findPath(source, target),
+						actual = service.findPath(source, target, (a, b) -> a.equals(b) ? 0.0d : 0.1d);
+					
+					String msg = type + ": " + source + " -> " + target;
+					if ( expected == null ) {
+						assertNull(msg, actual);
+					} else {
+						assertNotNull(msg, actual);
+						assertEquals(msg, BidirectionalDijkstraEngineTest.getCost(graph, expected),
+								BidirectionalDijkstraEngineTest.getCost(graph, actual), 0.00001d);
+					}
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testFindPath_HeuristicReducesExpansion() {
+		int size = 30;
+		graph = loadGridGraph(new GraphImpl<>(UNDIRECTED), size).freeze();
+		service = new AStarEngine<>(graph);
+		AtomicInteger calls_zero = new AtomicInteger(), calls_manhattan = new AtomicInteger();
+		ToDoubleBiFunction<Integer, Integer> zero = (a, b) -> {
+			calls_zero.incrementAndGet();
+			return 0.0d;
+		};
+		ToDoubleBiFunction<Integer, Integer> manhattan = (a, b) -> {
+			calls_manhattan.incrementAndGet();
+			return Math.abs(a % size - b % size) + Math.abs(a / size - b / size);
+		};
+		int source = graph.getVertexId(size * 15), target = graph.getVertexId(size * 15 + size - 1);
+		
+		int[] expected = service.findPath(source, target, zero), actual = service.findPath(source, target, manhattan);
+		
+		assertEquals(size, expected.length);
+		assertEquals(size, actual.length);
+		assertTrue(calls_manhattan.get() * 5 < calls_zero.get());
+	}
+	
+	@Test
+	public void testFindPath_HeuristicCalledOncePerVertex() {
+		graph = BidirectionalDijkstraEngineTest.loadRandomGraph(new GraphImpl<>(DIRECTED), 3316L, 150, 600).freeze();
+		service = new AStarEngine<>(graph);
+		AtomicInteger calls = new AtomicInteger();
+		Set<Integer> estimated = new HashSet<>();
+		ToDoubleBiFunction<Integer, Integer> zero = (a, b) -> {
+			calls.incrementAndGet();
+			estimated.add(a);
+			return 0.0d;
+		};
+		
+		for ( int target = 1; target < 10; target ++ ) {
+			calls.set(0);
+			estimated.clear();
+			
+			service.findPath(graph.getVertexId(0), graph.getVertexId(target), zero);
+			
+			assertEquals(estimated.size(), calls.get());
+		}
+	}
+
+}
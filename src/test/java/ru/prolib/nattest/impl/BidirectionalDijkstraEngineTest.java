@@ -0,0 +1,112 @@
+package ru.prolib.nattest.impl;
+
+import static org.junit.Assert.*;
+import static ru.prolib.nattest.impl.GraphType.*;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class BidirectionalDijkstraEngineTest {
+	
+	static GraphImpl<Integer> loadRandomGraph(GraphImpl<Integer> graph, long seed, int vertices, int edges) {
+		Random random = new Random(seed);
+		Set<Long> pairs = new HashSet<>();
+		for ( int i = 0; i < vertices; i ++ ) {
+			graph.addVertex(i);
+		}
+		for ( int i = 0; i < edges; i ++ ) {
+			int source = random.nextInt(vertices), target = random.nextInt(vertices);
+			long pair = graph.isUndirected()
+				? (long) Math.min(source, target) << 32 | Math.max(source, target)
+				: (long) source << 32 | target;
+			if ( source != target && pairs.add(pair) ) {
+				graph.addEdge(source, target, 0.1d + random.nextInt(100) / 10.0d);
+			}
+		}
+		return graph;
+	}
+	
+	static double getCost(IndexedGraph<?> graph, int[] path) {
+		double cost = 0.0d;
+		for ( int i = 1; i < path.length; i ++ ) {
+			int index = -1;
+			for ( int j = 0; j < graph.getDegree(path[i - 1]); j ++ ) {
+				if ( graph.getTarget(path[i - 1], j) == path[i] ) {
+					index = j;
+				}
+			}
+			assertTrue("Edge not found: " + path[i - 1] + " -> " + path[i], index >= 0);
+			cost += graph.getWeight(path[i - 1], index);
+		}
+		return cost;
+	}
+	
+	CsrGraph<Integer> graph;
+	BidirectionalDijkstraEngine service;
+	
+	int[] ids(int... vertices) {
+		int[] result = new int[vertices.length];
+		for ( int i = 0; i < vertices.length; i ++ ) {
+			result[i] = graph.getVertexId(vertices[i]);
+		}
+		return result;
+	}
+	
+	@Test
+	public void testFindPath_TestGraph() {
+		graph = GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(UNDIRECTED)).freeze();
+		service = new BidirectionalDijkstraEngine(graph);
+		
+		assertArrayEquals(ids(12, 5, 6, 7, 10), service.findPath(graph.getVertexId(12), graph.getVertexId(10)));
+		
+		graph = GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(DIRECTED)).freeze();
+		service = new BidirectionalDijkstraEngine(graph);
+		
+		assertArrayEquals(ids(4, 6, 7, 11), service.findPath(graph.getVertexId(4), graph.getVertexId(11)));
+		assertArrayEquals(ids(1, 10), service.findPath(graph.getVertexId(1), graph.getVertexId(10)));
+	}
+	
+	@Test
+	public void testFindPath_SourceIsTarget() {
+		graph = GraphImplTest.loadTestGraph(new GraphImpl<>(DIRECTED)).freeze();
+		service = new BidirectionalDijkstraEngine(graph);
+		
+		assertArrayEquals(ids(3), service.findPath(graph.getVertexId(3), graph.getVertexId(3)));
+	}
+	
+	@Test
+	public void testFindPath_ReturnsNullIfNotFound() {
+		graph = GraphImplTest.loadTestGraph(new GraphImpl<>(DIRECTED)).freeze();
+		service = new BidirectionalDijkstraEngine(graph);
+		
+		assertNull(service.findPath(graph.getVertexId(10), graph.getVertexId(4)));
+	}
+	
+	@Test
+	public void testFindPath_SameCostAsDijkstra() {
+		for ( GraphType type : GraphType.values() ) {
+			graph = loadRandomGraph(new GraphImpl<>(type), 9172L, 200, 500).freeze();
+			service = new BidirectionalDijkstraEngine(graph);
+			DijkstraEngine dijkstra = new DijkstraEngine(graph);
+			for ( int source = 0; source < 200; source += 7 ) {
+				for ( int target = 0; target < 200; target += 3 ) {
+					int[] expected = dijkstra.findPath(source, target), actual = service.findPath(source, target);
+					
+					String msg = type + ": " + source + " -> " + target;
+					if ( expected == null ) {
+						assertNull(msg, actual);
+					} else {
+						assertNotNull(msg, actual);
+						assertEquals(msg, source, actual[0]);
+						assertEquals(msg, target, actual[actual.length - 1]);
+						assertEquals(msg, getCost(graph, expected), getCost(graph, actual), 0.00001d);
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,227 @@
+package ru.prolib.nattest.impl;
+
+import static org.junit.Assert.*;
+import static ru.prolib.nattest.impl.GraphType.*;
+import static ru.prolib.nattest.impl.BidirectionalDijkstraEngineTest.getCost;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class BreadthFirstEngineTest {
+	static ForkJoinPool pool;
+	CsrGraph<Integer> graph;
+	BreadthFirstEngine service;
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		pool = new ForkJoinPool(4);
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		pool.shutdown();
+	}
+
+	static CsrGraph<Integer> loadUniformGraph(GraphType type, long seed, int vertices, int edges) {
+		GraphImpl<Integer> graph = new GraphImpl<>(type);
+		Random random = new Random(seed);
+		Set<Long> pairs = new HashSet<>();
+		for ( int i = 0; i < vertices; i ++ ) {
+			graph.addVertex(i);
+		}
+		for ( int i = 0; i < edges; i ++ ) {
+			int source = random.nextInt(vertices), target = random.nextInt(vertices);
+			long pair = type == UNDIRECTED
+				? (long) Math.min(source, target) << 32 | Math.max(source, target)
+				: (long) source << 32 | target;
+			if ( source != target && pairs.add(pair) ) {
+				graph.addEdge(source, target);
+			}
+		}
+		return graph.freeze();
+	}
+
+	int[] ids(int... vertices) {
+		int[] result = new int[vertices.length];
+		for ( int i = 0; i < vertices.length; i ++ ) {
+			result[i] = graph.getVertexId(vertices[i]);
+		}
+		return result;
+	}
+
+	@Test
+	public void testFindPath_TestGraph() {
+		graph = GraphImplTest.loadTestGraph(new GraphImpl<>(DIRECTED)).freeze();
+		service = new BreadthFirstEngine(graph, pool);
+
+		assertArrayEquals(ids(1, 10), service.findPath(graph.getVertexId(1), graph.getVertexId(10)));
+		assertEquals(4, service.findPath(graph.getVertexId(4), graph.getVertexId(11)).length);
+	}
+
+	@Test
+	public void testFindPath_SourceIsTarget() {
+		graph = GraphImplTest.loadTestGraph(new GraphImpl<>(DIRECTED)).freeze();
+		service = new BreadthFirstEngine(graph);
+
+		assertArrayEquals(ids(3), service.findPath(graph.getVertexId(3), graph.getVertexId(3)));
+	}
+
+	@Test
+	public void testFindPath_ReturnsNullIfNotFound() {
+		graph = GraphImplTest.loadTestGraph(new GraphImpl<>(DIRECTED)).freeze();
+		service = new BreadthFirstEngine(graph);
+
+		assertNull(service.findPath(graph.getVertexId(10), graph.getVertexId(4)));
+	}
+
+	@Test
+	public void testFindPath_SameLengthAsDijkstra() {
+		// Dense graphs go bottom-up, large levels are expanded in parallel
+		for ( GraphType type : GraphType.values() ) {
+			for ( int degree : new int[] { 2, 16 } ) {
+				graph = loadUniformGraph(type, 815L + degree, 20000, 20000 * degree);
+				service = new BreadthFirstEngine(graph, pool);
+				DijkstraEngine dijkstra = new DijkstraEngine(graph);
+				for ( int source = 0; source < 20000; source += 3001 ) {
+					for ( int target = 7; target < 20000; target += 2903 ) {
+						String msg = type + " degree " + degree + ": " + source + " -> " + target;
+						int[] expected = dijkstra.findPath(source, target), actual = service.findPath(source, target);
+						if ( expected == null ) {
+							assertNull(msg, actual);
+						} else {
+							assertNotNull(msg, actual);
+							assertEquals(msg, source, actual[0]);
+							assertEquals(msg, target, actual[actual.length - 1]);
+							assertEquals(msg, getCost(graph, expected), getCost(graph, actual), 0.000001d);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testFindPath_WideSparseLevel() {
+		// The level is too small part of the graph to go bottom-up but large enough to go parallel
+		int leaves = BreadthFirstEngine.PARALLEL_THRESHOLD + 100;
+		GraphBuilder<Integer> builder = new GraphBuilder<>(DIRECTED);
+		for ( int i = 0; i < leaves * 30; i ++ ) {
+			builder.addVertex(i);
+		}
+		for ( int i = 1; i <= leaves; i ++ ) {
+			builder.addEdge(0, i).addEdge(i, leaves + i);
+		}
+		graph = builder.buildSnapshot();
+		service = new BreadthFirstEngine(graph, pool);
+		SearchStats stats = new SearchStats();
+
+		assertArrayEquals(ids(0, 500, leaves + 500), service.findPath(graph.getVertexId(0),
+				graph.getVertexId(leaves + 500), stats));
+		assertEquals(leaves, stats.getFrontierPeak());
+		assertNull(service.findPath(graph.getVertexId(0), graph.getVertexId(leaves * 3)));
+	}
+
+	@Test
+	public void testFindPath_ReusesStateWhenGraphGrows() {
+		OffHeapGraph<Integer> source = new OffHeapGraph<>(DIRECTED);
+		source.addVertex(1).addVertex(2).addVertex(3);
+		source.addEdge(1, 2).addEdge(2, 3);
+		BreadthFirstEngine service = new BreadthFirstEngine(source, pool);
+
+		assertEquals(3, service.findPath(source.getVertexId(1), source.getVertexId(3)).length);
+
+		for ( int i = 4; i <= 200; i ++ ) {
+			source.addVertex(i);
+			source.addEdge(i - 1, i);
+		}
+		source.addEdge(1, 150);
+
+		assertEquals(52, service.findPath(source.getVertexId(1), source.getVertexId(200)).length);
+		assertEquals(3, service.findPath(source.getVertexId(1), source.getVertexId(3)).length);
+		assertNull(service.findPath(source.getVertexId(200), source.getVertexId(1)));
+	}
+
+	@Test
+	public void testFindPath_Stats() {
+		graph = GraphImplTest.loadTestGraph(new GraphImpl<>(UNDIRECTED)).freeze();
+		service = new BreadthFirstEngine(graph);
+		SearchStats stats = new SearchStats();
+
+		int[] actual = service.findPath(graph.getVertexId(12), graph.getVertexId(10), stats);
+
+		assertEquals(4, actual.length);
+		assertTrue(stats.getSettledCount() > 0);
+		assertTrue(stats.getRelaxedCount() >= stats.getSettledCount());
+		assertTrue(stats.getFrontierPeak() > 0);
+	}
+
+	@Test
+	public void testGetUniformWeight() {
+		assertEquals(1.0d, GraphImplTest.loadTestGraph(new GraphImpl<>(DIRECTED)).freeze().getUniformWeight(), 0.0d);
+		assertTrue(Double.isNaN(GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(DIRECTED))
+				.freeze().getUniformWeight()));
+		assertEquals(0.0d, new GraphImpl<Integer>(DIRECTED).freeze().getUniformWeight(), 0.0d);
+	}
+
+	@Test
+	public void testGetUniformWeight_Snapshot() {
+		GraphImpl<Integer> source = new GraphImpl<>(UNDIRECTED, 2.5d);
+		source.addVertex(1).addVertex(2).addVertex(3);
+		source.addEdge(1, 2);
+
+		assertEquals(2.5d, source.snapshot().getUniformWeight(), 0.0d);
+
+		source.addEdge(2, 3, 2.5d);
+
+		assertEquals(2.5d, source.snapshot().getUniformWeight(), 0.0d);
+
+		source.addEdge(1, 3, 1.0d);
+
+		assertTrue(Double.isNaN(source.snapshot().getUniformWeight()));
+		assertTrue(Double.isNaN(source.snapshot().getReverse().getUniformWeight()));
+	}
+
+	@Test
+	public void testGetUniformWeight_OffHeap() {
+		OffHeapGraph<Integer> source = new OffHeapGraph<>(DIRECTED, 3.0d);
+		source.addVertex(1).addVertex(2).addVertex(3);
+		source.addEdge(1, 2).addEdge(2, 3);
+
+		assertEquals(3.0d, source.getUniformWeight(), 0.0d);
+
+		source.addEdge(1, 3, 5.0d);
+
+		assertTrue(Double.isNaN(source.getUniformWeight()));
+		assertEquals(2, source.getPath(1, 3).size());
+	}
+
+	@Test
+	public void testGetPath_UniformWeights() {
+		GraphImpl<Integer> source = GraphImplTest.loadTestGraph(new GraphImpl<>(UNDIRECTED, 0.5d));
+
+		for ( SearchMode mode : new SearchMode[] { SearchMode.DIJKSTRA, SearchMode.BIDIRECTIONAL } ) {
+			SearchStats stats = new SearchStats();
+			GraphPath<Integer> actual = source.snapshot().getPath(12, 10, mode, stats);
+
+			assertEquals(12, (int) actual.getSource());
+			assertEquals(10, (int) actual.getTarget());
+			assertEquals(1.5d, actual.getCost(), 0.000001d);
+			assertTrue(stats.isFound());
+		}
+	}
+
+	@Test
+	public void testGetPath_BreadthFirstIgnoresWeights() {
+		CsrGraph<Integer> graph = GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(UNDIRECTED)).freeze();
+
+		assertEquals(5, graph.getPath(12, 10).size());
+		assertEquals(4, graph.getPath(12, 10, SearchMode.BREADTH_FIRST).size());
+	}
+
+}
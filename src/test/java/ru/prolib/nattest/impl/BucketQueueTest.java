@@ -0,0 +1,209 @@
+package ru.prolib.nattest.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class BucketQueueTest {
+	@Rule public ExpectedException eex = ExpectedException.none();
+	BucketQueue service;
+
+	@Before
+	public void setUp() throws Exception {
+		service = new BucketQueue(10);
+		service.configure(1.0d, 64);
+	}
+
+	@Test
+	public void testCtor() {
+		assertEquals(10, service.getCapacity());
+		assertEquals(0, service.size());
+		assertTrue(service.isEmpty());
+	}
+
+	@Test
+	public void testGetWidth() {
+		WeightRange integral = WeightRange.EMPTY.add(0.0d).add(3.0d).add(7.0d);
+		WeightRange quantized = WeightRange.EMPTY.add(0.5d).add(2.5d);
+
+		assertEquals(1.0d, BucketQueue.getWidth(integral), 0.0d);
+		assertEquals(64, BucketQueue.getBucketCount(integral, 1.0d));
+		assertEquals(0.5d, BucketQueue.getWidth(quantized), 0.0d);
+		assertTrue(Double.isNaN(BucketQueue.getWidth(WeightRange.EMPTY)));
+		assertTrue(Double.isNaN(BucketQueue.getWidth(WeightRange.EMPTY.add(0.0d).add(0.5d))));
+		assertTrue(Double.isNaN(BucketQueue.getWidth(WeightRange.EMPTY.add(-1.0d).add(1.0d))));
+		assertTrue(Double.isNaN(BucketQueue.getWidth(WeightRange.EMPTY.add(0.001d).add(100.0d))));
+		assertEquals(1024, BucketQueue.getBucketCount(WeightRange.EMPTY.add(1.0d).add(1000.0d), 1.0d));
+	}
+
+	@Test
+	public void testUpdate_Insert() {
+		service.update(5, 2.5d);
+		service.update(3, 0.5d);
+		service.update(8, 1.5d);
+
+		assertEquals(3, service.size());
+		assertTrue(service.contains(5));
+		assertTrue(service.contains(3));
+		assertTrue(service.contains(8));
+		assertFalse(service.contains(1));
+		assertEquals(0.5d, service.peekKey(), 0.001d);
+		assertEquals(3, service.getPeakSize());
+		assertEquals(3, service.getUpdateCount());
+	}
+
+	@Test
+	public void testUpdate_DecreaseKey() {
+		service.update(5, 2.5d);
+		service.update(3, 0.5d);
+		service.update(8, 1.5d);
+
+		service.update(5, 0.1d);
+
+		assertEquals(3, service.size());
+		assertEquals(0.1d, service.peekKey(), 0.001d);
+		assertEquals(5, service.poll());
+		assertEquals(3, service.poll());
+		assertEquals(8, service.poll());
+		assertTrue(service.isEmpty());
+		assertEquals(3, service.getPollCount());
+	}
+
+	@Test
+	public void testUpdate_SameBucket() {
+		service.update(5, 2.5d);
+		service.update(5, 2.1d);
+
+		assertEquals(1, service.size());
+		assertEquals(2.1d, service.peekKey(), 0.001d);
+	}
+
+	@Test
+	public void testUpdate_ThrowsIfBehindLastPolled() {
+		service.update(1, 5.0d);
+		service.update(2, 6.0d);
+		service.poll();
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Key out of range: 4.0");
+
+		service.update(3, 4.0d);
+	}
+
+	@Test
+	public void testUpdate_ThrowsIfTooFarAhead() {
+		service.update(1, 5.0d);
+		service.poll();
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Key out of range: 70.0");
+
+		service.update(3, 70.0d);
+	}
+
+	@Test
+	public void testPoll_ThrowsIfEmpty() {
+		eex.expect(IllegalStateException.class);
+		eex.expectMessage("Queue is empty");
+
+		service.poll();
+	}
+
+	@Test
+	public void testPeekBucket() {
+		service.configure(0.5d, 64);
+		service.update(1, 20.2d);
+		service.update(2, 3.7d);
+
+		assertEquals(7L, service.peekBucket());
+		assertEquals(7L, service.getBucket(3.7d));
+		assertEquals(2, service.poll());
+		assertEquals(40L, service.peekBucket());
+		service.update(3, 17.1d);
+		assertEquals(34L, service.peekBucket());
+		service.poll();
+		service.poll();
+		// Absolute numbers go on after the array of buckets wraps around
+		service.update(4, 40.0d);
+		assertEquals(80L, service.peekBucket());
+	}
+
+	@Test
+	public void testPeekBucket_ThrowsIfEmpty() {
+		eex.expect(IllegalStateException.class);
+		eex.expectMessage("Queue is empty");
+
+		service.peekBucket();
+	}
+
+	@Test
+	public void testPoll_WrapsAround() {
+		// Monotone sequence which goes round the array of buckets several times
+		Random random = new Random(5512L);
+		double[] keys = new double[10];
+		double last = 0.0d;
+		for ( int step = 0; step < 200; step ++ ) {
+			for ( int element = 0; element < 10; element ++ ) {
+				if ( service.contains(element) == false && random.nextBoolean() ) {
+					keys[element] = last + random.nextInt(60);
+					service.update(element, keys[element]);
+				}
+			}
+			if ( service.isEmpty() == false ) {
+				int element = service.poll();
+				for ( int i = 0; i < 10; i ++ ) {
+					if ( service.contains(i) ) {
+						assertTrue("Step " + step, (long) keys[i] >= (long) keys[element]);
+					}
+				}
+				last = keys[element];
+			}
+		}
+		assertTrue(last > 64.0d);
+	}
+
+	@Test
+	public void testClear() {
+		service.update(5, 2.5d);
+		service.update(3, 0.5d);
+		service.poll();
+
+		service.clear();
+
+		assertTrue(service.isEmpty());
+		assertFalse(service.contains(5));
+		assertEquals(0, service.getPollCount());
+		assertEquals(0, service.getUpdateCount());
+		assertEquals(0, service.getPeakSize());
+		// Cursor is reset too
+		service.update(7, 0.0d);
+		assertEquals(7, service.poll());
+	}
+
+	@Test
+	public void testConfigure() {
+		service.update(1, 100.0d);
+		service.clear();
+
+		service.configure(0.25d, 128);
+		service.update(1, 0.5d);
+		service.update(2, 0.25d);
+		service.update(3, 20.0d);
+
+		assertEquals(Arrays.asList(2, 1, 3), Arrays.asList(service.poll(), service.poll(), service.poll()));
+	}
+
+	@Test
+	public void testConfigure_ThrowsIfNotEmpty() {
+		service.update(1, 1.0d);
+		eex.expect(IllegalStateException.class);
+		eex.expectMessage("Queue is not empty");
+
+		service.configure(1.0d, 64);
+	}
+
+}
@@ -0,0 +1,259 @@
+package ru.prolib.nattest.impl;
+
+import static org.junit.Assert.*;
+import static ru.prolib.nattest.impl.GraphType.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class CachingGraphTest {
+	@Rule public ExpectedException eex = ExpectedException.none();
+	GraphImpl<Integer> graph;
+	CachingGraph<Integer> service;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(UNDIRECTED));
+		service = new CachingGraph<>(graph, 3);
+	}
+	
+	@Test
+	public void testCtor() {
+		assertSame(graph, service.getGraph());
+		assertEquals(3, service.getMaxSize());
+		assertEquals(1, service.getSegmentCount());
+		assertEquals(0, service.getSize());
+	}
+	
+	@Test
+	public void testCtor_SegmentCount() {
+		assertEquals(2, new CachingGraph<>(graph, 200).getSegmentCount());
+		assertEquals(16, new CachingGraph<>(graph, 100000).getSegmentCount());
+		assertEquals(4, new CachingGraph<>(graph, 100, 6).getSegmentCount());
+		assertEquals(2, new CachingGraph<>(graph, 3, 16).getSegmentCount());
+	}
+	
+	@Test
+	public void testCtor_ThrowsIfSegmentCountNotPositive() {
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Segment count must be positive: 0");
+		
+		new CachingGraph<>(graph, 10, 0);
+	}
+	
+	@Test
+	public void testCtor_ThrowsIfSizeNotPositive() {
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Cache size must be positive: 0");
+		
+		new CachingGraph<>(graph, 0);
+	}
+	
+	@Test
+	public void testGetPath_CachesResult() {
+		Collection<Integer> actual1 = service.getPath(12, 10), actual2 = service.getPath(12, 10);
+		
+		assertEquals(Arrays.asList(12, 5, 6, 7, 10), actual1);
+		assertSame(actual1, actual2);
+		assertEquals(1, service.getHitCount());
+		assertEquals(1, service.getMissCount());
+		assertEquals(1, service.getSize());
+	}
+	
+	@Test
+	public void testGetPath_ResultIsUnmodifiable() {
+		eex.expect(UnsupportedOperationException.class);
+		
+		service.getPath(12, 10).clear();
+	}
+	
+	@Test
+	public void testGetPath_EvictsLeastRecentlyUsed() {
+		Collection<Integer> path1 = service.getPath(1, 2);
+		service.getPath(1, 3);
+		service.getPath(1, 4);
+		service.getPath(1, 2);
+		
+		service.getPath(1, 5);
+		
+		assertEquals(3, service.getSize());
+		assertSame(path1, service.getPath(1, 2));
+		assertEquals(2, service.getHitCount());
+		service.getPath(1, 3);
+		assertEquals(5, service.getMissCount());
+	}
+	
+	@Test
+	public void testGetPath_SegmentedSizeIsBounded() {
+		service = new CachingGraph<>(graph, 7, 4);
+		
+		for ( int i = 0; i < 3; i ++ ) {
+			for ( int target = 2; target <= 12; target ++ ) {
+				service.getPath(1, target);
+				service.getPath(target, 1);
+			}
+		}
+		
+		assertTrue(service.getSize() <= 7);
+		Collection<Integer> path = service.getPath(12, 10);
+		assertSame(path, service.getPath(12, 10));
+	}
+	
+	@Test
+	public void testGetPath_Concurrent() throws Exception {
+		service = new CachingGraph<>(graph, 16, 4);
+		AtomicReference<Throwable> error = new AtomicReference<>();
+		List<Thread> threads = new ArrayList<>();
+		for ( int t = 0; t < 4; t ++ ) {
+			threads.add(new Thread(() -> {
+				try {
+					for ( int i = 0; i < 200; i ++ ) {
+						int source = 1 + i % 12, target = 1 + (i * 7 + 3) % 12;
+						if ( source != target ) {
+							assertEquals(graph.getPath(source, target), service.getPath(source, target));
+						}
+					}
+				} catch ( Throwable e ) {
+					error.set(e);
+				}
+			}));
+		}
+		for ( Thread thread : threads ) {
+			thread.start();
+		}
+		for ( Thread thread : threads ) {
+			thread.join();
+		}
+		
+		assertNull(error.get());
+		assertTrue(service.getSize() <= 16);
+		assertTrue(service.getHitCount() > 0);
+	}
+	
+	@Test
+	public void testGetPath_InvalidatedOnAddEdge() {
+		Collection<Integer> path1 = service.getPath(12, 10);
+		
+		service.addEdge(12, 10, 0.5d);
+		
+		Collection<Integer> path2 = service.getPath(12, 10);
+		assertNotSame(path1, path2);
+		assertEquals(Arrays.asList(12, 10), path2);
+		assertEquals(2, service.getMissCount());
+	}
+	
+	@Test
+	public void testGetPath_InvalidatedOnRemoveEdge() {
+		service.getPath(12, 10);
+		
+		service.removeEdge(6, 7);
+		
+		assertEquals(Arrays.asList(12, 3, 8, 11, 7, 10), service.getPath(12, 10));
+		assertEquals(2, service.getMissCount());
+	}
+	
+	@Test
+	public void testGetPath_InvalidatedOnUpdateWeight() {
+		service.getPath(12, 10);
+		
+		service.updateWeight(12, 3, 0.1d);
+		
+		assertEquals(Arrays.asList(12, 3, 8, 11, 7, 10), service.getPath(12, 10));
+		assertEquals(2, service.getMissCount());
+	}
+	
+	@Test
+	public void testGetPath_InvalidatedOnUnderlyingAddEdge() {
+		service.getPath(12, 10);
+		
+		graph.addEdge(12, 10, 0.5d);
+		
+		assertEquals(Arrays.asList(12, 10), service.getPath(12, 10));
+	}
+	
+	@Test
+	public void testGetPath_WriteAfterSnapshotIsNotHidden() {
+		AtomicBoolean armed = new AtomicBoolean();
+		graph = GraphImplTest.loadTestGraphWithWeights(new GraphImpl<Integer>(UNDIRECTED) {
+			@Override
+			public GraphSnapshot<Integer> snapshot() {
+				GraphSnapshot<Integer> snapshot = super.snapshot();
+				// Concurrent write between the snapshot and the caching of the path
+				if ( armed.compareAndSet(true, false) ) {
+					addEdge(12, 10, 0.5d);
+				}
+				return snapshot;
+			}
+		});
+		service = new CachingGraph<>(graph, 3);
+		armed.set(true);
+		
+		assertEquals(Arrays.asList(12, 5, 6, 7, 10), service.getPath(12, 10));
+		assertEquals(Arrays.asList(12, 10), service.getPath(12, 10));
+	}
+	
+	@Test
+	public void testGetPath_ConcurrentWithWrites() throws Exception {
+		graph.addEdge(12, 10, 100.0d);
+		AtomicReference<Throwable> error = new AtomicReference<>();
+		for ( int round = 0; round < 20; round ++ ) {
+			AtomicBoolean stop = new AtomicBoolean();
+			Thread reader = new Thread(() -> {
+				try {
+					while ( stop.get() == false ) {
+						service.getPath(12, 10);
+					}
+				} catch ( Throwable e ) {
+					error.set(e);
+				}
+			});
+			reader.start();
+			for ( int i = 0; i < 100; i ++ ) {
+				graph.updateWeight(12, 10, i % 2 == 0 ? 0.1d : 100.0d);
+			}
+			stop.set(true);
+			reader.join();
+			
+			assertNull(error.get());
+			assertEquals(graph.getPath(12, 10), service.getPath(12, 10));
+		}
+	}
+	
+	@Test
+	public void testGetPath_NotInvalidatedOnAddVertex() {
+		Collection<Integer> path1 = service.getPath(12, 10);
+		
+		service.addVertex(13);
+		
+		assertSame(path1, service.getPath(12, 10));
+		assertEquals(1, service.getHitCount());
+	}
+	
+	@Test
+	public void testGetPath_ThrowsIfPathNotFound() {
+		service.addVertex(13);
+		eex.expect(IllegalStateException.class);
+		eex.expectMessage("Path not found: 1 -> 13");
+		
+		service.getPath(1, 13);
+	}
+	
+	@Test
+	public void testInvalidate() {
+		service.getPath(12, 10);
+		
+		service.invalidate();
+		
+		assertEquals(0, service.getSize());
+	}
+
+}
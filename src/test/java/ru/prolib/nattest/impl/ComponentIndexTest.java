@@ -0,0 +1,95 @@
+package ru.prolib.nattest.impl;
+
+import static org.junit.Assert.*;
+import static ru.prolib.nattest.impl.GraphType.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ComponentIndexTest {
+	ComponentIndex service;
+
+	@Before
+	public void setUp() throws Exception {
+		service = new ComponentIndex(6);
+	}
+
+	@Test
+	public void testCtor() {
+		assertEquals(6, service.getVertexCount());
+		assertEquals(6, service.getComponentCount());
+		for ( int id = 0; id < 6; id ++ ) {
+			assertEquals(id, service.find(id));
+		}
+	}
+
+	@Test
+	public void testUnion() {
+		service = service.union(0, 1).union(2, 3).union(1, 3).union(0, 2);
+
+		assertEquals(3, service.getComponentCount());
+		assertTrue(service.isConnected(0, 3));
+		assertTrue(service.isConnected(2, 1));
+		assertFalse(service.isConnected(0, 4));
+		assertFalse(service.isConnected(4, 5));
+		assertEquals(service.find(0), service.find(2));
+		assertNotEquals(service.find(0), service.find(5));
+	}
+
+	@Test
+	public void testGrow() {
+		service = service.union(0, 5).grow(20).union(5, 19);
+
+		assertEquals(20, service.getVertexCount());
+		assertEquals(18, service.getComponentCount());
+		assertTrue(service.isConnected(0, 19));
+		assertFalse(service.isConnected(0, 10));
+		assertSame(service, service.grow(7));
+	}
+
+	@Test
+	public void testUnion_KeepsOldVersions() {
+		ComponentIndex v1 = service.union(0, 1);
+		ComponentIndex v2 = v1.union(1, 2).grow(8);
+		ComponentIndex v3 = v2.union(7, 0);
+
+		assertEquals(6, service.getComponentCount());
+		assertFalse(service.isConnected(0, 1));
+		assertEquals(5, v1.getComponentCount());
+		assertTrue(v1.isConnected(0, 1));
+		assertFalse(v1.isConnected(0, 2));
+		assertEquals(6, v2.getComponentCount());
+		assertTrue(v2.isConnected(0, 2));
+		assertFalse(v2.isConnected(0, 7));
+		assertEquals(8, v2.getVertexCount());
+		assertEquals(5, v3.getComponentCount());
+		assertTrue(v3.isConnected(2, 7));
+	}
+
+	@Test
+	public void testIsConnected_UnknownVertices() {
+		assertTrue(service.isConnected(0, 6));
+		assertTrue(service.isConnected(100, 1));
+		assertEquals(-1, service.find(6));
+	}
+
+	@Test
+	public void testOf() {
+		GraphImpl<Integer> graph = GraphImplTest.loadTestGraph(new GraphImpl<>(DIRECTED))
+				.addVertex(13).addVertex(14).addVertex(15)
+				.addEdge(14, 15)
+				.removeVertex(13);
+		GraphSnapshot<Integer> snapshot = graph.snapshot();
+
+		service = ComponentIndex.of(snapshot);
+
+		// Removed vertex is not counted
+		assertEquals(2, service.getComponentCount());
+		int id1 = snapshot.getVertexId(1), id12 = snapshot.getVertexId(12),
+				id14 = snapshot.getVertexId(14), id15 = snapshot.getVertexId(15);
+		assertTrue(service.isConnected(id1, id12));
+		assertTrue(service.isConnected(id14, id15));
+		assertFalse(service.isConnected(id1, id15));
+	}
+
+}
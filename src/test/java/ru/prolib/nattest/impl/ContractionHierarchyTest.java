@@ -0,0 +1,115 @@
+package ru.prolib.nattest.impl;
+
+import static org.junit.Assert.*;
+import static ru.prolib.nattest.impl.GraphType.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class ContractionHierarchyTest {
+	@Rule public ExpectedException eex = ExpectedException.none();
+	ContractionHierarchy<Integer> service, service_d;
+
+	@Before
+	public void setUp() throws Exception {
+		service = new ContractionHierarchy<>(GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(UNDIRECTED)).freeze());
+		service_d = new ContractionHierarchy<>(GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(DIRECTED)).freeze());
+	}
+	
+	@Test
+	public void testCtor() {
+		assertEquals(12, service.getGraph().getVertexCount());
+		Set<Integer> ranks = new HashSet<>();
+		for ( int i = 0; i < 12; i ++ ) {
+			ranks.add(service.getRank(i));
+		}
+		assertEquals(12, ranks.size());
+		// Each original edge is kept once in one of upward graphs per direction
+		assertEquals(42 + service.getShortcutCount(), service.getEdgeCount());
+		assertEquals(21 + service_d.getShortcutCount(), service_d.getEdgeCount());
+		assertTrue(service.getPreprocessingTime() > 0);
+		assertTrue(service.getMemoryUsage() > 0);
+	}
+	
+	@Test
+	public void testGetPath() {
+		assertEquals(Arrays.asList(12, 5, 6, 7, 10), service.getPath(12, 10));
+		assertEquals(Arrays.asList(4, 6, 7, 11), service_d.getPath(4, 11));
+		assertEquals(Arrays.asList(7), service_d.getPath(7, 7));
+	}
+	
+	@Test
+	public void testGetPath_SameAsDijkstra() {
+		GraphImpl<Integer> graph = GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(UNDIRECTED));
+		for ( int i = 1; i <= 12; i ++ ) {
+			for ( int j = 1; j <= 12; j ++ ) {
+				assertEquals(graph.getPath(i, j), service.getPath(i, j));
+			}
+		}
+	}
+	
+	@Test
+	public void testFindPath_SameCostAsDijkstra() {
+		for ( GraphType type : GraphType.values() ) {
+			CsrGraph<Integer> graph = BidirectionalDijkstraEngineTest
+					.loadRandomGraph(new GraphImpl<>(type), 5521L, 300, 900).freeze();
+			service = new ContractionHierarchy<>(graph);
+			DijkstraEngine dijkstra = new DijkstraEngine(graph);
+			for ( int source = 0; source < 300; source += 7 ) {
+				for ( int target = 0; target < 300; target += 5 ) {
+					int[] expected = dijkstra.findPath(source, target), actual = service.findPath(source, target);
+					
+					String msg = type + ": " + source + " -> " + target;
+					if ( expected == null ) {
+						assertNull(msg, actual);
+					} else {
+						assertNotNull(msg, actual);
+						assertEquals(msg, source, actual[0]);
+						assertEquals(msg, target, actual[actual.length - 1]);
+						assertEquals(msg, BidirectionalDijkstraEngineTest.getCost(graph, expected),
+								BidirectionalDijkstraEngineTest.getCost(graph, actual), 0.00001d);
+					}
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testGetPath_ThrowsIfSourceNotFound() {
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Vertex not found: 911");
+
+		service.getPath(911, 1);
+	}
+	
+	@Test
+	public void testGetPath_ThrowsIfPathNotFound() {
+		eex.expect(IllegalStateException.class);
+		eex.expectMessage("Path not found: 10 -> 4");
+
+		service_d.getPath(10, 4);
+	}
+	
+	@Test
+	public void testAddVertex_ThrowsUnsupported() {
+		eex.expect(UnsupportedOperationException.class);
+		eex.expectMessage("Graph is read-only");
+
+		service.addVertex(13);
+	}
+	
+	@Test
+	public void testAddEdge_ThrowsUnsupported() {
+		eex.expect(UnsupportedOperationException.class);
+		eex.expectMessage("Graph is read-only");
+
+		service.addEdge(1, 2);
+	}
+
+}
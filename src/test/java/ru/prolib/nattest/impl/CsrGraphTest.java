@@ -0,0 +1,179 @@
+package ru.prolib.nattest.impl;
+
+import static org.junit.Assert.*;
+import static ru.prolib.nattest.impl.GraphType.*;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class CsrGraphTest {
+	@Rule public ExpectedException eex = ExpectedException.none();
+	CsrGraph<Integer> service, service_d;
+
+	@Before
+	public void setUp() throws Exception {
+		service = GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(UNDIRECTED)).freeze();
+		service_d = GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(DIRECTED)).freeze();
+	}
+
+	@Test
+	public void testCtor() {
+		assertTrue(service.isUndirected());
+		assertEquals(12, service.getVertexCount());
+		assertEquals(42, service.getEdgeCount());
+
+		assertTrue(service_d.isDirected());
+		assertEquals(12, service_d.getVertexCount());
+		assertEquals(21, service_d.getEdgeCount());
+	}
+
+	@Test
+	public void testCtor_SkipsEdgesToUnknownVertices() {
+		GraphNodeImpl<Integer> node1 = new GraphNodeImpl<>(1).addEdge(2, 0.5d).addEdge(3, 0.7d),
+				node2 = new GraphNodeImpl<>(2).addEdge(1, 0.5d);
+
+		service = new CsrGraph<>(UNDIRECTED, Arrays.asList(node1, node2));
+
+		assertEquals(2, service.getVertexCount());
+		assertEquals(2, service.getEdgeCount());
+		assertEquals(1, service.getDegree(service.getVertexId(1)));
+		assertEquals(1, service.getDegree(service.getVertexId(2)));
+	}
+
+	@Test
+	public void testGetVertexId() {
+		Set<Integer> actual = new HashSet<>();
+		for ( int i = 1; i <= 12; i ++ ) {
+			int id = service.getVertexId(i);
+			assertTrue(id >= 0 && id < 12);
+			assertEquals(Integer.valueOf(i), service.getVertex(id));
+			actual.add(id);
+		}
+		assertEquals(12, actual.size());
+		assertEquals(-1, service.getVertexId(13));
+	}
+
+	@Test
+	public void testAdjacency() {
+		int id = service_d.getVertexId(7);
+		Set<String> actual = new HashSet<>();
+		for ( int i = 0; i < service_d.getDegree(id); i ++ ) {
+			actual.add(service_d.getVertex(service_d.getTarget(id, i)) + "(" + service_d.getWeight(id, i) + ")");
+		}
+
+		Set<String> expected = new HashSet<>(Arrays.asList("8(0.8)", "9(0.5)", "10(0.3)", "11(0.2)"));
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testGetReverse_Undirected() {
+		assertSame(service, service.getReverse());
+	}
+	
+	@Test
+	public void testGetReverse_Directed() {
+		CsrGraph<Integer> actual = service_d.getReverse();
+		
+		assertNotSame(service_d, actual);
+		assertSame(actual, service_d.getReverse());
+		assertSame(service_d, actual.getReverse());
+		assertEquals(12, actual.getVertexCount());
+		assertEquals(21, actual.getEdgeCount());
+		int id = actual.getVertexId(10);
+		Set<String> neighbors = new HashSet<>();
+		for ( int i = 0; i < actual.getDegree(id); i ++ ) {
+			neighbors.add(actual.getVertex(actual.getTarget(id, i)) + "(" + actual.getWeight(id, i) + ")");
+		}
+		Set<String> expected = new HashSet<>(Arrays.asList("1(0.7)", "7(0.3)", "8(0.8)", "9(0.6)"));
+		assertEquals(expected, neighbors);
+	}
+	
+	@Test
+	public void testGetPath_Bidirectional() {
+		assertEquals(Arrays.asList(12, 5, 6, 7, 10), service.getPath(12, 10, SearchMode.BIDIRECTIONAL));
+		assertEquals(Arrays.asList(4, 6, 7, 11), service_d.getPath(4, 11, SearchMode.BIDIRECTIONAL));
+	}
+	
+	@Test
+	public void testGetPath_BidirectionalThrowsIfPathNotFound() {
+		eex.expect(IllegalStateException.class);
+		eex.expectMessage("Path not found: 10 -> 4");
+
+		service_d.getPath(10, 4, SearchMode.BIDIRECTIONAL);
+	}
+	
+	@Test
+	public void testAddVertex_ThrowsUnsupported() {
+		eex.expect(UnsupportedOperationException.class);
+		eex.expectMessage("Graph is read-only");
+
+		service.addVertex(13);
+	}
+
+	@Test
+	public void testAddEdge_ThrowsUnsupported() {
+		eex.expect(UnsupportedOperationException.class);
+		eex.expectMessage("Graph is read-only");
+
+		service.addEdge(1, 2);
+	}
+
+	@Test
+	public void testGetPath() {
+		assertEquals(Arrays.asList(12, 5, 6, 7, 10), service.getPath(12, 10));
+		assertEquals(Arrays.asList(4, 6, 7, 11), service_d.getPath(4, 11));
+		assertEquals(Arrays.asList(3, 8, 10),
+				GraphImplTest.loadTestGraph(new GraphImpl<>(DIRECTED)).freeze().getPath(3, 10));
+		assertEquals(Arrays.asList(5, 6, 7, 9),
+				GraphImplTest.loadTestGraph(new GraphImpl<>(UNDIRECTED)).freeze().getPath(5, 9));
+	}
+
+	@Test
+	public void testGetPath_SameAsGraphImpl() {
+		GraphImpl<Integer> graph = GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(UNDIRECTED));
+		for ( int i = 1; i <= 12; i ++ ) {
+			for ( int j = 1; j <= 12; j ++ ) {
+				Collection<Integer> expected = graph.getPath(i, j);
+
+				assertEquals(expected, service.getPath(i, j));
+			}
+		}
+	}
+
+	@Test
+	public void testGetPath_SourceIsTarget() {
+		assertEquals(Arrays.asList(5), service.getPath(5, 5));
+	}
+
+	@Test
+	public void testGetPath_ThrowsIfSourceNotFound() {
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Vertex not found: 911");
+
+		service.getPath(911, 1);
+	}
+
+	@Test
+	public void testGetPath_ThrowsIfTargetNotFound() {
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Vertex not found: 112");
+
+		service.getPath(1, 112);
+	}
+
+	@Test
+	public void testGetPath_ThrowsIfPathNotFound() {
+		eex.expect(IllegalStateException.class);
+		eex.expectMessage("Path not found: 10 -> 4");
+
+		service_d.getPath(10, 4);
+	}
+
+}
@@ -0,0 +1,154 @@
+package ru.prolib.nattest.impl;
+
+import static org.junit.Assert.*;
+import static ru.prolib.nattest.impl.GraphType.*;
+import static ru.prolib.nattest.impl.BidirectionalDijkstraEngineTest.getCost;
+import static ru.prolib.nattest.impl.BidirectionalDijkstraEngineTest.loadRandomGraph;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class DeltaSteppingEngineTest {
+	static ForkJoinPool pool;
+	CsrGraph<Integer> graph;
+	DeltaSteppingEngine service;
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		pool = new ForkJoinPool(4);
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		pool.shutdown();
+	}
+
+	int[] ids(int... vertices) {
+		int[] result = new int[vertices.length];
+		for ( int i = 0; i < vertices.length; i ++ ) {
+			result[i] = graph.getVertexId(vertices[i]);
+		}
+		return result;
+	}
+
+	@Test
+	public void testFindPath_TestGraph() {
+		graph = GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(UNDIRECTED)).freeze();
+		service = new DeltaSteppingEngine(graph, pool, 0.0d);
+
+		assertArrayEquals(ids(12, 5, 6, 7, 10), service.findPath(graph.getVertexId(12), graph.getVertexId(10)));
+
+		graph = GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(DIRECTED)).freeze();
+		service = new DeltaSteppingEngine(graph, pool, 0.0d);
+
+		assertArrayEquals(ids(4, 6, 7, 11), service.findPath(graph.getVertexId(4), graph.getVertexId(11)));
+		assertArrayEquals(ids(1, 10), service.findPath(graph.getVertexId(1), graph.getVertexId(10)));
+	}
+
+	@Test
+	public void testFindPath_SourceIsTarget() {
+		graph = GraphImplTest.loadTestGraph(new GraphImpl<>(DIRECTED)).freeze();
+		service = new DeltaSteppingEngine(graph);
+
+		assertArrayEquals(ids(3), service.findPath(graph.getVertexId(3), graph.getVertexId(3)));
+	}
+
+	@Test
+	public void testFindPath_ReturnsNullIfNotFound() {
+		graph = GraphImplTest.loadTestGraph(new GraphImpl<>(DIRECTED)).freeze();
+		service = new DeltaSteppingEngine(graph);
+
+		assertNull(service.findPath(graph.getVertexId(10), graph.getVertexId(4)));
+	}
+
+	@Test
+	public void testFindPath_ZeroWeights() {
+		GraphImpl<Integer> source = new GraphImpl<>(UNDIRECTED);
+		for ( int i = 1; i <= 5; i ++ ) {
+			source.addVertex(i);
+		}
+		source.addEdge(1, 2, 0.0d).addEdge(2, 3, 0.0d).addEdge(3, 1, 0.0d).addEdge(3, 4, 1.0d).addEdge(4, 5, 0.0d);
+		graph = source.freeze();
+		service = new DeltaSteppingEngine(graph, pool, 0.0d);
+
+		int[] actual = service.findPath(graph.getVertexId(1), graph.getVertexId(5));
+
+		assertEquals(graph.getVertexId(1), actual[0]);
+		assertEquals(graph.getVertexId(5), actual[actual.length - 1]);
+		assertEquals(1.0d, getCost(graph, actual), 0.0d);
+	}
+
+	@Test
+	public void testGetDelta() {
+		graph = GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(UNDIRECTED)).freeze();
+
+		assertEquals(0.56190d, new DeltaSteppingEngine(graph).getDelta(), 0.00001d);
+		assertEquals(2.5d, new DeltaSteppingEngine(graph, pool, 2.5d).getDelta(), 0.0d);
+	}
+
+	@Test
+	public void testGetDelta_ReestimatedWhenWeightRangeChanges() {
+		OffHeapGraph<Integer> graph = new OffHeapGraph<>(UNDIRECTED);
+		graph.addVertex(1).addVertex(2).addVertex(3).addEdge(1, 2, 1.0d);
+		service = new DeltaSteppingEngine(graph);
+		assertEquals(1.0d, service.getDelta(), 0.0d);
+
+		graph.addEdge(2, 3, 1.0d);
+		assertEquals(1.0d, service.getDelta(), 0.0d);
+
+		graph.addEdge(1, 3, 4.0d);
+		assertEquals(2.0d, service.getDelta(), 0.0d);
+	}
+
+	@Test
+	public void testFindPath_SameCostAsDijkstra() {
+		// Zero threshold forces parallel expansion, tiny delta puts most vertices out of the window
+		for ( double delta : new double[] { 0.0d, 0.001d, 100.0d } ) {
+			for ( GraphType type : GraphType.values() ) {
+				graph = loadRandomGraph(new GraphImpl<>(type), 9172L, 300, 900).freeze();
+				service = new DeltaSteppingEngine(graph, pool, delta, 0);
+				DijkstraEngine dijkstra = new DijkstraEngine(graph);
+				for ( int source = 0; source < 300; source += 29 ) {
+					for ( int target = 0; target < 300; target += 7 ) {
+						int[] expected = dijkstra.findPath(source, target), actual = service.findPath(source, target);
+
+						String msg = delta + " " + type + ": " + source + " -> " + target;
+						if ( expected == null ) {
+							assertNull(msg, actual);
+						} else {
+							assertNotNull(msg + " " + Arrays.toString(expected), actual);
+							assertEquals(msg, source, actual[0]);
+							assertEquals(msg, target, actual[actual.length - 1]);
+							assertEquals(msg, getCost(graph, expected), getCost(graph, actual), 0.00001d);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testFindPath_Stats() {
+		graph = loadRandomGraph(new GraphImpl<>(UNDIRECTED), 9172L, 300, 900).freeze();
+		service = new DeltaSteppingEngine(graph, pool, 0.0d, 0);
+		SearchStats stats = new SearchStats();
+
+		service.findPath(0, 299, stats);
+
+		assertTrue(stats.getSettledCount() > 0);
+		assertTrue(stats.getRelaxedCount() >= stats.getSettledCount() - 1);
+		assertTrue(stats.getFrontierPeak() > 1);
+	}
+
+	@Test
+	public void testGraphImpl_GetPath() {
+		GraphImpl<Integer> graph = GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(UNDIRECTED));
+
+		assertEquals(Arrays.asList(12, 5, 6, 7, 10), graph.getPath(12, 10, SearchMode.DELTA_STEPPING));
+	}
+
+}
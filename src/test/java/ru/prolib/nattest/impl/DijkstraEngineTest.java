@@ -0,0 +1,145 @@
+package ru.prolib.nattest.impl;
+
+import static org.junit.Assert.*;
+import static ru.prolib.nattest.impl.GraphType.*;
+import static ru.prolib.nattest.impl.BidirectionalDijkstraEngineTest.getCost;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class DijkstraEngineTest {
+	CsrGraph<Integer> graph;
+	DijkstraEngine service;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(DIRECTED)).freeze();
+		service = new DijkstraEngine(graph);
+	}
+	
+	int[] ids(int... vertices) {
+		int[] result = new int[vertices.length];
+		for ( int i = 0; i < vertices.length; i ++ ) {
+			result[i] = graph.getVertexId(vertices[i]);
+		}
+		return result;
+	}
+	
+	@Test
+	public void testFindPath() {
+		assertArrayEquals(ids(4, 6, 7, 11), service.findPath(graph.getVertexId(4), graph.getVertexId(11)));
+		assertArrayEquals(ids(2, 6, 7, 10), service.findPath(graph.getVertexId(2), graph.getVertexId(10)));
+	}
+	
+	@Test
+	public void testFindPath_SourceIsTarget() {
+		assertArrayEquals(ids(3), service.findPath(graph.getVertexId(3), graph.getVertexId(3)));
+	}
+	
+	@Test
+	public void testFindPath_ReturnsNullIfNotFound() {
+		assertNull(service.findPath(graph.getVertexId(10), graph.getVertexId(4)));
+	}
+	
+	@Test
+	public void testFindPath_Reusable() {
+		assertNull(service.findPath(graph.getVertexId(10), graph.getVertexId(4)));
+		assertArrayEquals(ids(4, 6, 7, 11), service.findPath(graph.getVertexId(4), graph.getVertexId(11)));
+		assertArrayEquals(ids(1, 10), service.findPath(graph.getVertexId(1), graph.getVertexId(10)));
+	}
+	
+	@Test
+	public void testSearch_AllReachable() {
+		try ( SearchContext context = SearchContext.acquire(graph.getVertexCount()) ) {
+			assertFalse(service.search(graph.getVertexId(7), -1, context));
+			
+			assertEquals(0.0d, context.getCost(graph.getVertexId(7)), 0.001d);
+			assertEquals(0.8d, context.getCost(graph.getVertexId(8)), 0.001d);
+			assertEquals(0.5d, context.getCost(graph.getVertexId(9)), 0.001d);
+			assertEquals(0.3d, context.getCost(graph.getVertexId(10)), 0.001d);
+			assertEquals(0.2d, context.getCost(graph.getVertexId(11)), 0.001d);
+			assertFalse(context.isReached(graph.getVertexId(1)));
+		}
+	}
+	
+	@Test
+	public void testFindPath_Buckets() {
+		SearchStats stats = new SearchStats();
+		
+		assertArrayEquals(ids(4, 6, 7, 11), service.findPath(graph.getVertexId(4), graph.getVertexId(11),
+				graph.getWeightRange(), stats));
+		assertNull(service.findPath(graph.getVertexId(10), graph.getVertexId(4), graph.getWeightRange(), null));
+		assertArrayEquals(ids(3), service.findPath(graph.getVertexId(3), graph.getVertexId(3),
+				graph.getWeightRange(), null));
+		assertTrue(stats.getSettledCount() > 0);
+		assertTrue(stats.getRelaxedCount() >= stats.getSettledCount());
+	}
+	
+	@Test
+	public void testFindPath_BucketsSameCostAsHeap() {
+		for ( int test = 0; test < 3; test ++ ) {
+			Random random = new Random(7104L + test);
+			GraphBuilder<Integer> builder = new GraphBuilder<>(test == 0 ? UNDIRECTED : DIRECTED);
+			for ( int i = 0; i < 2000; i ++ ) {
+				builder.addVertex(i);
+			}
+			Set<Long> pairs = new HashSet<>();
+			for ( int i = 0; i < 8000; i ++ ) {
+				int source = random.nextInt(2000), target = random.nextInt(2000);
+				if ( source == target || pairs.add((long) Math.min(source, target) << 32 | Math.max(source, target))
+						== false )
+				{
+					continue;
+				}
+				// Whole weights with zeros, quantized weights and a wide range of weights
+				double weight = test == 0 ? random.nextInt(5) : test == 1 ? 0.25d * (1 + random.nextInt(40))
+						: 0.001d + random.nextDouble() * 50.0d;
+				builder.addEdge(source, target, weight);
+			}
+			graph = builder.buildSnapshot();
+			service = new DijkstraEngine(graph);
+			WeightRange weights = graph.getWeightRange();
+			assertFalse(Double.isNaN(BucketQueue.getWidth(weights)));
+			for ( int source = 0; source < 2000; source += 97 ) {
+				for ( int target = 5; target < 2000; target += 89 ) {
+					int[] expected = service.findPath(source, target), actual = service.findPath(source, target,
+							weights, null);
+					String msg = "test " + test + ": " + source + " -> " + target;
+					if ( expected == null ) {
+						assertNull(msg, actual);
+					} else {
+						assertEquals(msg, getCost(graph, expected), getCost(graph, actual), 0.000001d);
+					}
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testFindPath_HeapIfWeightsNotBucketed() {
+		GraphImpl<Integer> source = new GraphImpl<>(DIRECTED);
+		source.addVertex(1).addVertex(2).addVertex(3);
+		source.addEdge(1, 2, 0.0d).addEdge(2, 3, 0.5d).addEdge(1, 3, 1.0d);
+		graph = source.freeze();
+		service = new DijkstraEngine(graph);
+		
+		assertTrue(Double.isNaN(BucketQueue.getWidth(graph.getWeightRange())));
+		assertArrayEquals(ids(1, 2, 3), service.findPath(graph.getVertexId(1), graph.getVertexId(3),
+				graph.getWeightRange(), null));
+	}
+	
+	@Test
+	public void testSearch_EmptyTargets() {
+		try ( SearchContext context = SearchContext.acquire(graph.getVertexCount()) ) {
+			assertEquals(0, service.search(graph.getVertexId(7), new int[0], Double.POSITIVE_INFINITY, context));
+			
+			assertFalse(context.isReached(graph.getVertexId(7)));
+			assertFalse(context.isReached(graph.getVertexId(8)));
+		}
+	}
+
+}
@@ -0,0 +1,124 @@
+package ru.prolib.nattest.impl;
+
+import static org.junit.Assert.*;
+import static ru.prolib.nattest.impl.GraphType.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class DistanceMatrixTest {
+	@Rule public ExpectedException eex = ExpectedException.none();
+	GraphImpl<Integer> graph;
+	DistanceMatrix<Integer> service;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(DIRECTED));
+		service = graph.getDistanceMatrix(Arrays.asList(4, 10, 1), Arrays.asList(11, 4, 10));
+	}
+	
+	@Test
+	public void testGetters() {
+		assertEquals(Arrays.asList(4, 10, 1), service.getSources());
+		assertEquals(Arrays.asList(11, 4, 10), service.getTargets());
+	}
+	
+	@Test
+	public void testGetCost() {
+		assertEquals(0.8d, service.getCost(0, 0), 0.001d);
+		assertEquals(0.0d, service.getCost(0, 1), 0.001d);
+		assertEquals(0.9d, service.getCost(0, 2), 0.001d);
+		assertEquals(Double.POSITIVE_INFINITY, service.getCost(1, 0), 0.001d);
+		assertEquals(0.0d, service.getCost(1, 2), 0.001d);
+		assertEquals(0.7d, service.getCost(2, 2), 0.001d);
+	}
+	
+	@Test
+	public void testGetPath() {
+		assertEquals(Arrays.asList(4, 6, 7, 11), service.getPath(0, 0));
+		assertEquals(Arrays.asList(4), service.getPath(0, 1));
+		assertEquals(Arrays.asList(1, 10), service.getPath(2, 2));
+		assertTrue(service.isReachable(2, 0));
+		assertFalse(service.isReachable(1, 1));
+	}
+	
+	@Test
+	public void testGetPath_ThrowsIfNotFound() {
+		eex.expect(IllegalStateException.class);
+		eex.expectMessage("Path not found: 10 -> 4");
+		
+		service.getPath(1, 1);
+	}
+	
+	@Test
+	public void testGetCost_ThrowsIfOutOfRange() {
+		eex.expect(IndexOutOfBoundsException.class);
+		eex.expectMessage("Cell out of range: 3:0");
+		
+		service.getCost(3, 0);
+	}
+	
+	@Test
+	public void testCtor_ThrowsIfVertexNotFound() {
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Vertex not found: 13");
+		
+		graph.getDistanceMatrix(Arrays.asList(1, 13), Arrays.asList(2));
+	}
+	
+	@Test
+	public void testCtor_Empty() {
+		service = graph.getDistanceMatrix(Collections.emptyList(), Arrays.asList(1, 2));
+		
+		assertEquals(0, service.getSources().size());
+	}
+	
+	@Test
+	public void testCtor_EmptyTargets() {
+		// No search is started, the pool would reject it
+		ForkJoinPool pool = new ForkJoinPool(1);
+		pool.shutdown();
+		
+		service = new DistanceMatrix<>(graph.freeze(), Arrays.asList(1, 2), Collections.emptyList(), pool);
+		
+		assertEquals(Arrays.asList(1, 2), service.getSources());
+		assertEquals(0, service.getTargets().size());
+	}
+	
+	@Test
+	public void testCtor_SameAsGetPath() {
+		graph = BidirectionalDijkstraEngineTest.loadRandomGraph(new GraphImpl<>(UNDIRECTED), 8812L, 200, 600);
+		List<Integer> sources = new ArrayList<>(), targets = new ArrayList<>();
+		for ( int i = 0; i < 200; i += 9 ) {
+			sources.add(i);
+			targets.add(199 - i);
+		}
+		
+		service = graph.getDistanceMatrix(sources, targets, 3);
+		
+		CsrGraph<Integer> snapshot = graph.freeze();
+		DijkstraEngine dijkstra = new DijkstraEngine(snapshot);
+		for ( int row = 0; row < sources.size(); row ++ ) {
+			for ( int column = 0; column < targets.size(); column ++ ) {
+				int[] expected = dijkstra.findPath(snapshot.getVertexId(sources.get(row)),
+						snapshot.getVertexId(targets.get(column)));
+				if ( expected == null ) {
+					assertFalse(service.isReachable(row, column));
+				} else {
+					assertEquals(BidirectionalDijkstraEngineTest.getCost(snapshot, expected),
+							service.getCost(row, column), 0.00001d);
+					assertEquals(graph.getPath(sources.get(row), targets.get(column)), service.getPath(row, column));
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,205 @@
+package ru.prolib.nattest.impl;
+
+import static org.junit.Assert.*;
+import static ru.prolib.nattest.impl.GraphType.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class DynamicShortestPathTreeTest {
+	@Rule public ExpectedException eex = ExpectedException.none();
+	GraphImpl<Integer> graph, graph_d;
+	DynamicShortestPathTree<Integer> service, service_d;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(UNDIRECTED));
+		graph_d = GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(DIRECTED));
+		service = graph.trackShortestPathTree(12);
+		service_d = graph_d.trackShortestPathTree(1);
+	}
+
+	void assertSameAsFullSearch(GraphImpl<Integer> graph, DynamicShortestPathTree<Integer> tree) {
+		ShortestPathTree<Integer> expected = graph.getShortestPathTree(tree.getSource());
+		GraphSnapshot<Integer> snapshot = graph.snapshot();
+		for ( int id = 0; id < snapshot.getVertexCount(); id ++ ) {
+			Integer vertex = snapshot.getVertex(id);
+			assertEquals("Vertex: " + vertex, expected.getCost(vertex), tree.getCost(vertex), 0.0001d);
+		}
+	}
+
+	@Test
+	public void testCtor() {
+		assertEquals(Integer.valueOf(12), service.getSource());
+		assertSameAsFullSearch(graph, service);
+		assertEquals(Arrays.asList(12, 5, 6, 7, 10), service.getPath(10));
+		assertEquals(0.0d, service.getCost(12), 0.0001d);
+		assertEquals(Arrays.asList(12), service.getPath(12));
+
+		assertSameAsFullSearch(graph_d, service_d);
+		assertFalse(service_d.isReachable(2));
+	}
+
+	@Test
+	public void testUpdate_NewEdgeMakesPathsShorter() {
+		graph.addEdge(12, 7, 0.1d);
+
+		assertEquals(Arrays.asList(12, 7, 10), service.getPath(10));
+		assertEquals(0.4d, service.getCost(10), 0.0001d);
+		assertSameAsFullSearch(graph, service);
+	}
+
+	@Test
+	public void testUpdate_NewEdgeDoesNotAffectTree() {
+		graph.addEdge(1, 12, 5.0d);
+
+		assertEquals(0, service.getRepairedCount());
+		assertSameAsFullSearch(graph, service);
+	}
+
+	@Test
+	public void testUpdate_NewVertices() {
+		graph_d.addVertex(13).addVertex(14).addEdge(13, 2, 0.1d);
+
+		assertFalse(service_d.isReachable(13));
+		assertFalse(service_d.isReachable(2));
+
+		graph_d.addEdge(10, 14, 0.2d).addEdge(14, 13, 0.2d);
+
+		assertEquals(Arrays.asList(1, 10, 14, 13, 2), service_d.getPath(2));
+		assertEquals(1.2d, service_d.getCost(2), 0.0001d);
+		assertSameAsFullSearch(graph_d, service_d);
+	}
+
+	@Test
+	public void testUpdate_RandomInsertions() {
+		for ( GraphType type : GraphType.values() ) {
+			GraphImpl<Integer> graph = BidirectionalDijkstraEngineTest.loadRandomGraph(new GraphImpl<>(type),
+					1721L, 300, 600);
+			DynamicShortestPathTree<Integer> tree = graph.trackShortestPathTree(0);
+			Random random = new Random(827L);
+			for ( int i = 0; i < 200; i ++ ) {
+				int source = random.nextInt(300), target = random.nextInt(300);
+				try {
+					graph.addEdge(source, target, 0.1d + random.nextInt(50) / 10.0d);
+				} catch ( IllegalArgumentException e ) {
+					continue;
+				}
+				if ( i % 20 == 0 ) {
+					assertSameAsFullSearch(graph, tree);
+				}
+			}
+			assertSameAsFullSearch(graph, tree);
+		}
+	}
+
+	@Test
+	public void testUpdate_RemovedTreeEdgeCausesRebuild() {
+		graph.removeEdge(6, 7);
+
+		assertEquals(Arrays.asList(12, 3, 8, 11, 7, 10), service.getPath(10));
+		assertEquals(1.9d, service.getCost(10), 0.0001d);
+		assertEquals(12, service.getRepairedCount());
+		assertSameAsFullSearch(graph, service);
+	}
+
+	@Test
+	public void testUpdate_RemovedEdgeDoesNotAffectTree() {
+		graph.removeEdge(8, 10);
+
+		assertEquals(0, service.getRepairedCount());
+		assertSameAsFullSearch(graph, service);
+	}
+
+	@Test
+	public void testUpdate_WeightDecreaseIsRepaired() {
+		graph.updateWeight(12, 3, 0.1d);
+
+		assertEquals(Arrays.asList(12, 3, 8, 11, 7, 10), service.getPath(10));
+		assertEquals(1.3d, service.getCost(10), 0.0001d);
+		assertTrue(service.getRepairedCount() < 12);
+		assertSameAsFullSearch(graph, service);
+	}
+
+	@Test
+	public void testUpdate_WeightIncreaseOfTreeEdge() {
+		graph_d.updateWeight(1, 10, 5.0d);
+
+		assertEquals(Arrays.asList(1, 3, 8, 10), service_d.getPath(10));
+		assertSameAsFullSearch(graph_d, service_d);
+	}
+
+	@Test
+	public void testUpdate_RemovedSource() {
+		graph.removeVertex(12);
+
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Vertex not found: 12");
+		assertFalse(service.isReachable(10));
+		service.getCost(12);
+	}
+
+	@Test
+	public void testUpdate_RandomModifications() {
+		for ( GraphType type : GraphType.values() ) {
+			GraphImpl<Integer> graph = BidirectionalDijkstraEngineTest.loadRandomGraph(new GraphImpl<>(type),
+					5231L, 300, 900);
+			DynamicShortestPathTree<Integer> tree = graph.trackShortestPathTree(0);
+			Random random = new Random(419L);
+			for ( int i = 0; i < 300; i ++ ) {
+				int source = random.nextInt(300), target = random.nextInt(300);
+				double weight = 0.1d + random.nextInt(50) / 10.0d;
+				try {
+					switch ( random.nextInt(3) ) {
+					case 0:
+						graph.addEdge(source, target, weight);
+						break;
+					case 1:
+						graph.removeEdge(source, target);
+						break;
+					default:
+						graph.updateWeight(source, target, weight);
+						break;
+					}
+				} catch ( IllegalArgumentException e ) {
+					continue;
+				}
+				if ( i % 10 == 0 ) {
+					assertSameAsFullSearch(graph, tree);
+				}
+			}
+			assertSameAsFullSearch(graph, tree);
+		}
+	}
+
+	@Test
+	public void testClose() {
+		service.close();
+
+		graph.addEdge(12, 7, 0.1d);
+
+		assertEquals(1.7d, service.getCost(10), 0.0001d);
+	}
+
+	@Test
+	public void testGetPath_ThrowsIfPathNotFound() {
+		eex.expect(IllegalStateException.class);
+		eex.expectMessage("Path not found: 1 -> 2");
+
+		service_d.getPath(2);
+	}
+
+	@Test
+	public void testGetCost_ThrowsIfVertexNotFound() {
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Vertex not found: 13");
+
+		service.getCost(13);
+	}
+
+}
@@ -0,0 +1,182 @@
+package ru.prolib.nattest.impl;
+
+import static org.junit.Assert.*;
+import static ru.prolib.nattest.impl.GraphType.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class EdgeListReaderTest {
+
+	static EdgeListReader newReader(String text, int bufferSize) {
+		return newReader(text.getBytes(StandardCharsets.UTF_8), EdgeListFormat.CSV, bufferSize);
+	}
+
+	static EdgeListReader newReader(byte[] bytes, EdgeListFormat format, int bufferSize) {
+		return new EdgeListReader(Channels.newChannel(new ByteArrayInputStream(bytes)), format, 1.5d, bufferSize);
+	}
+
+	static List<String> readAll(EdgeListReader reader) throws IOException {
+		List<String> result = new ArrayList<>();
+		while ( reader.next() ) {
+			result.add(reader.getSource() + "-" + reader.getTarget() + "(" + reader.getWeight() + ")");
+		}
+		return result;
+	}
+
+	@Rule public ExpectedException eex = ExpectedException.none();
+	EdgeListReader service;
+
+	@Test
+	public void testNext_Csv() throws Exception {
+		service = newReader("# comment\n"
+				+ "1,2,0.5\n"
+				+ "\n"
+				+ "3;4;12\r\n"
+				+ "  5\t6  \n"
+				+ "7 8 -2.25e1\n"
+				+ "-9,+10,1E-3\n"
+				+ "11,12,.5\n"
+				+ "13,14,0.000\n"
+				+ "15,16,1234567.891011121314\n"
+				+ "17,18,Infinity\n"
+				+ "19,20,3.0", 1024);
+
+		assertEquals(Arrays.asList("1-2(0.5)", "3-4(12.0)", "5-6(1.5)", "7-8(-22.5)", "-9-10(0.001)", "11-12(0.5)",
+				"13-14(0.0)", "15-16(" + 1234567.891011121314d + ")", "17-18(Infinity)", "19-20(3.0)"), readAll(service));
+		assertEquals(10L, service.getEdgeCount());
+		assertFalse(service.next());
+	}
+
+	@Test
+	public void testNext_CsvLinesCrossBuffer() throws Exception {
+		StringBuilder text = new StringBuilder();
+		List<String> expected = new ArrayList<>();
+		for ( int i = 0; i < 1000; i ++ ) {
+			text.append(i).append(',').append(i * 7 + 1).append(',').append(i / 8.0d).append('\n');
+			expected.add(i + "-" + (i * 7 + 1) + "(" + (i / 8.0d) + ")");
+		}
+		service = newReader(text.toString(), 32);
+
+		assertEquals(expected, readAll(service));
+	}
+
+	@Test
+	public void testNext_CsvParsesLikeJdk() throws Exception {
+		String[] weights = { "0.1", "0.3", "2.675", "1e22", "1e-22", "123456789012345", "9.007199254740993",
+				"4.35", "0.1e1", "100.001" };
+		StringBuilder text = new StringBuilder();
+		for ( String weight : weights ) {
+			text.append("1,2,").append(weight).append('\n');
+		}
+		service = newReader(text.toString(), 1024);
+
+		for ( String weight : weights ) {
+			assertTrue(service.next());
+			assertEquals(weight, Double.parseDouble(weight), service.getWeight(), 0.0d);
+		}
+	}
+
+	@Test
+	public void testNext_ThrowsIfMalformed() throws Exception {
+		service = newReader("1,2\n3,x,1.0\n", 1024);
+		service.next();
+		eex.expect(IOException.class);
+		eex.expectMessage("Malformed line 2: 3,x,1.0");
+
+		service.next();
+	}
+
+	@Test
+	public void testNext_ThrowsIfExtraFields() throws Exception {
+		service = newReader("1,2,1.0,5\n", 1024);
+		eex.expect(IOException.class);
+		eex.expectMessage("Malformed line 1: 1,2,1.0,5");
+
+		service.next();
+	}
+
+	@Test
+	public void testNext_ThrowsIfLineIsTooLong() throws Exception {
+		service = newReader("1,2\n1000000,2000000,3.0000000\n", 16);
+		service.next();
+		eex.expect(IOException.class);
+		eex.expectMessage("Line is too long: 2");
+
+		service.next();
+	}
+
+	@Test
+	public void testNext_Binary() throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try ( EdgeListWriter writer = new EdgeListWriter(Channels.newChannel(output), EdgeListFormat.BINARY) ) {
+			for ( int i = 0; i < 100; i ++ ) {
+				writer.write(i, -i, i / 4.0d);
+			}
+		}
+		service = newReader(output.toByteArray(), EdgeListFormat.BINARY, 50);
+
+		for ( int i = 0; i < 100; i ++ ) {
+			assertTrue(service.next());
+			assertEquals(i, service.getSource());
+			assertEquals(-i, service.getTarget());
+			assertEquals(i / 4.0d, service.getWeight(), 0.0d);
+		}
+		assertFalse(service.next());
+	}
+
+	@Test
+	public void testNext_BinaryThrowsIfUnsupportedFormat() throws Exception {
+		service = newReader(new byte[32], EdgeListFormat.BINARY, 1024);
+		eex.expect(IOException.class);
+		eex.expectMessage("Unsupported file format");
+
+		service.next();
+	}
+
+	@Test
+	public void testNext_BinaryThrowsIfTruncated() throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try ( EdgeListWriter writer = new EdgeListWriter(Channels.newChannel(output), EdgeListFormat.BINARY) ) {
+			writer.write(1, 2, 1.0d).write(2, 3, 1.0d);
+		}
+		service = newReader(Arrays.copyOf(output.toByteArray(), output.size() - 1), EdgeListFormat.BINARY, 1024);
+		service.next();
+		eex.expect(IOException.class);
+		eex.expectMessage("Unexpected end of file after edge 1");
+
+		service.next();
+	}
+
+	@Test
+	public void testRead_Builder() throws Exception {
+		service = newReader("1,3,0.9\n3,12,0.7\n12,5,0.7\n5,6\n", 1024);
+
+		GraphImpl<Integer> actual = service.read(new GraphBuilder<>(DIRECTED), x -> (int) x).build();
+
+		assertEquals(Arrays.asList(1, 3, 12, 5, 6), actual.getPath(1, 6));
+		assertEquals(GraphSnapshotTest.toSet("6(1.5)"), GraphSnapshotTest.getEdges(actual.snapshot(), 5));
+	}
+
+	@Test
+	public void testRead_Graph() throws Exception {
+		service = newReader("1,3,0.9\n3,12,0.7\n12,5,0.7\n5,6\n", 1024);
+		GraphImpl<Long> graph = new GraphImpl<Long>(UNDIRECTED).addVertex(6L);
+
+		GraphImpl<Long> actual = service.read(graph, Long::valueOf);
+
+		assertSame(graph, actual);
+		assertEquals(Arrays.asList(6L, 5L, 12L, 3L, 1L), actual.getPath(6L, 1L));
+	}
+
+}
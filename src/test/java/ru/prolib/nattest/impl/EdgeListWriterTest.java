@@ -0,0 +1,70 @@
+package ru.prolib.nattest.impl;
+
+import static org.junit.Assert.*;
+import static ru.prolib.nattest.impl.GraphType.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class EdgeListWriterTest {
+	@Rule public TemporaryFolder folder = new TemporaryFolder();
+	ByteArrayOutputStream output;
+	EdgeListWriter service;
+
+	@Before
+	public void setUp() throws Exception {
+		output = new ByteArrayOutputStream();
+		service = new EdgeListWriter(Channels.newChannel(output), EdgeListFormat.CSV, 16);
+	}
+
+	@Test
+	public void testWrite_Csv() throws Exception {
+		service.write(1, 2, 0.5d)
+			.write(-30, 4000, 12.0d)
+			.write(Long.MAX_VALUE, Long.MIN_VALUE, 1e20d)
+			.write(0, 7, -0.125d)
+			.write(8, 9, Double.POSITIVE_INFINITY);
+		service.close();
+
+		assertEquals("1,2,0.5\n"
+				+ "-30,4000,12\n"
+				+ "9223372036854775807,-9223372036854775808,1.0E20\n"
+				+ "0,7,-0.125\n"
+				+ "8,9,Infinity\n", new String(output.toByteArray(), StandardCharsets.US_ASCII));
+		assertEquals(5L, service.getEdgeCount());
+	}
+
+	@Test
+	public void testWrite_Graph() throws Exception {
+		for ( EdgeListFormat format : EdgeListFormat.values() ) {
+			for ( GraphType type : GraphType.values() ) {
+				GraphImpl<Integer> expected = GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(type));
+				Path file = folder.newFile().toPath();
+				try ( EdgeListWriter writer = EdgeListWriter.create(file, format) ) {
+					writer.write(expected, x -> x);
+					assertEquals(21L, writer.getEdgeCount());
+				}
+
+				GraphImpl<Integer> actual;
+				try ( EdgeListReader reader = EdgeListReader.open(file, format, 1.0d) ) {
+					actual = reader.read(new GraphBuilder<>(type), x -> (int) x).build();
+				}
+
+				CsrGraph<Integer> expected_csr = expected.freeze(), actual_csr = actual.freeze();
+				assertEquals(expected_csr.getEdgeCount(), actual_csr.getEdgeCount());
+				for ( int vertex = 1; vertex <= 12; vertex ++ ) {
+					assertEquals(GraphSnapshotTest.getEdges(expected_csr, vertex),
+							GraphSnapshotTest.getEdges(actual_csr, vertex));
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,232 @@
+package ru.prolib.nattest.impl;
+
+import static org.junit.Assert.*;
+import static ru.prolib.nattest.impl.GraphType.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class GraphBuilderTest {
+
+	static GraphBuilder<Integer> loadTestGraphWithWeights(GraphBuilder<Integer> builder) {
+		GraphImpl<Integer> graph = GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(DIRECTED));
+		builder.addVertices(IntStream.rangeClosed(1, 12).boxed());
+		graph.stream().flatMap(x -> x.getEdges().stream()).forEach(x -> builder.addEdge(x.getSource(),
+				x.getTarget(), x.getWeight()));
+		return builder;
+	}
+
+	static Map<Integer, Set<GraphEdge<Integer>>> toEdgeMap(GraphImpl<Integer> graph) {
+		return graph.stream().collect(Collectors.toMap(x -> x.getVertex(), x -> new HashSet<>(x.getEdges())));
+	}
+
+	@Rule public ExpectedException eex = ExpectedException.none();
+	GraphBuilder<Integer> service, service_d;
+
+	@Before
+	public void setUp() throws Exception {
+		service = new GraphBuilder<>(UNDIRECTED);
+		service_d = new GraphBuilder<>(DIRECTED, 100, 200);
+	}
+
+	@Test
+	public void testCtor() {
+		assertEquals(UNDIRECTED, service.getType());
+		assertEquals(1.0d, service.getDefaultWeight(), 0.01d);
+		assertEquals(0, service.getVertexCount());
+		assertEquals(0, service.getEdgeCount());
+		assertEquals(DIRECTED, service_d.getType());
+	}
+
+	@Test
+	public void testCtor_ThrowsIfNegativeCount() {
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Expected counts cannot be negative: 10/-1");
+
+		new GraphBuilder<>(DIRECTED, 10, -1);
+	}
+
+	@Test
+	public void testAddVertex() {
+		for ( int i = 0; i < 100; i ++ ) {
+			service.addVertex(i * 10);
+		}
+
+		assertEquals(100, service.getVertexCount());
+		assertEquals(0, service.getVertexId(0));
+		assertEquals(57, service.getVertexId(570));
+		assertEquals(-1, service.getVertexId(571));
+	}
+
+	@Test
+	public void testAddVertex_ThrowsIfExists() {
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Vertex already exists: 5");
+		service.addVertex(5);
+
+		service.addVertex(5);
+	}
+
+	@Test
+	public void testAddVertex_ThrowsIfNull() {
+		eex.expect(NullPointerException.class);
+		eex.expectMessage("Vertex cannot be null");
+
+		service.addVertex(null);
+	}
+
+	@Test
+	public void testAddEdge_ThrowsIfVertexNotFound() {
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Vertex not found: 3");
+		service.addVertices(Arrays.asList(1, 2));
+
+		service.addEdge(1, 3);
+	}
+
+	@Test
+	public void testAddEdge_ThrowsIfSameVertex() {
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Cannot use same vertex as source and target: 1");
+		service.addVertices(Arrays.asList(1, 2));
+
+		service.addEdge(1, 1);
+	}
+
+	@Test
+	public void testAddEdges_Arrays() {
+		service_d.withDefaultWeight(0.5d).addVertices(Arrays.asList(10, 20, 30));
+
+		service_d.addEdges(new int[] { 0, 1, 2 }, new int[] { 1, 2, 0 }, new double[] { 1.0d, 0.2d, 0.3d });
+		service_d.addEdges(new int[] { 0 }, new int[] { 2 }, null);
+
+		CsrGraph<Integer> actual = service_d.buildSnapshot();
+		assertEquals(4, actual.getEdgeCount());
+		assertEquals(Arrays.asList(10, 30), actual.getPath(10, 30));
+		assertEquals(Arrays.asList(20, 30, 10), actual.getPath(20, 10));
+		assertEquals(0.5d, actual.getShortestPathTree(10).getCost(30), 0.001d);
+	}
+
+	@Test
+	public void testAddEdges_ArraysThrowsIfLengthMismatch() {
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Array lengths mismatch");
+		service_d.addVertices(Arrays.asList(10, 20, 30));
+
+		service_d.addEdges(new int[] { 0, 1 }, new int[] { 1 }, null);
+	}
+
+	@Test
+	public void testAddEdges_ArraysThrowsIfVertexNotFound() {
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Vertex not found: #3");
+		service_d.addVertices(Arrays.asList(10, 20, 30));
+
+		service_d.addEdges(new int[] { 0, 1 }, new int[] { 1, 3 }, null);
+	}
+
+	@Test
+	public void testBuildSnapshot() {
+		CsrGraph<Integer> expected = GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(UNDIRECTED)).freeze();
+
+		CsrGraph<Integer> actual = loadTestGraphWithWeights(service).buildSnapshot();
+
+		assertTrue(actual.isUndirected());
+		assertSame(actual, actual.getReverse());
+		assertEquals(12, actual.getVertexCount());
+		assertEquals(42, actual.getEdgeCount());
+		for ( int i = 1; i <= 12; i ++ ) {
+			ShortestPathTree<Integer> expected_tree = expected.getShortestPathTree(i),
+					actual_tree = actual.getShortestPathTree(i);
+			for ( int j = 1; j <= 12; j ++ ) {
+				assertEquals(expected_tree.getCost(j), actual_tree.getCost(j), 0.0001d);
+			}
+		}
+		assertEquals(Arrays.asList(12, 5, 6, 7, 10), actual.getPath(12, 10));
+	}
+
+	@Test
+	public void testBuildSnapshot_ThrowsIfEdgeDefinedTwice() {
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Edge already defined: 1 -> 2");
+		service.addVertices(Arrays.asList(1, 2, 3))
+			.addEdge(1, 2)
+			.addEdge(2, 3)
+			.addEdge(2, 1);
+
+		service.buildSnapshot();
+	}
+
+	@Test
+	public void testBuildSnapshot_DirectedAllowsOppositeEdges() {
+		service_d.addVertices(Arrays.asList(1, 2))
+			.addEdge(1, 2, 0.5d)
+			.addEdge(2, 1, 0.7d);
+
+		CsrGraph<Integer> actual = service_d.buildSnapshot();
+
+		assertEquals(2, actual.getEdgeCount());
+	}
+
+	@Test
+	public void testBuild() {
+		GraphImpl<Integer> expected = GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(DIRECTED));
+
+		GraphImpl<Integer> actual = loadTestGraphWithWeights(service_d.withDefaultWeight(4.0d)).build();
+
+		assertTrue(actual.isDirected());
+		assertEquals(4.0d, actual.getDefaultWeight(), 0.01d);
+		assertEquals(toEdgeMap(expected), toEdgeMap(actual));
+		assertEquals(Arrays.asList(4, 6, 7, 11), actual.getPath(4, 11));
+	}
+
+	@Test
+	public void testBuild_UsesBuiltSnapshotUntilModified() {
+		GraphImpl<Integer> actual = loadTestGraphWithWeights(service).build();
+		CsrGraph<Integer> snapshot = actual.freeze();
+
+		assertSame(snapshot, actual.freeze());
+		actual.addVertex(13).addEdge(13, 1, 0.1d);
+		assertNotSame(snapshot, actual.freeze());
+		assertEquals(Arrays.asList(13, 1, 10), actual.getPath(13, 10));
+	}
+
+	@Test
+	public void testBuild_SharesDictionaryWithBuiltSnapshot() {
+		GraphImpl<Integer> actual = loadTestGraphWithWeights(service).build();
+		CsrGraph<Integer> snapshot = actual.freeze();
+
+		assertSame(snapshot.getDictionary(), actual.snapshot().getDictionary());
+		actual.addVertex(13);
+		service.addVertex(14);
+
+		assertEquals(-1, snapshot.getVertexId(13));
+		assertEquals(12, snapshot.getVertexCount());
+		assertEquals(12, actual.snapshot().getVertexId(13));
+		assertEquals(-1, actual.snapshot().getVertexId(14));
+		assertEquals(12, service.getVertexId(14));
+	}
+
+	@Test
+	public void testBuild_ModifiesNodesTakenFromSnapshot() {
+		GraphImpl<Integer> expected = GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(UNDIRECTED));
+		GraphImpl<Integer> actual = loadTestGraphWithWeights(service).build();
+
+		for ( GraphImpl<Integer> graph : Arrays.asList(expected, actual) ) {
+			graph.updateWeight(7, 11, 0.9d).removeEdge(1, 3).addEdge(1, 12, 0.1d);
+		}
+
+		assertEquals(toEdgeMap(expected), toEdgeMap(actual));
+		assertEquals(Arrays.asList(1, 12, 5), actual.getPath(1, 5));
+	}
+
+}
@@ -3,9 +3,15 @@ package ru.prolib.nattest.impl;
 import static org.junit.Assert.*;
 import static ru.prolib.nattest.impl.GraphType.*;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -234,6 +240,209 @@ public class GraphImplTest {
 		service.addEdge(504, 504);
 	}
 	
+	@Test
+	public void testAddEdge3_UndirectedThrowsIfReverseEdgeExists() {
+		service.addVertex(504).addVertex(256).addEdge(504, 256, 1.0d);
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Edge already defined: 256 -> 504");
+		
+		service.addEdge(256, 504, 2.0d);
+	}
+	
+	@Test
+	public void testAddEdge3_VersionsUnchangedIfFailed() {
+		service.addVertex(504).addVertex(256).addEdge(504, 256, 1.0d);
+		long version = service.getVersion(), edge_version = service.getEdgeVersion();
+		
+		try {
+			service.addEdge(256, 504, 2.0d);
+			fail("Expected: IllegalArgumentException");
+		} catch ( IllegalArgumentException e ) { }
+		
+		assertEquals(version, service.getVersion());
+		assertEquals(edge_version, service.getEdgeVersion());
+	}
+	
+	@Test
+	public void testAddEdge3_ConcurrentUndirectedIsAtomic() throws Exception {
+		final int vertex_count = 40, thread_count = 8;
+		for ( int i = 0; i < vertex_count; i ++ ) {
+			service.addVertex(i);
+		}
+		// Each thread tries to add all pairs in random direction with own weight.
+		// Exactly one attempt per pair must succeed and both directions must be equal.
+		AtomicInteger added = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<>();
+		for ( int t = 0; t < thread_count; t ++ ) {
+			final double weight = t + 1;
+			final Random random = new Random(t);
+			Thread thread = new Thread(() -> {
+				try {
+					start.await();
+				} catch ( InterruptedException e ) {
+					return;
+				}
+				for ( int i = 0; i < vertex_count; i ++ ) {
+					for ( int j = i + 1; j < vertex_count; j ++ ) {
+						try {
+							if ( random.nextBoolean() ) {
+								service.addEdge(i, j, weight);
+							} else {
+								service.addEdge(j, i, weight);
+							}
+							added.incrementAndGet();
+						} catch ( IllegalArgumentException e ) { }
+					}
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		start.countDown();
+		for ( Thread thread : threads ) {
+			thread.join();
+		}
+		
+		assertEquals(vertex_count * (vertex_count - 1) / 2, added.get());
+		for ( int i = 0; i < vertex_count; i ++ ) {
+			for ( GraphEdge<Integer> edge : nodes.get(i).getEdges() ) {
+				GraphEdge<Integer> reverse = nodes.get(edge.getTarget()).getEdges().stream()
+					.filter(x -> x.getTarget().equals(edge.getSource()))
+					.findFirst()
+					.orElse(null);
+				assertNotNull(reverse);
+				assertEquals(edge.getWeight(), reverse.getWeight(), 0.0d);
+			}
+			assertEquals(vertex_count - 1, nodes.get(i).getEdges().size());
+		}
+	}
+	
+	@Test
+	public void testRemoveEdge_Undirected() {
+		loadTestGraphWithWeights(service);
+		
+		assertSame(service, service.removeEdge(7, 6));
+		
+		assertFalse(nodes.get(6).isNeighbor(7));
+		assertFalse(nodes.get(7).isNeighbor(6));
+		assertEquals(Arrays.asList(12, 3, 8, 11, 7, 10), service.getPath(12, 10));
+		assertEquals(40, service.freeze().getEdgeCount());
+	}
+	
+	@Test
+	public void testRemoveEdge_Directed() {
+		service_d.addVertex(504).addVertex(256).addEdge(504, 256, 1.0d).addEdge(256, 504, 2.0d);
+		
+		assertSame(service_d, service_d.removeEdge(504, 256));
+		
+		assertEquals(new GraphNodeImpl<>(504), nodes_d.get(504));
+		assertEquals(new GraphNodeImpl<>(256).addEdge(504, 2.0d), nodes_d.get(256));
+		assertEquals(1, service_d.freeze().getEdgeCount());
+	}
+	
+	@Test
+	public void testRemoveEdge_ThrowsIfEdgeNotFound() {
+		loadTestGraph(service);
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Edge not found: 1 -> 2");
+		
+		service.removeEdge(1, 2);
+	}
+	
+	@Test
+	public void testRemoveEdge_ThrowsIfVertexNotFound() {
+		loadTestGraph(service);
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Vertex not found: 13");
+		
+		service.removeEdge(1, 13);
+	}
+	
+	@Test
+	public void testUpdateWeight_Undirected() {
+		loadTestGraphWithWeights(service);
+		
+		assertSame(service, service.updateWeight(12, 3, 0.1d));
+		
+		assertTrue(nodes.get(12).getEdges().contains(new GraphEdgeImpl<>(12, 3, 0.1d)));
+		assertTrue(nodes.get(3).getEdges().contains(new GraphEdgeImpl<>(3, 12, 0.1d)));
+		assertEquals(Arrays.asList(12, 3, 8, 11, 7, 10), service.getPath(12, 10));
+		assertEquals(42, service.freeze().getEdgeCount());
+	}
+	
+	@Test
+	public void testUpdateWeight_Directed() {
+		loadTestGraphWithWeights(service_d);
+		
+		assertSame(service_d, service_d.updateWeight(1, 10, 5.0d));
+		
+		assertTrue(nodes_d.get(1).getEdges().contains(new GraphEdgeImpl<>(1, 10, 5.0d)));
+		assertEquals(Arrays.asList(1, 3, 8, 10), service_d.getPath(1, 10));
+	}
+	
+	@Test
+	public void testUpdateWeight_ThrowsIfEdgeNotFound() {
+		loadTestGraph(service_d);
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Edge not found: 10 -> 1");
+		
+		service_d.updateWeight(10, 1, 1.0d);
+	}
+	
+	@Test
+	public void testRemoveVertex_Undirected() {
+		loadTestGraphWithWeights(service);
+		
+		assertSame(service, service.removeVertex(6));
+		
+		assertNull(nodes.get(6));
+		for ( GraphNodeImpl<Integer> node : nodes.values() ) {
+			assertFalse(node.isNeighbor(6));
+		}
+		assertEquals(Arrays.asList(12, 3, 8, 11, 7, 10), service.getPath(12, 10));
+		CsrGraph<Integer> actual = service.freeze();
+		assertEquals(11, actual.getVertexCount());
+		assertEquals(32, actual.getEdgeCount());
+		assertEquals(-1, actual.getVertexId(6));
+	}
+	
+	@Test
+	public void testRemoveVertex_Directed() {
+		loadTestGraphWithWeights(service_d);
+		
+		assertSame(service_d, service_d.removeVertex(7));
+		
+		assertNull(nodes_d.get(7));
+		assertFalse(nodes_d.get(6).isNeighbor(7));
+		assertEquals(Arrays.asList(6, 8, 10), service_d.getPath(6, 10));
+		CsrGraph<Integer> actual = service_d.freeze();
+		assertEquals(11, actual.getVertexCount());
+		assertEquals(16, actual.getEdgeCount());
+	}
+	
+	@Test
+	public void testRemoveVertex_CanBeAddedAgain() {
+		loadTestGraphWithWeights(service);
+		service.removeVertex(6);
+		
+		service.addVertex(6).addEdge(6, 7, 0.3d);
+		
+		GraphSnapshot<Integer> actual = service.snapshot();
+		assertEquals(1, actual.getDegree(actual.getVertexId(6)));
+		assertEquals(34, actual.getEdgeCount());
+		assertEquals(Arrays.asList(6, 7, 10), service.getPath(6, 10));
+	}
+	
+	@Test
+	public void testRemoveVertex_ThrowsIfVertexNotFound() {
+		loadTestGraph(service);
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Vertex not found: 13");
+		
+		service.removeVertex(13);
+	}
+	
 	@Test
 	public void testGetPath_UndirectedWoWeights() {
 		assertTrue(service.isUndirected());
@@ -278,6 +487,31 @@ public class GraphImplTest {
 		assertEquals(expected, actual);
 	}
 	
+	@Test
+	public void testGetPath_Bidirectional() {
+		loadTestGraph(service);
+		loadTestGraphWithWeights(service_d);
+		
+		assertEquals(Arrays.asList(5, 6, 7, 9), service.getPath(5, 9, SearchMode.BIDIRECTIONAL));
+		assertEquals(Arrays.asList(4, 6, 7, 11), service_d.getPath(4, 11, SearchMode.BIDIRECTIONAL));
+	}
+	
+	@Test
+	public void testGetPath_AStar() {
+		loadTestGraphWithWeights(service);
+		
+		assertEquals(Arrays.asList(12, 5, 6, 7, 10), service.getPath(12, 10, (a, b) -> 0.0d));
+	}
+	
+	@Test
+	public void testGetPath_AStarThrowsIfPathNotFound() {
+		loadTestGraph(service_d);
+		eex.expect(IllegalStateException.class);
+		eex.expectMessage("Path not found: 10 -> 4");
+		
+		service_d.getPath(10, 4, (a, b) -> 0.0d);
+	}
+	
 	@Test
 	public void testGetPath_ThrowsIfSourceNotFound() {
 		loadTestGraph(service);
@@ -316,6 +550,117 @@ public class GraphImplTest {
 		service_d.getPath(10, 4);
 	}
 	
+	@Test
+	public void testGetPath_RejectsDisconnectedWithoutSearch() {
+		loadTestGraph(service).addVertex(13).addVertex(14).addEdge(13, 14);
+		SearchStats stats = new SearchStats();
+		
+		try {
+			service.snapshot().getPath(1, 14, SearchMode.DIJKSTRA, stats);
+			fail("Expected: IllegalStateException");
+		} catch ( IllegalStateException e ) {
+			assertEquals("Path not found: 1 -> 14", e.getMessage());
+		}
+		
+		assertFalse(stats.isFound());
+		assertEquals(0, stats.getSettledCount());
+	}
+	
+	@Test
+	public void testGetPath_DirectedRejectedByStrongComponents() {
+		loadTestGraph(service_d);
+		SearchStats stats = new SearchStats();
+		service_d.getStrongComponents();
+		
+		try {
+			service_d.snapshot().getPath(10, 4, SearchMode.DIJKSTRA, stats);
+			fail("Expected: IllegalStateException");
+		} catch ( IllegalStateException e ) {
+			assertEquals("Path not found: 10 -> 4", e.getMessage());
+		}
+		
+		assertEquals(0, stats.getSettledCount());
+		assertEquals(Arrays.asList(4, 6, 7, 10), service_d.getPath(4, 10));
+	}
+	
+	@Test
+	public void testComponents_UpdatedByAddEdge() {
+		loadTestVertices(service);
+		GraphSnapshot<Integer> snapshot1 = service.snapshot();
+		assertEquals(12, service.getComponentCount());
+		
+		service.addEdge(1, 2).addEdge(3, 4).addEdge(2, 4);
+		
+		assertNotNull(service.snapshot().peekComponentIndex());
+		assertEquals(9, service.getComponentCount());
+		assertTrue(service.isConnected(1, 3));
+		assertFalse(service.isConnected(1, 5));
+		
+		service.addVertex(13).addEdge(5, 13);
+		
+		assertEquals(9, service.getComponentCount());
+		assertTrue(service.isConnected(13, 5));
+	}
+	
+	@Test
+	public void testComponents_OldSnapshotUnchanged() {
+		loadTestVertices(service);
+		service.addEdge(1, 2);
+		GraphSnapshot<Integer> snapshot1 = service.snapshot();
+		assertEquals(11, snapshot1.getComponentCount());
+		
+		service.addEdge(2, 3);
+		
+		assertEquals(11, snapshot1.getComponentCount());
+		assertFalse(snapshot1.isConnected(1, 3));
+		assertEquals(10, service.snapshot().getComponentCount());
+		assertTrue(service.snapshot().isConnected(1, 3));
+	}
+	
+	@Test
+	public void testComponents_RebuiltAfterRemovals() {
+		loadTestGraph(service_d).addVertex(13).addEdge(12, 13);
+		assertEquals(1, service_d.getComponentCount());
+		
+		service_d.removeEdge(12, 13);
+		
+		assertNull(service_d.snapshot().peekComponentIndex());
+		assertEquals(2, service_d.getComponentCount());
+		assertFalse(service_d.isConnected(13, 1));
+		
+		service_d.removeVertex(13).addEdge(4, 12);
+		
+		assertEquals(1, service_d.getComponentCount());
+		
+		service_d.addVertex(13);
+		
+		assertEquals(2, service_d.getComponentCount());
+	}
+	
+	@Test
+	public void testComponents_ThrowsIfVertexNotFound() {
+		loadTestGraph(service);
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Vertex not found: 13");
+		
+		service.isConnected(1, 13);
+	}
+	
+	@Test
+	public void testGetStrongComponents() {
+		loadTestGraph(service_d).addEdge(10, 1);
+		
+		StrongComponents<Integer> actual = service_d.getStrongComponents();
+		
+		assertEquals(9, actual.getComponentCount());
+		assertTrue(actual.isStronglyConnected(3, 10));
+		assertSame(actual, service_d.getStrongComponents());
+		service_d.addEdge(11, 2);
+		assertNotSame(actual, service_d.getStrongComponents());
+		// All vertices but 12 are on cycles through 2 now
+		assertEquals(2, service_d.getStrongComponents().getComponentCount());
+	}
+	
 	@Test
 	public void testGetPath_JustCase1() {
 		service.addVertex(1)
@@ -334,6 +679,133 @@ public class GraphImplTest {
 		assertEquals(expected, actual);
 	}
 	
+	@Test
+	public void testFreeze() {
+		loadTestGraph(service);
+		
+		CsrGraph<Integer> actual = service.freeze();
+		
+		assertTrue(actual.isUndirected());
+		assertEquals(12, actual.getVertexCount());
+		assertEquals(42, actual.getEdgeCount());
+		assertSame(actual, service.freeze());
+	}
+	
+	@Test
+	public void testFreeze_RebuildsIfModified() {
+		loadTestGraph(service);
+		CsrGraph<Integer> snapshot1 = service.freeze();
+		long version = service.getVersion();
+		
+		service.addVertex(13);
+		
+		assertNotEquals(version, service.getVersion());
+		CsrGraph<Integer> snapshot2 = service.freeze();
+		assertNotSame(snapshot1, snapshot2);
+		assertEquals(13, snapshot2.getVertexCount());
+		
+		service.addEdge(13, 1);
+		
+		CsrGraph<Integer> snapshot3 = service.freeze();
+		assertNotSame(snapshot2, snapshot3);
+		assertEquals(44, snapshot3.getEdgeCount());
+		assertEquals(Arrays.asList(13, 1), service.getPath(13, 1));
+	}
+	
+	@Test
+	public void testSnapshot() {
+		loadTestGraphWithWeights(service);
+		
+		GraphSnapshot<Integer> actual = service.snapshot();
+		
+		assertTrue(actual.isUndirected());
+		assertEquals(12, actual.getVertexCount());
+		assertEquals(42, actual.getEdgeCount());
+		assertSame(actual, service.snapshot());
+		assertEquals(Arrays.asList(12, 5, 6, 7, 10), actual.getPath(12, 10));
+	}
+	
+	@Test
+	public void testSnapshot_IsolatedFromLaterModifications() {
+		loadTestGraphWithWeights(service_d);
+		GraphSnapshot<Integer> snapshot1 = service_d.snapshot();
+		
+		service_d.addVertex(13).addEdge(12, 13, 0.1d).addEdge(13, 10, 0.1d);
+		
+		GraphSnapshot<Integer> snapshot2 = service_d.snapshot();
+		assertNotSame(snapshot1, snapshot2);
+		assertEquals(snapshot1.getSequence() + 3, snapshot2.getSequence());
+		assertEquals(Arrays.asList(12, 13, 10), snapshot2.getPath(12, 10));
+		assertEquals(-1, snapshot1.getVertexId(13));
+		assertEquals(21, snapshot1.getEdgeCount());
+		eex.expect(IllegalStateException.class);
+		eex.expectMessage("Path not found: 12 -> 10");
+		snapshot1.getPath(12, 10);
+	}
+	
+	@Test
+	public void testSnapshot_IsolatedFromLaterRemovals() {
+		loadTestGraphWithWeights(service);
+		GraphSnapshot<Integer> snapshot1 = service.snapshot();
+		
+		service.removeEdge(6, 7).updateWeight(12, 3, 2.0d).removeVertex(11);
+		
+		GraphSnapshot<Integer> snapshot2 = service.snapshot();
+		assertEquals(Arrays.asList(12, 5, 6, 8, 10), snapshot2.getPath(12, 10));
+		assertEquals(-1, snapshot2.getVertexId(11));
+		assertEquals(34, snapshot2.getEdgeCount());
+		assertEquals(Arrays.asList(12, 5, 6, 7, 10), snapshot1.getPath(12, 10));
+		assertEquals(42, snapshot1.getEdgeCount());
+		assertEquals(GraphSnapshotTest.toSet("1(0.9)", "8(0.6)", "12(0.7)"), GraphSnapshotTest.getEdges(snapshot1, 3));
+		assertEquals(GraphSnapshotTest.toSet("1(0.9)", "8(0.6)", "12(2.0)"), GraphSnapshotTest.getEdges(snapshot2, 3));
+	}
+	
+	@Test
+	public void testSnapshot_ConsistentUnderConcurrentModifications() throws Exception {
+		final int vertex_count = 200;
+		for ( int i = 0; i < vertex_count; i ++ ) {
+			service.addVertex(i);
+		}
+		AtomicBoolean stop = new AtomicBoolean();
+		List<Thread> writers = new ArrayList<>();
+		for ( int t = 0; t < 4; t ++ ) {
+			final int shift = t;
+			Thread thread = new Thread(() -> {
+				for ( int i = shift; i < vertex_count; i += 4 ) {
+					for ( int j = i + 1; j < vertex_count && stop.get() == false; j ++ ) {
+						service.addEdge(i, j, i * 1000 + j);
+					}
+				}
+			});
+			thread.start();
+			writers.add(thread);
+		}
+		// Each published version must contain both directions of each edge
+		int checks = 0;
+		while ( writers.stream().anyMatch(Thread::isAlive) || checks == 0 ) {
+			GraphSnapshot<Integer> snapshot = service.snapshot();
+			for ( int id = 0; id < snapshot.getVertexCount(); id ++ ) {
+				for ( int i = 0; i < snapshot.getDegree(id); i ++ ) {
+					int target = snapshot.getTarget(id, i), index = -1;
+					for ( int k = 0; k < snapshot.getDegree(target); k ++ ) {
+						if ( snapshot.getTarget(target, k) == id ) {
+							index = k;
+						}
+					}
+					assertTrue(index >= 0);
+					assertEquals(snapshot.getWeight(id, i), snapshot.getWeight(target, index), 0.0d);
+				}
+			}
+			checks ++;
+		}
+		stop.set(true);
+		for ( Thread thread : writers ) {
+			thread.join();
+		}
+		
+		assertEquals(vertex_count * (vertex_count - 1), service.snapshot().getEdgeCount());
+	}
+	
 	@Test
 	public void testTraverseVertices_UsingStreams() {
 		// Let's sum up all weights of all edges of directed graph
@@ -364,5 +836,26 @@ public class GraphImplTest {
 		
 		assertEquals(11.8d, userFunction.sum, 0.001d);
 	}
+	
+	@Test
+	public void testSnapshot_SharesUntouchedChunks() {
+		final int n = GraphSnapshot.CHUNK_SIZE * 3;
+		for ( int i = 0; i < n; i ++ ) {
+			service.addVertex(i);
+		}
+		for ( int i = 1; i < n; i ++ ) {
+			service.addEdge(i - 1, i);
+		}
+		GraphSnapshot<Integer> snapshot1 = service.snapshot();
+		
+		service.addEdge(0, 2);
+		
+		GraphSnapshot<Integer> snapshot2 = service.snapshot();
+		assertEquals(Arrays.asList(0, 2), service.getPath(0, 2));
+		assertNotSame(snapshot1.getChunk(0), snapshot2.getChunk(0));
+		assertSame(snapshot1.getChunk(0)[5], snapshot2.getChunk(0)[5]);
+		assertSame(snapshot1.getChunk(1), snapshot2.getChunk(1));
+		assertSame(snapshot1.getChunk(2), snapshot2.getChunk(2));
+	}
 
 }
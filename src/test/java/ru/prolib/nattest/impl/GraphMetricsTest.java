@@ -0,0 +1,125 @@
+package ru.prolib.nattest.impl;
+
+import static org.junit.Assert.*;
+import static ru.prolib.nattest.impl.GraphType.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class GraphMetricsTest {
+	@Rule public ExpectedException eex = ExpectedException.none();
+	GraphImpl<Integer> graph;
+	GraphMetrics service;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = new GraphImpl<>(UNDIRECTED);
+		service = new GraphMetrics();
+	}
+
+	@Test
+	public void testListener_IsNotCalledByDefault() {
+		assertSame(GraphListener.NONE, graph.getListener());
+		GraphImplTest.loadTestGraphWithWeights(graph).getPath(12, 10);
+
+		graph.setListener(service);
+		graph.setListener(null);
+		graph.getPath(12, 10);
+
+		assertSame(GraphListener.NONE, graph.getListener());
+		assertEquals(0, service.getPathQueries());
+	}
+
+	@Test
+	public void testCountsOperations() {
+		graph.setListener(service);
+
+		GraphImplTest.loadTestGraphWithWeights(graph);
+		graph.getPath(12, 10);
+		graph.getPath(12, 10, SearchMode.BIDIRECTIONAL);
+		graph.getPath(12, 10, (a, b) -> 0.0d);
+
+		assertEquals(12, service.getVertexAdditions());
+		assertEquals(21, service.getEdgeAdditions());
+		assertEquals(3, service.getPathQueries());
+		assertEquals(0, service.getPathFailures());
+		assertTrue(service.getSettledVertices() > 0);
+		assertTrue(service.getRelaxedEdges() >= service.getSettledVertices());
+		assertTrue(service.getFrontierPeak() > 0);
+		assertTrue(service.getPathMaxNanos() > 0);
+		assertTrue(service.getPathMedianNanos() <= service.getPath99thPercentileNanos());
+	}
+
+	@Test
+	public void testCountsFailures() {
+		graph = GraphImplTest.loadTestGraph(new GraphImpl<>(DIRECTED));
+		graph.setListener(service);
+
+		try {
+			graph.getPath(10, 4);
+			fail("Expected: IllegalStateException");
+		} catch ( IllegalStateException e ) { }
+
+		assertEquals(1, service.getPathQueries());
+		assertEquals(1, service.getPathFailures());
+	}
+
+	@Test
+	public void testSearchStats() {
+		GraphImplTest.loadTestGraphWithWeights(graph);
+		List<SearchStats> actual = new ArrayList<>();
+		graph.setListener(new GraphListener() {
+			@Override
+			public void onPathSearched(SearchStats stats) {
+				actual.add(stats);
+			}
+		});
+
+		graph.getPath(12, 10);
+
+		assertEquals(1, actual.size());
+		SearchStats stats = actual.get(0);
+		assertTrue(stats.isFound());
+		assertTrue(stats.getNanos() > 0);
+		// Only vertex 9 is farther from 12 than the target
+		assertEquals(11, stats.getSettledCount());
+		assertTrue(stats.getRelaxedCount() >= 11);
+		assertTrue(stats.getFrontierPeak() >= 2);
+	}
+
+	@Test
+	public void testReset() {
+		service.onVertexAdded(100);
+		service.onEdgeAdded(100);
+
+		service.reset();
+
+		assertEquals(0, service.getVertexAdditions());
+		assertEquals(0, service.getEdgeAdditions());
+	}
+
+	@Test
+	public void testRegister() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		service.onEdgeAdded(100);
+
+		ObjectName name = service.register("test");
+		try {
+			assertEquals(new ObjectName("ru.prolib.nattest:type=GraphMetrics,name=\"test\""), name);
+			assertEquals(1L, server.getAttribute(name, "EdgeAdditions"));
+			assertEquals(100.0d, (double) server.getAttribute(name, "AddEdgeMeanNanos"), 0.0d);
+		} finally {
+			server.unregisterMBean(name);
+		}
+	}
+
+}
@@ -42,6 +42,24 @@ public class GraphNodeImplTest {
 		new GraphNodeImpl<>(null, edges1);
 	}
 	
+	@Test
+	public void testCtor3_TakesEdgesFromSource() {
+		CsrGraph<Integer> source = new GraphBuilder<Integer>(GraphType.DIRECTED)
+				.addVertex(726).addVertex(345).addVertex(778)
+				.addEdge(726, 345, 24.19d).addEdge(726, 778, 5.45d).addEdge(345, 778, 1.0d)
+				.buildSnapshot();
+		edges2.put(345, new GraphEdgeImpl<>(726, 345, 24.19d));
+		edges2.put(778, new GraphEdgeImpl<>(726, 778,  5.45d));
+		
+		service = new GraphNodeImpl<>(source, source.getVertexId(726));
+		
+		assertEquals(Integer.valueOf(726), service.getVertex());
+		assertEquals(new GraphNodeImpl<>(726, edges2), service);
+		assertSame(service, service.addEdge(115, 7.62d));
+		assertTrue(service.isNeighbor(115));
+		assertEquals(3, service.getEdges().size());
+	}
+	
 	@Test
 	public void testGetters() {
 		assertEquals(Integer.valueOf(726), service.getVertex());
@@ -67,6 +85,42 @@ public class GraphNodeImplTest {
 		service.addEdge(882, 0.27d);
 	}
 	
+	@Test
+	public void testRemoveEdge() {
+		service.addEdge(345, 24.19d).addEdge(778, 5.45d);
+		
+		assertSame(service, service.removeEdge(345));
+		
+		assertNull(edges1.get(345));
+		assertEquals(new GraphEdgeImpl<>(726, 778,  5.45d), edges1.get(778));
+	}
+	
+	@Test
+	public void testRemoveEdge_ThrowsIfNotFound() {
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Edge not found: 726 -> 345");
+		
+		service.removeEdge(345);
+	}
+	
+	@Test
+	public void testUpdateWeight() {
+		service.addEdge(345, 24.19d).addEdge(778, 5.45d);
+		
+		assertSame(service, service.updateWeight(345, 1.5d));
+		
+		assertEquals(new GraphEdgeImpl<>(726, 345,  1.5d), edges1.get(345));
+		assertEquals(new GraphEdgeImpl<>(726, 778,  5.45d), edges1.get(778));
+	}
+	
+	@Test
+	public void testUpdateWeight_ThrowsIfNotFound() {
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Edge not found: 726 -> 345");
+		
+		service.updateWeight(345, 1.5d);
+	}
+	
 	@Test
 	public void testIsHeighbor() {
 		edges1.put(882, new GraphEdgeImpl<>(726, 882, 0.5d));
@@ -0,0 +1,105 @@
+package ru.prolib.nattest.impl;
+
+import static org.junit.Assert.*;
+import static ru.prolib.nattest.impl.GraphType.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class GraphPathTest {
+	@Rule public ExpectedException eex = ExpectedException.none();
+	GraphImpl<Integer> graph;
+	GraphPath<Integer> service;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(UNDIRECTED));
+		service = graph.getPath(12, 10);
+	}
+
+	@Test
+	public void testVertices() {
+		assertEquals(5, service.size());
+		assertEquals(Integer.valueOf(12), service.getSource());
+		assertEquals(Integer.valueOf(10), service.getTarget());
+		assertEquals(Integer.valueOf(6), service.get(2));
+		assertEquals(Arrays.asList(12, 5, 6, 7, 10), service);
+		assertEquals(new LinkedList<>(Arrays.asList(12, 5, 6, 7, 10)), service);
+		assertEquals(Arrays.asList(12, 5, 6, 7, 10), new ArrayList<>(service));
+		assertEquals(Arrays.asList(12, 5, 6, 7, 10).hashCode(), service.hashCode());
+	}
+
+	@Test
+	public void testWeightsAndCost() {
+		assertEquals(4, service.getHopCount());
+		assertEquals(0.7d, service.getWeight(0), 0.000001d);
+		assertEquals(0.4d, service.getWeight(1), 0.000001d);
+		assertEquals(0.3d, service.getWeight(2), 0.000001d);
+		assertEquals(0.3d, service.getWeight(3), 0.000001d);
+		assertEquals(1.7d, service.getCost(), 0.000001d);
+	}
+
+	@Test
+	public void testWeights_DirectedGraph() {
+		GraphImpl<Integer> graph_d = GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(DIRECTED));
+
+		service = graph_d.getPath(4, 11, SearchMode.BIDIRECTIONAL);
+
+		assertEquals(Arrays.asList(4, 6, 7, 11), service);
+		assertEquals(0.3d, service.getWeight(0), 0.000001d);
+		assertEquals(0.3d, service.getWeight(1), 0.000001d);
+		assertEquals(0.2d, service.getWeight(2), 0.000001d);
+		assertEquals(0.8d, service.getCost(), 0.000001d);
+	}
+
+	@Test
+	public void testGetCost_GivenCost() {
+		service = new GraphPath<>(graph.snapshot(), new int[] { 0, 2 }, 5.0d);
+
+		assertEquals(5.0d, service.getCost(), 0.0d);
+		assertEquals(0.9d, service.getWeight(0), 0.0d);
+	}
+
+	@Test
+	public void testSingleVertex() {
+		service = graph.getPath(3, 3);
+
+		assertEquals(Arrays.asList(3), service);
+		assertEquals(0, service.getHopCount());
+		assertEquals(0.0d, service.getCost(), 0.0d);
+	}
+
+	@Test
+	public void testGetWeight_ThrowsIfOutOfRange() {
+		eex.expect(IndexOutOfBoundsException.class);
+		eex.expectMessage("Hop out of range: 4");
+
+		service.getWeight(4);
+	}
+
+	@Test
+	public void testUnmodifiable() {
+		eex.expect(UnsupportedOperationException.class);
+
+		service.add(1);
+	}
+
+	@Test
+	public void testOtherResults() {
+		assertEquals(1.7d, graph.getShortestPathTree(12).getPath(10).getCost(), 0.000001d);
+		assertEquals(4, graph.getShortestPathTree(12).getPath(10).getHopCount());
+		assertEquals(1.7d, graph.getDistanceMatrix(Arrays.asList(12), Arrays.asList(10)).getPath(0, 0).getCost(),
+				0.000001d);
+		try ( DynamicShortestPathTree<Integer> tree = graph.trackShortestPathTree(12) ) {
+			assertEquals(Arrays.asList(12, 5, 6, 7, 10), tree.getPath(10));
+			assertEquals(1.7d, tree.getPath(10).getCost(), 0.000001d);
+		}
+	}
+
+}
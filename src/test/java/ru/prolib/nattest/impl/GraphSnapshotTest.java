@@ -0,0 +1,256 @@
+package ru.prolib.nattest.impl;
+
+import static org.junit.Assert.*;
+import static ru.prolib.nattest.impl.GraphType.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class GraphSnapshotTest {
+
+	static Set<String> getEdges(IndexedGraph<Integer> graph, Integer vertex) {
+		int id = graph.getVertexId(vertex);
+		Set<String> actual = new HashSet<>();
+		for ( int i = 0; i < graph.getDegree(id); i ++ ) {
+			actual.add(graph.getVertex(graph.getTarget(id, i)) + "(" + graph.getWeight(id, i) + ")");
+		}
+		return actual;
+	}
+
+	static Set<String> toSet(String... edges) {
+		return new HashSet<>(Arrays.asList(edges));
+	}
+
+	@Rule public ExpectedException eex = ExpectedException.none();
+	GraphSnapshot<Integer> service, service_d;
+
+	@Before
+	public void setUp() throws Exception {
+		service = GraphSnapshot.of(GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(UNDIRECTED)).freeze());
+		service_d = GraphSnapshot.of(GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(DIRECTED)).freeze());
+	}
+
+	@Test
+	public void testEmpty() {
+		service = GraphSnapshot.empty(DIRECTED);
+
+		assertTrue(service.isDirected());
+		assertEquals(0L, service.getSequence());
+		assertEquals(0, service.getVertexCount());
+		assertEquals(0, service.getEdgeCount());
+		assertEquals(-1, service.getVertexId(1));
+	}
+
+	@Test
+	public void testOf() {
+		assertTrue(service.isUndirected());
+		assertSame(service, service.getReverse());
+		assertEquals(12, service.getVertexCount());
+		assertEquals(42, service.getEdgeCount());
+		assertEquals(toSet("6(0.3)", "8(0.8)", "9(0.5)", "10(0.3)", "11(0.2)"), getEdges(service, 7));
+
+		assertTrue(service_d.isDirected());
+		assertEquals(21, service_d.getEdgeCount());
+		assertEquals(toSet("8(0.8)", "9(0.5)", "10(0.3)", "11(0.2)"), getEdges(service_d, 7));
+		assertEquals(toSet("6(0.3)"), getEdges(service_d.getReverse(), 7));
+		assertSame(service_d, service_d.getReverse().getReverse());
+	}
+
+	@Test
+	public void testEdit_DoesNotAffectPreviousVersion() {
+		GraphSnapshot.Editor<Integer> editor = service.edit();
+		editor.addVertex(13);
+		editor.addEdge(13, 7, 0.9d);
+		editor.addEdge(7, 14, 0.4d);
+
+		GraphSnapshot<Integer> actual = editor.publish(5L);
+
+		assertEquals(5L, actual.getSequence());
+		assertEquals(14, actual.getVertexCount());
+		assertEquals(46, actual.getEdgeCount());
+		assertEquals(toSet("6(0.3)", "8(0.8)", "9(0.5)", "10(0.3)", "11(0.2)", "13(0.9)", "14(0.4)"),
+				getEdges(actual, 7));
+		assertEquals(toSet("7(0.9)"), getEdges(actual, 13));
+		assertEquals(Arrays.asList(13, 7, 10), actual.getPath(13, 10));
+		// The previous version
+		assertEquals(0L, service.getSequence());
+		assertEquals(12, service.getVertexCount());
+		assertEquals(42, service.getEdgeCount());
+		assertEquals(-1, service.getVertexId(13));
+		assertEquals(toSet("6(0.3)", "8(0.8)", "9(0.5)", "10(0.3)", "11(0.2)"), getEdges(service, 7));
+	}
+
+	@Test
+	public void testEdit_Directed() {
+		GraphSnapshot.Editor<Integer> editor = service_d.edit();
+		editor.addEdge(10, 4, 0.1d);
+		editor.addEdge(10, 1, 0.2d);
+
+		GraphSnapshot<Integer> actual = editor.publish(2L);
+
+		assertEquals(23, actual.getEdgeCount());
+		assertEquals(toSet("4(0.1)", "1(0.2)"), getEdges(actual, 10));
+		assertEquals(toSet("2(0.9)", "10(0.1)"), getEdges(actual.getReverse(), 4));
+		assertEquals(toSet("2(0.9)"), getEdges(service_d.getReverse(), 4));
+		assertEquals(Arrays.asList(10, 4, 6, 7), actual.getPath(10, 7, SearchMode.BIDIRECTIONAL));
+	}
+
+	@Test
+	public void testEdit_ManyVersions() {
+		GraphSnapshot<Integer> actual = GraphSnapshot.empty(UNDIRECTED);
+		@SuppressWarnings("unchecked")
+		GraphSnapshot<Integer>[] versions = (GraphSnapshot<Integer>[]) new GraphSnapshot<?>[5];
+		for ( int version = 0; version < 5; version ++ ) {
+			GraphSnapshot.Editor<Integer> editor = actual.edit();
+			for ( int i = 0; i < 1000; i ++ ) {
+				int vertex = version * 1000 + i;
+				editor.addEdge(vertex, vertex + 1, 1.0d);
+			}
+			versions[version] = actual = editor.publish(version + 1);
+		}
+
+		for ( int version = 0; version < 5; version ++ ) {
+			int last = version * 1000 + 1000;
+			assertEquals(last + 1, versions[version].getVertexCount());
+			assertEquals(last, versions[version].getShortestPathTree(0).getCost(last), 0.001d);
+			assertEquals(-1, versions[version].getVertexId(last + 1));
+			assertEquals(1, versions[version].getDegree(versions[version].getVertexId(last)));
+		}
+	}
+
+	@Test
+	public void testEdit_RemoveEdge() {
+		GraphSnapshot.Editor<Integer> editor = service.edit();
+		editor.removeEdge(7, 6);
+
+		GraphSnapshot<Integer> actual = editor.publish(1L);
+
+		assertEquals(40, actual.getEdgeCount());
+		assertEquals(toSet("8(0.8)", "9(0.5)", "10(0.3)", "11(0.2)"), getEdges(actual, 7));
+		assertEquals(toSet("2(0.5)", "4(0.3)", "5(0.4)", "8(0.5)"), getEdges(actual, 6));
+		assertEquals(toSet("6(0.3)", "8(0.8)", "9(0.5)", "10(0.3)", "11(0.2)"), getEdges(service, 7));
+		GraphSnapshot.EdgeLog removed = editor.getRemovedEdges();
+		assertEquals(1, removed.size());
+		assertEquals(7, actual.getVertex(removed.getSource(0)).intValue());
+		assertEquals(6, actual.getVertex(removed.getTarget(0)).intValue());
+		assertEquals(0.3d, removed.getWeight(0), 0.0001d);
+		assertEquals(0, editor.getAddedEdges().size());
+	}
+
+	@Test
+	public void testEdit_RemoveEdgeThenAppend() {
+		GraphSnapshot.Editor<Integer> editor = service_d.edit();
+		editor.removeEdge(7, 9);
+		editor.addEdge(7, 1, 0.1d);
+
+		GraphSnapshot<Integer> actual = editor.publish(1L);
+
+		assertEquals(toSet("8(0.8)", "10(0.3)", "11(0.2)", "1(0.1)"), getEdges(actual, 7));
+		assertEquals(toSet(), getEdges(actual.getReverse(), 9));
+		assertEquals(toSet("7(0.1)"), getEdges(actual.getReverse(), 1));
+		assertEquals(21, actual.getEdgeCount());
+	}
+
+	@Test
+	public void testEdit_RemoveEdgeThrowsIfEdgeNotFound() {
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Edge not found: 7 -> 6");
+
+		service_d.edit().removeEdge(7, 6);
+	}
+
+	@Test
+	public void testEdit_UpdateWeight() {
+		GraphSnapshot.Editor<Integer> editor = service.edit();
+		editor.updateWeight(7, 6, 0.1d);
+		editor.updateWeight(7, 8, 0.9d);
+		editor.updateWeight(7, 9, 0.5d);
+
+		GraphSnapshot<Integer> actual = editor.publish(1L);
+
+		assertEquals(42, actual.getEdgeCount());
+		assertEquals(toSet("6(0.1)", "8(0.9)", "9(0.5)", "10(0.3)", "11(0.2)"), getEdges(actual, 7));
+		assertEquals(toSet("2(0.5)", "4(0.3)", "5(0.4)", "7(0.1)", "8(0.5)"), getEdges(actual, 6));
+		assertEquals(toSet("6(0.3)", "8(0.8)", "9(0.5)", "10(0.3)", "11(0.2)"), getEdges(service, 7));
+		// Cheaper edge is listed as added and more expensive as removed with the old weight
+		assertEquals(1, editor.getAddedEdges().size());
+		assertEquals(0.1d, editor.getAddedEdges().getWeight(0), 0.0001d);
+		assertEquals(1, editor.getRemovedEdges().size());
+		assertEquals(0.8d, editor.getRemovedEdges().getWeight(0), 0.0001d);
+	}
+
+	@Test
+	public void testEdit_RemoveVertex() {
+		GraphSnapshot.Editor<Integer> editor = service_d.edit();
+		editor.removeVertex(7);
+
+		GraphSnapshot<Integer> actual = editor.publish(1L);
+
+		assertEquals(16, actual.getEdgeCount());
+		assertEquals(-1, actual.getVertexId(7));
+		assertEquals(toSet("8(0.5)"), getEdges(actual, 6));
+		assertEquals(toSet("3(0.6)", "6(0.5)"), getEdges(actual.getReverse(), 8));
+		assertEquals(5, editor.getRemovedEdges().size());
+		assertEquals(toSet("8(0.8)", "9(0.5)", "10(0.3)", "11(0.2)"), getEdges(service_d, 7));
+	}
+
+	@Test
+	public void testEdit_RemoveVertexThenAddAgain() {
+		GraphSnapshot.Editor<Integer> editor = service.edit();
+		editor.removeVertex(7);
+		editor.addEdge(7, 1, 0.5d);
+
+		GraphSnapshot<Integer> actual = editor.publish(1L);
+
+		assertEquals(34, actual.getEdgeCount());
+		assertEquals(toSet("1(0.5)"), getEdges(actual, 7));
+		assertEquals(toSet("3(0.9)", "7(0.5)", "10(0.7)"), getEdges(actual, 1));
+		assertEquals(toSet("9(0.6)", "8(0.8)", "1(0.7)"), getEdges(actual, 10));
+	}
+
+	@Test
+	public void testEdit_RemoveVertexThrowsIfVertexNotFound() {
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Vertex not found: 13");
+
+		service.edit().removeVertex(13);
+	}
+
+	@Test
+	public void testCompact() {
+		GraphSnapshot.Editor<Integer> editor = service.edit();
+		editor.addEdge(12, 20, 0.5d);
+		service = editor.publish(1L);
+
+		CsrGraph<Integer> actual = service.compact();
+
+		assertTrue(actual.isUndirected());
+		assertEquals(13, actual.getVertexCount());
+		assertEquals(44, actual.getEdgeCount());
+		assertEquals(toSet("3(0.7)", "5(0.7)", "20(0.5)"), getEdges(actual, 12));
+		assertEquals(Arrays.asList(20, 12, 5, 6, 7, 10), actual.getPath(20, 10));
+	}
+
+	@Test
+	public void testGetPath_ThrowsIfVertexNotFound() {
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Vertex not found: 13");
+
+		service.getPath(1, 13);
+	}
+
+	@Test
+	public void testAddEdge_ThrowsUnsupported() {
+		eex.expect(UnsupportedOperationException.class);
+		eex.expectMessage("Graph is read-only");
+
+		service.addEdge(1, 2);
+	}
+
+}
@@ -0,0 +1,147 @@
+package ru.prolib.nattest.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class IndexedHeapTest {
+	@Rule public ExpectedException eex = ExpectedException.none();
+	IndexedHeap service;
+
+	@Before
+	public void setUp() throws Exception {
+		service = new IndexedHeap(10);
+	}
+	
+	@Test
+	public void testCtor() {
+		assertEquals(10, service.getCapacity());
+		assertEquals(0, service.size());
+		assertTrue(service.isEmpty());
+	}
+	
+	@Test
+	public void testUpdate_Insert() {
+		service.update(5, 2.5d);
+		service.update(3, 0.5d);
+		service.update(8, 1.5d);
+		
+		assertEquals(3, service.size());
+		assertTrue(service.contains(5));
+		assertTrue(service.contains(3));
+		assertTrue(service.contains(8));
+		assertFalse(service.contains(1));
+		assertEquals(2.5d, service.getKey(5), 0.001d);
+		assertEquals(3, service.peek());
+		assertEquals(0.5d, service.peekKey(), 0.001d);
+	}
+	
+	@Test
+	public void testUpdate_DecreaseKey() {
+		service.update(5, 2.5d);
+		service.update(3, 0.5d);
+		service.update(8, 1.5d);
+		
+		service.update(5, 0.1d);
+		
+		assertEquals(3, service.size());
+		assertEquals(5, service.poll());
+		assertEquals(3, service.poll());
+		assertEquals(8, service.poll());
+	}
+	
+	@Test
+	public void testUpdate_IncreaseKey() {
+		service.update(5, 2.5d);
+		service.update(3, 0.5d);
+		service.update(8, 1.5d);
+		
+		service.update(3, 7.0d);
+		
+		assertEquals(8, service.poll());
+		assertEquals(5, service.poll());
+		assertEquals(3, service.poll());
+	}
+	
+	@Test
+	public void testPoll_ThrowsIfEmpty() {
+		eex.expect(IllegalStateException.class);
+		eex.expectMessage("Heap is empty");
+		
+		service.poll();
+	}
+	
+	@Test
+	public void testGetKey_ThrowsIfNotFound() {
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Element not found: 4");
+		
+		service.getKey(4);
+	}
+	
+	@Test
+	public void testClear() {
+		service.update(5, 2.5d);
+		service.update(3, 0.5d);
+		
+		service.clear();
+		
+		assertTrue(service.isEmpty());
+		assertFalse(service.contains(5));
+		assertFalse(service.contains(3));
+	}
+	
+	@Test
+	public void testPoll_RandomOrder() {
+		Random random = new Random(72615L);
+		service = new IndexedHeap(1000);
+		double[] keys = new double[1000];
+		for ( int i = 0; i < 1000; i ++ ) {
+			service.update(i, keys[i] = random.nextDouble() * 100.0d);
+		}
+		for ( int i = 0; i < 1000; i += 3 ) {
+			service.update(i, keys[i] = keys[i] / 2.0d);
+		}
+		
+		List<Double> actual = new ArrayList<>();
+		while ( service.isEmpty() == false ) {
+			actual.add(keys[service.poll()]);
+		}
+		
+		Arrays.sort(keys);
+		List<Double> expected = new ArrayList<>();
+		for ( double key : keys ) {
+			expected.add(key);
+		}
+		assertEquals(expected, actual);
+	}
+	
+	@Test
+	public void testCounters() {
+		service.update(5, 2.5d);
+		service.update(3, 0.5d);
+		service.update(5, 0.1d);
+		service.poll();
+		service.update(8, 1.5d);
+		service.update(9, 1.5d);
+		
+		assertEquals(1, service.getPollCount());
+		assertEquals(5, service.getUpdateCount());
+		assertEquals(3, service.getPeakSize());
+		
+		service.clear();
+		
+		assertEquals(0, service.getPollCount());
+		assertEquals(0, service.getUpdateCount());
+		assertEquals(0, service.getPeakSize());
+	}
+
+}
@@ -0,0 +1,53 @@
+package ru.prolib.nattest.impl;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+	LatencyHistogram service;
+
+	@Before
+	public void setUp() throws Exception {
+		service = new LatencyHistogram();
+	}
+
+	@Test
+	public void testEmpty() {
+		assertEquals(0, service.getCount());
+		assertEquals(0, service.getTotal());
+		assertEquals(0.0d, service.getMean(), 0.0d);
+		assertEquals(0, service.getPercentile(99.0d));
+	}
+
+	@Test
+	public void testRecord() {
+		for ( int i = 1; i <= 98; i ++ ) {
+			service.record(100);
+		}
+		service.record(5000);
+		service.record(-1);
+
+		assertEquals(100, service.getCount());
+		assertEquals(14800, service.getTotal());
+		assertEquals(148.0d, service.getMean(), 0.0d);
+		assertEquals(5000, service.getMax());
+		assertEquals(0, service.getPercentile(0.0d));
+		assertEquals(127, service.getPercentile(50.0d));
+		assertEquals(127, service.getPercentile(99.0d));
+		assertEquals(5000, service.getPercentile(100.0d));
+	}
+
+	@Test
+	public void testReset() {
+		service.record(100);
+
+		service.reset();
+
+		assertEquals(0, service.getCount());
+		assertEquals(0, service.getTotal());
+		assertEquals(0, service.getMax());
+	}
+
+}
@@ -0,0 +1,53 @@
+package ru.prolib.nattest.impl;
+
+import static org.junit.Assert.*;
+
+import java.io.DataOutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedBufferTest {
+	@Rule public TemporaryFolder folder = new TemporaryFolder();
+	MappedBuffer service;
+
+	@Before
+	public void setUp() throws Exception {
+		Path file = folder.newFile().toPath();
+		try ( DataOutputStream output = new DataOutputStream(Files.newOutputStream(file)) ) {
+			for ( int i = 0; i < 10; i ++ ) {
+				output.writeLong(i * 1000L);
+			}
+			output.writeInt(12345);
+			output.writeInt(-1);
+			output.writeDouble(2.5d);
+			output.write(new byte[] { 1, 2, 3 });
+		}
+		// Small segments to read across the boundaries
+		try ( FileChannel channel = FileChannel.open(file, StandardOpenOption.READ) ) {
+			service = new MappedBuffer(channel, 4);
+		}
+	}
+
+	@Test
+	public void testGet() {
+		assertEquals(99L, service.size());
+		for ( int i = 0; i < 10; i ++ ) {
+			assertEquals(i * 1000L, service.getLong(i * 8));
+		}
+		assertEquals(12345, service.getInt(80));
+		assertEquals(-1, service.getInt(84));
+		assertEquals(2.5d, service.getDouble(88), 0.0d);
+		assertEquals(3, service.get(98));
+		byte[] actual = new byte[6];
+		service.get(93, actual);
+		assertArrayEquals(new byte[] { 0, 0, 0, 1, 2, 3 }, actual);
+	}
+
+}
@@ -0,0 +1,181 @@
+package ru.prolib.nattest.impl;
+
+import static org.junit.Assert.*;
+import static ru.prolib.nattest.impl.GraphType.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedGraphTest {
+	@Rule public ExpectedException eex = ExpectedException.none();
+	@Rule public TemporaryFolder folder = new TemporaryFolder();
+	GraphImpl<Integer> graph, graph_d;
+	MappedGraph<Integer> service, service_d;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(UNDIRECTED));
+		graph_d = GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(DIRECTED));
+		Path file = folder.newFile().toPath(), file_d = folder.newFile().toPath();
+		graph.export(file, VertexCodec.INTEGER);
+		graph_d.export(file_d, VertexCodec.INTEGER);
+		service = MappedGraph.open(file, VertexCodec.INTEGER);
+		service_d = MappedGraph.open(file_d, VertexCodec.INTEGER);
+	}
+
+	@Test
+	public void testOpen() {
+		assertTrue(service.isUndirected());
+		assertEquals(12, service.getVertexCount());
+		assertEquals(42L, service.getEdgeCount());
+		assertSame(service, service.getReverse());
+		assertEquals(GraphSnapshotTest.toSet("6(0.3)", "8(0.8)", "9(0.5)", "10(0.3)", "11(0.2)"),
+				GraphSnapshotTest.getEdges(service, 7));
+
+		assertTrue(service_d.isDirected());
+		assertEquals(12, service_d.getVertexCount());
+		assertEquals(21L, service_d.getEdgeCount());
+		assertEquals(GraphSnapshotTest.toSet("8(0.8)", "9(0.5)", "10(0.3)", "11(0.2)"),
+				GraphSnapshotTest.getEdges(service_d, 7));
+		assertEquals(GraphSnapshotTest.toSet("6(0.3)"), GraphSnapshotTest.getEdges(service_d.getReverse(), 7));
+		assertSame(service_d, service_d.getReverse().getReverse());
+	}
+
+	@Test
+	public void testGetHashCapacity() {
+		assertEquals(4, MappedGraph.getHashCapacity(0));
+		assertEquals(4, MappedGraph.getHashCapacity(1));
+		assertEquals(64, MappedGraph.getHashCapacity(20));
+		assertEquals(1 << 30, MappedGraph.getHashCapacity((1 << 29) - 1));
+	}
+
+	@Test
+	public void testGetHashCapacity_ThrowsIfTooManyVertices() {
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Too many vertices: 536870912");
+
+		MappedGraph.getHashCapacity(1 << 29);
+	}
+
+	@Test
+	public void testGetWeightRange() throws Exception {
+		WeightRange actual = service.getWeightRange();
+
+		assertEquals(0.1d, actual.getMin(), 0.0d);
+		assertEquals(0.9d, actual.getMax(), 0.0d);
+		assertFalse(actual.isIntegral());
+		assertSame(service_d.getWeightRange(), service_d.getReverse().getWeightRange());
+
+		Path file = folder.newFile().toPath();
+		MappedGraph.write(file, GraphImplTest.loadTestGraph(new GraphImpl<>(DIRECTED, 2.0d)).freeze(),
+				VertexCodec.INTEGER);
+		actual = MappedGraph.open(file, VertexCodec.INTEGER).getWeightRange();
+		assertEquals(2.0d, actual.getUniformWeight(), 0.0d);
+		assertTrue(actual.isIntegral());
+
+		MappedGraph.write(file, new GraphImpl<Integer>(DIRECTED).freeze(), VertexCodec.INTEGER);
+		assertSame(WeightRange.EMPTY, MappedGraph.open(file, VertexCodec.INTEGER).getWeightRange());
+	}
+
+	@Test
+	public void testGetVertexId() {
+		CsrGraph<Integer> expected = graph.freeze();
+		for ( int vertex = 1; vertex <= 12; vertex ++ ) {
+			int id = service.getVertexId(vertex);
+			assertEquals(expected.getVertexId(vertex), id);
+			assertEquals(Integer.valueOf(vertex), service.getVertex(id));
+		}
+		assertEquals(-1, service.getVertexId(13));
+		assertEquals(-1, service.getVertexId(-1));
+	}
+
+	@Test
+	public void testGetPath() {
+		assertEquals(Arrays.asList(12, 5, 6, 7, 10), service.getPath(12, 10));
+		assertEquals(Arrays.asList(12, 5, 6, 7, 10), service.getPath(12, 10, SearchMode.BIDIRECTIONAL));
+		assertEquals(Arrays.asList(2, 6, 7, 10), service_d.getPath(2, 10));
+		assertEquals(Arrays.asList(2, 6, 7, 10), service_d.getPath(2, 10, SearchMode.BIDIRECTIONAL));
+		assertEquals(1.7d, service.getShortestPathTree(12).getCost(10), 0.0001d);
+	}
+
+	@Test
+	public void testGetPath_ThrowsIfPathNotFound() {
+		eex.expect(IllegalStateException.class);
+		eex.expectMessage("Path not found: 10 -> 1");
+
+		service_d.getPath(10, 1);
+	}
+
+	@Test
+	public void testGetPath_ThrowsIfVertexNotFound() {
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Vertex not found: 13");
+
+		service.getPath(1, 13);
+	}
+
+	@Test
+	public void testStringVertices() throws Exception {
+		final String SPB = "\u0421\u041f\u0431"; // non-ASCII
+		GraphImpl<String> graph = new GraphImpl<>(DIRECTED);
+		graph.addVertex("Moscow").addVertex("Tver").addVertex(SPB).addVertex("")
+			.addEdge("Moscow", "Tver", 180.0d)
+			.addEdge("Tver", SPB, 530.0d)
+			.addEdge("Moscow", SPB, 800.0d);
+		Path file = folder.newFile().toPath();
+		graph.export(file, VertexCodec.STRING);
+
+		MappedGraph<String> actual = MappedGraph.open(file, VertexCodec.STRING);
+
+		assertEquals(4, actual.getVertexCount());
+		assertEquals(Arrays.asList("Moscow", "Tver", SPB), actual.getPath("Moscow", SPB));
+		assertEquals("", actual.getVertex(actual.getVertexId("")));
+		assertEquals(-1, actual.getVertexId("Tve"));
+	}
+
+	@Test
+	public void testRandomGraph() throws Exception {
+		GraphImpl<Integer> graph = BidirectionalDijkstraEngineTest.loadRandomGraph(new GraphImpl<>(DIRECTED),
+				9127L, 2000, 8000);
+		Path file = folder.newFile().toPath();
+		graph.export(file, VertexCodec.INTEGER);
+
+		MappedGraph<Integer> actual = MappedGraph.open(file, VertexCodec.INTEGER);
+
+		ShortestPathTree<Integer> expected = graph.getShortestPathTree(0), tree = actual.getShortestPathTree(0);
+		for ( int vertex = 0; vertex < 2000; vertex ++ ) {
+			assertEquals(expected.getCost(vertex), tree.getCost(vertex), 0.0001d);
+		}
+	}
+
+	@Test
+	public void testOpen_ThrowsIfUnsupportedFormat() throws Exception {
+		Path file = folder.newFile().toPath();
+		Files.write(file, new byte[64]);
+		eex.expect(IOException.class);
+		eex.expectMessage("Unsupported file format: " + file);
+
+		MappedGraph.open(file, VertexCodec.INTEGER);
+	}
+
+	@Test
+	public void testOpen_ThrowsIfTruncated() throws Exception {
+		Path file = folder.newFile().toPath();
+		graph.export(file, VertexCodec.INTEGER);
+		byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+		eex.expect(IOException.class);
+		eex.expectMessage("File is truncated: " + file);
+
+		MappedGraph.open(file, VertexCodec.INTEGER);
+	}
+
+}
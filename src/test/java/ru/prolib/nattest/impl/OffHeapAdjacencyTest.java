@@ -0,0 +1,68 @@
+package ru.prolib.nattest.impl;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class OffHeapAdjacencyTest {
+	OffHeapAdjacency service;
+
+	@Before
+	public void setUp() throws Exception {
+		service = new OffHeapAdjacency(2, 128);
+	}
+
+	@Test
+	public void testGetCapacity() {
+		assertEquals(2, OffHeapAdjacency.getCapacity(0));
+		assertEquals(2, OffHeapAdjacency.getCapacity(2));
+		assertEquals(4, OffHeapAdjacency.getCapacity(3));
+		assertEquals(4, OffHeapAdjacency.getCapacity(4));
+		assertEquals(8, OffHeapAdjacency.getCapacity(5));
+		assertEquals(1024, OffHeapAdjacency.getCapacity(1000));
+	}
+
+	@Test
+	public void testAdd() {
+		for ( int i = 0; i < 100; i ++ ) {
+			for ( int id = 0; id < 5; id ++ ) {
+				if ( i < id * 10 ) {
+					service.add(id, i, id + i / 10.0d);
+				}
+			}
+		}
+
+		for ( int id = 0; id < 5; id ++ ) {
+			assertEquals(id * 10, service.getDegree(id));
+			for ( int i = 0; i < id * 10; i ++ ) {
+				assertEquals(i, service.getTarget(id, i));
+				assertEquals(id + i / 10.0d, service.getWeight(id, i), 0.0d);
+			}
+		}
+		assertEquals(0, service.getDegree(5));
+		assertEquals(-1, service.indexOf(0, 0));
+		assertEquals(15, service.indexOf(4, 15));
+		assertEquals(-1, service.indexOf(4, 40));
+		// Capacities 16, 32, 32 and 64 edges of 12 bytes
+		assertEquals(12 * (16 + 32 + 32 + 64), service.getUsedBytes());
+	}
+
+	@Test
+	public void testAdd_ReusesReleasedRegions() {
+		// The buffer fits regions of 2 and 4 edges only
+		service = new OffHeapAdjacency(2, 72);
+		service.add(0, 1, 1.0d);
+		service.add(0, 2, 1.0d);
+		service.add(0, 3, 1.0d);
+
+		service.add(1, 0, 1.0d);
+
+		assertEquals(12 * 6, service.getUsedBytes());
+		assertEquals(72, service.getAllocatedBytes());
+		assertEquals(3, service.getDegree(0));
+		assertEquals(3, service.getTarget(0, 2));
+		assertEquals(0, service.getTarget(1, 0));
+	}
+
+}
@@ -0,0 +1,195 @@
+package ru.prolib.nattest.impl;
+
+import static org.junit.Assert.*;
+import static ru.prolib.nattest.impl.GraphType.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class OffHeapGraphTest {
+
+	/**
+	 * Copy vertices and edges of the graph.
+	 * <p>
+	 * @param source - graph to copy
+	 * @param target - graph to load
+	 * @return the target graph
+	 */
+	static OffHeapGraph<Integer> load(GraphImpl<Integer> source, OffHeapGraph<Integer> target) {
+		CsrGraph<Integer> graph = source.freeze();
+		for ( int id = 0; id < graph.getVertexCount(); id ++ ) {
+			target.addVertex(graph.getVertex(id));
+		}
+		for ( int id = 0; id < graph.getVertexCount(); id ++ ) {
+			for ( int i = 0; i < graph.getDegree(id); i ++ ) {
+				Integer vertex = graph.getVertex(id), neighbor = graph.getVertex(graph.getTarget(id, i));
+				if ( graph.isDirected() || vertex < neighbor ) {
+					target.addEdge(vertex, neighbor, graph.getWeight(id, i));
+				}
+			}
+		}
+		return target;
+	}
+
+	@Rule public ExpectedException eex = ExpectedException.none();
+	OffHeapGraph<Integer> service, service_d;
+
+	@Before
+	public void setUp() throws Exception {
+		service = load(GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(UNDIRECTED)),
+				new OffHeapGraph<>(UNDIRECTED, 1.0d, 4, 256));
+		service_d = load(GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(DIRECTED)),
+				new OffHeapGraph<>(DIRECTED, 1.0d, 4, 256));
+	}
+
+	@Test
+	public void testCtor() {
+		service = new OffHeapGraph<>(DIRECTED, 0.5d);
+
+		assertTrue(service.isDirected());
+		assertEquals(0.5d, service.getDefaultWeight(), 0.0d);
+		assertEquals(0, service.getVertexCount());
+		assertEquals(0L, service.getEdgeCount());
+		assertEquals(0L, service.getOffHeapBytes());
+	}
+
+	@Test
+	public void testLoad() {
+		assertTrue(service.isUndirected());
+		assertSame(service, service.getReverse());
+		assertEquals(12, service.getVertexCount());
+		assertEquals(42L, service.getEdgeCount());
+		assertEquals(GraphSnapshotTest.toSet("6(0.3)", "8(0.8)", "9(0.5)", "10(0.3)", "11(0.2)"),
+				GraphSnapshotTest.getEdges(service, 7));
+
+		assertTrue(service_d.isDirected());
+		assertEquals(21L, service_d.getEdgeCount());
+		assertEquals(GraphSnapshotTest.toSet("8(0.8)", "9(0.5)", "10(0.3)", "11(0.2)"),
+				GraphSnapshotTest.getEdges(service_d, 7));
+		assertEquals(GraphSnapshotTest.toSet("6(0.3)"), GraphSnapshotTest.getEdges(service_d.getReverse(), 7));
+		assertSame(service_d, service_d.getReverse().getReverse());
+		// Small buffers to check that many of them are used
+		assertTrue(service.getOffHeapBytes() > 256);
+		assertTrue(service.getUsedOffHeapBytes() <= service.getOffHeapBytes());
+	}
+
+	@Test
+	public void testAddEdge2() {
+		service_d.addVertex(13).addEdge(10, 13);
+
+		assertEquals(GraphSnapshotTest.toSet("13(1.0)"), GraphSnapshotTest.getEdges(service_d, 10));
+	}
+
+	@Test
+	public void testAddEdge3_ThrowsIfEdgeExists() {
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Edge already defined: 7 -> 6");
+
+		service.addEdge(7, 6, 1.0d);
+	}
+
+	@Test
+	public void testAddEdge3_ThrowsIfVertexNotFound() {
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Vertex not found: 13");
+
+		service.addEdge(1, 13, 1.0d);
+	}
+
+	@Test
+	public void testAddEdge3_ThrowsIfTargetSameAsSource() {
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Cannot use same vertex as source and target: 1");
+
+		service.addEdge(1, 1, 1.0d);
+	}
+
+	@Test
+	public void testAddVertex_ThrowsIfAlreadyExists() {
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Vertex already exists: 1");
+
+		service.addVertex(1);
+	}
+
+	@Test
+	public void testGetPath() {
+		assertEquals(Arrays.asList(12, 5, 6, 7, 10), service.getPath(12, 10));
+		assertEquals(Arrays.asList(12, 5, 6, 7, 10), service.getPath(12, 10, SearchMode.BIDIRECTIONAL));
+		assertEquals(Arrays.asList(2, 6, 7, 10), service_d.getPath(2, 10, SearchMode.BIDIRECTIONAL));
+		assertEquals(1.7d, service.getShortestPathTree(12).getCost(10), 0.0001d);
+	}
+
+	@Test
+	public void testGetPath_ResultsKeepWeightsAfterModifications() {
+		GraphPath<Integer> path = service.getPath(12, 10);
+		ShortestPathTree<Integer> tree = service.getShortestPathTree(12);
+		DistanceMatrix<Integer> matrix = service.getDistanceMatrix(Arrays.asList(12), Arrays.asList(10));
+
+		// Adjacency of the vertices grows and moves
+		for ( int vertex = 100; vertex < 400; vertex ++ ) {
+			service.addVertex(vertex).addEdge(12, vertex, 5.0d).addEdge(5, vertex, 5.0d);
+		}
+
+		List<Double> expected = Arrays.asList(0.7d, 0.4d, 0.3d, 0.3d);
+		assertEquals(expected, getWeights(path));
+		assertEquals(expected, getWeights(tree.getPath(10)));
+		assertEquals(expected, getWeights(matrix.getPath(0, 0)));
+		assertEquals(1.7d, matrix.getPath(0, 0).getCost(), 0.0001d);
+	}
+
+	private static List<Double> getWeights(GraphPath<?> path) {
+		List<Double> weights = new ArrayList<>();
+		for ( int hop = 0; hop < path.getHopCount(); hop ++ ) {
+			weights.add(path.getWeight(hop));
+		}
+		return weights;
+	}
+
+	@Test
+	public void testGetPath_ThrowsIfPathNotFound() {
+		eex.expect(IllegalStateException.class);
+		eex.expectMessage("Path not found: 10 -> 1");
+
+		service_d.getPath(10, 1);
+	}
+
+	@Test
+	public void testComponents() {
+		service_d.addVertex(13).addVertex(14);
+
+		assertEquals(3, service_d.getComponentCount());
+		assertFalse(service_d.isConnected(1, 13));
+		assertEquals(14, service_d.getStrongComponents().getComponentCount());
+
+		service_d.addEdge(13, 1).addEdge(10, 13);
+
+		assertEquals(2, service_d.getComponentCount());
+		assertTrue(service_d.isConnected(1, 13));
+		// The cycle 1 -> 10 -> 13 -> 1 joins 1, 3, 8, 10 and 13
+		assertEquals(10, service_d.getStrongComponents().getComponentCount());
+	}
+
+	@Test
+	public void testRandomGraph() {
+		for ( GraphType type : GraphType.values() ) {
+			GraphImpl<Integer> expected = BidirectionalDijkstraEngineTest.loadRandomGraph(new GraphImpl<>(type),
+					6151L, 1000, 6000);
+			OffHeapGraph<Integer> actual = load(expected, new OffHeapGraph<>(type, 1.0d, 16, 4096));
+
+			assertEquals(expected.freeze().getEdgeCount(), actual.getEdgeCount());
+			ShortestPathTree<Integer> expected_tree = expected.getShortestPathTree(0),
+					actual_tree = actual.getShortestPathTree(0);
+			for ( int vertex = 0; vertex < 1000; vertex ++ ) {
+				assertEquals(expected_tree.getCost(vertex), actual_tree.getCost(vertex), 0.0001d);
+			}
+		}
+	}
+
+}
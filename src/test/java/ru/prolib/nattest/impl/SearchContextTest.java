@@ -0,0 +1,101 @@
+package ru.prolib.nattest.impl;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SearchContextTest {
+	SearchContext service;
+
+	@Before
+	public void setUp() throws Exception {
+		service = new SearchContext(8);
+		service.reset(8);
+	}
+	
+	@Test
+	public void testReset_InvalidatesState() {
+		service.setReached(3, 2.5d, 1);
+		service.getHeap().update(3, 2.5d);
+		assertTrue(service.isReached(3));
+		assertEquals(2.5d, service.getCost(3), 0.001d);
+		assertEquals(1, service.getFrom(3));
+		int epoch = service.getEpoch();
+		
+		service.reset(8);
+		
+		assertEquals(epoch + 1, service.getEpoch());
+		assertFalse(service.isReached(3));
+		assertEquals(Double.POSITIVE_INFINITY, service.getCost(3), 0.001d);
+		assertEquals(-1, service.getFrom(3));
+		assertTrue(service.getHeap().isEmpty());
+		assertEquals(8, service.getCapacity());
+	}
+	
+	@Test
+	public void testReset_InvalidatesEstimates() {
+		service.setEstimate(3, 4.5d);
+		assertEquals(4.5d, service.getEstimate(3), 0.001d);
+		assertTrue(Double.isNaN(service.getEstimate(2)));
+		
+		service.reset(8);
+		
+		assertTrue(Double.isNaN(service.getEstimate(3)));
+	}
+	
+	@Test
+	public void testReset_GrowsCapacity() {
+		service.reset(100);
+		
+		assertEquals(100, service.getCapacity());
+		assertEquals(100, service.getHeap().getCapacity());
+		assertFalse(service.isReached(99));
+	}
+	
+	@Test
+	public void testGetPath() {
+		service.setReached(2, 0.0d, 2);
+		service.setReached(5, 1.0d, 2);
+		service.setReached(7, 3.0d, 5);
+		
+		assertArrayEquals(new int[] { 2, 5, 7 }, service.getPath(2, 7));
+		assertArrayEquals(new int[] { 2 }, service.getPath(2, 2));
+		assertNull(service.getPath(2, 4));
+	}
+	
+	@Test
+	public void testAcquire_ReusesReleasedContext() {
+		SearchContext context1 = SearchContext.acquire(50);
+		context1.close();
+		
+		SearchContext context2 = SearchContext.acquire(20);
+		
+		assertSame(context1, context2);
+		assertTrue(context2.getCapacity() >= 50);
+		context2.close();
+	}
+	
+	@Test
+	public void testAcquire_NestedContextsAreDifferent() {
+		try ( SearchContext context1 = SearchContext.acquire(10) ) {
+			try ( SearchContext context2 = SearchContext.acquire(10) ) {
+				assertNotSame(context1, context2);
+			}
+		}
+	}
+	
+	@Test
+	public void testClose_ReleasesOnlyOnce() {
+		SearchContext context1 = SearchContext.acquire(10);
+		context1.close();
+		context1.close();
+		
+		SearchContext context2 = SearchContext.acquire(10), context3 = SearchContext.acquire(10);
+		
+		assertNotSame(context2, context3);
+		context2.close();
+		context3.close();
+	}
+
+}
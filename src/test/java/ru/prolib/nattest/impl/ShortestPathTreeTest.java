@@ -0,0 +1,97 @@
+package ru.prolib.nattest.impl;
+
+import static org.junit.Assert.*;
+import static ru.prolib.nattest.impl.GraphType.*;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class ShortestPathTreeTest {
+	@Rule public ExpectedException eex = ExpectedException.none();
+	GraphImpl<Integer> graph, graph_d;
+	ShortestPathTree<Integer> service;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(UNDIRECTED));
+		graph_d = GraphImplTest.loadTestGraphWithWeights(new GraphImpl<>(DIRECTED));
+		service = graph.getShortestPathTree(12);
+	}
+	
+	@Test
+	public void testGetPath_SameAsGetPath() {
+		assertEquals(Integer.valueOf(12), service.getSource());
+		assertEquals(12, service.getSettledCount());
+		for ( int i = 1; i <= 12; i ++ ) {
+			assertTrue(service.isReachable(i));
+			assertEquals(graph.getPath(12, i), service.getPath(i));
+		}
+	}
+	
+	@Test
+	public void testGetCost() {
+		assertEquals(0.0d, service.getCost(12), 0.001d);
+		assertEquals(0.7d, service.getCost(5), 0.001d);
+		assertEquals(1.7d, service.getCost(10), 0.001d);
+	}
+	
+	@Test
+	public void testGetPath_Unreachable() {
+		service = graph_d.getShortestPathTree(10);
+		
+		assertFalse(service.isReachable(4));
+		assertEquals(Double.POSITIVE_INFINITY, service.getCost(4), 0.001d);
+		eex.expect(IllegalStateException.class);
+		eex.expectMessage("Path not found: 10 -> 4");
+		
+		service.getPath(4);
+	}
+	
+	@Test
+	public void testGetPath_ThrowsIfVertexNotFound() {
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Vertex not found: 13");
+		
+		service.getPath(13);
+	}
+	
+	@Test
+	public void testGetShortestPathTree_ThrowsIfSourceNotFound() {
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Vertex not found: 13");
+		
+		graph.getShortestPathTree(13);
+	}
+	
+	@Test
+	public void testGetShortestPathTree_StopsWhenTargetsSettled() {
+		service = graph.getShortestPathTree(12, Arrays.asList(5, 6), Double.POSITIVE_INFINITY);
+		
+		assertEquals(Arrays.asList(12, 5), service.getPath(5));
+		assertEquals(Arrays.asList(12, 5, 6), service.getPath(6));
+		assertFalse(service.isReachable(10));
+		assertTrue(service.getSettledCount() < 12);
+	}
+	
+	@Test
+	public void testGetShortestPathTree_StopsWhenRadiusExceeded() {
+		service = graph.getShortestPathTree(12, null, 1.2d);
+		
+		assertTrue(service.isReachable(5));
+		assertTrue(service.isReachable(6));
+		assertEquals(1.1d, service.getCost(6), 0.001d);
+		assertFalse(service.isReachable(7));
+		assertFalse(service.isReachable(10));
+		for ( int i = 1; i <= 12; i ++ ) {
+			if ( service.isReachable(i) ) {
+				assertTrue(service.getCost(i) <= 1.2d);
+				assertEquals(graph.getPath(12, i), service.getPath(i));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,111 @@
+package ru.prolib.nattest.impl;
+
+import static org.junit.Assert.*;
+import static ru.prolib.nattest.impl.GraphType.*;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class StrongComponentsTest {
+
+	static boolean[] reach(IndexedGraph<?> graph, int source) {
+		boolean[] reached = new boolean[graph.getVertexCount()];
+		Deque<Integer> queue = new ArrayDeque<>();
+		reached[source] = true;
+		queue.add(source);
+		while ( queue.isEmpty() == false ) {
+			int id = queue.poll();
+			for ( int i = 0; i < graph.getDegree(id); i ++ ) {
+				int target = graph.getTarget(id, i);
+				if ( reached[target] == false ) {
+					reached[target] = true;
+					queue.add(target);
+				}
+			}
+		}
+		return reached;
+	}
+
+	@Rule public ExpectedException eex = ExpectedException.none();
+	StrongComponents<Integer> service;
+
+	@Before
+	public void setUp() throws Exception {
+		// Cycle 1 -> 10 -> 1 joins 1, 3, 8, 10. Other vertices are components of their own.
+		service = GraphImplTest.loadTestGraph(new GraphImpl<>(DIRECTED)).addEdge(10, 1).snapshot()
+				.getStrongComponents();
+	}
+
+	@Test
+	public void testGetComponentCount() {
+		assertEquals(9, service.getComponentCount());
+	}
+
+	@Test
+	public void testIsStronglyConnected() {
+		assertTrue(service.isStronglyConnected(1, 8));
+		assertTrue(service.isStronglyConnected(10, 3));
+		assertFalse(service.isStronglyConnected(1, 12));
+		assertFalse(service.isStronglyConnected(7, 9));
+		assertEquals(service.getComponent(3), service.getComponent(10));
+	}
+
+	@Test
+	public void testMayReach() {
+		assertTrue(service.mayReach(2, 12));
+		assertTrue(service.mayReach(10, 3));
+		assertFalse(service.mayReach(12, 1));
+		assertFalse(service.mayReach(11, 2));
+		assertFalse(service.mayReach(10, 7));
+	}
+
+	@Test
+	public void testGetComponent_ThrowsIfVertexNotFound() {
+		eex.expect(IllegalArgumentException.class);
+		eex.expectMessage("Vertex not found: 13");
+
+		service.getComponent(13);
+	}
+
+	@Test
+	public void testOf_SameAsReachability() {
+		Random random = new Random(2291L);
+		for ( int round = 0; round < 20; round ++ ) {
+			GraphImpl<Integer> graph = new GraphImpl<>(DIRECTED);
+			Set<Long> edges = new HashSet<>();
+			for ( int i = 0; i < 40; i ++ ) {
+				graph.addVertex(i);
+			}
+			for ( int i = 0; i < 60; i ++ ) {
+				int source = random.nextInt(40), target = random.nextInt(40);
+				if ( source != target && edges.add(source * 40L + target) ) {
+					graph.addEdge(source, target);
+				}
+			}
+			GraphSnapshot<Integer> snapshot = graph.snapshot();
+			service = StrongComponents.of(snapshot);
+			boolean[][] reached = new boolean[40][];
+			for ( int id = 0; id < 40; id ++ ) {
+				reached[id] = reach(snapshot, id);
+			}
+			for ( int a = 0; a < 40; a ++ ) {
+				for ( int b = 0; b < 40; b ++ ) {
+					Integer vertex_a = snapshot.getVertex(a), vertex_b = snapshot.getVertex(b);
+					assertEquals(reached[a][b] && reached[b][a], service.isStronglyConnected(vertex_a, vertex_b));
+					if ( reached[a][b] ) {
+						assertTrue(service.mayReach(vertex_a, vertex_b));
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,112 @@
+package ru.prolib.nattest.impl;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class VertexDictionaryTest {
+	VertexDictionary<String> service;
+
+	@Before
+	public void setUp() throws Exception {
+		service = new VertexDictionary<>(4);
+	}
+
+	@Test
+	public void testAdd() {
+		assertEquals(0, service.add("foo"));
+		assertEquals(1, service.add("bar"));
+		assertEquals(0, service.add("foo"));
+
+		assertEquals(2, service.size());
+		assertEquals("foo", service.getVertex(0));
+		assertEquals("bar", service.getVertex(1));
+	}
+
+	@Test
+	public void testAdd_GrowsOverChunks() {
+		for ( int i = 0; i < 5000; i ++ ) {
+			assertEquals(i, service.add("v" + i));
+		}
+
+		assertEquals(5000, service.size());
+		for ( int i = 0; i < 5000; i ++ ) {
+			assertEquals(i, service.getId("v" + i));
+			assertEquals("v" + i, service.getVertex(i));
+		}
+	}
+
+	@Test
+	public void testGetId() {
+		service.add("foo");
+
+		assertEquals(0, service.getId("foo"));
+		assertEquals(-1, service.getId("bar"));
+	}
+
+	@Test
+	public void testIntegerVertices() {
+		VertexDictionary<Integer> service = new VertexDictionary<>(4);
+		for ( int i = 0; i < 5000; i ++ ) {
+			assertEquals(i, service.add(i * 7 - 100));
+		}
+		assertEquals(0, service.add(-100));
+
+		assertEquals(5000, service.size());
+		for ( int i = 0; i < 5000; i ++ ) {
+			assertEquals(i, service.getId(i * 7 - 100));
+			assertEquals(Integer.valueOf(i * 7 - 100), service.getVertex(i));
+		}
+		assertEquals(-1, service.getId(-99));
+		assertEquals(-1, service.getId(Integer.MAX_VALUE));
+	}
+
+	@Test
+	public void testLongVertices() {
+		VertexDictionary<Long> service = new VertexDictionary<>();
+		assertEquals(0, service.add(0L));
+		assertEquals(1, service.add(Long.MIN_VALUE));
+		assertEquals(2, service.add(1L << 40));
+
+		assertEquals(0, service.getId(0L));
+		assertEquals(1, service.getId(Long.MIN_VALUE));
+		assertEquals(2, service.getId(1L << 40));
+		assertEquals(-1, service.getId(1L));
+	}
+
+	@Test
+	public void testMixedVertices() {
+		VertexDictionary<Object> service = new VertexDictionary<>();
+		assertEquals(0, service.add(5));
+		assertEquals(1, service.add(6));
+		assertEquals(-1, service.getId(5L));
+
+		assertEquals(2, service.add(5L));
+		assertEquals(3, service.add("foo"));
+
+		assertEquals(0, service.getId(5));
+		assertEquals(1, service.getId(6));
+		assertEquals(2, service.getId(5L));
+		assertEquals(3, service.getId("foo"));
+		assertEquals(-1, service.getId(6L));
+	}
+
+	@Test
+	public void testCopy() {
+		VertexDictionary<Integer> service = new VertexDictionary<>();
+		service.add(10);
+		service.add(20);
+
+		VertexDictionary<Integer> copy = service.copy();
+		assertEquals(2, copy.add(30));
+		assertEquals(2, service.add(40));
+
+		assertEquals(-1, service.getId(30));
+		assertEquals(-1, copy.getId(40));
+		assertEquals(Integer.valueOf(30), copy.getVertex(2));
+		assertEquals(Integer.valueOf(40), service.getVertex(2));
+		assertEquals(1, copy.getId(20));
+	}
+
+}
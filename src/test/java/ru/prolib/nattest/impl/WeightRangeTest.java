@@ -0,0 +1,50 @@
+package ru.prolib.nattest.impl;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class WeightRangeTest {
+
+	@Test
+	public void testEmpty() {
+		WeightRange service = WeightRange.EMPTY;
+
+		assertTrue(service.isEmpty());
+		assertTrue(service.isIntegral());
+		assertEquals(0.0d, service.getUniformWeight(), 0.0d);
+	}
+
+	@Test
+	public void testAdd() {
+		WeightRange service = WeightRange.EMPTY.add(2.0d);
+
+		assertFalse(service.isEmpty());
+		assertEquals(2.0d, service.getMin(), 0.0d);
+		assertEquals(2.0d, service.getMax(), 0.0d);
+		assertTrue(service.isIntegral());
+		assertEquals(2.0d, service.getUniformWeight(), 0.0d);
+		assertSame(service, service.add(2.0d));
+
+		service = service.add(5.0d).add(0.0d);
+
+		assertEquals(0.0d, service.getMin(), 0.0d);
+		assertEquals(5.0d, service.getMax(), 0.0d);
+		assertTrue(service.isIntegral());
+		assertTrue(Double.isNaN(service.getUniformWeight()));
+		assertSame(service, service.add(3.0d));
+
+		service = service.add(1.5d);
+
+		assertEquals(0.0d, service.getMin(), 0.0d);
+		assertEquals(5.0d, service.getMax(), 0.0d);
+		assertFalse(service.isIntegral());
+	}
+
+	@Test
+	public void testToString() {
+		assertEquals("WeightRange[min=1.0,max=2.5,integral=false]",
+				WeightRange.EMPTY.add(1.0d).add(2.5d).toString());
+	}
+
+}